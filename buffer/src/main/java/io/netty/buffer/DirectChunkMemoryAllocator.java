@@ -0,0 +1,45 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.internal.UnstableApi;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocates the memory of the chunks of the direct arenas of a {@link PooledByteBufAllocator}, for example to back
+ * them with huge pages. Huge allocations (bigger than the chunk size) are not served from chunks and so are always
+ * allocated as ordinary direct {@link ByteBuffer}s.
+ */
+@UnstableApi
+public interface DirectChunkMemoryAllocator {
+
+    /**
+     * Returns a direct {@link ByteBuffer} of {@code capacity} bytes which will be used as the memory of a chunk.
+     */
+    ByteBuffer allocate(int capacity);
+
+    /**
+     * Returns {@code true} if {@code memory}, which was returned by {@link #allocate(int)}, is backed by huge pages.
+     */
+    boolean isHugePageBacked(ByteBuffer memory);
+
+    /**
+     * Releases {@code memory}, which was returned by {@link #allocate(int)}. The allocator calls this exactly once
+     * per chunk and never frees the memory by other means.
+     */
+    void free(ByteBuffer memory);
+}
@@ -16,6 +16,7 @@
 
 package io.netty.buffer;
 
+import io.netty.util.concurrent.GlobalEventExecutor;
 import io.netty.util.internal.LongCounter;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
@@ -25,6 +26,7 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
@@ -70,6 +72,21 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     final int numSmallSubpagePools;
     final int directMemoryCacheAlignment;
     final int directMemoryCacheAlignmentMask;
+    // 细粒度规格表, 只有使用jemalloc4风格的size class时才不为null
+    final SizeClasses sizeClasses;
+    // huge级别chunk的缓存, 没有开启时为null
+    private final PoolHugeChunkCache<T> hugeChunkCache;
+    // 完全空闲超过这个时间的chunk会被释放, 0表示一直保留
+    private final long trimIdleNanos;
+    // 以下两个字段由this保护
+    private boolean trimScheduled;
+    private long trimmedChunks;
+    private final Runnable trimTask = new Runnable() {
+        @Override
+        public void run() {
+            trimUnusedChunks();
+        }
+    };
 
     // 一个内存页，默认是8k
     private final PoolSubpage<T>[] tinySubpagePools;
@@ -94,6 +111,8 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     private final LongCounter allocationsSmall = PlatformDependent.newLongCounter();
     private final LongCounter allocationsHuge = PlatformDependent.newLongCounter();
     private final LongCounter activeBytesHuge = PlatformDependent.newLongCounter();
+    // 由huge page支持的chunk数量, 只有DirectArena使用了DirectChunkMemoryAllocator才会增加
+    final LongCounter hugePageChunks = PlatformDependent.newLongCounter();
 
 
     private long deallocationsTiny;
@@ -116,7 +135,14 @@ abstract class PoolArena<T> implements PoolArenaMetric {
      * 构造器
      */
     protected PoolArena(PooledByteBufAllocator parent, int pageSize, int maxOrder, int pageShifts, int chunkSize, int cacheAlignment) {
+        this(parent, pageSize, maxOrder, pageShifts, chunkSize, cacheAlignment, false, 0, 0, 0);
+    }
+
+    protected PoolArena(PooledByteBufAllocator parent, int pageSize, int maxOrder, int pageShifts, int chunkSize,
+                        int cacheAlignment, boolean useSizeClasses,
+                        long maxCachedHugeBytes, long hugeCacheIdleTimeMillis, long trimIdleTimeMillis) {
         this.parent = parent;
+        trimIdleNanos = TimeUnit.MILLISECONDS.toNanos(trimIdleTimeMillis);
 
         this.pageSize = pageSize;
         this.maxOrder = maxOrder;
@@ -127,14 +153,21 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         directMemoryCacheAlignmentMask = cacheAlignment - 1;
         subpageOverflowMask = ~(pageSize - 1);
 
-        // len=32
-        tinySubpagePools = newSubpagePoolArray(numTinySubpagePools);
-        for (int i = 0; i < tinySubpagePools.length; i ++) {
-            tinySubpagePools[i] = newSubpagePoolHead(pageSize);
+        if (useSizeClasses) {
+            // 所有通过PoolSubpage分配的规格都放在smallSubpagePools中, 不再区分tiny
+            sizeClasses = new SizeClasses(pageSize, pageShifts, chunkSize, cacheAlignment);
+            tinySubpagePools = newSubpagePoolArray(0);
+            numSmallSubpagePools = sizeClasses.nSubpages;
+        } else {
+            sizeClasses = null;
+            // len=32
+            tinySubpagePools = newSubpagePoolArray(numTinySubpagePools);
+            for (int i = 0; i < tinySubpagePools.length; i ++) {
+                tinySubpagePools[i] = newSubpagePoolHead(pageSize);
+            }
+            numSmallSubpagePools = pageShifts - 9;
         }
 
-        numSmallSubpagePools = pageShifts - 9;
-
         // len=4
         smallSubpagePools = newSubpagePoolArray(numSmallSubpagePools);
         for (int i = 0; i < smallSubpagePools.length; i ++) {
@@ -166,6 +199,10 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         metrics.add(q075);
         metrics.add(q100);
         chunkListMetrics = Collections.unmodifiableList(metrics);
+
+        hugeChunkCache = maxCachedHugeBytes > 0 ?
+                new PoolHugeChunkCache<T>(this, maxCachedHugeBytes, hugeCacheIdleTimeMillis, TimeUnit.MILLISECONDS) :
+                null;
     }
 
 
@@ -243,6 +280,11 @@ abstract class PoolArena<T> implements PoolArenaMetric {
      * 这个方法进行具体申请内存的操作
      */
     private void allocate(PoolThreadCache poolThreadCache, PooledByteBuf<T> buf, final int reqCapacity) {
+        if (sizeClasses != null) {
+            allocateWithSizeClasses(poolThreadCache, buf, reqCapacity);
+            return;
+        }
+
         // 内存规格化
         final int normCapacity = normalizeCapacity(reqCapacity);
 
@@ -332,6 +374,55 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         }
     }
 
+    /**
+     * 使用细粒度size class时的分配入口, 小于 pageSize * 4 的规格走PoolSubpage, 其余的按页分配
+     */
+    private void allocateWithSizeClasses(PoolThreadCache poolThreadCache, PooledByteBuf<T> buf, final int reqCapacity) {
+        checkPositiveOrZero(reqCapacity, "reqCapacity");
+        if (reqCapacity > chunkSize) {
+            // Huge allocations are never served via the cache so just call allocateHuge
+            allocateHuge(buf, reqCapacity);
+            return;
+        }
+
+        final int sizeIdx = sizeClasses.size2SizeIdx(reqCapacity);
+        final int normCapacity = sizeClasses.sizeIdx2size(sizeIdx);
+        if (sizeClasses.isSubpage(sizeIdx)) {
+            if (poolThreadCache.allocateSmall(this, buf, reqCapacity, normCapacity)) {
+                // was able to allocate out of the cache so move on
+                return;
+            }
+
+            final PoolSubpage<T> head = smallSubpagePools[sizeIdx];
+            synchronized (head) {
+                final PoolSubpage<T> subpage = head.next;
+                if (subpage != head) {
+                    assert subpage.doNotDestroy && subpage.elemSize == normCapacity;
+                    long handle = subpage.allocate();
+                    assert handle >= 0;
+                    subpage.chunk.initBufWithSubpage(buf, null, handle, reqCapacity);
+                    incTinySmallAllocation(false);
+                    return;
+                }
+            }
+
+            synchronized (this) {
+                allocateNormal(buf, reqCapacity, normCapacity);
+            }
+            incTinySmallAllocation(false);
+        } else {
+            if (poolThreadCache.allocateNormal(this, buf, reqCapacity, normCapacity)) {
+                // was able to allocate out of the cache so move on
+                return;
+            }
+
+            synchronized (this) {
+                allocateNormal(buf, reqCapacity, normCapacity);
+                ++allocationsNormal;
+            }
+        }
+    }
+
     /**
      * 调用该方法必须加锁
      */
@@ -355,7 +446,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         if (q25) {
             return;
         }
-        boolean q00 = q025.allocate(buf, reqCapacity, normCapacity);
+        boolean q00 = q000.allocate(buf, reqCapacity, normCapacity);
         logger.info("q00 = " + q00);
         if (q00) {
             return;
@@ -392,7 +483,14 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     }
 
     private void allocateHuge(PooledByteBuf<T> buf, int reqCapacity) {
-        PoolChunk<T> chunk = newUnpooledChunk(reqCapacity);
+        final PoolChunk<T> chunk;
+        if (hugeChunkCache == null) {
+            chunk = newUnpooledChunk(reqCapacity);
+        } else {
+            // 优先复用缓存中同一个bucket的chunk, 否则按bucket大小分配, 这样释放后才能被其他请求复用
+            PoolChunk<T> cached = hugeChunkCache.poll(reqCapacity);
+            chunk = cached != null ? cached : newUnpooledChunk(hugeChunkCache.bucketSize(reqCapacity));
+        }
         activeBytesHuge.add(chunk.chunkSize());
         buf.initUnpooled(chunk, reqCapacity);
         allocationsHuge.increment();
@@ -404,7 +502,9 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     void free(PoolChunk<T> chunk, ByteBuffer nioBuffer, long handle, int normCapacity, PoolThreadCache cache) {
         if (chunk.unpooled) {
             int size = chunk.chunkSize();
-            destroyChunk(chunk);
+            if (hugeChunkCache == null || !hugeChunkCache.offer(chunk)) {
+                destroyChunk(chunk);
+            }
             activeBytesHuge.add(-size);
             deallocationsHuge.increment();
         } else {
@@ -421,6 +521,9 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     }
 
     private SizeClass sizeClass(int normCapacity) {
+        if (sizeClasses != null) {
+            return normCapacity <= sizeClasses.maxSubpageSize ? SizeClass.Small : SizeClass.Normal;
+        }
         if (!isTinyOrSmall(normCapacity)) {
             return SizeClass.Normal;
         }
@@ -444,6 +547,14 @@ abstract class PoolArena<T> implements PoolArenaMetric {
                 throw new Error();
             }
             destroyChunk = !chunk.parent.free(chunk, handle, nioBuffer);
+            if (!destroyChunk && trimIdleNanos > 0 && chunk.isUnused()) {
+                // 只有qInit中会有完全空闲的chunk, 等它空闲足够久之后再释放, 避免刚释放又要重新分配
+                chunk.unusedSinceNanos = System.nanoTime();
+                if (!trimScheduled) {
+                    trimScheduled = true;
+                    scheduleTrim(trimIdleNanos);
+                }
+            }
         }
         if (destroyChunk) {
             // destroyChunk not need to be called while holding the synchronized lock.
@@ -451,10 +562,37 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         }
     }
 
+    /**
+     * Releases the chunks which were completely unused for at least {@code trimIdleNanos}, and reschedules itself
+     * as long as there are other unused chunks.
+     */
+    private void trimUnusedChunks() {
+        List<PoolChunk<T>> trimmed = new ArrayList<PoolChunk<T>>();
+        synchronized (this) {
+            long nextDelay = qInit.trim(System.nanoTime(), trimIdleNanos, trimmed);
+            trimmedChunks += trimmed.size();
+            if (nextDelay == Long.MAX_VALUE) {
+                trimScheduled = false;
+            } else {
+                scheduleTrim(nextDelay);
+            }
+        }
+        for (PoolChunk<T> chunk : trimmed) {
+            destroyChunk(chunk);
+        }
+    }
+
+    private void scheduleTrim(long delayNanos) {
+        GlobalEventExecutor.INSTANCE.schedule(trimTask, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
     /**
      *
      */
     PoolSubpage<T> findSubpagePoolHead(int elemSize) {
+        if (sizeClasses != null) {
+            return smallSubpagePools[sizeClasses.size2SizeIdx(elemSize)];
+        }
         int tableIdx;
         PoolSubpage<T>[] table;
         if (isTiny(elemSize)) { // < 512
@@ -485,6 +623,10 @@ abstract class PoolArena<T> implements PoolArenaMetric {
             return directMemoryCacheAlignment == 0 ? reqCapacity : alignCapacity(reqCapacity);
         }
 
+        if (sizeClasses != null) {
+            return sizeClasses.normalizeSize(reqCapacity);
+        }
+
         if (!isTiny(reqCapacity)) {
             // >= 512
             // Doubled  找个2的幂次方数 大于等于 reqCapacity
@@ -711,8 +853,58 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     }
 
     @Override
-    public long numActiveBytes() {
+    public long numHugeCacheHits() {
+        return hugeChunkCache == null ? 0 : hugeChunkCache.hits();
+    }
+
+    @Override
+    public long numHugeCacheEvictions() {
+        return hugeChunkCache == null ? 0 : hugeChunkCache.evictions();
+    }
+
+    @Override
+    public int numCachedHugeChunks() {
+        return hugeChunkCache == null ? 0 : hugeChunkCache.cachedChunks();
+    }
+
+    @Override
+    public long numCachedHugeBytes() {
+        return hugeChunkCache == null ? 0 : hugeChunkCache.cachedBytes();
+    }
+
+    @Override
+    public long numHugePageChunks() {
+        return hugePageChunks.value();
+    }
+
+    @Override
+    public long numTrimmedChunks() {
+        synchronized (this) {
+            return trimmedChunks;
+        }
+    }
+
+    @Override
+    public long numRetainedBytes() {
+        return numActiveBytes();
+    }
+
+    @Override
+    public long numUsedBytes() {
         long val = activeBytesHuge.value();
+        synchronized (this) {
+            for (int i = 0; i < chunkListMetrics.size(); i++) {
+                for (PoolChunkMetric m: chunkListMetrics.get(i)) {
+                    val += m.chunkSize() - m.freeBytes();
+                }
+            }
+        }
+        return max(0, val);
+    }
+
+    @Override
+    public long numActiveBytes() {
+        long val = activeBytesHuge.value() + numCachedHugeBytes();
         synchronized (this) {
             for (int i = 0; i < chunkListMetrics.size(); i++) {
                 for (PoolChunkMetric m: chunkListMetrics.get(i)) {
@@ -806,6 +998,9 @@ abstract class PoolArena<T> implements PoolArenaMetric {
             destroyPoolSubPages(smallSubpagePools);
             destroyPoolSubPages(tinySubpagePools);
             destroyPoolChunkLists(qInit, q000, q025, q050, q075, q100);
+            if (hugeChunkCache != null) {
+                hugeChunkCache.free();
+            }
         }
     }
 
@@ -834,6 +1029,13 @@ abstract class PoolArena<T> implements PoolArenaMetric {
             super(parent, pageSize, maxOrder, pageShifts, chunkSize, directMemoryCacheAlignment);
         }
 
+        HeapArena(PooledByteBufAllocator parent, int pageSize, int maxOrder, int pageShifts, int chunkSize,
+                  int directMemoryCacheAlignment, boolean useSizeClasses,
+                  long maxCachedHugeBytes, long hugeCacheIdleTimeMillis, long trimIdleTimeMillis) {
+            super(parent, pageSize, maxOrder, pageShifts, chunkSize, directMemoryCacheAlignment, useSizeClasses,
+                    maxCachedHugeBytes, hugeCacheIdleTimeMillis, trimIdleTimeMillis);
+        }
+
         // 创建 16M内
         private static byte[] newByteArray(int size) {
             return PlatformDependent.allocateUninitializedArray(size);
@@ -892,9 +1094,23 @@ abstract class PoolArena<T> implements PoolArenaMetric {
      */
     static final class DirectArena extends PoolArena<ByteBuffer> {
 
+        // 构造器   调用方io.netty.buffer.PooledByteBufAllocator.PooledByteBufAllocator
+        // 分配chunk内存的分配器, 为null时使用普通的direct ByteBuffer
+        private final DirectChunkMemoryAllocator chunkMemoryAllocator;
+
         // 构造器   调用方io.netty.buffer.PooledByteBufAllocator.PooledByteBufAllocator
         DirectArena(PooledByteBufAllocator parent, int pageSize, int maxOrder, int pageShifts, int chunkSize, int directMemoryCacheAlignment) {
             super(parent, pageSize, maxOrder, pageShifts, chunkSize, directMemoryCacheAlignment);
+            chunkMemoryAllocator = null;
+        }
+
+        DirectArena(PooledByteBufAllocator parent, int pageSize, int maxOrder, int pageShifts, int chunkSize,
+                    int directMemoryCacheAlignment, boolean useSizeClasses,
+                    long maxCachedHugeBytes, long hugeCacheIdleTimeMillis, long trimIdleTimeMillis,
+                    DirectChunkMemoryAllocator chunkMemoryAllocator) {
+            super(parent, pageSize, maxOrder, pageShifts, chunkSize, directMemoryCacheAlignment, useSizeClasses,
+                    maxCachedHugeBytes, hugeCacheIdleTimeMillis, trimIdleTimeMillis);
+            this.chunkMemoryAllocator = chunkMemoryAllocator;
         }
 
 
@@ -919,14 +1135,25 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         protected PoolChunk<ByteBuffer> newChunk(int pageSize, int maxOrder, int pageShifts, int chunkSize) {
             if (directMemoryCacheAlignment == 0) {
                 // 创建个nio directBuffer
-                ByteBuffer directBuffer = allocateDirect(chunkSize);
+                ByteBuffer directBuffer = allocateChunkMemory(chunkSize);
                 return new PoolChunk<ByteBuffer>(this, directBuffer, pageSize, maxOrder, pageShifts, chunkSize, 0);
             }
 
-            final ByteBuffer memory = allocateDirect(chunkSize + directMemoryCacheAlignment);
+            final ByteBuffer memory = allocateChunkMemory(chunkSize + directMemoryCacheAlignment);
             return new PoolChunk<ByteBuffer>(this, memory, pageSize, maxOrder, pageShifts, chunkSize, offsetCacheLine(memory));
         }
 
+        private ByteBuffer allocateChunkMemory(int capacity) {
+            if (chunkMemoryAllocator == null) {
+                return allocateDirect(capacity);
+            }
+            ByteBuffer memory = chunkMemoryAllocator.allocate(capacity);
+            if (chunkMemoryAllocator.isHugePageBacked(memory)) {
+                hugePageChunks.increment();
+            }
+            return memory;
+        }
+
         @Override
         protected PoolChunk<ByteBuffer> newUnpooledChunk(int capacity) {
             if (directMemoryCacheAlignment == 0) {
@@ -950,7 +1177,13 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
         @Override
         protected void destroyChunk(PoolChunk<ByteBuffer> chunk) {
-            if (PlatformDependent.useDirectBufferNoCleaner()) {
+            if (chunkMemoryAllocator != null && !chunk.unpooled) {
+                // 这块内存可能没有Cleaner, 只能交给分配它的分配器释放
+                if (chunkMemoryAllocator.isHugePageBacked(chunk.memory)) {
+                    hugePageChunks.decrement();
+                }
+                chunkMemoryAllocator.free(chunk.memory);
+            } else if (PlatformDependent.useDirectBufferNoCleaner()) {
                 PlatformDependent.freeDirectNoCleaner(chunk.memory);
             } else {
                 PlatformDependent.freeDirectBuffer(chunk.memory);
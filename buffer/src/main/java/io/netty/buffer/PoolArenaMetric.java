@@ -64,7 +64,8 @@ public interface PoolArenaMetric {
     long numAllocations();
 
     /**
-     * Return the number of tiny allocations done via the arena.
+     * Return the number of tiny allocations done via the arena. This is always {@code 0} if the arena uses
+     * fine-grained size classes, all sub-page allocations are counted as small allocations then.
      */
     long numTinyAllocations();
 
@@ -134,7 +135,53 @@ public interface PoolArenaMetric {
     long numActiveHugeAllocations();
 
     /**
-     * Return the number of active bytes that are currently allocated by the arena.
+     * Return the number of huge allocations which reused a chunk of the huge chunk cache.
+     */
+    long numHugeCacheHits();
+
+    /**
+     * Return the number of chunks which were released from the huge chunk cache because they were idle for too long
+     * or to make room for other chunks.
+     */
+    long numHugeCacheEvictions();
+
+    /**
+     * Return the number of chunks which are currently held by the huge chunk cache.
+     */
+    int numCachedHugeChunks();
+
+    /**
+     * Return the number of bytes which are currently held by the huge chunk cache.
+     */
+    long numCachedHugeBytes();
+
+    /**
+     * Return the number of chunks whose memory is backed by huge pages. This is always {@code 0} for heap arenas and
+     * for direct arenas which do not use a {@link DirectChunkMemoryAllocator}.
+     */
+    long numHugePageChunks();
+
+    /**
+     * Return the number of chunks which were released because they were completely unused for longer than the
+     * trim idle time of the allocator.
+     */
+    long numTrimmedChunks();
+
+    /**
+     * Return the number of bytes of memory which are held by the arena, whether they are in use or not. This is the
+     * same as {@link #numActiveBytes()}.
+     */
+    long numRetainedBytes();
+
+    /**
+     * Return the number of bytes of the memory held by the arena which are currently in use by buffers or by the
+     * thread caches. The difference to {@link #numRetainedBytes()} is the memory the arena keeps around unused.
+     */
+    long numUsedBytes();
+
+    /**
+     * Return the number of active bytes that are currently allocated by the arena. This includes the bytes held
+     * by the huge chunk cache.
      */
     long numActiveBytes();
 }
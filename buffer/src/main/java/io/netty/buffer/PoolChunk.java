@@ -18,6 +18,7 @@ package io.netty.buffer;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
+import java.util.BitSet;
 import java.util.Deque;
 
 /**
@@ -103,6 +104,14 @@ import java.util.Deque;
  * memoryMap[id]= depth_of_id  is defined above
  * depthMap[id]= x  indicates that the first node which is free to be allocated is at depth x (from root)
  *
+ * Runs with fine-grained size classes:
+ * -----
+ * If the arena uses {@link SizeClasses} the buddy tree is not used as it can only hand out power of two runs.
+ * Instead every page has a bit in usedPages and a run of any number of pages is allocated from the first
+ * (lowest address) gap that is big enough. Freeing a run just clears its bits, so neighbouring free runs are
+ * merged implicitly. The handle then stores the first page and the number of pages of the run instead of the
+ * memoryMap index, see {@link #toRunIdx(int, int)}.
+ *
  *
  *
  *
@@ -148,6 +157,8 @@ import java.util.Deque;
 final class PoolChunk<T> implements PoolChunkMetric {
 
     private static final int INTEGER_SIZE_MINUS_ONE = Integer.SIZE - 1;
+    private static final int RUN_PAGES_SHIFT = 16;
+    private static final int RUN_OFFSET_MASK = (1 << RUN_PAGES_SHIFT) - 1;
 
     //
     final PoolArena<T> arena;
@@ -167,6 +178,9 @@ final class PoolChunk<T> implements PoolChunkMetric {
      */
     private final byte[] depthMap;
 
+    // size class模式下按页记录占用情况, 取代memoryMap二叉树, 否则为null
+    private final BitSet usedPages;
+
     // 只有分配的内存小于pageSize（8k）时才会用到我  len=2048
     private final PoolSubpage<T>[] subpages;
 
@@ -195,6 +209,8 @@ final class PoolChunk<T> implements PoolChunkMetric {
     // 双向链表
     PoolChunk<T> prev;
     PoolChunk<T> next;
+    // 最近一次完全空闲的时间, 由PoolArena用来释放长时间空闲的chunk
+    long unusedSinceNanos;
 
 
     // TODO: Test if adding padding helps under contention
@@ -222,18 +238,25 @@ final class PoolChunk<T> implements PoolChunkMetric {
         assert maxOrder < 30 : "maxOrder should be < 30, but is: " + maxOrder;
         maxSubpageAllocs = 1 << maxOrder; //2048
 
-        // Generate the memory map.  memoryMap, depthMap长度都是4096
-        memoryMap = new byte[maxSubpageAllocs << 1];
-        depthMap = new byte[memoryMap.length];
-
-        int memoryMapIndex = 1;
-        for (int d = 0; d <= maxOrder; ++ d) { // move down the tree one level at a time
-            int depth = 1 << d;
-            for (int p = 0; p < depth; ++ p) {
-                // in each level traverse left to right and set value to the depth of subtree
-                memoryMap[memoryMapIndex] = (byte) d;
-                depthMap[memoryMapIndex] = (byte) d;
-                memoryMapIndex ++;
+        if (arena.sizeClasses != null) {
+            memoryMap = null;
+            depthMap = null;
+            usedPages = new BitSet(maxSubpageAllocs);
+        } else {
+            usedPages = null;
+            // Generate the memory map.  memoryMap, depthMap长度都是4096
+            memoryMap = new byte[maxSubpageAllocs << 1];
+            depthMap = new byte[memoryMap.length];
+
+            int memoryMapIndex = 1;
+            for (int d = 0; d <= maxOrder; ++ d) { // move down the tree one level at a time
+                int depth = 1 << d;
+                for (int p = 0; p < depth; ++ p) {
+                    // in each level traverse left to right and set value to the depth of subtree
+                    memoryMap[memoryMapIndex] = (byte) d;
+                    depthMap[memoryMapIndex] = (byte) d;
+                    memoryMapIndex ++;
+                }
             }
         }
 
@@ -250,6 +273,7 @@ final class PoolChunk<T> implements PoolChunkMetric {
         this.offset = offset;
         memoryMap = null;
         depthMap = null;
+        usedPages = null;
         subpages = null;
         subpageOverflowMask = 0;
         pageSize = 0;
@@ -299,7 +323,10 @@ final class PoolChunk<T> implements PoolChunkMetric {
      */
     boolean allocate(PooledByteBuf<T> buf, int reqCapacity, int normCapacity) {
         final long handle;
-        if ((normCapacity & subpageOverflowMask) != 0) { // >= pageSize
+        if (usedPages != null) {
+            handle = normCapacity > arena.sizeClasses.maxSubpageSize ?
+                    allocatePages(normCapacity >> pageShifts) : allocateSubpageRun(normCapacity);
+        } else if ((normCapacity & subpageOverflowMask) != 0) { // >= pageSize
             // 如果为8k或者大于8k  handle: index in memoryMap
             handle =  allocateRun(normCapacity);
         } else {
@@ -461,6 +488,58 @@ final class PoolChunk<T> implements PoolChunkMetric {
         }
     }
 
+    /**
+     * Allocate a run of {@code pages} pages from the lowest address which has enough free pages in a row.
+     *
+     * @return the run index as encoded by {@link #toRunIdx(int, int)} or {@code -1} if there is no such run
+     */
+    private long allocatePages(int pages) {
+        int runSize = pages << pageShifts;
+        if (freeBytes < runSize) {
+            return -1;
+        }
+
+        final BitSet usedPages = this.usedPages;
+        int runOffset = usedPages.nextClearBit(0);
+        while (runOffset + pages <= maxSubpageAllocs) {
+            int next = usedPages.nextSetBit(runOffset);
+            if (next < 0 || next - runOffset >= pages) {
+                usedPages.set(runOffset, runOffset + pages);
+                freeBytes -= runSize;
+                return toRunIdx(runOffset, pages);
+            }
+            runOffset = usedPages.nextClearBit(next);
+        }
+        return -1;
+    }
+
+    /**
+     * Create / initialize a new PoolSubpage of a fine-grained size class. The subpage is backed by a run whose
+     * length is a multiple of both the page size and normCapacity, see {@link SizeClasses#subpageRunSize(int)}.
+     */
+    private long allocateSubpageRun(int normCapacity) {
+        final SizeClasses sizeClasses = arena.sizeClasses;
+        final int runSize = sizeClasses.subpageRunSize(sizeClasses.size2SizeIdx(normCapacity));
+        PoolSubpage<T> head = arena.findSubpagePoolHead(normCapacity);
+
+        synchronized (head) {
+            long runIdx = allocatePages(runSize >> pageShifts);
+            if (runIdx < 0) {
+                return runIdx;
+            }
+
+            int subpageIdx = subpageIdx((int) runIdx);
+            PoolSubpage<T> subpage = subpages[subpageIdx];
+            if (subpage == null || subpage.pageSize() != runSize) {
+                subpage = new PoolSubpage<T>(head, this, (int) runIdx, runOffset((int) runIdx), runSize, normCapacity);
+                subpages[subpageIdx] = subpage;
+            } else {
+                subpage.init(head, normCapacity);
+            }
+            return subpage.allocate();
+        }
+    }
+
     /**
      * Free a subpage or a run of pages
      * When a subpage is freed from PoolSubpage, it might be added back to subpage pool of the owning PoolArena
@@ -488,8 +567,13 @@ final class PoolChunk<T> implements PoolChunkMetric {
         }
 
         freeBytes += runLength(memoryMapIdx);
-        setValue(memoryMapIdx, depth(memoryMapIdx));
-        updateParentsFree(memoryMapIdx);
+        if (usedPages != null) {
+            int runOffset = memoryMapIdx & RUN_OFFSET_MASK;
+            usedPages.clear(runOffset, runOffset + (memoryMapIdx >>> RUN_PAGES_SHIFT));
+        } else {
+            setValue(memoryMapIdx, depth(memoryMapIdx));
+            updateParentsFree(memoryMapIdx);
+        }
 
         if (nioBuffer != null && cachedNioBuffers != null &&
                 cachedNioBuffers.size() < PooledByteBufAllocator.DEFAULT_MAX_CACHED_BYTEBUFFERS_PER_CHUNK) {
@@ -507,8 +591,7 @@ final class PoolChunk<T> implements PoolChunkMetric {
 
         if (bitmapIdx == 0) {
             // memoryMap[id]; 前面已做过unusable标记
-            byte val = value(memoryMapIdx);
-            assert val == unusable : String.valueOf(val);
+            assert usedPages != null || value(memoryMapIdx) == unusable : String.valueOf(value(memoryMapIdx));
 
             //
             int offset = runOffset(memoryMapIdx) + this.offset;
@@ -565,6 +648,9 @@ final class PoolChunk<T> implements PoolChunkMetric {
     }
 
     private int runLength(int id) {
+        if (usedPages != null) {
+            return (id >>> RUN_PAGES_SHIFT) << pageShifts;
+        }
         // represents the size in #bytes supported by node 'id' in the tree
         return 1 << log2ChunkSize - depth(id);
     }
@@ -573,15 +659,29 @@ final class PoolChunk<T> implements PoolChunkMetric {
      *
      */
     private int runOffset(int id) {
+        if (usedPages != null) {
+            return (id & RUN_OFFSET_MASK) << pageShifts;
+        }
         // represents the 0-based offset in #bytes from start of the byte-array chunk
         int shift = id ^ 1 << depth(id);
         return shift * runLength(id);
     }
 
     private int subpageIdx(int memoryMapIdx) {
+        if (usedPages != null) {
+            return memoryMapIdx & RUN_OFFSET_MASK;
+        }
         return memoryMapIdx ^ maxSubpageAllocs; // remove highest set bit, to get offset
     }
 
+    /**
+     * Encodes a run of pages, this is used instead of the memoryMap index if the arena uses {@link SizeClasses}.
+     * A chunk has at most 2^14 pages so both values fit and the result is always positive.
+     */
+    private static int toRunIdx(int runOffset, int pages) {
+        return pages << RUN_PAGES_SHIFT | runOffset;
+    }
+
 
 
     private static int memoryMapIdx(long handle) {
@@ -605,6 +705,13 @@ final class PoolChunk<T> implements PoolChunkMetric {
         }
     }
 
+    /**
+     * Returns {@code true} if no memory of this chunk is in use. Must be called while holding the lock of the arena.
+     */
+    boolean isUnused() {
+        return freeBytes == chunkSize;
+    }
+
     @Override
     public String toString() {
         final int freeBytes;
@@ -262,6 +262,29 @@ final class PoolChunkList<T> implements PoolChunkListMetric {
         return buf.toString();
     }
 
+    /**
+     * Removes the chunks which are completely unused since at least {@code idleNanos} and adds them to
+     * {@code trimmed}. Returns the time until the next of the remaining unused chunks becomes idle, or
+     * {@link Long#MAX_VALUE} if there is none. Must be called while holding the lock of the arena.
+     */
+    long trim(long nanoTime, long idleNanos, List<PoolChunk<T>> trimmed) {
+        long nextDelay = Long.MAX_VALUE;
+        for (PoolChunk<T> cur = head; cur != null;) {
+            PoolChunk<T> next = cur.next;
+            if (cur.isUnused()) {
+                long idle = nanoTime - cur.unusedSinceNanos;
+                if (idle >= idleNanos) {
+                    remove(cur);
+                    trimmed.add(cur);
+                } else {
+                    nextDelay = min(nextDelay, idleNanos - idle);
+                }
+            }
+            cur = next;
+        }
+        return nextDelay;
+    }
+
     void destroy(PoolArena<T> arena) {
         PoolChunk<T> chunk = head;
         while (chunk != null) {
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.netty.buffer;
+
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of the unpooled chunks which back huge allocations (bigger than {@code chunkSize}) of a
+ * {@link PoolArena}, so repeated huge allocations do not round-trip through the OS / GC every time.
+ *
+ * Huge sizes are rounded up to buckets with four buckets per doubling ({@code chunkSize * 1.25, 1.5, 1.75, 2,
+ * 2.5, ...}), so a released chunk can serve any later request of the same bucket. Chunks are reused last in first
+ * out and released once they were not used for {@code idleTimeNanos} or if caching them would exceed
+ * {@code maxCachedBytes}. Idle chunks are released by a task on the {@link GlobalEventExecutor} which is only
+ * scheduled while the cache is not empty.
+ */
+final class PoolHugeChunkCache<T> {
+
+    private static final int LOG2_BUCKETS_PER_DOUBLING = 2;
+
+    private final PoolArena<T> arena;
+    private final int log2ChunkSize;
+    private final long maxCachedBytes;
+    private final long idleTimeNanos;
+    private final ArrayDeque<CachedChunk<T>>[] buckets;
+
+    // 以下字段都由this保护
+    private long cachedBytes;
+    private int cachedChunks;
+    private long hits;
+    private long evictions;
+    private boolean evictionScheduled;
+
+    private final Runnable evictionTask = new Runnable() {
+        @Override
+        public void run() {
+            evictIdle();
+        }
+    };
+
+    @SuppressWarnings("unchecked")
+    PoolHugeChunkCache(PoolArena<T> arena, long maxCachedBytes, long idleTime, TimeUnit unit) {
+        this.arena = arena;
+        this.maxCachedBytes = maxCachedBytes;
+        idleTimeNanos = unit.toNanos(idleTime);
+        log2ChunkSize = log2(arena.chunkSize);
+        buckets = new ArrayDeque[Integer.SIZE - 1 - log2ChunkSize << LOG2_BUCKETS_PER_DOUBLING];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new ArrayDeque<CachedChunk<T>>();
+        }
+    }
+
+    /**
+     * Returns the size of the chunk that should be allocated for a huge request of {@code reqCapacity} bytes, this is
+     * {@code reqCapacity} itself if the request is too big to be bucketed.
+     */
+    int bucketSize(int reqCapacity) {
+        int log2Group = log2(reqCapacity - 1);
+        long delta = 1L << log2Group - LOG2_BUCKETS_PER_DOUBLING;
+        long size = reqCapacity + delta - 1 & ~(delta - 1);
+        return size > Integer.MAX_VALUE ? reqCapacity : (int) size;
+    }
+
+    /**
+     * Returns a cached chunk which can hold {@code reqCapacity} bytes or {@code null} if there is none.
+     */
+    PoolChunk<T> poll(int reqCapacity) {
+        int bucketIdx = bucketIdx(bucketSize(reqCapacity));
+        if (bucketIdx < 0) {
+            return null;
+        }
+        synchronized (this) {
+            CachedChunk<T> cached = buckets[bucketIdx].pollFirst();
+            if (cached == null) {
+                return null;
+            }
+            cachedBytes -= cached.chunk.chunkSize();
+            cachedChunks--;
+            hits++;
+            return cached.chunk;
+        }
+    }
+
+    /**
+     * Caches the released huge {@code chunk}. Returns {@code false} if it could not be cached and so must be
+     * destroyed by the caller.
+     */
+    boolean offer(PoolChunk<T> chunk) {
+        int size = chunk.chunkSize();
+        int bucketIdx = bucketIdx(size);
+        if (bucketIdx < 0 || size > maxCachedBytes) {
+            return false;
+        }
+
+        List<PoolChunk<T>> destroy = null;
+        boolean cached = false;
+        long nanoTime = System.nanoTime();
+        synchronized (this) {
+            if (cachedBytes + size > maxCachedBytes) {
+                // Make room by releasing the chunks which were not used for the longest time.
+                destroy = new ArrayList<PoolChunk<T>>();
+                evict(nanoTime, maxCachedBytes - size, destroy);
+            }
+            if (cachedBytes + size <= maxCachedBytes) {
+                buckets[bucketIdx].addFirst(new CachedChunk<T>(chunk, nanoTime));
+                cachedBytes += size;
+                cachedChunks++;
+                cached = true;
+                if (!evictionScheduled) {
+                    evictionScheduled = true;
+                    scheduleEviction(idleTimeNanos);
+                }
+            }
+        }
+        destroyAll(destroy);
+        return cached;
+    }
+
+    private void evictIdle() {
+        List<PoolChunk<T>> destroy = new ArrayList<PoolChunk<T>>();
+        synchronized (this) {
+            long nanoTime = System.nanoTime();
+            evict(nanoTime, Long.MAX_VALUE, destroy);
+
+            long oldest = Long.MAX_VALUE;
+            for (ArrayDeque<CachedChunk<T>> bucket : buckets) {
+                CachedChunk<T> last = bucket.peekLast();
+                if (last != null) {
+                    oldest = Math.min(oldest, nanoTime - last.cachedNanos);
+                }
+            }
+            if (oldest == Long.MAX_VALUE) {
+                evictionScheduled = false;
+            } else {
+                scheduleEviction(idleTimeNanos - oldest);
+            }
+        }
+        destroyAll(destroy);
+    }
+
+    /**
+     * Removes all chunks which are idle for too long and then the least recently used ones until at most
+     * {@code maxBytes} are cached. Must be called while holding the lock of this cache.
+     */
+    private void evict(long nanoTime, long maxBytes, List<PoolChunk<T>> destroy) {
+        for (ArrayDeque<CachedChunk<T>> bucket : buckets) {
+            CachedChunk<T> last;
+            while ((last = bucket.peekLast()) != null && nanoTime - last.cachedNanos >= idleTimeNanos) {
+                remove(bucket, destroy);
+            }
+        }
+        while (cachedBytes > maxBytes) {
+            ArrayDeque<CachedChunk<T>> lru = null;
+            for (ArrayDeque<CachedChunk<T>> bucket : buckets) {
+                CachedChunk<T> last = bucket.peekLast();
+                if (last != null && (lru == null || last.cachedNanos - lru.peekLast().cachedNanos < 0)) {
+                    lru = bucket;
+                }
+            }
+            remove(lru, destroy);
+        }
+    }
+
+    private void remove(ArrayDeque<CachedChunk<T>> bucket, List<PoolChunk<T>> destroy) {
+        PoolChunk<T> chunk = bucket.pollLast().chunk;
+        cachedBytes -= chunk.chunkSize();
+        cachedChunks--;
+        evictions++;
+        destroy.add(chunk);
+    }
+
+    private void scheduleEviction(long delayNanos) {
+        GlobalEventExecutor.INSTANCE.schedule(evictionTask, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+    }
+
+    private void destroyAll(List<PoolChunk<T>> chunks) {
+        if (chunks != null) {
+            for (PoolChunk<T> chunk : chunks) {
+                arena.destroyChunk(chunk);
+            }
+        }
+    }
+
+    /**
+     * Releases all cached chunks.
+     */
+    void free() {
+        List<PoolChunk<T>> destroy = new ArrayList<PoolChunk<T>>();
+        synchronized (this) {
+            for (ArrayDeque<CachedChunk<T>> bucket : buckets) {
+                while (!bucket.isEmpty()) {
+                    remove(bucket, destroy);
+                }
+            }
+        }
+        destroyAll(destroy);
+    }
+
+    synchronized long cachedBytes() {
+        return cachedBytes;
+    }
+
+    synchronized int cachedChunks() {
+        return cachedChunks;
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    private int bucketIdx(int size) {
+        int log2Group = log2(size - 1);
+        int delta = 1 << log2Group - LOG2_BUCKETS_PER_DOUBLING;
+        if (log2Group < log2ChunkSize || (size & delta - 1) != 0) {
+            return -1;
+        }
+        int bucketInGroup = (size - 1 >> log2Group - LOG2_BUCKETS_PER_DOUBLING) & (1 << LOG2_BUCKETS_PER_DOUBLING) - 1;
+        return (log2Group - log2ChunkSize << LOG2_BUCKETS_PER_DOUBLING) + bucketInGroup;
+    }
+
+    private static int log2(int val) {
+        return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(val);
+    }
+
+    private static final class CachedChunk<T> {
+        final PoolChunk<T> chunk;
+        final long cachedNanos;
+
+        CachedChunk(PoolChunk<T> chunk, long cachedNanos) {
+            this.chunk = chunk;
+            this.cachedNanos = cachedNanos;
+        }
+    }
+}
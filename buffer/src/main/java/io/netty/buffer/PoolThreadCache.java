@@ -29,6 +29,7 @@ import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.nio.ByteBuffer;
 import java.util.Queue;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -73,6 +74,8 @@ final class PoolThreadCache {
     private final int numShiftsNormalHeap;
     private final int freeSweepAllocationThreshold;
     private final AtomicBoolean freed = new AtomicBoolean();
+    // 定时清理这个缓存的任务, 只有事件循环线程开启了cacheTrimIntervalMillis时才不为null
+    ScheduledFuture<?> trimTask;
 
     // todo
     private int allocations;
@@ -101,7 +104,8 @@ final class PoolThreadCache {
 
         if (directArena != null) {
             // len = 32   tinyCacheSize=512     里面的队列长度512
-            tinySubPageDirectCaches = createSubPageCaches(tinyCacheSize, PoolArena.numTinySubpagePools, SizeClass.Tiny);
+            tinySubPageDirectCaches = createSubPageCaches(tinyCacheSize, numTinySubpagePools(directArena),
+                    SizeClass.Tiny);
 
             // len = 4    smallCacheSize=256    里面的队列长度256
             smallSubPageDirectCaches = createSubPageCaches(smallCacheSize, directArena.numSmallSubpagePools, SizeClass.Small);
@@ -123,7 +127,7 @@ final class PoolThreadCache {
 
         if (heapArena != null) {
             // Create the caches for the heap allocations    len = 32
-            tinySubPageHeapCaches = createSubPageCaches(tinyCacheSize, PoolArena.numTinySubpagePools, SizeClass.Tiny);
+            tinySubPageHeapCaches = createSubPageCaches(tinyCacheSize, numTinySubpagePools(heapArena), SizeClass.Tiny);
             // len = 4
             smallSubPageHeapCaches = createSubPageCaches(smallCacheSize, heapArena.numSmallSubpagePools, SizeClass.Small);
 
@@ -150,6 +154,11 @@ final class PoolThreadCache {
         }
     }
 
+    // 使用size class时所有subpage规格都缓存在small数组中, 不需要tiny缓存
+    private static int numTinySubpagePools(PoolArena<?> area) {
+        return area.sizeClasses != null ? 0 : PoolArena.numTinySubpagePools;
+    }
+
     // 构造器中调用    初始化subpage数组
     private static <T> MemoryRegionCache<T>[] createSubPageCaches(int cacheSize, int numCaches, SizeClass sizeClass) {
         if (cacheSize > 0 && numCaches > 0) {
@@ -172,7 +181,8 @@ final class PoolThreadCache {
 
         if (cacheSize > 0 && maxCachedBufferCapacity > 0) {
             int max = Math.min(area.chunkSize, maxCachedBufferCapacity);
-            int arraySize = Math.max(1, log2(max / area.pageSize) + 1);
+            int arraySize = Math.max(1, area.sizeClasses != null ?
+                    area.sizeClasses.numNormalSizeClasses(max) : log2(max / area.pageSize) + 1);
 
             @SuppressWarnings("unchecked")
             MemoryRegionCache<T>[] memoryRegionCaches = new MemoryRegionCache[arraySize];
@@ -393,7 +403,8 @@ final class PoolThreadCache {
      */
     private MemoryRegionCache<?> cacheForSmall(PoolArena<?> area, int normCapacity) {
         //　除以1024
-        int idx = PoolArena.smallIdx(normCapacity);
+        int idx = area.sizeClasses != null ?
+                area.sizeClasses.size2SizeIdx(normCapacity) : PoolArena.smallIdx(normCapacity);
 
         if (area.isDirect()) {
             // cache[idx];
@@ -407,6 +418,15 @@ final class PoolThreadCache {
      * todo 找一个合适大小的 normal级别 MemoryRegionCache
      */
     private MemoryRegionCache<?> cacheForNormal(PoolArena<?> area, int normCapacity) {
+        if (area.sizeClasses != null) {
+            // 每个按页分配的规格对应一个缓存
+            int idx = area.sizeClasses.size2SizeIdx(normCapacity) - area.sizeClasses.nSubpages;
+            if (area.isDirect()) {
+                return cache(normalDirectCaches, idx);
+            }
+            return cache(normalHeapCaches, idx);
+        }
+
         if (area.isDirect()) {
             int idx = log2(normCapacity >> numShiftsNormalDirect);
             // cache[idx];
@@ -16,14 +16,18 @@
 
 package io.netty.buffer;
 
+import static io.netty.util.internal.ObjectUtil.checkPositive;
 import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
 
 import io.netty.util.NettyRuntime;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.concurrent.FastThreadLocalThread;
+import io.netty.util.concurrent.IoEventExecutor;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
 import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.ThreadExecutorMap;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
@@ -31,6 +35,8 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Pooled内存分配器
@@ -64,6 +70,18 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
     private static final int DEFAULT_DIRECT_MEMORY_CACHE_ALIGNMENT;
     // 1023
     static final int DEFAULT_MAX_CACHED_BYTEBUFFERS_PER_CHUNK;
+    // false
+    private static final boolean DEFAULT_USE_SIZE_CLASSES;
+    // 0 不缓存huge级别的chunk
+    private static final long DEFAULT_MAX_CACHED_HUGE_BYTES;
+    // 60000
+    private static final long DEFAULT_HUGE_CACHE_IDLE_TIME_MILLIS;
+    // 0 不释放空闲的chunk
+    private static final long DEFAULT_TRIM_IDLE_TIME_MILLIS;
+    // false
+    private static final boolean DEFAULT_EVENT_LOOP_ARENAS;
+    // 0 不定时清理线程缓存
+    private static final long DEFAULT_CACHE_TRIM_INTERVAL_MILLIS;
 
     private static final int MIN_PAGE_SIZE = 4096;
     private static final int MAX_CHUNK_SIZE = (int) (((long) Integer.MAX_VALUE + 1) / 2);
@@ -135,6 +153,26 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         // of 1024 elements. Otherwise we would allocate 2048 and only use 1024 which is wasteful.
         DEFAULT_MAX_CACHED_BYTEBUFFERS_PER_CHUNK = SystemPropertyUtil.getInt("io.netty.allocator.maxCachedByteBuffersPerChunk", 1023);
 
+        // jemalloc4 style size classes (four per doubling) instead of power of two sizes
+        DEFAULT_USE_SIZE_CLASSES = SystemPropertyUtil.getBoolean("io.netty.allocator.useSizeClasses", false);
+
+        // the number of bytes of released huge (> chunkSize) chunks each arena keeps for reuse, 0 disables it
+        DEFAULT_MAX_CACHED_HUGE_BYTES = Math.max(0,
+                SystemPropertyUtil.getLong("io.netty.allocator.maxCachedHugeBytes", 0));
+        DEFAULT_HUGE_CACHE_IDLE_TIME_MILLIS = Math.max(1,
+                SystemPropertyUtil.getLong("io.netty.allocator.hugeCacheIdleTimeMillis", 60000));
+
+        // the time after which a completely unused chunk is released, 0 keeps unused chunks forever
+        DEFAULT_TRIM_IDLE_TIME_MILLIS = Math.max(0,
+                SystemPropertyUtil.getLong("io.netty.allocator.trimIdleTimeMillis", 0));
+
+        // give every I/O event loop thread an arena of its own, all other threads share the configured arenas
+        DEFAULT_EVENT_LOOP_ARENAS = SystemPropertyUtil.getBoolean("io.netty.allocator.eventLoopArenas", false);
+
+        // the interval in which the thread caches of event loop threads are trimmed, 0 disables it
+        DEFAULT_CACHE_TRIM_INTERVAL_MILLIS = Math.max(0,
+                SystemPropertyUtil.getLong("io.netty.allocator.cacheTrimIntervalMillis", 0));
+
         if (logger.isDebugEnabled()) {
             logger.debug("-Dio.netty.allocator.numHeapArenas: {}", DEFAULT_NUM_HEAP_ARENA);
             logger.debug("-Dio.netty.allocator.numDirectArenas: {}", DEFAULT_NUM_DIRECT_ARENA);
@@ -148,6 +186,12 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             } else {
                 logger.debug("-Dio.netty.allocator.maxOrder: {}", DEFAULT_MAX_ORDER, maxOrderFallbackCause);
             }
+            logger.debug("-Dio.netty.allocator.useSizeClasses: {}", DEFAULT_USE_SIZE_CLASSES);
+            logger.debug("-Dio.netty.allocator.maxCachedHugeBytes: {}", DEFAULT_MAX_CACHED_HUGE_BYTES);
+            logger.debug("-Dio.netty.allocator.hugeCacheIdleTimeMillis: {}", DEFAULT_HUGE_CACHE_IDLE_TIME_MILLIS);
+            logger.debug("-Dio.netty.allocator.trimIdleTimeMillis: {}", DEFAULT_TRIM_IDLE_TIME_MILLIS);
+            logger.debug("-Dio.netty.allocator.eventLoopArenas: {}", DEFAULT_EVENT_LOOP_ARENAS);
+            logger.debug("-Dio.netty.allocator.cacheTrimIntervalMillis: {}", DEFAULT_CACHE_TRIM_INTERVAL_MILLIS);
 //            logger.debug("-Dio.netty.allocator.chunkSize: {}", DEFAULT_PAGE_SIZE << DEFAULT_MAX_ORDER);
 //            logger.debug("-Dio.netty.allocator.tinyCacheSize: {}", DEFAULT_TINY_CACHE_SIZE);
 //            logger.debug("-Dio.netty.allocator.smallCacheSize: {}", DEFAULT_SMALL_CACHE_SIZE);
@@ -186,11 +230,35 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
      */
     private final List<PoolArenaMetric> heapArenaMetrics;
     private final List<PoolArenaMetric> directArenaMetrics;
+    // 包含事件循环线程独占的arena, 所以是可变的
+    private final List<PoolArenaMetric> heapArenaMetricList = new CopyOnWriteArrayList<PoolArenaMetric>();
+    private final List<PoolArenaMetric> directArenaMetricList = new CopyOnWriteArrayList<PoolArenaMetric>();
+    // 事件循环线程独占的arena, 由threadLocalCache保护
+    private final List<PoolArena<byte[]>> eventLoopHeapArenas = new ArrayList<PoolArena<byte[]>>();
+    private final List<PoolArena<ByteBuffer>> eventLoopDirectArenas = new ArrayList<PoolArena<ByteBuffer>>();
 
     // PoolThreadLocalCache 本类的内部类
     public final PoolThreadLocalCache threadLocalCache;
     // 构造器初始化  16777214
     private final int chunkSize;
+    // 是否使用细粒度的size class
+    private final boolean useSizeClasses;
+    // 每个arena最多缓存多少字节的huge chunk
+    private final long maxCachedHugeBytes;
+    // 完全空闲的chunk多久之后释放
+    private final long trimIdleTimeMillis;
+    // direct chunk的内存分配器, 为null时使用普通的direct ByteBuffer
+    private final DirectChunkMemoryAllocator directChunkMemoryAllocator;
+    // 是否给每个事件循环线程一个独占的arena
+    private final boolean eventLoopArenas;
+    // 事件循环线程的线程缓存多久清理一次
+    private final long cacheTrimIntervalMillis;
+    // 创建arena需要的参数, 事件循环线程独占的arena是用到时才创建的
+    private final int pageSize;
+    private final int maxOrder;
+    private final int pageShifts;
+    private final int directMemoryCacheAlignment;
+    private final long hugeCacheIdleTimeMillis;
     //
     private final PooledByteBufAllocatorMetric metric;
 
@@ -248,21 +316,54 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
                 useCacheForAllThreads, DEFAULT_DIRECT_MEMORY_CACHE_ALIGNMENT);
     }
 
-    /**
-     * 最终还是调用我
-     */
     public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
                                   int tinyCacheSize, int smallCacheSize, int normalCacheSize,
                                   boolean useCacheForAllThreads, int directMemoryCacheAlignment) {
-        super(preferDirect);
+        this(builder()
+                .preferDirect(preferDirect)
+                .nHeapArena(nHeapArena)
+                .nDirectArena(nDirectArena)
+                .pageSize(pageSize)
+                .maxOrder(maxOrder)
+                .tinyCacheSize(tinyCacheSize)
+                .smallCacheSize(smallCacheSize)
+                .normalCacheSize(normalCacheSize)
+                .useCacheForAllThreads(useCacheForAllThreads)
+                .directMemoryCacheAlignment(directMemoryCacheAlignment));
+    }
+
+    /**
+     * 最终还是调用我, 其余的选项只能通过{@link Builder}设置
+     */
+    private PooledByteBufAllocator(Builder builder) {
+        super(builder.preferDirect);
+
+        int nHeapArena = builder.nHeapArena;
+        int nDirectArena = builder.nDirectArena;
+        int pageSize = builder.pageSize;
+        int maxOrder = builder.maxOrder;
+        int directMemoryCacheAlignment = builder.directMemoryCacheAlignment;
 
         //  内部类  为了能获取本类 heapArenas, heapArenas
-        threadLocalCache = new PoolThreadLocalCache(useCacheForAllThreads);
+        threadLocalCache = new PoolThreadLocalCache(builder.useCacheForAllThreads);
 
-        this.tinyCacheSize = tinyCacheSize;// 512
-        this.smallCacheSize = smallCacheSize;//256
-        this.normalCacheSize = normalCacheSize;//64
+        tinyCacheSize = builder.tinyCacheSize;// 512
+        smallCacheSize = builder.smallCacheSize;//256
+        normalCacheSize = builder.normalCacheSize;//64
         chunkSize = validateAndCalculateChunkSize(pageSize, maxOrder);//16777216
+        useSizeClasses = builder.useSizeClasses;
+        maxCachedHugeBytes = checkPositiveOrZero(builder.maxCachedHugeBytes, "maxCachedHugeBytes");
+        if (maxCachedHugeBytes > 0) {
+            checkPositive(builder.hugeCacheIdleTimeMillis, "hugeCacheIdleTimeMillis");
+        }
+        trimIdleTimeMillis = checkPositiveOrZero(builder.trimIdleTimeMillis, "trimIdleTimeMillis");
+        directChunkMemoryAllocator = builder.directChunkMemoryAllocator;
+        eventLoopArenas = builder.eventLoopArenas;
+        cacheTrimIntervalMillis = checkPositiveOrZero(builder.cacheTrimIntervalMillis, "cacheTrimIntervalMillis");
+        this.pageSize = pageSize;
+        this.maxOrder = maxOrder;
+        this.directMemoryCacheAlignment = directMemoryCacheAlignment;
+        hugeCacheIdleTimeMillis = builder.hugeCacheIdleTimeMillis;
 
         checkPositiveOrZero(nHeapArena, "nHeapArena");
         checkPositiveOrZero(nDirectArena, "nDirectArena");
@@ -277,45 +378,53 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         }
 
         // 2^13 = 8192
-        int pageShifts = validateAndCalculatePageShifts(pageSize);
+        pageShifts = validateAndCalculatePageShifts(pageSize);
 
 
         if (nHeapArena > 0) {
             heapArenas = newArenaArray(nHeapArena);
-            List<PoolArenaMetric> metrics = new ArrayList<PoolArenaMetric>(heapArenas.length);
             for (int i = 0; i < heapArenas.length; i ++) {
                 // 每个io线程一个 内部类
-                PoolArena.HeapArena arena = new PoolArena.HeapArena(this, pageSize, maxOrder, pageShifts, chunkSize, directMemoryCacheAlignment);
+                PoolArena<byte[]> arena = newHeapArena();
                 heapArenas[i] = arena;
                 //System.out.println(Thread.currentThread().getName() + " 分配器创建PoolArena.HeapArena " + i + " = " + arena);
-                metrics.add(arena);
+                heapArenaMetricList.add(arena);
             }
-            heapArenaMetrics = Collections.unmodifiableList(metrics);
         } else {
             heapArenas = null;
-            heapArenaMetrics = Collections.emptyList();
         }
+        heapArenaMetrics = Collections.unmodifiableList(heapArenaMetricList);
 
         if (nDirectArena > 0) {
             directArenas = newArenaArray(nDirectArena);
-            List<PoolArenaMetric> metrics = new ArrayList<PoolArenaMetric>(directArenas.length);
             for (int i = 0; i < directArenas.length; i ++) {
                 // 每个io线程一个 内部类
-                PoolArena.DirectArena arena = new PoolArena.DirectArena(this, pageSize, maxOrder, pageShifts, chunkSize, directMemoryCacheAlignment);
+                PoolArena<ByteBuffer> arena = newDirectArena();
                 directArenas[i] = arena;
                 //System.out.println(Thread.currentThread().getName() + " 分配器创建PoolArena.DirectArena " + i + " = " + arena);
-                metrics.add(arena);
+                directArenaMetricList.add(arena);
             }
-            directArenaMetrics = Collections.unmodifiableList(metrics);
         } else {
             directArenas = null;
-            directArenaMetrics = Collections.emptyList();
         }
+        directArenaMetrics = Collections.unmodifiableList(directArenaMetricList);
 
         // metric 只是简单的包装一层this
         metric = new PooledByteBufAllocatorMetric(this);
     }
 
+    private PoolArena<byte[]> newHeapArena() {
+        return new PoolArena.HeapArena(this, pageSize, maxOrder, pageShifts, chunkSize,
+                directMemoryCacheAlignment, useSizeClasses, maxCachedHugeBytes, hugeCacheIdleTimeMillis,
+                trimIdleTimeMillis);
+    }
+
+    private PoolArena<ByteBuffer> newDirectArena() {
+        return new PoolArena.DirectArena(this, pageSize, maxOrder, pageShifts, chunkSize,
+                directMemoryCacheAlignment, useSizeClasses, maxCachedHugeBytes, hugeCacheIdleTimeMillis,
+                trimIdleTimeMillis, directChunkMemoryAllocator);
+    }
+
 
     //构造器中调用
     @SuppressWarnings("unchecked")
@@ -459,6 +568,13 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         return DEFAULT_NORMAL_CACHE_SIZE;
     }
 
+    /**
+     * Default size class behavior - System Property: io.netty.allocator.useSizeClasses - default false
+     */
+    public static boolean defaultUseSizeClasses() {
+        return DEFAULT_USE_SIZE_CLASSES;
+    }
+
     /**
      * Return {@code true} if direct memory cache alignment is supported, {@code false} otherwise.
      */
@@ -488,6 +604,175 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         threadLocalCache.remove();
     }
 
+    /**
+     * Trim the thread local cache of the calling {@link Thread}, which gives back the cached memory that was not
+     * allocated since the last trim to the arena. Returns {@code true} if the calling {@link Thread} has a cache.
+     */
+    public boolean trimCurrentThreadCache() {
+        if (!threadLocalCache.isSet()) {
+            return false;
+        }
+        threadLocalCache.get().trim();
+        return true;
+    }
+
+    /**
+     * Returns a new {@link Builder} which starts with the options of {@link #DEFAULT}.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder for {@link PooledByteBufAllocator}s. Options which are not set use the defaults of the
+     * {@code io.netty.allocator.*} system properties.
+     */
+    public static final class Builder {
+        private boolean preferDirect = PlatformDependent.directBufferPreferred();
+        private int nHeapArena = DEFAULT_NUM_HEAP_ARENA;
+        private int nDirectArena = DEFAULT_NUM_DIRECT_ARENA;
+        private int pageSize = DEFAULT_PAGE_SIZE;
+        private int maxOrder = DEFAULT_MAX_ORDER;
+        private int tinyCacheSize = DEFAULT_TINY_CACHE_SIZE;
+        private int smallCacheSize = DEFAULT_SMALL_CACHE_SIZE;
+        private int normalCacheSize = DEFAULT_NORMAL_CACHE_SIZE;
+        private boolean useCacheForAllThreads = DEFAULT_USE_CACHE_FOR_ALL_THREADS;
+        private int directMemoryCacheAlignment = DEFAULT_DIRECT_MEMORY_CACHE_ALIGNMENT;
+        private boolean useSizeClasses = DEFAULT_USE_SIZE_CLASSES;
+        private long maxCachedHugeBytes = DEFAULT_MAX_CACHED_HUGE_BYTES;
+        private long hugeCacheIdleTimeMillis = DEFAULT_HUGE_CACHE_IDLE_TIME_MILLIS;
+        private long trimIdleTimeMillis = DEFAULT_TRIM_IDLE_TIME_MILLIS;
+        private DirectChunkMemoryAllocator directChunkMemoryAllocator;
+        private boolean eventLoopArenas = DEFAULT_EVENT_LOOP_ARENAS;
+        private long cacheTrimIntervalMillis = DEFAULT_CACHE_TRIM_INTERVAL_MILLIS;
+
+        private Builder() { }
+
+        public Builder preferDirect(boolean preferDirect) {
+            this.preferDirect = preferDirect;
+            return this;
+        }
+
+        public Builder nHeapArena(int nHeapArena) {
+            this.nHeapArena = nHeapArena;
+            return this;
+        }
+
+        public Builder nDirectArena(int nDirectArena) {
+            this.nDirectArena = nDirectArena;
+            return this;
+        }
+
+        public Builder pageSize(int pageSize) {
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        public Builder maxOrder(int maxOrder) {
+            this.maxOrder = maxOrder;
+            return this;
+        }
+
+        public Builder tinyCacheSize(int tinyCacheSize) {
+            this.tinyCacheSize = tinyCacheSize;
+            return this;
+        }
+
+        public Builder smallCacheSize(int smallCacheSize) {
+            this.smallCacheSize = smallCacheSize;
+            return this;
+        }
+
+        public Builder normalCacheSize(int normalCacheSize) {
+            this.normalCacheSize = normalCacheSize;
+            return this;
+        }
+
+        public Builder useCacheForAllThreads(boolean useCacheForAllThreads) {
+            this.useCacheForAllThreads = useCacheForAllThreads;
+            return this;
+        }
+
+        public Builder directMemoryCacheAlignment(int directMemoryCacheAlignment) {
+            this.directMemoryCacheAlignment = directMemoryCacheAlignment;
+            return this;
+        }
+
+        /**
+         * {@code true} to round requests up to jemalloc4 style size classes (four per doubling) and allocate page
+         * runs of any length inside the chunks, {@code false} to use power of two sizes above 512 bytes. If enabled
+         * {@code tinyCacheSize} is ignored and all sizes below {@code pageSize * 4} are cached with
+         * {@code smallCacheSize}.
+         */
+        public Builder useSizeClasses(boolean useSizeClasses) {
+            this.useSizeClasses = useSizeClasses;
+            return this;
+        }
+
+        /**
+         * The number of bytes of released huge ({@code > chunkSize}) chunks each arena keeps for reuse, {@code 0} to
+         * release them right away. If enabled huge allocations are rounded up to one of four buckets per doubling.
+         */
+        public Builder maxCachedHugeBytes(long maxCachedHugeBytes) {
+            this.maxCachedHugeBytes = maxCachedHugeBytes;
+            return this;
+        }
+
+        /**
+         * The time after which an unused huge chunk is released from the cache.
+         */
+        public Builder hugeCacheIdleTimeMillis(long hugeCacheIdleTimeMillis) {
+            this.hugeCacheIdleTimeMillis = hugeCacheIdleTimeMillis;
+            return this;
+        }
+
+        /**
+         * The time after which a chunk that is completely unused is released, {@code 0} to keep unused chunks
+         * forever. A chunk that is used again in the meantime starts over.
+         */
+        public Builder trimIdleTimeMillis(long trimIdleTimeMillis) {
+            this.trimIdleTimeMillis = trimIdleTimeMillis;
+            return this;
+        }
+
+        /**
+         * Allocates the memory of the chunks of the direct arenas, for example backed by huge pages, or {@code null}
+         * to use ordinary direct {@link ByteBuffer}s.
+         */
+        public Builder directChunkMemoryAllocator(DirectChunkMemoryAllocator directChunkMemoryAllocator) {
+            this.directChunkMemoryAllocator = directChunkMemoryAllocator;
+            return this;
+        }
+
+        /**
+         * {@code true} to give every I/O event loop thread, that is every {@link IoEventExecutor}, an arena of its
+         * own, which is created when the thread allocates for the first time and reused once the thread terminated.
+         * All other threads, including the ones of other {@link EventExecutor}s, share the {@code nHeapArena} /
+         * {@code nDirectArena} arenas.
+         */
+        public Builder eventLoopArenas(boolean eventLoopArenas) {
+            this.eventLoopArenas = eventLoopArenas;
+            return this;
+        }
+
+        /**
+         * The interval in which the thread caches of event loop threads are trimmed, so that memory an idle event
+         * loop has cached is given back to its arena, or {@code 0} to only trim after
+         * {@code io.netty.allocator.cacheTrimInterval} allocations.
+         */
+        public Builder cacheTrimIntervalMillis(long cacheTrimIntervalMillis) {
+            this.cacheTrimIntervalMillis = cacheTrimIntervalMillis;
+            return this;
+        }
+
+        /**
+         * Creates a new {@link PooledByteBufAllocator} with the options of this builder.
+         */
+        public PooledByteBufAllocator build() {
+            return new PooledByteBufAllocator(this);
+        }
+    }
+
 
 
 
@@ -511,15 +796,35 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
 
             System.out.println(Thread.currentThread().getName() + " PoolThreadLocalCache.initialValue() 初始化");
 
-            // PoolArena 内部有个计数器, 获取计数器最小的那个  下面一个方法
-            final PoolArena<byte[]> heapArena = leastUsedArena(heapArenas);
-            final PoolArena<ByteBuffer> directArena = leastUsedArena(directArenas);
+            final EventExecutor executor = ThreadExecutorMap.currentExecutor();
+            final PoolArena<byte[]> heapArena;
+            final PoolArena<ByteBuffer> directArena;
+            if (eventLoopArenas && executor instanceof IoEventExecutor) {
+                // I/O事件循环线程独占一个arena, 不和其他线程竞争arena的锁;
+                // 其他EventExecutor的数量没有上限, 所以只能共享arena
+                heapArena = heapArenas == null ? null : eventLoopHeapArena();
+                directArena = directArenas == null ? null : eventLoopDirectArena();
+            } else {
+                // PoolArena 内部有个计数器, 获取计数器最小的那个  下面一个方法
+                heapArena = leastUsedArena(heapArenas);
+                directArena = leastUsedArena(directArenas);
+            }
 
             Thread current = Thread.currentThread();
             if (useCacheForAllThreads || current instanceof FastThreadLocalThread) {
-                return new PoolThreadCache(heapArena, directArena,
+                final PoolThreadCache cache = new PoolThreadCache(heapArena, directArena,
                         tinyCacheSize, smallCacheSize, normalCacheSize,
                         DEFAULT_MAX_CACHED_BUFFER_CAPACITY, DEFAULT_CACHE_TRIM_INTERVAL);
+                if (cacheTrimIntervalMillis > 0 && executor != null) {
+                    // 线程缓存只能由所属线程操作, 所以在事件循环自己的线程上定时清理
+                    cache.trimTask = executor.scheduleAtFixedRate(new Runnable() {
+                        @Override
+                        public void run() {
+                            cache.trim();
+                        }
+                    }, cacheTrimIntervalMillis, cacheTrimIntervalMillis, TimeUnit.MILLISECONDS);
+                }
+                return cache;
             }
 
             // No caching so just use 0 as sizes.
@@ -528,9 +833,45 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
 
         @Override
         protected void onRemoval(PoolThreadCache threadCache) {
+            if (threadCache.trimTask != null) {
+                threadCache.trimTask.cancel(false);
+            }
             threadCache.free();
         }
 
+        /**
+         * Returns an I/O event loop arena which is not used by another thread, creating a new one if there is none.
+         */
+        private PoolArena<byte[]> eventLoopHeapArena() {
+            PoolArena<byte[]> arena = unusedArena(eventLoopHeapArenas);
+            if (arena == null) {
+                arena = newHeapArena();
+                eventLoopHeapArenas.add(arena);
+                heapArenaMetricList.add(arena);
+            }
+            return arena;
+        }
+
+        private PoolArena<ByteBuffer> eventLoopDirectArena() {
+            PoolArena<ByteBuffer> arena = unusedArena(eventLoopDirectArenas);
+            if (arena == null) {
+                arena = newDirectArena();
+                eventLoopDirectArenas.add(arena);
+                directArenaMetricList.add(arena);
+            }
+            return arena;
+        }
+
+        private <T> PoolArena<T> unusedArena(List<PoolArena<T>> arenas) {
+            for (int i = 0; i < arenas.size(); i++) {
+                PoolArena<T> arena = arenas.get(i);
+                if (arena.numThreadCaches.get() == 0) {
+                    return arena;
+                }
+            }
+            return null;
+        }
+
         /**
          *
          */
@@ -612,14 +953,11 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
      */
     @Deprecated
     public int numThreadLocalCaches() {
-        PoolArena<?>[] arenas = heapArenas != null ? heapArenas : directArenas;
-        if (arenas == null) {
-            return 0;
-        }
+        List<PoolArenaMetric> arenas = heapArenas != null ? heapArenaMetrics : directArenaMetrics;
 
         int total = 0;
-        for (PoolArena<?> arena : arenas) {
-            total += arena.numThreadCaches.get();
+        for (PoolArenaMetric arena : arenas) {
+            total += arena.numThreadCaches();
         }
 
         return total;
@@ -665,20 +1003,48 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         return chunkSize;
     }
 
-    final long usedHeapMemory() {
-        return usedMemory(heapArenas);
+    final boolean useSizeClasses() {
+        return useSizeClasses;
     }
 
-    final long usedDirectMemory() {
-        return usedMemory(directArenas);
+    final long maxCachedHugeBytes() {
+        return maxCachedHugeBytes;
     }
 
-    private static long usedMemory(PoolArena<?>[] arenas) {
-        if (arenas == null) {
+    final long trimIdleTimeMillis() {
+        return trimIdleTimeMillis;
+    }
+
+    final long hugePageDirectMemory() {
+        if (directArenas == null) {
             return -1;
         }
+        long memory = 0;
+        for (PoolArenaMetric arena : directArenaMetrics) {
+            memory += arena.numHugePageChunks() * chunkSize;
+        }
+        return memory;
+    }
+
+    final int numSizeClasses() {
+        PoolArena<?>[] arenas = heapArenas != null ? heapArenas : directArenas;
+        if (arenas == null || arenas[0].sizeClasses == null) {
+            return 0;
+        }
+        return arenas[0].sizeClasses.nSizes;
+    }
+
+    final long usedHeapMemory() {
+        return heapArenas == null ? -1 : usedMemory(heapArenaMetrics);
+    }
+
+    final long usedDirectMemory() {
+        return directArenas == null ? -1 : usedMemory(directArenaMetrics);
+    }
+
+    private static long usedMemory(List<PoolArenaMetric> arenas) {
         long used = 0;
-        for (PoolArena<?> arena : arenas) {
+        for (PoolArenaMetric arena : arenas) {
             used += arena.numActiveBytes();
             if (used < 0) {
                 return Long.MAX_VALUE;
@@ -698,26 +1064,19 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
      * and so should not called too frequently.
      */
     public String dumpStats() {
-        int heapArenasLen = heapArenas == null ? 0 : heapArenas.length;
         StringBuilder buf = new StringBuilder(512)
-                .append(heapArenasLen)
+                .append(heapArenaMetrics.size())
                 .append(" heap arena(s):")
                 .append(StringUtil.NEWLINE);
-        if (heapArenasLen > 0) {
-            for (PoolArena<byte[]> a: heapArenas) {
-                buf.append(a);
-            }
+        for (PoolArenaMetric a: heapArenaMetrics) {
+            buf.append(a);
         }
 
-        int directArenasLen = directArenas == null ? 0 : directArenas.length;
-
-        buf.append(directArenasLen)
+        buf.append(directArenaMetrics.size())
            .append(" direct arena(s):")
            .append(StringUtil.NEWLINE);
-        if (directArenasLen > 0) {
-            for (PoolArena<ByteBuffer> a: directArenas) {
-                buf.append(a);
-            }
+        for (PoolArenaMetric a: directArenaMetrics) {
+            buf.append(a);
         }
 
         return buf.toString();
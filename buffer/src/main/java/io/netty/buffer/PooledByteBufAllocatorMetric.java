@@ -99,6 +99,47 @@ public final class PooledByteBufAllocatorMetric implements ByteBufAllocatorMetri
         return allocator.chunkSize();
     }
 
+    /**
+     * Return {@code true} if the arenas use jemalloc4 style size classes (four per doubling) instead of power of
+     * two sizes.
+     */
+    public boolean useSizeClasses() {
+        return allocator.useSizeClasses();
+    }
+
+    /**
+     * Return the number of pooled size classes of an arena, or {@code 0} if {@link #useSizeClasses()} is
+     * {@code false}.
+     */
+    public int numSizeClasses() {
+        return allocator.numSizeClasses();
+    }
+
+    /**
+     * Return the number of bytes of released huge chunks each arena keeps for reuse, or {@code 0} if huge chunks
+     * are not cached.
+     */
+    public long maxCachedHugeBytes() {
+        return allocator.maxCachedHugeBytes();
+    }
+
+    /**
+     * Return the time in milliseconds after which a completely unused chunk is released, or {@code 0} if unused
+     * chunks are kept.
+     */
+    public long trimIdleTimeMillis() {
+        return allocator.trimIdleTimeMillis();
+    }
+
+    /**
+     * Return the number of bytes of chunk memory of the direct arenas which is backed by huge pages, or {@code -1}
+     * if there are no direct arenas. This is {@code 0} unless a {@link DirectChunkMemoryAllocator} is used that
+     * obtained huge pages.
+     */
+    public long hugePageDirectMemory() {
+        return allocator.hugePageDirectMemory();
+    }
+
     @Override
     public long usedHeapMemory() {
         return allocator.usedHeapMemory();
@@ -121,6 +162,7 @@ public final class PooledByteBufAllocatorMetric implements ByteBufAllocatorMetri
                 .append("; smallCacheSize: ").append(smallCacheSize())
                 .append("; normalCacheSize: ").append(normalCacheSize())
                 .append("; numThreadLocalCaches: ").append(numThreadLocalCaches())
+                .append("; useSizeClasses: ").append(useSizeClasses())
                 .append("; chunkSize: ").append(chunkSize()).append(')');
         return sb.toString();
     }
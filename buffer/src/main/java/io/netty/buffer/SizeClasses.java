@@ -0,0 +1,184 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.netty.buffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Size class table used by a {@link PoolArena} that was created with fine-grained size classes, modeled after
+ * <a href="https://github.com/jemalloc/jemalloc/releases/tag/4.0.0">jemalloc 4</a>.
+ *
+ * The first group is quantum spaced (16, 32, 48, 64). Every following group covers one doubling and is split into
+ * four classes, so the space wasted by rounding a request up is at most 20% instead of up to 50% with the
+ * power of two sizes of the default arena (a 9 KiB request uses 10 KiB instead of 16 KiB):
+ * <pre>
+ *   80,   96,  112,  128
+ *  160,  192,  224,  256
+ *  ...
+ *  10K,  12K,  14K,  16K
+ *  ...
+ * </pre>
+ *
+ * Classes smaller than {@code pageSize * 4} are served by {@link PoolSubpage}s. The run backing such a subpage is
+ * the smallest multiple of the page size that is also a multiple of the element size, so no bytes are lost at the
+ * end of the run. All bigger classes are multiples of the page size and are served by page runs of exactly that
+ * size. Classes up to and including {@code chunkSize} are pooled; bigger requests are huge allocations. With
+ * very small chunks a subpage class whose run would not fit into a chunk is left out.
+ */
+final class SizeClasses {
+
+    static final int LOG2_QUANTUM = 4;
+    private static final int LOG2_SIZE_CLASS_GROUP = 2;
+    private static final int LOG2_MAX_LOOKUP_SIZE = 12;
+
+    final int pageSize;
+    final int pageShifts;
+    final int chunkSize;
+
+    // 前nSubpages个规格通过PoolSubpage分配, 其余的按页分配
+    final int nSizes;
+    final int nSubpages;
+    final int maxSubpageSize;
+
+    private final int[] sizeIdx2size;
+    private final int[] subpageRunSize;
+    // sizes <= 4096 are looked up directly, bigger ones via binary search
+    private final byte[] size2idxTab;
+
+    SizeClasses(int pageSize, int pageShifts, int chunkSize, int directMemoryCacheAlignment) {
+        this.pageSize = pageSize;
+        this.pageShifts = pageShifts;
+        this.chunkSize = chunkSize;
+
+        int alignmentMask = directMemoryCacheAlignment > 0 ? directMemoryCacheAlignment - 1 : 0;
+        List<Integer> sizes = new ArrayList<Integer>();
+        int quantum = 1 << LOG2_QUANTUM;
+        for (int size = quantum; size <= 1 << LOG2_QUANTUM + LOG2_SIZE_CLASS_GROUP; size += quantum) {
+            addSize(sizes, size, alignmentMask);
+        }
+        for (int log2Group = LOG2_QUANTUM + LOG2_SIZE_CLASS_GROUP; 1 << log2Group < chunkSize; log2Group++) {
+            int delta = 1 << log2Group - LOG2_SIZE_CLASS_GROUP;
+            for (int i = 1; i <= 1 << LOG2_SIZE_CLASS_GROUP; i++) {
+                addSize(sizes, (1 << log2Group) + i * delta, alignmentMask);
+            }
+        }
+
+        nSizes = sizes.size();
+        sizeIdx2size = new int[nSizes];
+        int subpages = 0;
+        for (int i = 0; i < nSizes; i++) {
+            int size = sizes.get(i);
+            sizeIdx2size[i] = size;
+            if (size < pageSize << LOG2_SIZE_CLASS_GROUP) {
+                subpages++;
+            }
+        }
+        nSubpages = subpages;
+        maxSubpageSize = nSubpages > 0 ? sizeIdx2size[nSubpages - 1] : 0;
+
+        subpageRunSize = new int[nSubpages];
+        for (int i = 0; i < nSubpages; i++) {
+            subpageRunSize[i] = runSize(sizeIdx2size[i]);
+        }
+
+        size2idxTab = new byte[1 << LOG2_MAX_LOOKUP_SIZE - LOG2_QUANTUM];
+        for (int i = 0, idx = 0; i < size2idxTab.length; i++) {
+            int size = i + 1 << LOG2_QUANTUM;
+            while (sizeIdx2size[idx] < size) {
+                idx++;
+            }
+            size2idxTab[i] = (byte) idx;
+        }
+    }
+
+    private void addSize(List<Integer> sizes, int size, int alignmentMask) {
+        if (size > chunkSize || (size & alignmentMask) != 0) {
+            return;
+        }
+        if (size < pageSize << LOG2_SIZE_CLASS_GROUP && runSize(size) > chunkSize) {
+            // 只有很小的chunk才会出现, 这个规格的请求由下一个规格处理
+            return;
+        }
+        sizes.add(size);
+    }
+
+    private int runSize(int elemSize) {
+        int runSize = pageSize;
+        while (runSize % elemSize != 0) {
+            runSize += pageSize;
+        }
+        return runSize;
+    }
+
+    /**
+     * Returns the index of the smallest size class which can hold {@code size} bytes, or {@code nSizes} if
+     * {@code size} is bigger than {@code chunkSize}.
+     */
+    int size2SizeIdx(int size) {
+        if (size <= 1 << LOG2_MAX_LOOKUP_SIZE) {
+            return size == 0 ? 0 : size2idxTab[size - 1 >> LOG2_QUANTUM];
+        }
+        if (size > chunkSize) {
+            return nSizes;
+        }
+        int low = 0;
+        int high = nSizes - 1;
+        while (low < high) {
+            int mid = low + high >>> 1;
+            if (sizeIdx2size[mid] < size) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    int sizeIdx2size(int sizeIdx) {
+        return sizeIdx2size[sizeIdx];
+    }
+
+    /**
+     * Rounds {@code size} up to its size class. {@code size} must not be bigger than {@code chunkSize}.
+     */
+    int normalizeSize(int size) {
+        return sizeIdx2size[size2SizeIdx(size)];
+    }
+
+    boolean isSubpage(int sizeIdx) {
+        return sizeIdx < nSubpages;
+    }
+
+    /**
+     * Returns the length of the page run which backs a {@link PoolSubpage} of the given size class.
+     */
+    int subpageRunSize(int sizeIdx) {
+        return subpageRunSize[sizeIdx];
+    }
+
+    /**
+     * Returns the number of size classes which are served by page runs and are not bigger than {@code maxSize}.
+     */
+    int numNormalSizeClasses(int maxSize) {
+        int count = 0;
+        for (int i = nSubpages; i < nSizes && sizeIdx2size[i] <= maxSize; i++) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -16,16 +16,23 @@
 
 package io.netty.buffer;
 
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.concurrent.FastThreadLocalThread;
+import io.netty.util.concurrent.IoEventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.SystemPropertyUtil;
 import org.junit.Assume;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -36,6 +43,8 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<PooledByteBufAllocator> {
@@ -191,6 +200,439 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
         }
     }
 
+    @Test
+    public void testSizeClasses() {
+        PooledByteBufAllocator allocator = PooledByteBufAllocator.builder()
+                .preferDirect(true)
+                .nHeapArena(1)
+                .nDirectArena(1)
+                .pageSize(8192)
+                .maxOrder(11)
+                .tinyCacheSize(0)
+                .smallCacheSize(0)
+                .normalCacheSize(0)
+                .useSizeClasses(true)
+                .build();
+        assertTrue(allocator.metric().useSizeClasses());
+        assertTrue(allocator.metric().numSizeClasses() > 0);
+
+        ByteBuf small = allocator.heapBuffer(9 * 1024);
+        ByteBuf normal = allocator.heapBuffer(33 * 1024);
+        ByteBuf huge = allocator.heapBuffer(allocator.metric().chunkSize() + 1);
+        try {
+            assertEquals(10 * 1024, unwrapPooled(small).maxLength);
+            assertEquals(40 * 1024, unwrapPooled(normal).maxLength);
+
+            PoolArenaMetric metric = allocator.metric().heapArenas().get(0);
+            assertEquals(0, metric.numTinySubpages());
+            PoolSubpageMetric subpageMetric = metric.smallSubpages().get(0);
+            assertEquals(10 * 1024, subpageMetric.elementSize());
+            assertEquals(4, subpageMetric.maxNumElements());
+            assertEquals(1, subpageMetric.maxNumElements() - subpageMetric.numAvailable());
+            assertEquals(1, metric.numSmallAllocations());
+            assertEquals(1, metric.numNormalAllocations());
+            assertEquals(1, metric.numHugeAllocations());
+        } finally {
+            small.release();
+            normal.release();
+            huge.release();
+        }
+    }
+
+    @Test
+    public void testSizeClassesReuseFreedRuns() {
+        int pageSize = 8192;
+        PooledByteBufAllocator allocator = PooledByteBufAllocator.builder()
+                .preferDirect(false)
+                .nHeapArena(1)
+                .nDirectArena(0)
+                .pageSize(pageSize)
+                .maxOrder(11)
+                .tinyCacheSize(0)
+                .smallCacheSize(0)
+                .normalCacheSize(0)
+                .useSizeClasses(true)
+                .build();
+        ByteBuf b1 = allocator.heapBuffer(4 * pageSize);
+        ByteBuf b2 = allocator.heapBuffer(5 * pageSize);
+        ByteBuf b3 = allocator.heapBuffer(4 * pageSize);
+        ByteBuf b4 = allocator.heapBuffer(4 * pageSize);
+        assertEquals(13 * pageSize, unwrapPooled(b4).offset);
+
+        // The freed neighbouring runs must be merged into one 9 page gap which is used for the next run that fits,
+        // bigger runs must be served after the last used page.
+        b2.release();
+        b3.release();
+        ByteBuf b5 = allocator.heapBuffer(10 * pageSize);
+        ByteBuf b6 = allocator.heapBuffer(8 * pageSize);
+        assertEquals(17 * pageSize, unwrapPooled(b5).offset);
+        assertEquals(4 * pageSize, unwrapPooled(b6).offset);
+
+        b1.release();
+        b4.release();
+        b5.release();
+        b6.release();
+    }
+
+    @Test
+    public void testHugeChunkCache() {
+        // 32 KiB chunks, so huge buckets are 40K, 48K, 56K, 64K, 80K, ...
+        int chunkSize = 32 * 1024;
+        PooledByteBufAllocator allocator = PooledByteBufAllocator.builder()
+                .preferDirect(false)
+                .nHeapArena(1)
+                .nDirectArena(0)
+                .pageSize(8192)
+                .maxOrder(2)
+                .tinyCacheSize(0)
+                .smallCacheSize(0)
+                .normalCacheSize(0)
+                .maxCachedHugeBytes(2 * 48 * 1024)
+                .hugeCacheIdleTimeMillis(60000)
+                .build();
+        PoolArenaMetric metric = allocator.metric().heapArenas().get(0);
+
+        ByteBuf b1 = allocator.heapBuffer(chunkSize + 1);
+        Object memory = unwrapPooled(b1).memory;
+        assertEquals(40 * 1024, ((byte[]) memory).length);
+        assertEquals(chunkSize + 1, b1.capacity());
+        b1.release();
+        assertEquals(1, metric.numCachedHugeChunks());
+        assertEquals(40 * 1024, metric.numCachedHugeBytes());
+
+        // A request of the same bucket must reuse the cached chunk.
+        ByteBuf b2 = allocator.heapBuffer(38 * 1024);
+        assertSame(memory, unwrapPooled(b2).memory);
+        assertEquals(1, metric.numHugeCacheHits());
+        assertEquals(0, metric.numCachedHugeChunks());
+
+        // Only two 48K chunks fit into the cache, the least recently used one must be released for the third.
+        ByteBuf b3 = allocator.heapBuffer(48 * 1024);
+        ByteBuf b4 = allocator.heapBuffer(48 * 1024);
+        b2.release();
+        b3.release();
+        b4.release();
+        assertEquals(2, metric.numCachedHugeChunks());
+        assertEquals(96 * 1024, metric.numCachedHugeBytes());
+        assertEquals(1, metric.numHugeCacheEvictions());
+        assertEquals(4, metric.numHugeDeallocations());
+    }
+
+    @Test(timeout = 3000)
+    public void testHugeChunkCacheReleasesIdleChunks() throws InterruptedException {
+        PooledByteBufAllocator allocator = PooledByteBufAllocator.builder()
+                .preferDirect(false)
+                .nHeapArena(1)
+                .nDirectArena(0)
+                .pageSize(8192)
+                .maxOrder(2)
+                .tinyCacheSize(0)
+                .smallCacheSize(0)
+                .normalCacheSize(0)
+                .maxCachedHugeBytes(1024 * 1024)
+                .hugeCacheIdleTimeMillis(100)
+                .build();
+        PoolArenaMetric metric = allocator.metric().heapArenas().get(0);
+
+        allocator.heapBuffer(64 * 1024).release();
+        assertEquals(64 * 1024, metric.numCachedHugeBytes());
+        while (metric.numCachedHugeBytes() != 0) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, metric.numCachedHugeChunks());
+        assertEquals(1, metric.numHugeCacheEvictions());
+    }
+
+    @Test
+    public void testHugeChunkCacheDisabled() {
+        PooledByteBufAllocator allocator = PooledByteBufAllocator.builder()
+                .preferDirect(false)
+                .nHeapArena(1)
+                .nDirectArena(0)
+                .pageSize(8192)
+                .maxOrder(2)
+                .tinyCacheSize(0)
+                .smallCacheSize(0)
+                .normalCacheSize(0)
+                .maxCachedHugeBytes(0)
+                .build();
+        PoolArenaMetric metric = allocator.metric().heapArenas().get(0);
+        ByteBuf buf = allocator.heapBuffer(32 * 1024 + 1);
+        assertEquals(32 * 1024 + 1, ((byte[]) unwrapPooled(buf).memory).length);
+        buf.release();
+        assertEquals(0, metric.numCachedHugeChunks());
+        assertEquals(0, metric.numHugeCacheHits());
+    }
+
+    @Test
+    public void testRetainedAndUsedBytes() {
+        // 128 KiB chunks
+        PooledByteBufAllocator allocator = PooledByteBufAllocator.builder()
+                .preferDirect(false)
+                .nHeapArena(1)
+                .nDirectArena(0)
+                .pageSize(8192)
+                .maxOrder(4)
+                .tinyCacheSize(0)
+                .smallCacheSize(0)
+                .normalCacheSize(0)
+                .maxCachedHugeBytes(0)
+                .trimIdleTimeMillis(0)
+                .build();
+        PoolArenaMetric metric = allocator.metric().heapArenas().get(0);
+
+        ByteBuf b1 = allocator.heapBuffer(8192);
+        ByteBuf b2 = allocator.heapBuffer(16384);
+        assertEquals(128 * 1024, metric.numRetainedBytes());
+        assertEquals(24 * 1024, metric.numUsedBytes());
+
+        b1.release();
+        b2.release();
+        // Trimming is disabled, so the unused chunk is kept.
+        assertEquals(128 * 1024, metric.numRetainedBytes());
+        assertEquals(0, metric.numUsedBytes());
+        assertEquals(0, metric.numTrimmedChunks());
+    }
+
+    @Test(timeout = 3000)
+    public void testTrimUnusedChunks() throws InterruptedException {
+        PooledByteBufAllocator allocator = PooledByteBufAllocator.builder()
+                .preferDirect(false)
+                .nHeapArena(1)
+                .nDirectArena(0)
+                .pageSize(8192)
+                .maxOrder(3)
+                .tinyCacheSize(0)
+                .smallCacheSize(0)
+                .normalCacheSize(0)
+                .maxCachedHugeBytes(0)
+                .trimIdleTimeMillis(100)
+                .build();
+        PoolArenaMetric metric = allocator.metric().heapArenas().get(0);
+
+        ByteBuf buf = allocator.heapBuffer(8192);
+        buf.release();
+        assertEquals(64 * 1024, metric.numRetainedBytes());
+        assertEquals(0, metric.numUsedBytes());
+        while (metric.numTrimmedChunks() != 1) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, metric.numRetainedBytes());
+
+        // A new chunk must be allocated after the unused one was released.
+        buf = allocator.heapBuffer(8192);
+        assertEquals(64 * 1024, metric.numRetainedBytes());
+        assertEquals(8192, metric.numUsedBytes());
+        buf.release();
+    }
+
+    @Test
+    public void testDirectChunkMemoryAllocator() {
+        final List<ByteBuffer> allocated = new ArrayList<ByteBuffer>();
+        final List<ByteBuffer> freed = new ArrayList<ByteBuffer>();
+        DirectChunkMemoryAllocator chunkAllocator = new DirectChunkMemoryAllocator() {
+            @Override
+            public ByteBuffer allocate(int capacity) {
+                ByteBuffer memory = ByteBuffer.allocateDirect(capacity);
+                allocated.add(memory);
+                return memory;
+            }
+
+            @Override
+            public boolean isHugePageBacked(ByteBuffer memory) {
+                return true;
+            }
+
+            @Override
+            public void free(ByteBuffer memory) {
+                freed.add(memory);
+            }
+        };
+        // 32 KiB chunks
+        PooledByteBufAllocator allocator = PooledByteBufAllocator.builder()
+                .preferDirect(true)
+                .nHeapArena(0)
+                .nDirectArena(1)
+                .pageSize(8192)
+                .maxOrder(2)
+                .tinyCacheSize(0)
+                .smallCacheSize(0)
+                .normalCacheSize(0)
+                .maxCachedHugeBytes(0)
+                .trimIdleTimeMillis(0)
+                .directChunkMemoryAllocator(chunkAllocator)
+                .build();
+        PooledByteBufAllocatorMetric metric = allocator.metric();
+
+        ByteBuf buf = allocator.directBuffer(32 * 1024);
+        assertEquals(1, allocated.size());
+        assertSame(allocated.get(0), unwrapPooled(buf).memory);
+        assertEquals(1, metric.directArenas().get(0).numHugePageChunks());
+        assertEquals(32 * 1024, metric.hugePageDirectMemory());
+
+        // Huge allocations are not served from chunks.
+        ByteBuf huge = allocator.directBuffer(64 * 1024);
+        assertEquals(1, allocated.size());
+        huge.release();
+        assertTrue(freed.isEmpty());
+
+        // The completely used chunk is destroyed once the buffer is released and so must be freed by the allocator.
+        buf.release();
+        assertEquals(allocated, freed);
+        assertEquals(0, metric.hugePageDirectMemory());
+    }
+
+    @Test(timeout = 5000)
+    public void testEventLoopArenas() throws Exception {
+        final PooledByteBufAllocator allocator = PooledByteBufAllocator.builder()
+                .preferDirect(false)
+                .nHeapArena(1)
+                .nDirectArena(0)
+                .pageSize(8192)
+                .maxOrder(11)
+                .tinyCacheSize(0)
+                .smallCacheSize(0)
+                .normalCacheSize(0)
+                .maxCachedHugeBytes(0)
+                .trimIdleTimeMillis(0)
+                .eventLoopArenas(true)
+                .cacheTrimIntervalMillis(0)
+                .build();
+        PoolArenaMetric sharedArena = allocator.metric().heapArenas().get(0);
+        assertSame(sharedArena, heapArenaOf(allocator));
+
+        EventExecutor loop1 = new IoExecutor();
+        EventExecutor loop2 = new IoExecutor();
+        PoolArenaMetric arena1 = heapArenaOf(allocator, loop1);
+        PoolArenaMetric arena2 = heapArenaOf(allocator, loop2);
+        assertNotSame(sharedArena, arena1);
+        assertNotSame(sharedArena, arena2);
+        assertNotSame(arena1, arena2);
+        assertEquals(3, allocator.metric().numHeapArenas());
+
+        // Once the event loop terminated its arena is used by the next one.
+        assertTrue(loop1.shutdownGracefully(0, 0, MILLISECONDS).await(3000));
+        assertEquals(0, arena1.numThreadCaches());
+        EventExecutor loop3 = new IoExecutor();
+        assertSame(arena1, heapArenaOf(allocator, loop3));
+        assertEquals(3, allocator.metric().numHeapArenas());
+
+        // Executors which do not handle I/O share the arenas with all other threads.
+        EventExecutor executor = new DefaultEventExecutor();
+        assertSame(sharedArena, heapArenaOf(allocator, executor));
+        assertEquals(3, allocator.metric().numHeapArenas());
+
+        loop2.shutdownGracefully(0, 0, MILLISECONDS).syncUninterruptibly();
+        loop3.shutdownGracefully(0, 0, MILLISECONDS).syncUninterruptibly();
+        executor.shutdownGracefully(0, 0, MILLISECONDS).syncUninterruptibly();
+    }
+
+    private static final class IoExecutor extends SingleThreadEventExecutor implements IoEventExecutor {
+        IoExecutor() {
+            super(null, new DefaultThreadFactory(IoExecutor.class), true);
+        }
+
+        @Override
+        protected void run() {
+            for (;;) {
+                Runnable task = takeTask();
+                if (task != null) {
+                    task.run();
+                    updateLastExecutionTime();
+                }
+
+                if (confirmShutdown()) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private static PoolArenaMetric heapArenaOf(final PooledByteBufAllocator allocator, EventExecutor executor)
+            throws Exception {
+        return executor.submit(new Callable<PoolArenaMetric>() {
+            @Override
+            public PoolArenaMetric call() {
+                return heapArenaOf(allocator);
+            }
+        }).get();
+    }
+
+    private static PoolArenaMetric heapArenaOf(PooledByteBufAllocator allocator) {
+        ByteBuf buf = allocator.heapBuffer(1024);
+        try {
+            return unwrapPooled(buf).chunk.arena;
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testCacheTrimInterval() throws Exception {
+        final PooledByteBufAllocator allocator = PooledByteBufAllocator.builder()
+                .preferDirect(false)
+                .nHeapArena(1)
+                .nDirectArena(0)
+                .pageSize(8192)
+                .maxOrder(11)
+                .tinyCacheSize(32)
+                .smallCacheSize(32)
+                .normalCacheSize(32)
+                .maxCachedHugeBytes(0)
+                .trimIdleTimeMillis(0)
+                .eventLoopArenas(false)
+                .cacheTrimIntervalMillis(100)
+                .build();
+        PoolArenaMetric arena = allocator.metric().heapArenas().get(0);
+        EventExecutor loop = new DefaultEventExecutor();
+        try {
+            loop.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // The released buffer is kept in the thread cache of the event loop.
+                    allocator.heapBuffer(1024).release();
+                }
+            }).sync();
+            assertEquals(1, arena.numActiveAllocations());
+
+            // The event loop does not allocate anymore, so the cached buffer must be given back to the arena.
+            while (arena.numActiveAllocations() != 0) {
+                Thread.sleep(10);
+            }
+        } finally {
+            loop.shutdownGracefully(0, 0, MILLISECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test
+    public void testTrimCurrentThreadCache() {
+        PooledByteBufAllocator allocator = PooledByteBufAllocator.builder()
+                .preferDirect(false)
+                .nHeapArena(1)
+                .nDirectArena(0)
+                .pageSize(8192)
+                .maxOrder(11)
+                .tinyCacheSize(32)
+                .smallCacheSize(32)
+                .normalCacheSize(32)
+                .maxCachedHugeBytes(0)
+                .trimIdleTimeMillis(0)
+                .eventLoopArenas(false)
+                .cacheTrimIntervalMillis(0)
+                .build();
+        PoolArenaMetric arena = allocator.metric().heapArenas().get(0);
+        allocator.heapBuffer(1024).release();
+        assertEquals(1, arena.numActiveAllocations());
+        assertTrue(allocator.trimCurrentThreadCache());
+        assertEquals(0, arena.numActiveAllocations());
+        allocator.freeThreadLocalCache();
+        assertFalse(allocator.trimCurrentThreadCache());
+    }
+
+    private static PooledByteBuf<?> unwrapPooled(ByteBuf buf) {
+        return (PooledByteBuf<?>) (buf instanceof PooledByteBuf ? buf : buf.unwrap());
+    }
+
     @Test
     public void testAllocNotNull() {
         PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 1, 1, 8192, 11, 0, 0, 0);
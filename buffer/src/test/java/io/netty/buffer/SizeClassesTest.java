@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SizeClassesTest {
+
+    private static final int PAGE_SIZE = 8192;
+    private static final int CHUNK_SIZE = PAGE_SIZE << 11;
+
+    @Test
+    public void testFourClassesPerDoubling() {
+        SizeClasses sizeClasses = new SizeClasses(PAGE_SIZE, 13, CHUNK_SIZE, 0);
+        int[] expected = { 16, 32, 48, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320 };
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], sizeClasses.sizeIdx2size(i));
+        }
+        assertEquals(CHUNK_SIZE, sizeClasses.sizeIdx2size(sizeClasses.nSizes - 1));
+        for (int i = 4; i < sizeClasses.nSizes; i++) {
+            // Every class is at most 25% bigger than the one before.
+            assertTrue(sizeClasses.sizeIdx2size(i) * 4L <= sizeClasses.sizeIdx2size(i - 1) * 5L);
+        }
+    }
+
+    @Test
+    public void testNormalizeSize() {
+        SizeClasses sizeClasses = new SizeClasses(PAGE_SIZE, 13, CHUNK_SIZE, 0);
+        int[] reqCapacities = { 0, 1, 15, 17, 65, 510, 1025, 4097, 9 * 1024, 33 * 1024, CHUNK_SIZE - 1 };
+        int[] expectedResult = { 16, 16, 16, 32, 80, 512, 1280, 5120, 10 * 1024, 40 * 1024, CHUNK_SIZE };
+        for (int i = 0; i < reqCapacities.length; i++) {
+            assertEquals(expectedResult[i], sizeClasses.normalizeSize(reqCapacities[i]));
+        }
+        assertEquals(sizeClasses.nSizes, sizeClasses.size2SizeIdx(CHUNK_SIZE + 1));
+    }
+
+    @Test
+    public void testSubpageRunSize() {
+        SizeClasses sizeClasses = new SizeClasses(PAGE_SIZE, 13, CHUNK_SIZE, 0);
+        assertEquals(28 * 1024, sizeClasses.maxSubpageSize);
+        for (int i = 0; i < sizeClasses.nSubpages; i++) {
+            int runSize = sizeClasses.subpageRunSize(i);
+            assertEquals(0, runSize % PAGE_SIZE);
+            assertEquals(0, runSize % sizeClasses.sizeIdx2size(i));
+            assertTrue(runSize <= 7 * PAGE_SIZE);
+        }
+        assertEquals(5 * PAGE_SIZE, sizeClasses.subpageRunSize(sizeClasses.size2SizeIdx(10 * 1024)));
+        assertFalse(sizeClasses.isSubpage(sizeClasses.size2SizeIdx(32 * 1024)));
+    }
+
+    @Test
+    public void testSmallChunk() {
+        // Only subpage classes whose run fits into the two pages of a chunk are left.
+        SizeClasses sizeClasses = new SizeClasses(PAGE_SIZE, 13, PAGE_SIZE << 1, 0);
+        for (int i = 0; i < sizeClasses.nSubpages; i++) {
+            assertTrue(sizeClasses.subpageRunSize(i) <= PAGE_SIZE << 1);
+        }
+        assertEquals(64, sizeClasses.normalizeSize(48));
+        assertEquals(PAGE_SIZE << 1, sizeClasses.normalizeSize(9 * 1024));
+        assertEquals(PAGE_SIZE << 1, sizeClasses.sizeIdx2size(sizeClasses.nSizes - 1));
+    }
+
+    @Test
+    public void testAlignment() {
+        SizeClasses sizeClasses = new SizeClasses(PAGE_SIZE, 13, CHUNK_SIZE, 64);
+        for (int i = 0; i < sizeClasses.nSizes; i++) {
+            assertEquals(0, sizeClasses.sizeIdx2size(i) & 63);
+        }
+        assertEquals(64, sizeClasses.normalizeSize(1));
+        assertEquals(128, sizeClasses.normalizeSize(65));
+    }
+}
@@ -41,7 +41,8 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
             };
 
     PriorityQueue<ScheduledFutureTask<?>> scheduledTaskQueue;
-
+    // Holds the scheduled tasks until their tick starts if enabled, see enableTimerWheel(long).
+    private ScheduledTaskWheel timerWheel;
 
 
 
@@ -56,6 +57,25 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
         return ScheduledFutureTask.nanoTime();
     }
 
+    /**
+     * Stores the scheduled tasks in a hierarchical timing wheel with the given tick duration until the tick in which
+     * they expire starts, which makes scheduling and cancelling them {@code O(1)}. Tasks which expire in the current
+     * tick are still stored in the priority queue directly. Must be called before any task is scheduled.
+     */
+    final void enableTimerWheel(long tickNanos) {
+        assert scheduledTaskQueue == null && timerWheel == null;
+        timerWheel = new ScheduledTaskWheel(tickNanos, nanoTime());
+    }
+
+    /**
+     * Returns the tick duration of the timing wheel in nanoseconds, or {@code 0} if the scheduled tasks are only
+     * stored in a priority queue.
+     */
+    public final long timerWheelTickNanos() {
+        ScheduledTaskWheel timerWheel = this.timerWheel;
+        return timerWheel == null ? 0 : timerWheel.tickNanos();
+    }
+
     /**
      *
      */
@@ -81,7 +101,7 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
     protected void cancelScheduledTasks() {
         assert inEventLoop();
         PriorityQueue<ScheduledFutureTask<?>> scheduledTaskQueue = this.scheduledTaskQueue;
-        if (isNullOrEmpty(scheduledTaskQueue)) {
+        if (isNullOrEmpty(scheduledTaskQueue) && (timerWheel == null || timerWheel.size() == 0)) {
             return;
         }
 
@@ -93,6 +113,9 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
         }
 
         scheduledTaskQueue.clearIgnoringIndexes();
+        if (timerWheel != null) {
+            timerWheel.cancelAll();
+        }
     }
 
     /**
@@ -109,7 +132,10 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
     protected final Runnable pollScheduledTask(long nanoTime) {
         assert inEventLoop();
 
-        //
+        if (timerWheel != null) {
+            // Move the tasks whose tick started to the queue, so they are executed at their precise deadline.
+            timerWheel.expire(nanoTime, scheduledTaskQueue());
+        }
         Queue<ScheduledFutureTask<?>> scheduledTaskQueue = this.scheduledTaskQueue;
         ScheduledFutureTask<?> scheduledTask = scheduledTaskQueue == null ? null : scheduledTaskQueue.peek();
         if (scheduledTask == null) {
@@ -127,12 +153,29 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
      * Return the nanoseconds when the next scheduled task is ready to be run or {@code -1} if no task is scheduled.
      */
     protected final long nextScheduledTaskNano() {
+        long deadlineNanos = nextScheduledTaskDeadlineNanos();
+        if (deadlineNanos == -1) {
+            return -1;
+        }
+        return Math.max(0, deadlineNanos - nanoTime());
+    }
+
+    /**
+     * Returns the point in time (relative to {@link #nanoTime()}) at which {@link #pollScheduledTask(long)} must be
+     * called next or {@code -1} if no task is scheduled. If the timing wheel is used this may be the start of the
+     * tick of a task and not its deadline.
+     */
+    protected final long nextScheduledTaskDeadlineNanos() {
         Queue<ScheduledFutureTask<?>> scheduledTaskQueue = this.scheduledTaskQueue;
         ScheduledFutureTask<?> scheduledTask = scheduledTaskQueue == null ? null : scheduledTaskQueue.peek();
-        if (scheduledTask == null) {
-            return -1;
+        long deadlineNanos = scheduledTask == null ? -1 : scheduledTask.deadlineNanos();
+        if (timerWheel != null) {
+            long wheelDeadlineNanos = timerWheel.nextDeadlineNanos();
+            if (wheelDeadlineNanos != -1 && (deadlineNanos == -1 || wheelDeadlineNanos < deadlineNanos)) {
+                return wheelDeadlineNanos;
+            }
         }
-        return Math.max(0, scheduledTask.deadlineNanos() - nanoTime());
+        return deadlineNanos;
     }
 
     final ScheduledFutureTask<?> peekScheduledTask() {
@@ -147,9 +190,8 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
      * Returns {@code true} if a scheduled task is ready for processing.
      */
     protected final boolean hasScheduledTasks() {
-        Queue<ScheduledFutureTask<?>> scheduledTaskQueue = this.scheduledTaskQueue;
-        ScheduledFutureTask<?> scheduledTask = scheduledTaskQueue == null ? null : scheduledTaskQueue.peek();
-        return scheduledTask != null && scheduledTask.deadlineNanos() <= nanoTime();
+        long deadlineNanos = nextScheduledTaskDeadlineNanos();
+        return deadlineNanos != -1 && deadlineNanos <= nanoTime();
     }
 
     /**
@@ -242,12 +284,12 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
 
     <V> ScheduledFuture<V> schedule(final ScheduledFutureTask<V> task) {
         if (inEventLoop()) {
-            scheduledTaskQueue().add(task);
+            addScheduledTask(task);
         } else {
             execute(new Runnable() {
                 @Override
                 public void run() {
-                    scheduledTaskQueue().add(task);
+                    addScheduledTask(task);
                 }
             });
         }
@@ -255,9 +297,24 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
         return task;
     }
 
+    /**
+     * Adds the task to the timing wheel if enabled, or to the priority queue otherwise.
+     *
+     * This method MUST be called only when {@link #inEventLoop()} is {@code true}.
+     */
+    final void addScheduledTask(ScheduledFutureTask<?> task) {
+        if (timerWheel != null) {
+            timerWheel.add(task, scheduledTaskQueue());
+        } else {
+            scheduledTaskQueue().add(task);
+        }
+    }
+
     final void removeScheduled(final ScheduledFutureTask<?> task) {
         if (inEventLoop()) {
-            scheduledTaskQueue().removeTyped(task);
+            if (timerWheel == null || !timerWheel.remove(task)) {
+                scheduledTaskQueue().removeTyped(task);
+            }
         } else {
             execute(new Runnable() {
                 @Override
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Marker interface for {@link EventExecutor}s whose thread handles the I/O of channels, like the event loops of the
+ * NIO and native transports. The number of such executors is usually bounded by the number of cores, so resources
+ * that are dedicated to each of them, like an arena of the {@code PooledByteBufAllocator}, stay bounded as well.
+ */
+@UnstableApi
+public interface IoEventExecutor extends EventExecutor {
+}
@@ -19,7 +19,6 @@ package io.netty.util.concurrent;
 import io.netty.util.internal.DefaultPriorityQueue;
 import io.netty.util.internal.PriorityQueueNode;
 
-import java.util.Queue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.TimeUnit;
@@ -38,6 +37,13 @@ final class ScheduledFutureTask<V> extends PromiseTask<V> implements ScheduledFu
         return System.nanoTime() - START_TIME;
     }
 
+    /**
+     * Converts a {@link System#nanoTime()} value to the time base of {@link #nanoTime()}.
+     */
+    static long nanoTime(long systemNanoTime) {
+        return systemNanoTime - START_TIME;
+    }
+
     static long deadlineNanos(long delay) {
         long deadlineNanos = nanoTime() + delay;
         // Guard against overflow
@@ -51,6 +57,13 @@ final class ScheduledFutureTask<V> extends PromiseTask<V> implements ScheduledFu
 
     private int queueIndex = INDEX_NOT_IN_QUEUE;
 
+    static final int INDEX_NOT_IN_WHEEL = -1;
+
+    // Only used while this task is stored in the ScheduledTaskWheel of the executor.
+    int wheelIndex = INDEX_NOT_IN_WHEEL;
+    ScheduledFutureTask<?> wheelPrev;
+    ScheduledFutureTask<?> wheelNext;
+
 
 
     ScheduledFutureTask(
@@ -95,7 +108,7 @@ final class ScheduledFutureTask<V> extends PromiseTask<V> implements ScheduledFu
     }
 
     public long delayNanos(long currentTimeNanos) {
-        return Math.max(0, deadlineNanos() - (currentTimeNanos - START_TIME));
+        return Math.max(0, deadlineNanos() - nanoTime(currentTimeNanos));
     }
 
     @Override
@@ -145,11 +158,7 @@ final class ScheduledFutureTask<V> extends PromiseTask<V> implements ScheduledFu
                             deadlineNanos = nanoTime() - p;
                         }
                         if (!isCancelled()) {
-                            // scheduledTaskQueue can never be null as we lazy init it before submit the task!
-                            Queue<ScheduledFutureTask<?>> scheduledTaskQueue =
-                                    ((AbstractScheduledEventExecutor) executor()).scheduledTaskQueue;
-                            assert scheduledTaskQueue != null;
-                            scheduledTaskQueue.add(this);
+                            ((AbstractScheduledEventExecutor) executor()).addScheduledTask(this);
                         }
                     }
                 }
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.PriorityQueue;
+
+/**
+ * Hierarchical timing wheel which holds the {@link ScheduledFutureTask}s of an {@link AbstractScheduledEventExecutor}
+ * until the tick in which they expire starts. Adding and removing a task is {@code O(1)}, which makes it a good fit for
+ * timeouts that are usually cancelled before they expire. Once the tick of a task started it is moved to the
+ * {@link PriorityQueue} of the executor, so it is still executed at its precise deadline.
+ * <p>
+ * Each of the {@link #LEVELS} levels has {@code 64} slots, the slots of level {@code n} span {@code 64^n} ticks. Tasks
+ * are cascaded to the lower levels once the slot they are stored in is reached, like the classic Linux kernel timers.
+ * Tasks which expire beyond the range of the wheel are added to the {@link PriorityQueue} directly.
+ * <p>
+ * This class is not thread-safe and must only be used from the thread of the executor.
+ */
+final class ScheduledTaskWheel {
+
+    static final int LEVELS = 5;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long MAX_TICKS = 1L << (LEVELS * SLOT_BITS);
+
+    private final long tickNanos;
+    private final ScheduledFutureTask<?>[] slots = new ScheduledFutureTask<?>[LEVELS * SLOTS];
+    // Bit n of occupied[level] is set if slot n of the level is not empty.
+    private final long[] occupied = new long[LEVELS];
+    // The next tick to process, all ticks before were processed already.
+    private long currentTick;
+    private int size;
+
+    ScheduledTaskWheel(long tickNanos, long nanoTime) {
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("tickNanos: " + tickNanos + " (expected: > 0)");
+        }
+        this.tickNanos = tickNanos;
+        currentTick = nanoTime / tickNanos;
+    }
+
+    long tickNanos() {
+        return tickNanos;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds the task to the wheel, or to the {@link PriorityQueue} if its tick started already or it expires beyond the
+     * range of the wheel.
+     */
+    void add(ScheduledFutureTask<?> task, PriorityQueue<ScheduledFutureTask<?>> queue) {
+        long expiryTick = task.deadlineNanos() / tickNanos;
+        long ticks = expiryTick - currentTick;
+        if (ticks <= 0 || ticks >= MAX_TICKS) {
+            queue.add(task);
+            return;
+        }
+        int level = 0;
+        while (ticks >= 1L << ((level + 1) * SLOT_BITS)) {
+            level++;
+        }
+        int slot = (int) (expiryTick >>> (level * SLOT_BITS)) & SLOT_MASK;
+        int index = level * SLOTS + slot;
+        ScheduledFutureTask<?> head = slots[index];
+        task.wheelIndex = index;
+        task.wheelPrev = null;
+        task.wheelNext = head;
+        if (head != null) {
+            head.wheelPrev = task;
+        }
+        slots[index] = task;
+        occupied[level] |= 1L << slot;
+        size++;
+    }
+
+    /**
+     * Removes the task from the wheel, returns {@code false} if it was not stored in the wheel.
+     */
+    boolean remove(ScheduledFutureTask<?> task) {
+        int index = task.wheelIndex;
+        if (index == ScheduledFutureTask.INDEX_NOT_IN_WHEEL) {
+            return false;
+        }
+        ScheduledFutureTask<?> prev = task.wheelPrev;
+        ScheduledFutureTask<?> next = task.wheelNext;
+        if (prev == null) {
+            slots[index] = next;
+            if (next == null) {
+                occupied[index >>> SLOT_BITS] &= ~(1L << (index & SLOT_MASK));
+            }
+        } else {
+            prev.wheelNext = next;
+        }
+        if (next != null) {
+            next.wheelPrev = prev;
+        }
+        task.wheelIndex = ScheduledFutureTask.INDEX_NOT_IN_WHEEL;
+        task.wheelPrev = null;
+        task.wheelNext = null;
+        size--;
+        return true;
+    }
+
+    /**
+     * Returns the time (relative to {@link ScheduledFutureTask#nanoTime()}) at which the next slot must be processed
+     * via {@link #expire(long, PriorityQueue)}, or {@code -1} if the wheel is empty.
+     */
+    long nextDeadlineNanos() {
+        if (size == 0) {
+            return -1;
+        }
+        return nextTick() * tickNanos;
+    }
+
+    /**
+     * Moves all tasks whose tick started at the given {@code nanoTime} to the {@link PriorityQueue}.
+     */
+    void expire(long nanoTime, PriorityQueue<ScheduledFutureTask<?>> queue) {
+        long nowTick = nanoTime / tickNanos;
+        while (currentTick <= nowTick) {
+            long tick = size == 0 ? Long.MAX_VALUE : nextTick();
+            if (tick > nowTick) {
+                // Nothing to process until nowTick, so skip the empty slots.
+                currentTick = nowTick + 1;
+                return;
+            }
+            currentTick = tick;
+            int slot = (int) tick & SLOT_MASK;
+            if (slot == 0) {
+                // Cascade the slots of the higher levels whose span starts with this tick.
+                for (int level = 1; level < LEVELS; level++) {
+                    int levelSlot = (int) (tick >>> (level * SLOT_BITS)) & SLOT_MASK;
+                    cascade(level * SLOTS + levelSlot, queue);
+                    if (levelSlot != 0) {
+                        break;
+                    }
+                }
+            }
+            ScheduledFutureTask<?> task = detach(slot);
+            while (task != null) {
+                ScheduledFutureTask<?> next = task.wheelNext;
+                task.wheelNext = null;
+                queue.add(task);
+                task = next;
+            }
+            currentTick = tick + 1;
+        }
+    }
+
+    /**
+     * Cancels all tasks and removes them from the wheel.
+     */
+    void cancelAll() {
+        for (int index = 0; index < slots.length; index++) {
+            ScheduledFutureTask<?> task = detach(index);
+            while (task != null) {
+                ScheduledFutureTask<?> next = task.wheelNext;
+                task.wheelNext = null;
+                task.cancelWithoutRemove(false);
+                task = next;
+            }
+        }
+    }
+
+    private void cascade(int index, PriorityQueue<ScheduledFutureTask<?>> queue) {
+        ScheduledFutureTask<?> task = detach(index);
+        while (task != null) {
+            ScheduledFutureTask<?> next = task.wheelNext;
+            add(task, queue);
+            task = next;
+        }
+    }
+
+    /**
+     * Removes all tasks of the slot and returns the first of them, the tasks are still linked via
+     * {@link ScheduledFutureTask#wheelNext}.
+     */
+    private ScheduledFutureTask<?> detach(int index) {
+        ScheduledFutureTask<?> head = slots[index];
+        if (head == null) {
+            return null;
+        }
+        slots[index] = null;
+        occupied[index >>> SLOT_BITS] &= ~(1L << (index & SLOT_MASK));
+        for (ScheduledFutureTask<?> task = head; task != null; task = task.wheelNext) {
+            task.wheelIndex = ScheduledFutureTask.INDEX_NOT_IN_WHEEL;
+            task.wheelPrev = null;
+            size--;
+        }
+        return head;
+    }
+
+    /**
+     * Returns the first tick at or after {@link #currentTick} at which a non-empty slot must be processed.
+     */
+    private long nextTick() {
+        long next = Long.MAX_VALUE;
+        long current = currentTick;
+        for (int level = 0; level < LEVELS; level++) {
+            long bits = occupied[level];
+            if (bits == 0) {
+                continue;
+            }
+            int shift = level * SLOT_BITS;
+            // The first span of this level which starts at or after the current tick.
+            long span = (current + (1L << shift) - 1) >>> shift;
+            long rotated = Long.rotateRight(bits, (int) span & SLOT_MASK);
+            long tick = (span + Long.numberOfTrailingZeros(rotated)) << shift;
+            if (tick < next) {
+                next = tick;
+            }
+        }
+        return next;
+    }
+}
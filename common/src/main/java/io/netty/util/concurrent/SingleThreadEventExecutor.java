@@ -18,6 +18,7 @@ package io.netty.util.concurrent;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.ThreadExecutorMap;
 import io.netty.util.internal.UnstableApi;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
@@ -182,6 +183,34 @@ public abstract class SingleThreadEventExecutor
         rejectedExecutionHandler = ObjectUtil.checkNotNull(rejectedHandler, "rejectedHandler");
     }
 
+    /**
+     * Create a new instance
+     *
+     * @param parent                the {@link EventExecutorGroup} which is the parent of this instance and belongs to
+     *                              it
+     * @param executor              the {@link Executor} which will be used for executing
+     * @param addTaskWakesUp        {@code true} if and only if invocation of {@link #addTask(Runnable)} will wake up
+     *                              the executor thread
+     * @param maxPendingTasks       the maximum number of pending tasks before new tasks will be rejected.
+     * @param rejectedHandler       the {@link RejectedExecutionHandler} to use.
+     * @param timerWheelTickNanos   the tick duration of the hierarchical timing wheel which holds the scheduled tasks
+     *                              until their tick starts, or {@code 0} to only store them in a priority queue.
+     */
+    protected SingleThreadEventExecutor(EventExecutorGroup parent,
+                                        Executor executor,
+                                        boolean addTaskWakesUp,
+                                        int maxPendingTasks,
+                                        RejectedExecutionHandler rejectedHandler,
+                                        long timerWheelTickNanos) {
+        this(parent, executor, addTaskWakesUp, maxPendingTasks, rejectedHandler);
+        if (timerWheelTickNanos < 0) {
+            throw new IllegalArgumentException("timerWheelTickNanos: " + timerWheelTickNanos + " (expected: >= 0)");
+        }
+        if (timerWheelTickNanos > 0) {
+            enableTimerWheel(timerWheelTickNanos);
+        }
+    }
+
     /**
      * @deprecated Please use and override {@link #newTaskQueue(int)}.
      * 废弃了
@@ -250,8 +279,8 @@ public abstract class SingleThreadEventExecutor
 
         BlockingQueue<Runnable> taskQueue = (BlockingQueue<Runnable>) this.taskQueue;
         for (;;) {
-            ScheduledFutureTask<?> scheduledTask = peekScheduledTask();
-            if (scheduledTask == null) {
+            long deadlineNanos = nextScheduledTaskDeadlineNanos();
+            if (deadlineNanos == -1) {
                 Runnable task = null;
                 try {
                     task = taskQueue.take();
@@ -263,7 +292,7 @@ public abstract class SingleThreadEventExecutor
                 }
                 return task;
             } else {
-                long delayNanos = scheduledTask.delayNanos();
+                long delayNanos = deadlineNanos - nanoTime();
                 Runnable task = null;
                 if (delayNanos > 0) {
                     try {
@@ -484,12 +513,12 @@ public abstract class SingleThreadEventExecutor
      * Returns the amount of time left until the scheduled task with the closest dead line is executed.
      */
     protected long delayNanos(long currentTimeNanos) {
-        ScheduledFutureTask<?> scheduledTask = peekScheduledTask();
-        if (scheduledTask == null) {
+        long deadlineNanos = nextScheduledTaskDeadlineNanos();
+        if (deadlineNanos == -1) {
             return SCHEDULE_PURGE_INTERVAL;
         }
 
-        return scheduledTask.delayNanos(currentTimeNanos);
+        return Math.max(0, deadlineNanos - ScheduledFutureTask.nanoTime(currentTimeNanos));
     }
 
     /**
@@ -498,11 +527,11 @@ public abstract class SingleThreadEventExecutor
      */
     @UnstableApi
     protected long deadlineNanos() {
-        ScheduledFutureTask<?> scheduledTask = peekScheduledTask();
-        if (scheduledTask == null) {
+        long deadlineNanos = nextScheduledTaskDeadlineNanos();
+        if (deadlineNanos == -1) {
             return nanoTime() + SCHEDULE_PURGE_INTERVAL;
         }
-        return scheduledTask.deadlineNanos();
+        return deadlineNanos;
     }
 
     /**
@@ -868,6 +897,7 @@ public abstract class SingleThreadEventExecutor
 
                 //把当前线程赋值给 NioEventLoop 从此NioEventLoop有了线程可以跑了
                 thread = Thread.currentThread();
+                ThreadExecutorMap.setCurrentEventExecutor(SingleThreadEventExecutor.this);
 
                 if (interrupted) {
                     thread.interrupt();
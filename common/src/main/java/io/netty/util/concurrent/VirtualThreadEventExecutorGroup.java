@@ -0,0 +1,329 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link EventExecutorGroup} whose {@link #next()} returns a new {@link OrderedEventExecutor} on each call, which runs
+ * its tasks in order on a virtual thread. The virtual thread is started once a task is submitted to an idle executor
+ * and exits once all of its tasks ran, so no threads are kept for idle executors.
+ * <p>
+ * When used via {@code pipeline.addLast(group, handler)}, each {@link io.netty.channel.ChannelHandlerContext} runs on
+ * its own virtual thread, so handlers may block, for example on JDBC calls, without sizing a huge
+ * {@link DefaultEventExecutorGroup}. Virtual threads are looked up via reflection, so this class can be used with
+ * Java 21 and later while Netty is still built for older versions. See {@link #isAvailable()}.
+ * <p>
+ * The executors only support {@link EventExecutor#schedule(Runnable, long, TimeUnit)} among the scheduling methods,
+ * which hands the task over to the {@link GlobalEventExecutor} until it is due. The executors are not tracked, so
+ * {@link #iterator()} returns no executors.
+ */
+@UnstableApi
+public final class VirtualThreadEventExecutorGroup extends AbstractEventExecutorGroup {
+
+    private static final InternalLogger logger =
+            InternalLoggerFactory.getInstance(VirtualThreadEventExecutorGroup.class);
+
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY;
+    private static final Throwable UNAVAILABILITY_CAUSE;
+
+    private static final int ST_STARTED = 0;
+    private static final int ST_SHUTTING_DOWN = 1;
+    private static final int ST_TERMINATED = 2;
+
+    static {
+        ThreadFactory factory = null;
+        Throwable cause = null;
+        try {
+            // Thread.ofVirtual().name("virtualThreadEventExecutorGroup-", 0).factory()
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method name = builderClass.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, "virtualThreadEventExecutorGroup-", 0L);
+            factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (Throwable t) {
+            cause = t;
+        }
+        if (cause == null) {
+            logger.debug("Virtual threads: available");
+        } else {
+            logger.debug("Virtual threads: unavailable", cause);
+        }
+        VIRTUAL_THREAD_FACTORY = factory;
+        UNAVAILABILITY_CAUSE = cause;
+    }
+
+    /**
+     * Returns {@code true} if virtual threads are available, which requires Java 21 or later.
+     */
+    public static boolean isAvailable() {
+        return UNAVAILABILITY_CAUSE == null;
+    }
+
+    /**
+     * Returns the cause why virtual threads are not available, or {@code null} if they are.
+     */
+    public static Throwable unavailabilityCause() {
+        return UNAVAILABILITY_CAUSE;
+    }
+
+    private final ThreadFactory threadFactory;
+    // The executors with a thread and the calls to execute(...) which did not hand over their task yet.
+    private final AtomicInteger runningExecutors = new AtomicInteger();
+    private final Promise<?> terminationFuture = new DefaultPromise<Void>(GlobalEventExecutor.INSTANCE);
+    private volatile int state = ST_STARTED;
+
+    /**
+     * Creates a new instance which runs the tasks on virtual threads.
+     *
+     * @throws UnsupportedOperationException if virtual threads are not available
+     */
+    public VirtualThreadEventExecutorGroup() {
+        this(virtualThreadFactory());
+    }
+
+    /**
+     * Creates a new instance which runs the tasks on the threads created by the given {@link ThreadFactory}, one per
+     * executor which has tasks to run.
+     */
+    public VirtualThreadEventExecutorGroup(ThreadFactory threadFactory) {
+        this.threadFactory = ObjectUtil.checkNotNull(threadFactory, "threadFactory");
+    }
+
+    private static ThreadFactory virtualThreadFactory() {
+        if (VIRTUAL_THREAD_FACTORY == null) {
+            throw new UnsupportedOperationException("virtual threads are not available", UNAVAILABILITY_CAUSE);
+        }
+        return VIRTUAL_THREAD_FACTORY;
+    }
+
+    @Override
+    public EventExecutor next() {
+        return new OrderedExecutor();
+    }
+
+    @Override
+    public Iterator<EventExecutor> iterator() {
+        return Collections.<EventExecutor>emptyList().iterator();
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return state >= ST_SHUTTING_DOWN;
+    }
+
+    @Override
+    public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+        shutdown0();
+        return terminationFuture();
+    }
+
+    @Override
+    public Future<?> terminationFuture() {
+        return terminationFuture;
+    }
+
+    @Override
+    @Deprecated
+    public void shutdown() {
+        shutdown0();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return state >= ST_SHUTTING_DOWN;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return state == ST_TERMINATED;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminationFuture.await(timeout, unit);
+    }
+
+    private void shutdown0() {
+        if (state == ST_STARTED) {
+            // The running executors terminate the group once the last of them ran all its tasks.
+            state = ST_SHUTTING_DOWN;
+            runningExecutors.incrementAndGet();
+            executorStopped();
+        }
+    }
+
+    private void executorStopped() {
+        if (runningExecutors.decrementAndGet() == 0 && state != ST_STARTED && terminationFuture.trySuccess(null)) {
+            state = ST_TERMINATED;
+        }
+    }
+
+    private final class OrderedExecutor extends AbstractEventExecutor implements OrderedEventExecutor, Runnable {
+        private static final int NONE = 0;
+        private static final int RUNNING = 1;
+
+        private final Queue<Runnable> tasks = PlatformDependent.newMpscQueue();
+        private final AtomicInteger state = new AtomicInteger();
+        private volatile Thread thread;
+
+        OrderedExecutor() {
+            super(VirtualThreadEventExecutorGroup.this);
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            try {
+                for (;;) {
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        safeExecute(task);
+                    }
+                    state.set(NONE);
+                    // See NonStickyEventExecutorGroup for why the tasks must be checked once more.
+                    if (tasks.peek() == null || !state.compareAndSet(NONE, RUNNING)) {
+                        return;
+                    }
+                }
+            } finally {
+                thread = null;
+                executorStopped();
+            }
+        }
+
+        @Override
+        public boolean inEventLoop(Thread thread) {
+            return thread == this.thread;
+        }
+
+        @Override
+        public boolean isShuttingDown() {
+            return VirtualThreadEventExecutorGroup.this.isShuttingDown();
+        }
+
+        @Override
+        public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+            return VirtualThreadEventExecutorGroup.this.shutdownGracefully(quietPeriod, timeout, unit);
+        }
+
+        @Override
+        public Future<?> terminationFuture() {
+            return terminationFuture;
+        }
+
+        @Override
+        @Deprecated
+        public void shutdown() {
+            shutdown0();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return VirtualThreadEventExecutorGroup.this.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return VirtualThreadEventExecutorGroup.this.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return VirtualThreadEventExecutorGroup.this.awaitTermination(timeout, unit);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(final Runnable command, long delay, TimeUnit unit) {
+            ObjectUtil.checkNotNull(command, "command");
+            return GlobalEventExecutor.INSTANCE.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    execute(command);
+                }
+            }, delay, unit);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            ObjectUtil.checkNotNull(command, "command");
+            // The group must not terminate between checking its state and handing the task over to a thread, as the
+            // task would never run or run after the termination otherwise.
+            runningExecutors.incrementAndGet();
+            try {
+                if (VirtualThreadEventExecutorGroup.this.state != ST_STARTED) {
+                    throw new RejectedExecutionException("event executor terminated");
+                }
+                if (!tasks.offer(command)) {
+                    throw new RejectedExecutionException();
+                }
+                if (state.compareAndSet(NONE, RUNNING)) {
+                    runningExecutors.incrementAndGet();
+                    try {
+                        threadFactory.newThread(this).start();
+                    } catch (Throwable t) {
+                        rejectTasks(command, t);
+                        executorStopped();
+                        PlatformDependent.throwException(t);
+                    }
+                }
+            } finally {
+                executorStopped();
+            }
+        }
+
+        /**
+         * Rejects all queued tasks once no thread could be started to run them. The caller must own the
+         * {@code RUNNING} state, which makes it the only consumer of {@link #tasks}. The given task is rejected by
+         * rethrowing the cause to the caller of {@link #execute(Runnable)}, all other tasks are failed if they are
+         * futures or dropped otherwise.
+         */
+        private void rejectTasks(Runnable command, Throwable cause) {
+            for (;;) {
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    if (task == command) {
+                        continue;
+                    }
+                    if (task instanceof PromiseTask) {
+                        ((PromiseTask<?>) task).tryFailureInternal(
+                                new RejectedExecutionException("failed to start a thread", cause));
+                    } else {
+                        logger.warn("A task was dropped as no thread could be started to run it: {}", task, cause);
+                    }
+                }
+                state.set(NONE);
+                // Tasks which were added concurrently did not try to start a thread as the state was RUNNING.
+                if (tasks.peek() == null || !state.compareAndSet(NONE, RUNNING)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link EventExecutorGroup} whose {@link #next()} returns a new {@link OrderedEventExecutor} on each call, which runs
+ * its tasks in order but on any of the threads of this group. Each of these executors is a chain of tasks which is
+ * scheduled as a whole on the deque of a thread, and idle threads steal whole chains from the deques of busy ones.
+ * <p>
+ * When used via {@code pipeline.addLast(group, handler)}, each {@link io.netty.channel.ChannelHandlerContext} gets its
+ * own chain, so the events of a {@link io.netty.channel.Channel} are handled in order while a few expensive
+ * {@link io.netty.channel.Channel}s can not hold up the others assigned to the same thread, as with the
+ * {@link DefaultEventExecutorGroup}, and there is no global queue all threads contend on, as with the
+ * {@link NonStickyEventExecutorGroup} wrapping an {@link UnorderedThreadPoolEventExecutor}.
+ * <p>
+ * The executors only support {@link EventExecutor#schedule(Runnable, long, TimeUnit)} among the scheduling methods,
+ * which hands the task over to the {@link GlobalEventExecutor} until it is due. The executors are not tracked, so
+ * {@link #iterator()} returns no executors.
+ */
+@UnstableApi
+public final class WorkStealingEventExecutorGroup extends AbstractEventExecutorGroup {
+
+    private static final int ST_STARTED = 0;
+    private static final int ST_SHUTTING_DOWN = 1;
+    private static final int ST_TERMINATED = 2;
+
+    private final Worker[] workers;
+    private final Queue<Worker> idleWorkers = new ConcurrentLinkedQueue<Worker>();
+    private final FastThreadLocal<Worker> currentWorker = new FastThreadLocal<Worker>();
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private final AtomicInteger activeWorkers;
+    private final int maxTaskExecutePerRun;
+    private final Promise<?> terminationFuture = new DefaultPromise<Void>(GlobalEventExecutor.INSTANCE);
+    private volatile int state = ST_STARTED;
+
+    /**
+     * Creates a new instance with the given number of threads.
+     */
+    public WorkStealingEventExecutorGroup(int nThreads) {
+        this(nThreads, null);
+    }
+
+    /**
+     * Creates a new instance with the given number of threads created by the given {@link ThreadFactory}.
+     */
+    public WorkStealingEventExecutorGroup(int nThreads, ThreadFactory threadFactory) {
+        this(nThreads, threadFactory, 64);
+    }
+
+    /**
+     * Creates a new instance with the given number of threads created by the given {@link ThreadFactory}, which run
+     * at most {@code maxTaskExecutePerRun} tasks of an executor before moving on to the next one.
+     */
+    public WorkStealingEventExecutorGroup(int nThreads, ThreadFactory threadFactory, int maxTaskExecutePerRun) {
+        ObjectUtil.checkPositive(nThreads, "nThreads");
+        this.maxTaskExecutePerRun = ObjectUtil.checkPositive(maxTaskExecutePerRun, "maxTaskExecutePerRun");
+        if (threadFactory == null) {
+            threadFactory = new DefaultThreadFactory(getClass());
+        }
+        workers = new Worker[nThreads];
+        activeWorkers = new AtomicInteger(nThreads);
+        for (int i = 0; i < nThreads; i++) {
+            workers[i] = new Worker();
+        }
+        for (Worker worker: workers) {
+            worker.thread = threadFactory.newThread(worker);
+            worker.thread.start();
+        }
+    }
+
+    @Override
+    public EventExecutor next() {
+        return new OrderedExecutor();
+    }
+
+    @Override
+    public Iterator<EventExecutor> iterator() {
+        return Collections.<EventExecutor>emptyList().iterator();
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return state >= ST_SHUTTING_DOWN;
+    }
+
+    @Override
+    public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+        shutdown0();
+        return terminationFuture();
+    }
+
+    @Override
+    public Future<?> terminationFuture() {
+        return terminationFuture;
+    }
+
+    @Override
+    @Deprecated
+    public void shutdown() {
+        shutdown0();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return state >= ST_SHUTTING_DOWN;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return state == ST_TERMINATED;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminationFuture.await(timeout, unit);
+    }
+
+    private void shutdown0() {
+        if (state == ST_STARTED) {
+            // The workers exit once they ran all submitted tasks.
+            state = ST_SHUTTING_DOWN;
+            for (Worker worker: workers) {
+                LockSupport.unpark(worker.thread);
+            }
+        }
+    }
+
+    /**
+     * Adds the given executor to the deque of the current thread if it belongs to this group, or of any otherwise,
+     * and wakes up an idle thread so it may steal it.
+     */
+    private void enqueue(OrderedExecutor executor) {
+        Worker worker = currentWorker.get();
+        if (worker == null) {
+            worker = workers[(nextWorker.getAndIncrement() & Integer.MAX_VALUE) % workers.length];
+        }
+        worker.executors.offerLast(executor);
+
+        // Wake up after the executor was added, so a thread which became idle in the meantime will see it.
+        Worker idleWorker = idleWorkers.poll();
+        if (idleWorker != null) {
+            idleWorker.idle.set(false);
+            LockSupport.unpark(idleWorker.thread);
+        }
+    }
+
+    private boolean hasExecutors() {
+        for (Worker worker: workers) {
+            if (!worker.executors.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final class Worker implements Runnable {
+        // Polled from the head by its own thread and from the tail by the stealing threads.
+        final LinkedBlockingDeque<OrderedExecutor> executors = new LinkedBlockingDeque<OrderedExecutor>();
+        final AtomicBoolean idle = new AtomicBoolean();
+        Thread thread;
+
+        @Override
+        public void run() {
+            currentWorker.set(this);
+            try {
+                for (;;) {
+                    OrderedExecutor executor = executors.pollFirst();
+                    if (executor == null) {
+                        executor = steal();
+                    }
+                    if (executor != null) {
+                        executor.run();
+                    } else if (state != ST_STARTED && !hasExecutors()) {
+                        break;
+                    } else {
+                        park();
+                    }
+                }
+            } finally {
+                currentWorker.remove();
+                if (activeWorkers.decrementAndGet() == 0) {
+                    state = ST_TERMINATED;
+                    terminationFuture.setSuccess(null);
+                }
+            }
+        }
+
+        private OrderedExecutor steal() {
+            int start = PlatformDependent.threadLocalRandom().nextInt(workers.length);
+            for (int i = 0; i < workers.length; i++) {
+                Worker victim = workers[(start + i) % workers.length];
+                if (victim != this) {
+                    OrderedExecutor executor = victim.executors.pollLast();
+                    if (executor != null) {
+                        return executor;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private void park() {
+            if (idle.compareAndSet(false, true)) {
+                idleWorkers.offer(this);
+            }
+            // Check again after announcing to be idle, as an executor may have been added before.
+            if (state == ST_STARTED && !hasExecutors()) {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    private final class OrderedExecutor extends AbstractEventExecutor implements OrderedEventExecutor {
+        private static final int NONE = 0;
+        private static final int SUBMITTED = 1;
+        private static final int RUNNING = 2;
+
+        private final Queue<Runnable> tasks = PlatformDependent.newMpscQueue();
+        private final AtomicInteger state = new AtomicInteger();
+        // The thread which currently runs the tasks of this executor, so handlers invoked from a task of this
+        // executor are invoked directly.
+        private volatile Thread thread;
+
+        OrderedExecutor() {
+            super(WorkStealingEventExecutorGroup.this);
+        }
+
+        void run() {
+            if (!state.compareAndSet(SUBMITTED, RUNNING)) {
+                return;
+            }
+            thread = Thread.currentThread();
+            for (;;) {
+                int i = 0;
+                for (; i < maxTaskExecutePerRun; i++) {
+                    Runnable task = tasks.poll();
+                    if (task == null) {
+                        break;
+                    }
+                    safeExecute(task);
+                }
+                thread = null;
+                if (i == maxTaskExecutePerRun) {
+                    // Move to the tail of the deque so the other executors of this thread get a chance to run.
+                    state.set(SUBMITTED);
+                    enqueue(this);
+                    return;
+                }
+                state.set(NONE);
+                // See NonStickyEventExecutorGroup for why the tasks must be checked once more.
+                if (tasks.peek() == null || !state.compareAndSet(NONE, RUNNING)) {
+                    return;
+                }
+                thread = Thread.currentThread();
+            }
+        }
+
+        @Override
+        public boolean inEventLoop(Thread thread) {
+            return thread == this.thread;
+        }
+
+        @Override
+        public boolean isShuttingDown() {
+            return WorkStealingEventExecutorGroup.this.isShuttingDown();
+        }
+
+        @Override
+        public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+            return WorkStealingEventExecutorGroup.this.shutdownGracefully(quietPeriod, timeout, unit);
+        }
+
+        @Override
+        public Future<?> terminationFuture() {
+            return terminationFuture;
+        }
+
+        @Override
+        @Deprecated
+        public void shutdown() {
+            shutdown0();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return WorkStealingEventExecutorGroup.this.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return WorkStealingEventExecutorGroup.this.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return WorkStealingEventExecutorGroup.this.awaitTermination(timeout, unit);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(final Runnable command, long delay, TimeUnit unit) {
+            ObjectUtil.checkNotNull(command, "command");
+            return GlobalEventExecutor.INSTANCE.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    execute(command);
+                }
+            }, delay, unit);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            ObjectUtil.checkNotNull(command, "command");
+            if (WorkStealingEventExecutorGroup.this.state != ST_STARTED) {
+                throw new RejectedExecutionException("event executor terminated");
+            }
+            if (!tasks.offer(command)) {
+                throw new RejectedExecutionException();
+            }
+            if (state.compareAndSet(NONE, SUBMITTED)) {
+                enqueue(this);
+            }
+        }
+    }
+}
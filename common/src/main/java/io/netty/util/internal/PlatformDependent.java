@@ -443,6 +443,14 @@ public final class PlatformDependent {
         return PlatformDependent0.getInt(address);
     }
 
+    /**
+     * Reads the {@code int} at the given memory {@code address} with volatile semantics, which is needed when the
+     * memory is shared with another thread or the kernel.
+     */
+    public static int getIntVolatile(long address) {
+        return PlatformDependent0.getIntVolatile(address);
+    }
+
     public static long getLong(long address) {
         return PlatformDependent0.getLong(address);
     }
@@ -571,6 +579,14 @@ public final class PlatformDependent {
         PlatformDependent0.putInt(address, value);
     }
 
+    /**
+     * Writes the {@code int} to the given memory {@code address} with ordered (release) semantics, so all previous
+     * writes are visible before the written value.
+     */
+    public static void putIntOrdered(long address, int value) {
+        PlatformDependent0.putIntOrdered(address, value);
+    }
+
     public static void putLong(long address, long value) {
         PlatformDependent0.putLong(address, value);
     }
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.DefaultPriorityQueue;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ScheduledTaskWheelTest {
+
+    private static final Callable<Void> NOOP = new Callable<Void>() {
+        @Override
+        public Void call() {
+            return null;
+        }
+    };
+
+    private static DefaultPriorityQueue<ScheduledFutureTask<?>> newQueue() {
+        return new DefaultPriorityQueue<ScheduledFutureTask<?>>(new Comparator<ScheduledFutureTask<?>>() {
+            @Override
+            public int compare(ScheduledFutureTask<?> o1, ScheduledFutureTask<?> o2) {
+                return o1.compareTo(o2);
+            }
+        }, 11);
+    }
+
+    private static ScheduledFutureTask<Void> newTask(long deadlineNanos) {
+        return new ScheduledFutureTask<Void>(GlobalEventExecutor.INSTANCE, NOOP, deadlineNanos);
+    }
+
+    @Test
+    public void testTaskIsMovedToQueueWhenItsTickStarts() {
+        DefaultPriorityQueue<ScheduledFutureTask<?>> queue = newQueue();
+        ScheduledTaskWheel wheel = new ScheduledTaskWheel(10, 0);
+        // Spans multiple levels, so the task is cascaded before it is moved to the queue.
+        ScheduledFutureTask<Void> task = newTask(123456);
+        wheel.add(task, queue);
+        assertEquals(1, wheel.size());
+        assertTrue(queue.isEmpty());
+
+        long deadlineNanos = wheel.nextDeadlineNanos();
+        while (queue.isEmpty()) {
+            assertTrue(deadlineNanos <= 123450);
+            wheel.expire(deadlineNanos, queue);
+            deadlineNanos = wheel.nextDeadlineNanos();
+        }
+        assertSame(task, queue.peek());
+        assertEquals(0, wheel.size());
+        assertEquals(-1, wheel.nextDeadlineNanos());
+    }
+
+    @Test
+    public void testTaskOfCurrentTickIsAddedToQueue() {
+        DefaultPriorityQueue<ScheduledFutureTask<?>> queue = newQueue();
+        ScheduledTaskWheel wheel = new ScheduledTaskWheel(10, 100);
+        ScheduledFutureTask<Void> task = newTask(105);
+        wheel.add(task, queue);
+        assertEquals(0, wheel.size());
+        assertSame(task, queue.peek());
+    }
+
+    @Test
+    public void testRemove() {
+        DefaultPriorityQueue<ScheduledFutureTask<?>> queue = newQueue();
+        ScheduledTaskWheel wheel = new ScheduledTaskWheel(10, 0);
+        ScheduledFutureTask<Void> task = newTask(500);
+        ScheduledFutureTask<Void> task2 = newTask(505);
+        wheel.add(task, queue);
+        wheel.add(task2, queue);
+        assertTrue(wheel.remove(task));
+        assertFalse(wheel.remove(task));
+        assertEquals(500, wheel.nextDeadlineNanos());
+        assertTrue(wheel.remove(task2));
+        assertEquals(-1, wheel.nextDeadlineNanos());
+        wheel.expire(2000, queue);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(timeout = 5000)
+    public void testScheduledTasksRunInOrder() throws Exception {
+        SingleThreadEventExecutor executor = new SingleThreadEventExecutor(null,
+                new ThreadPerTaskExecutor(new DefaultThreadFactory("test")), false, Integer.MAX_VALUE,
+                RejectedExecutionHandlers.reject(), TimeUnit.MILLISECONDS.toNanos(1)) {
+            @Override
+            protected void run() {
+                while (!confirmShutdown()) {
+                    Runnable task = takeTask();
+                    if (task != null) {
+                        task.run();
+                    }
+                }
+            }
+        };
+        try {
+            assertEquals(TimeUnit.MILLISECONDS.toNanos(1), executor.timerWheelTickNanos());
+            final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+            final CountDownLatch latch = new CountDownLatch(3);
+            int[] delays = { 150, 5, 80 };
+            for (final int delay : delays) {
+                executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        order.add(delay);
+                        latch.countDown();
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+            ScheduledFuture<?> cancelled = executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    order.add(-1);
+                }
+            }, 100, TimeUnit.MILLISECONDS);
+            assertTrue(cancelled.cancel(false));
+
+            latch.await();
+            assertEquals(3, order.size());
+            assertEquals(5, (int) order.get(0));
+            assertEquals(80, (int) order.get(1));
+            assertEquals(150, (int) order.get(2));
+        } finally {
+            executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+}
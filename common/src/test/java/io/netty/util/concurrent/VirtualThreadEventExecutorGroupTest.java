@@ -0,0 +1,167 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class VirtualThreadEventExecutorGroupTest {
+
+    @Test(timeout = 30000)
+    public void testOrderingPerExecutor() throws Exception {
+        // Use platform threads so the ordering is tested on all Java versions.
+        testOrderingPerExecutor(new VirtualThreadEventExecutorGroup(new DefaultThreadFactory("test")));
+    }
+
+    @Test(timeout = 30000)
+    public void testOrderingPerExecutorOnVirtualThreads() throws Exception {
+        Assume.assumeTrue(VirtualThreadEventExecutorGroup.isAvailable());
+        testOrderingPerExecutor(new VirtualThreadEventExecutorGroup());
+    }
+
+    @Test(timeout = 30000)
+    public void testThreadStartFailure() throws Exception {
+        final AtomicBoolean failStart = new AtomicBoolean(true);
+        final ThreadFactory threadFactory = new DefaultThreadFactory("test");
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                if (failStart.get()) {
+                    throw new IllegalStateException("thread start failure");
+                }
+                return threadFactory.newThread(r);
+            }
+        });
+        try {
+            final AtomicBoolean rejectedRan = new AtomicBoolean();
+            EventExecutor executor = group.next();
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        rejectedRan.set(true);
+                    }
+                });
+                fail();
+            } catch (IllegalStateException expected) {
+                // expected
+            }
+
+            // The executor must be usable once threads can be started again.
+            failStart.set(false);
+            final CountDownLatch latch = new CountDownLatch(1);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            });
+            latch.await();
+            assertFalse(rejectedRan.get());
+        } finally {
+            group.shutdownGracefully();
+        }
+        assertTrue(group.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 60000)
+    public void testNoTaskRunsAfterTermination() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            final VirtualThreadEventExecutorGroup group =
+                    new VirtualThreadEventExecutorGroup(new DefaultThreadFactory("test"));
+            final EventExecutor executor = group.next();
+            final AtomicInteger accepted = new AtomicInteger();
+            final AtomicInteger ran = new AtomicInteger();
+            final AtomicBoolean ranAfterTermination = new AtomicBoolean();
+            final Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    if (group.isTerminated()) {
+                        ranAfterTermination.set(true);
+                    }
+                    ran.incrementAndGet();
+                }
+            };
+            Thread submitter = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (;;) {
+                            executor.execute(task);
+                            accepted.incrementAndGet();
+                        }
+                    } catch (RejectedExecutionException expected) {
+                        // expected once the group is shut down
+                    }
+                }
+            });
+            submitter.start();
+            Thread.sleep(1);
+            group.shutdownGracefully();
+            submitter.join();
+            assertTrue(group.awaitTermination(10, TimeUnit.SECONDS));
+
+            // Every task which was accepted must have run before the group terminated.
+            assertEquals(accepted.get(), ran.get());
+            assertFalse(ranAfterTermination.get());
+        }
+    }
+
+    private static void testOrderingPerExecutor(VirtualThreadEventExecutorGroup group) throws Exception {
+        try {
+            final int executors = 16;
+            final int tasks = 1000;
+            final int[] counters = new int[executors];
+            final AtomicInteger errors = new AtomicInteger();
+            final CountDownLatch latch = new CountDownLatch(executors);
+            for (int i = 0; i < executors; i++) {
+                final int index = i;
+                final EventExecutor executor = group.next();
+                for (int n = 0; n < tasks; n++) {
+                    final int expected = n;
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!executor.inEventLoop() || counters[index]++ != expected) {
+                                errors.incrementAndGet();
+                            }
+                            if (expected == tasks - 1) {
+                                latch.countDown();
+                            }
+                        }
+                    });
+                }
+            }
+            latch.await();
+            assertEquals(0, errors.get());
+        } finally {
+            group.shutdownGracefully();
+        }
+        assertTrue(group.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
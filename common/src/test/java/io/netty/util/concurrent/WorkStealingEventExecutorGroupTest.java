@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WorkStealingEventExecutorGroupTest {
+
+    @Test(timeout = 30000)
+    public void testOrderingPerExecutor() throws Exception {
+        WorkStealingEventExecutorGroup group = new WorkStealingEventExecutorGroup(4, null, 16);
+        try {
+            final int executors = 32;
+            final int tasks = 1000;
+            final int[] counters = new int[executors];
+            final AtomicInteger errors = new AtomicInteger();
+            final CountDownLatch latch = new CountDownLatch(executors);
+            EventExecutor[] ordered = new EventExecutor[executors];
+            for (int i = 0; i < executors; i++) {
+                ordered[i] = group.next();
+                assertTrue(ordered[i] instanceof OrderedEventExecutor);
+                assertFalse(ordered[i].inEventLoop());
+            }
+            for (int n = 0; n < tasks; n++) {
+                for (int i = 0; i < executors; i++) {
+                    final int index = i;
+                    final int expected = n;
+                    final EventExecutor executor = ordered[i];
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!executor.inEventLoop() || counters[index]++ != expected) {
+                                errors.incrementAndGet();
+                            }
+                            if (expected == tasks - 1) {
+                                latch.countDown();
+                            }
+                        }
+                    });
+                }
+            }
+            latch.await();
+            assertEquals(0, errors.get());
+            ordered[0].schedule(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }, 10, TimeUnit.MILLISECONDS).sync();
+        } finally {
+            group.shutdownGracefully();
+        }
+        assertTrue(group.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(group.isTerminated());
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testRejectAfterShutdown() throws Exception {
+        WorkStealingEventExecutorGroup group = new WorkStealingEventExecutorGroup(1);
+        EventExecutor executor = group.next();
+        group.shutdownGracefully().sync();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.channel.ChannelOption;
+import io.netty.util.CharsetUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.lang.reflect.Method;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Derives the {@code struct tls12_crypto_info_aes_gcm_*} which are needed to offload the record encryption and
+ * decryption of a TLSv1.2 connection negotiated by a {@link ReferenceCountedOpenSslEngine} to the kernel (kTLS).
+ * <p>
+ * The crypto infos are passed to the transport via the {@code TLS_TX} and {@code TLS_RX} {@link ChannelOption}s of
+ * the epoll transport, which are looked up by name as the handler does not depend on it. TLSv1.3 is not supported as
+ * the traffic secrets are not exposed by netty-tcnative.
+ */
+final class KernelTls {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(KernelTls.class);
+
+    static final ChannelOption<byte[]> TLS_TX =
+            ChannelOption.valueOf("io.netty.channel.epoll.EpollChannelOption#TLS_TX");
+    static final ChannelOption<byte[]> TLS_RX =
+            ChannelOption.valueOf("io.netty.channel.epoll.EpollChannelOption#TLS_RX");
+
+    // See include/uapi/linux/tls.h
+    private static final int TLS_1_2_VERSION = 0x0303;
+    private static final int TLS_CIPHER_AES_GCM_128 = 51;
+    private static final int TLS_CIPHER_AES_GCM_256 = 52;
+
+    private static final int IMPLICIT_IV_LENGTH = 4;
+    private static final int EXPLICIT_IV_LENGTH = 8;
+    private static final int SEQUENCE_LENGTH = 8;
+
+    private static final byte[] KEY_EXPANSION_LABEL = "key expansion".getBytes(CharsetUtil.US_ASCII);
+
+    private static final Method GET_MASTER_KEY;
+    private static final Method GET_CLIENT_RANDOM;
+    private static final Method GET_SERVER_RANDOM;
+
+    static {
+        Method getMasterKey = null;
+        Method getClientRandom = null;
+        Method getServerRandom = null;
+        try {
+            // Only available in newer versions of netty-tcnative.
+            Class<?> sslClass = Class.forName("io.netty.internal.tcnative.SSL", false,
+                    KernelTls.class.getClassLoader());
+            getMasterKey = sslClass.getMethod("getMasterKey", long.class);
+            getClientRandom = sslClass.getMethod("getClientRandom", long.class);
+            getServerRandom = sslClass.getMethod("getServerRandom", long.class);
+        } catch (Throwable cause) {
+            logger.debug("netty-tcnative does not expose the TLS master key, kernel TLS offload is not available",
+                    cause);
+            getMasterKey = null;
+        }
+        GET_MASTER_KEY = getMasterKey;
+        GET_CLIENT_RANDOM = getClientRandom;
+        GET_SERVER_RANDOM = getServerRandom;
+    }
+
+    private KernelTls() { }
+
+    /**
+     * Returns {@code true} if the crypto infos can be derived for {@link SSLEngine}s of the given type.
+     */
+    static boolean isSupported(SSLEngine engine) {
+        return GET_MASTER_KEY != null && engine instanceof ReferenceCountedOpenSslEngine;
+    }
+
+    /**
+     * Returns the crypto infos for the transmit and the receive direction of the connection of the given
+     * {@link SSLEngine}, or {@code null} if its protocol or cipher suite is not supported by kTLS. This must be called
+     * right after the handshake completed, as it assumes that one record was sent and received with the negotiated
+     * keys, which is the {@code Finished} message.
+     */
+    static byte[][] cryptoInfos(SSLEngine engine) {
+        if (!isSupported(engine)) {
+            return null;
+        }
+        SSLSession session = engine.getSession();
+        if (!SslUtils.PROTOCOL_TLS_V1_2.equals(session.getProtocol())) {
+            return null;
+        }
+        String cipherSuite = session.getCipherSuite();
+        final int cipherType;
+        final int keyLength;
+        final String prfAlgorithm;
+        if (cipherSuite.endsWith("_WITH_AES_128_GCM_SHA256")) {
+            cipherType = TLS_CIPHER_AES_GCM_128;
+            keyLength = 16;
+            prfAlgorithm = "HmacSHA256";
+        } else if (cipherSuite.endsWith("_WITH_AES_256_GCM_SHA384")) {
+            cipherType = TLS_CIPHER_AES_GCM_256;
+            keyLength = 32;
+            prfAlgorithm = "HmacSHA384";
+        } else {
+            return null;
+        }
+
+        byte[] masterKey = null;
+        byte[] keyBlock = null;
+        try {
+            long ssl = ((ReferenceCountedOpenSslEngine) engine).sslPointer();
+            masterKey = (byte[]) GET_MASTER_KEY.invoke(null, ssl);
+            byte[] clientRandom = (byte[]) GET_CLIENT_RANDOM.invoke(null, ssl);
+            byte[] serverRandom = (byte[]) GET_SERVER_RANDOM.invoke(null, ssl);
+            if (masterKey == null || clientRandom == null || serverRandom == null) {
+                return null;
+            }
+            // See https://tools.ietf.org/html/rfc5246#section-6.3
+            byte[] seed = new byte[serverRandom.length + clientRandom.length];
+            System.arraycopy(serverRandom, 0, seed, 0, serverRandom.length);
+            System.arraycopy(clientRandom, 0, seed, serverRandom.length, clientRandom.length);
+            keyBlock = prf(prfAlgorithm, masterKey, KEY_EXPANSION_LABEL, seed, 2 * (keyLength + IMPLICIT_IV_LENGTH));
+
+            byte[] client = cryptoInfo(cipherType, keyBlock, 0, 2 * keyLength, keyLength);
+            byte[] server = cryptoInfo(cipherType, keyBlock, keyLength, 2 * keyLength + IMPLICIT_IV_LENGTH, keyLength);
+            return engine.getUseClientMode() ? new byte[][] { client, server } : new byte[][] { server, client };
+        } catch (Exception e) {
+            logger.debug("Failed to derive the kernel TLS crypto info", e);
+            return null;
+        } finally {
+            if (masterKey != null) {
+                Arrays.fill(masterKey, (byte) 0);
+            }
+            if (keyBlock != null) {
+                Arrays.fill(keyBlock, (byte) 0);
+            }
+        }
+    }
+
+    // Layout of struct tls12_crypto_info_aes_gcm_*: version, cipher_type, iv, key, salt, rec_seq
+    private static byte[] cryptoInfo(int cipherType, byte[] keyBlock, int keyOffset, int ivOffset, int keyLength) {
+        byte[] info = new byte[4 + EXPLICIT_IV_LENGTH + keyLength + IMPLICIT_IV_LENGTH + SEQUENCE_LENGTH];
+        info[0] = (byte) (TLS_1_2_VERSION >>> 8);
+        info[1] = (byte) TLS_1_2_VERSION;
+        info[2] = (byte) (cipherType >>> 8);
+        info[3] = (byte) cipherType;
+        // The Finished message was the first record protected by the negotiated keys, so both the sequence number and
+        // the explicit nonce, which OpenSSL derives from the sequence number, continue with 1.
+        info[4 + EXPLICIT_IV_LENGTH - 1] = 1;
+        System.arraycopy(keyBlock, keyOffset, info, 4 + EXPLICIT_IV_LENGTH, keyLength);
+        System.arraycopy(keyBlock, ivOffset, info, 4 + EXPLICIT_IV_LENGTH + keyLength, IMPLICIT_IV_LENGTH);
+        info[info.length - 1] = 1;
+        return info;
+    }
+
+    /**
+     * The TLSv1.2 pseudorandom function, see <a href="https://tools.ietf.org/html/rfc5246#section-5">RFC5246</a>.
+     */
+    static byte[] prf(String algorithm, byte[] secret, byte[] label, byte[] seed, int length)
+            throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(algorithm);
+        mac.init(new SecretKeySpec(secret, algorithm));
+        byte[] labelAndSeed = new byte[label.length + seed.length];
+        System.arraycopy(label, 0, labelAndSeed, 0, label.length);
+        System.arraycopy(seed, 0, labelAndSeed, label.length, seed.length);
+
+        byte[] out = new byte[length];
+        byte[] a = labelAndSeed;
+        for (int written = 0; written < length;) {
+            a = mac.doFinal(a);
+            mac.update(a);
+            byte[] block = mac.doFinal(labelAndSeed);
+            int n = Math.min(block.length, length - written);
+            System.arraycopy(block, 0, out, written, n);
+            written += n;
+        }
+        return out;
+    }
+}
@@ -28,6 +28,7 @@ import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandler;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelOutboundHandler;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
@@ -56,6 +57,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.SocketChannel;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
@@ -405,6 +407,14 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
     private boolean closeNotify;
     private boolean processTask;
 
+    // Set once the handshake completed if the records should be encrypted and decrypted by the kernel, until
+    // startKernelTls(...) decided which directions can be offloaded.
+    private boolean kernelTlsHandshaken;
+    // Set while the records produced by the engine are flushed, before the encryption is offloaded to the kernel.
+    private boolean kernelTlsTxPending;
+    private boolean kernelTlsTx;
+    private boolean kernelTlsRx;
+
     private int packetLength;
 
     /**
@@ -417,6 +427,7 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
     private volatile long closeNotifyFlushTimeoutMillis = 3000;
     private volatile long closeNotifyReadTimeoutMillis;
     volatile int wrapDataSize = MAX_PLAINTEXT_LENGTH;
+    private volatile boolean kernelTlsOffload;
 
     /**
      * Creates a new instance which runs all delegated tasks directly on the {@link EventExecutor}.
@@ -518,6 +529,48 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
         this.wrapDataSize = wrapDataSize;
     }
 
+    /**
+     * Sets if the encryption and decryption of the records should be offloaded to the kernel (kTLS) once the handshake
+     * completed. This must be set before the handshake completes and is only supported for TLSv1.2 connections with an
+     * AES-GCM cipher suite, negotiated by a {@link SslProvider#OPENSSL} engine whose netty-tcnative version exposes the
+     * master key, over the epoll transport. If not supported the records are encrypted and decrypted as usual.
+     * <p>
+     * Once offloaded this handler passes all writes, including {@link io.netty.channel.FileRegion}s which are then sent
+     * via {@code sendfile(...)}, and reads through without copying them. The decryption is only offloaded if no data
+     * was received after the handshake yet. As the records are not processed by the {@link SSLEngine} anymore no
+     * {@code close_notify} is sent on close, and receiving one fails the read.
+     */
+    @UnstableApi
+    public final void setKernelTlsOffload(boolean kernelTlsOffload) {
+        this.kernelTlsOffload = kernelTlsOffload;
+    }
+
+    /**
+     * Returns {@code true} if the records should be encrypted and decrypted by the kernel once the handshake completed.
+     */
+    @UnstableApi
+    public final boolean isKernelTlsOffload() {
+        return kernelTlsOffload;
+    }
+
+    /**
+     * Returns {@code true} if the encryption of the records is done by the kernel. Must be called from the
+     * {@link io.netty.channel.EventLoop} of the {@link Channel}.
+     */
+    @UnstableApi
+    public final boolean isKernelTlsTx() {
+        return kernelTlsTx;
+    }
+
+    /**
+     * Returns {@code true} if the decryption of the records is done by the kernel. Must be called from the
+     * {@link io.netty.channel.EventLoop} of the {@link Channel}.
+     */
+    @UnstableApi
+    public final boolean isKernelTlsRx() {
+        return kernelTlsRx;
+    }
+
     /**
      * @deprecated use {@link #getCloseNotifyFlushTimeoutMillis()}
      */
@@ -757,7 +810,10 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
 
     @Override
     public void write(final ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
-        if (!(msg instanceof ByteBuf)) {
+        if (kernelTlsTx) {
+            // The kernel encrypts the records.
+            ctx.write(msg, promise);
+        } else if (!(msg instanceof ByteBuf)) {
             UnsupportedMessageTypeException exception = new UnsupportedMessageTypeException(msg, ByteBuf.class);
             ReferenceCountUtil.safeRelease(msg);
             promise.setFailure(exception);
@@ -771,6 +827,10 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
 
     @Override
     public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (kernelTlsTx) {
+            ctx.flush();
+            return;
+        }
         // Do not encrypt the first write request if this handler is
         // created with startTLS flag turned on.
         if (startTls && !sentFirstMessage) {
@@ -817,6 +877,18 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
 
     // This method will not call setHandshakeFailure(...) !
     private void wrap(ChannelHandlerContext ctx, boolean inUnwrap) throws SSLException {
+        if (kernelTlsTx) {
+            // Write the data which was held back while the encryption was offloaded to the kernel.
+            pendingUnencryptedWrites.writeAndRemoveAll(ctx);
+            if (inUnwrap) {
+                needsFlush = true;
+            }
+            return;
+        }
+        if (kernelTlsTxPending) {
+            // Hold back the data until startKernelTls(...) decided if it is encrypted by the kernel.
+            return;
+        }
         ByteBuf out = null;
         ChannelPromise promise = null;
         ByteBufAllocator alloc = ctx.alloc();
@@ -827,6 +899,10 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
             // Only continue to loop if the handler was not removed in the meantime.
             // See https://github.com/netty/netty/issues/5860
             outer: while (!ctx.isRemoved()) {
+                if (kernelTlsHandshaken) {
+                    // Do not wrap any data with the engine as its encryption may be offloaded to the kernel.
+                    break;
+                }
                 promise = ctx.newPromise();
                 buf = wrapDataSize > 0 ?
                         pendingUnencryptedWrites.remove(alloc, wrapDataSize, promise) :
@@ -896,6 +972,10 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
             }
             finishWrap(ctx, out, promise, inUnwrap, needUnwrap);
         }
+        if (kernelTlsHandshaken && !inUnwrap && !startKernelTls(ctx, !internalBuffer().isReadable())) {
+            // The encryption was not offloaded, so wrap the data with the engine.
+            wrap(ctx, false);
+        }
     }
 
     private void finishWrap(ChannelHandlerContext ctx, ByteBuf out, ChannelPromise promise, boolean inUnwrap,
@@ -957,6 +1037,9 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
                 switch (status) {
                     case FINISHED:
                         setHandshakeSuccess();
+                        if (kernelTlsHandshaken && !inUnwrap) {
+                            startKernelTls(ctx, !internalBuffer().isReadable());
+                        }
                         return false;
                     case NEED_TASK:
                         if (!runDelegatedTasks(inUnwrap)) {
@@ -1263,6 +1346,17 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
         PlatformDependent.throwException(cause);
     }
 
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (kernelTlsRx && msg instanceof ByteBuf && !internalBuffer().isReadable()) {
+            // The kernel decrypted the records already.
+            firedChannelRead = true;
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        super.channelRead(ctx, msg);
+    }
+
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws SSLException {
         if (processTask) {
@@ -1327,6 +1421,10 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
             // Only continue to loop if the handler was not removed in the meantime.
             // See https://github.com/netty/netty/issues/5860
             unwrapLoop: while (!ctx.isRemoved()) {
+                if (kernelTlsHandshaken) {
+                    // Do not unwrap any record after the handshake as the decryption may be offloaded to the kernel.
+                    break;
+                }
                 final SSLEngineResult result = engineType.unwrap(this, packet, offset, length, decodeOut);
                 final Status status = result.getStatus();
                 final HandshakeStatus handshakeStatus = result.getHandshakeStatus();
@@ -1452,6 +1550,12 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
                 }
             }
 
+            if (kernelTlsHandshaken) {
+                // The decryption can only be offloaded if the engine did not receive any record after the handshake.
+                ByteBuf cumulation = internalBuffer();
+                startKernelTls(ctx, packet == cumulation ? packet.writerIndex() == offset : !cumulation.isReadable());
+            }
+
             if (flushedBeforeHandshake && handshakePromise.isDone()) {
                 // We need to call wrap(...) in case there was a flush done before the handshake completed to ensure
                 // we do not stale.
@@ -1737,6 +1841,9 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
      * Notify all the handshake futures about the successfully handshake
      */
     private void setHandshakeSuccess() {
+        if (kernelTlsOffload && !handshakePromise.isDone() && isKernelTlsSupported()) {
+            kernelTlsHandshaken = true;
+        }
         handshakePromise.trySuccess(ctx.channel());
 
         if (logger.isDebugEnabled()) {
@@ -1854,7 +1961,76 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
         }
     }
 
+    /**
+     * Offloads the encryption and, if {@code rx} is {@code true}, the decryption of the records to the kernel once the
+     * handshake completed. Returns {@code true} if the data written in the meantime is held back until the records
+     * produced by the engine were written, after which the encryption is offloaded.
+     */
+    private boolean startKernelTls(final ChannelHandlerContext ctx, boolean rx) {
+        kernelTlsHandshaken = false;
+        final byte[][] cryptoInfos = kernelTlsCryptoInfos();
+        if (cryptoInfos == null) {
+            return false;
+        }
+        final ChannelConfig config = ctx.channel().config();
+        if (rx) {
+            kernelTlsRx = setKernelTlsOption(config, KernelTls.TLS_RX, cryptoInfos[1]);
+        }
+        kernelTlsTxPending = true;
+        // All records produced by the engine, including the Finished message, must be written to the socket before
+        // the kernel encrypts everything that is written to it.
+        ctx.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                kernelTlsTxPending = false;
+                if (future.isSuccess() && !outboundClosed) {
+                    kernelTlsTx = setKernelTlsOption(config, KernelTls.TLS_TX, cryptoInfos[0]);
+                }
+                if (!ctx.isRemoved() && pendingUnencryptedWrites != null && !pendingUnencryptedWrites.isEmpty()) {
+                    try {
+                        wrapAndFlush(ctx);
+                    } catch (SSLException e) {
+                        ctx.fireExceptionCaught(e);
+                    }
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if the crypto infos for kTLS can be derived from the {@link SSLEngine}.
+     * Visible only for testing!
+     */
+    boolean isKernelTlsSupported() {
+        return KernelTls.isSupported(engine);
+    }
+
+    /**
+     * Returns the crypto infos for the transmit and the receive direction, see
+     * {@link KernelTls#cryptoInfos(SSLEngine)}.
+     * Visible only for testing!
+     */
+    byte[][] kernelTlsCryptoInfos() {
+        return KernelTls.cryptoInfos(engine);
+    }
+
+    private boolean setKernelTlsOption(ChannelConfig config, ChannelOption<byte[]> option, byte[] cryptoInfo) {
+        try {
+            return config.setOption(option, cryptoInfo);
+        } catch (ChannelException e) {
+            logger.debug("{} Failed to offload TLS to the kernel.", ctx.channel(), e);
+            return false;
+        } finally {
+            Arrays.fill(cryptoInfo, (byte) 0);
+        }
+    }
+
     private void flush(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        if (kernelTlsTx) {
+            ctx.writeAndFlush(Unpooled.EMPTY_BUFFER, promise);
+            return;
+        }
         if (pendingUnencryptedWrites != null) {
             pendingUnencryptedWrites.add(Unpooled.EMPTY_BUFFER, promise);
         } else {
@@ -1985,6 +2161,12 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
                 if (localHandshakePromise.isDone()) {
                     return;
                 }
+                EventExecutor executor = ctx.executor();
+                if (!executor.inEventLoop()) {
+                    // The channel was migrated to another EventLoop while the timeout was scheduled.
+                    executor.execute(this);
+                    return;
+                }
                 try {
                     if (localHandshakePromise.tryFailure(HANDSHAKE_TIMED_OUT)) {
                         SslUtils.handleHandshakeFailure(ctx, HANDSHAKE_TIMED_OUT, true);
@@ -23,6 +23,7 @@ import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelMigrationEvent;
 import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.ChannelPromise;
 
@@ -123,13 +124,22 @@ public class IdleStateHandler extends ChannelDuplexHandler {
     private ScheduledFuture<?> allIdleTimeout;
     private boolean firstAllIdleEvent = true;
 
-    private byte state; // 0 - none, 1 - initialized, 2 - destroyed
+    private byte state; // 0 - none, 1 - initialized, 2 - destroyed, 3 - migrating
     private boolean reading;
 
     private long lastChangeCheckTimeStamp;
     private int lastMessageHashCode;
     private long lastPendingWriteBytes;
 
+    // Only used if the idle states are detected by an IdleStateSweeper instead of scheduled tasks.
+    private final IdleStateSweeper sweeper;
+    ChannelHandlerContext sweepCtx;
+    IdleStateHandler sweepPrev;
+    IdleStateHandler sweepNext;
+    private long readerIdleDeadline;
+    private long writerIdleDeadline;
+    private long allIdleDeadline;
+
     /**
      * Creates a new instance firing {@link IdleStateEvent}s.
      *
@@ -189,10 +199,28 @@ public class IdleStateHandler extends ChannelDuplexHandler {
     public IdleStateHandler(boolean observeOutput,
             long readerIdleTime, long writerIdleTime, long allIdleTime,
             TimeUnit unit) {
+        this(null, observeOutput, readerIdleTime, writerIdleTime, allIdleTime, unit);
+    }
+
+    /**
+     * Creates a new instance firing {@link IdleStateEvent}s, whose idle states are detected by the given
+     * {@link IdleStateSweeper} instead of scheduling a task per idle state. The events are fired up to one tick of the
+     * {@link IdleStateSweeper} later than the given idle times, which makes this a good fit for a large number of
+     * mostly idle connections.
+     *
+     * @param sweeper
+     *        the {@link IdleStateSweeper} which detects the idle states, or {@code null} to schedule a task per idle
+     *        state.
+     * @see #IdleStateHandler(boolean, long, long, long, TimeUnit)
+     */
+    public IdleStateHandler(IdleStateSweeper sweeper, boolean observeOutput,
+            long readerIdleTime, long writerIdleTime, long allIdleTime,
+            TimeUnit unit) {
         if (unit == null) {
             throw new NullPointerException("unit");
         }
 
+        this.sweeper = sweeper;
         this.observeOutput = observeOutput;
 
         if (readerIdleTime <= 0) {
@@ -277,6 +305,19 @@ public class IdleStateHandler extends ChannelDuplexHandler {
         super.channelInactive(ctx);
     }
 
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt == ChannelMigrationEvent.MIGRATING && state == 1) {
+            // The timeouts are scheduled again once the channel was registered with its new EventLoop.
+            state = 3;
+            cancelTimeouts();
+        } else if (evt == ChannelMigrationEvent.MIGRATED && state == 3 && ctx.channel().isActive()) {
+            // Usually done by channelRegistered(...) already, but not if the channel was never deregistered.
+            initialize(ctx);
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         if (readerIdleTimeNanos > 0 || allIdleTimeNanos > 0) {
@@ -314,10 +355,23 @@ public class IdleStateHandler extends ChannelDuplexHandler {
             return;
         }
 
+        // Keep the timestamps if the channel was moved to another EventLoop.
+        boolean migrated = state == 3;
         state = 1;
         initOutputChanged(ctx);
 
-        lastReadTime = lastWriteTime = ticksInNanos();
+        if (!migrated) {
+            lastReadTime = lastWriteTime = ticksInNanos();
+        }
+        if (sweeper != null) {
+            readerIdleDeadline = lastReadTime + readerIdleTimeNanos;
+            writerIdleDeadline = lastWriteTime + writerIdleTimeNanos;
+            allIdleDeadline = Math.max(lastReadTime, lastWriteTime) + allIdleTimeNanos;
+            if (readerIdleTimeNanos > 0 || writerIdleTimeNanos > 0 || allIdleTimeNanos > 0) {
+                sweeper.register(ctx, this);
+            }
+            return;
+        }
         if (readerIdleTimeNanos > 0) {
             readerIdleTimeout = schedule(ctx, new ReaderIdleTimeoutTask(ctx),
                     readerIdleTimeNanos, TimeUnit.NANOSECONDS);
@@ -348,6 +402,13 @@ public class IdleStateHandler extends ChannelDuplexHandler {
 
     private void destroy() {
         state = 2;
+        cancelTimeouts();
+    }
+
+    private void cancelTimeouts() {
+        if (sweepCtx != null) {
+            sweeper.deregister(this);
+        }
 
         if (readerIdleTimeout != null) {
             readerIdleTimeout.cancel(false);
@@ -449,6 +510,108 @@ public class IdleStateHandler extends ChannelDuplexHandler {
         return false;
     }
 
+    /**
+     * Is called by the {@link IdleStateSweeper} on every tick to fire the {@link IdleStateEvent}s whose deadline
+     * passed.
+     */
+    void sweep(long now) {
+        ChannelHandlerContext ctx = sweepCtx;
+        if (!ctx.channel().isOpen()) {
+            return;
+        }
+        if (readerIdleTimeNanos > 0 && now - readerIdleDeadline >= 0) {
+            long nextDelay = readerIdleDelay(now);
+            if (nextDelay <= 0) {
+                readerIdleDeadline = now + readerIdleTimeNanos;
+                readerIdle(ctx);
+            } else {
+                readerIdleDeadline = now + nextDelay;
+            }
+        }
+        if (writerIdleTimeNanos > 0 && now - writerIdleDeadline >= 0 && sweepCtx != null) {
+            long nextDelay = writerIdleDelay(now);
+            if (nextDelay <= 0) {
+                writerIdleDeadline = now + writerIdleTimeNanos;
+                writerIdle(ctx);
+            } else {
+                writerIdleDeadline = now + nextDelay;
+            }
+        }
+        if (allIdleTimeNanos > 0 && now - allIdleDeadline >= 0 && sweepCtx != null) {
+            long nextDelay = allIdleDelay(now);
+            if (nextDelay <= 0) {
+                allIdleDeadline = now + allIdleTimeNanos;
+                allIdle(ctx);
+            } else {
+                allIdleDeadline = now + nextDelay;
+            }
+        }
+    }
+
+    private long readerIdleDelay(long now) {
+        long nextDelay = readerIdleTimeNanos;
+        if (!reading) {
+            nextDelay -= now - lastReadTime;
+        }
+        return nextDelay;
+    }
+
+    private long writerIdleDelay(long now) {
+        return writerIdleTimeNanos - (now - lastWriteTime);
+    }
+
+    private long allIdleDelay(long now) {
+        long nextDelay = allIdleTimeNanos;
+        if (!reading) {
+            nextDelay -= now - Math.max(lastReadTime, lastWriteTime);
+        }
+        return nextDelay;
+    }
+
+    private void readerIdle(ChannelHandlerContext ctx) {
+        boolean first = firstReaderIdleEvent;
+        firstReaderIdleEvent = false;
+
+        try {
+            IdleStateEvent event = newIdleStateEvent(IdleState.READER_IDLE, first);
+            channelIdle(ctx, event);
+        } catch (Throwable t) {
+            ctx.fireExceptionCaught(t);
+        }
+    }
+
+    private void writerIdle(ChannelHandlerContext ctx) {
+        boolean first = firstWriterIdleEvent;
+        firstWriterIdleEvent = false;
+
+        try {
+            if (hasOutputChanged(ctx, first)) {
+                return;
+            }
+
+            IdleStateEvent event = newIdleStateEvent(IdleState.WRITER_IDLE, first);
+            channelIdle(ctx, event);
+        } catch (Throwable t) {
+            ctx.fireExceptionCaught(t);
+        }
+    }
+
+    private void allIdle(ChannelHandlerContext ctx) {
+        boolean first = firstAllIdleEvent;
+        firstAllIdleEvent = false;
+
+        try {
+            if (hasOutputChanged(ctx, first)) {
+                return;
+            }
+
+            IdleStateEvent event = newIdleStateEvent(IdleState.ALL_IDLE, first);
+            channelIdle(ctx, event);
+        } catch (Throwable t) {
+            ctx.fireExceptionCaught(t);
+        }
+    }
+
     private abstract static class AbstractIdleTask implements Runnable {
 
         private final ChannelHandlerContext ctx;
@@ -477,24 +640,11 @@ public class IdleStateHandler extends ChannelDuplexHandler {
 
         @Override
         protected void run(ChannelHandlerContext ctx) {
-            long nextDelay = readerIdleTimeNanos;
-            if (!reading) {
-                nextDelay -= ticksInNanos() - lastReadTime;
-            }
-
+            long nextDelay = readerIdleDelay(ticksInNanos());
             if (nextDelay <= 0) {
                 // Reader is idle - set a new timeout and notify the callback.
                 readerIdleTimeout = schedule(ctx, this, readerIdleTimeNanos, TimeUnit.NANOSECONDS);
-
-                boolean first = firstReaderIdleEvent;
-                firstReaderIdleEvent = false;
-
-                try {
-                    IdleStateEvent event = newIdleStateEvent(IdleState.READER_IDLE, first);
-                    channelIdle(ctx, event);
-                } catch (Throwable t) {
-                    ctx.fireExceptionCaught(t);
-                }
+                readerIdle(ctx);
             } else {
                 // Read occurred before the timeout - set a new timeout with shorter delay.
                 readerIdleTimeout = schedule(ctx, this, nextDelay, TimeUnit.NANOSECONDS);
@@ -510,26 +660,11 @@ public class IdleStateHandler extends ChannelDuplexHandler {
 
         @Override
         protected void run(ChannelHandlerContext ctx) {
-
-            long lastWriteTime = IdleStateHandler.this.lastWriteTime;
-            long nextDelay = writerIdleTimeNanos - (ticksInNanos() - lastWriteTime);
+            long nextDelay = writerIdleDelay(ticksInNanos());
             if (nextDelay <= 0) {
                 // Writer is idle - set a new timeout and notify the callback.
                 writerIdleTimeout = schedule(ctx, this, writerIdleTimeNanos, TimeUnit.NANOSECONDS);
-
-                boolean first = firstWriterIdleEvent;
-                firstWriterIdleEvent = false;
-
-                try {
-                    if (hasOutputChanged(ctx, first)) {
-                        return;
-                    }
-
-                    IdleStateEvent event = newIdleStateEvent(IdleState.WRITER_IDLE, first);
-                    channelIdle(ctx, event);
-                } catch (Throwable t) {
-                    ctx.fireExceptionCaught(t);
-                }
+                writerIdle(ctx);
             } else {
                 // Write occurred before the timeout - set a new timeout with shorter delay.
                 writerIdleTimeout = schedule(ctx, this, nextDelay, TimeUnit.NANOSECONDS);
@@ -545,29 +680,12 @@ public class IdleStateHandler extends ChannelDuplexHandler {
 
         @Override
         protected void run(ChannelHandlerContext ctx) {
-
-            long nextDelay = allIdleTimeNanos;
-            if (!reading) {
-                nextDelay -= ticksInNanos() - Math.max(lastReadTime, lastWriteTime);
-            }
+            long nextDelay = allIdleDelay(ticksInNanos());
             if (nextDelay <= 0) {
                 // Both reader and writer are idle - set a new timeout and
                 // notify the callback.
                 allIdleTimeout = schedule(ctx, this, allIdleTimeNanos, TimeUnit.NANOSECONDS);
-
-                boolean first = firstAllIdleEvent;
-                firstAllIdleEvent = false;
-
-                try {
-                    if (hasOutputChanged(ctx, first)) {
-                        return;
-                    }
-
-                    IdleStateEvent event = newIdleStateEvent(IdleState.ALL_IDLE, first);
-                    channelIdle(ctx, event);
-                } catch (Throwable t) {
-                    ctx.fireExceptionCaught(t);
-                }
+                allIdle(ctx);
             } else {
                 // Either read or write occurred before the timeout - set a new
                 // timeout with shorter delay.
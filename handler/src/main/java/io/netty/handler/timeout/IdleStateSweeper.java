@@ -0,0 +1,173 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.timeout;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.PlatformDependent;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detects the idle states of all {@link IdleStateHandler}s which were constructed with it by sweeping over them in
+ * coarse ticks, instead of scheduling and rescheduling up to three tasks per {@link IdleStateHandler}. A single task is
+ * scheduled per {@link EventExecutor} as long as it has registered {@link IdleStateHandler}s, which then compares their
+ * last read and write timestamps with the idle times.
+ * <p>
+ * The {@link IdleStateEvent}s are fired up to one tick later than the idle times of the {@link IdleStateHandler}s, so
+ * the tick duration should be small compared to them. An instance is usually shared by all {@link IdleStateHandler}s
+ * of an application.
+ */
+public final class IdleStateSweeper {
+
+    private final long tickNanos;
+    private final ConcurrentMap<EventExecutor, Sweep> sweeps = PlatformDependent.newConcurrentHashMap();
+
+    /**
+     * Creates a new instance which sweeps once per second.
+     */
+    public IdleStateSweeper() {
+        this(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a new instance which sweeps once per the given tick duration.
+     */
+    public IdleStateSweeper(long tickDuration, TimeUnit unit) {
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration: " + tickDuration + " (expected: > 0)");
+        }
+        tickNanos = unit.toNanos(tickDuration);
+    }
+
+    /**
+     * Returns the tick duration in milliseconds.
+     */
+    public long getTickDurationInMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(tickNanos);
+    }
+
+    /**
+     * Returns the number of {@link IdleStateHandler}s which are swept by the given {@link EventExecutor}. Must be
+     * called from the {@link EventExecutor}.
+     */
+    public int size(EventExecutor executor) {
+        assert executor.inEventLoop();
+        Sweep sweep = sweeps.get(executor);
+        return sweep == null ? 0 : sweep.size;
+    }
+
+    void register(ChannelHandlerContext ctx, IdleStateHandler handler) {
+        EventExecutor executor = ctx.executor();
+        assert executor.inEventLoop();
+        Sweep sweep = sweeps.get(executor);
+        if (sweep == null) {
+            sweep = new Sweep(executor);
+            sweeps.put(executor, sweep);
+        }
+        handler.sweepCtx = ctx;
+        sweep.add(handler);
+    }
+
+    void deregister(IdleStateHandler handler) {
+        EventExecutor executor = handler.sweepCtx.executor();
+        assert executor.inEventLoop();
+        Sweep sweep = sweeps.get(executor);
+        sweep.remove(handler);
+        handler.sweepCtx = null;
+        if (sweep.size == 0) {
+            sweep.cancel();
+            sweeps.remove(executor);
+        }
+    }
+
+    /**
+     * Holds the {@link IdleStateHandler}s of a single {@link EventExecutor} in a linked list, so registering and
+     * deregistering them does not allocate.
+     */
+    private final class Sweep implements Runnable {
+        private final EventExecutor executor;
+        private IdleStateHandler head;
+        private IdleStateHandler tail;
+        // The next handler to sweep, which is updated if it is removed while sweeping.
+        private IdleStateHandler cursor;
+        private ScheduledFuture<?> future;
+        int size;
+
+        Sweep(EventExecutor executor) {
+            this.executor = executor;
+        }
+
+        void add(IdleStateHandler handler) {
+            handler.sweepPrev = tail;
+            handler.sweepNext = null;
+            if (tail == null) {
+                head = handler;
+            } else {
+                tail.sweepNext = handler;
+            }
+            tail = handler;
+            if (size++ == 0) {
+                future = executor.scheduleAtFixedRate(this, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        void remove(IdleStateHandler handler) {
+            IdleStateHandler prev = handler.sweepPrev;
+            IdleStateHandler next = handler.sweepNext;
+            if (cursor == handler) {
+                cursor = next;
+            }
+            if (prev == null) {
+                head = next;
+            } else {
+                prev.sweepNext = next;
+            }
+            if (next == null) {
+                tail = prev;
+            } else {
+                next.sweepPrev = prev;
+            }
+            handler.sweepPrev = null;
+            handler.sweepNext = null;
+            size--;
+        }
+
+        void cancel() {
+            if (future != null) {
+                future.cancel(false);
+                future = null;
+            }
+        }
+
+        @Override
+        public void run() {
+            IdleStateHandler handler = head;
+            while (handler != null) {
+                cursor = handler.sweepNext;
+                // Use the clock of the handler, which is also used to record the last read and write.
+                handler.sweep(handler.ticksInNanos());
+                handler = cursor;
+            }
+            cursor = null;
+        }
+    }
+}
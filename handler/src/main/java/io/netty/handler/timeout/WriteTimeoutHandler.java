@@ -24,6 +24,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.EventExecutor;
 
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -198,6 +199,13 @@ public class WriteTimeoutHandler extends ChannelOutboundHandlerAdapter {
 
         @Override
         public void run() {
+            EventExecutor executor = ctx.executor();
+            if (!executor.inEventLoop()) {
+                // The channel was migrated to another EventLoop while the timeout was scheduled, continue there as
+                // the list of tasks must only be accessed from it.
+                executor.execute(this);
+                return;
+            }
             // Was not written yet so issue a write timeout
             // The promise itself will be failed with a ClosedChannelException once the close() was issued
             // See https://github.com/netty/netty/issues/2159
@@ -0,0 +1,432 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultChannelConfig;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.net.ssl.SSLEngine;
+
+import static io.netty.util.internal.StringUtil.decodeHexDump;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class KernelTlsTest {
+
+    private static final String CIPHER_SUITE = "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256";
+    private static final byte[] TX_INFO = { 1, 2, 3 };
+    private static final byte[] RX_INFO = { 4, 5, 6 };
+
+    private static SelfSignedCertificate cert;
+    private static SslContext serverCtx;
+    private static SslContext clientCtx;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        cert = new SelfSignedCertificate();
+        serverCtx = SslContextBuilder.forServer(cert.certificate(), cert.privateKey())
+                .sslProvider(SslProvider.JDK)
+                .protocols(SslUtils.PROTOCOL_TLS_V1_2)
+                .ciphers(Collections.singletonList(CIPHER_SUITE))
+                .build();
+        clientCtx = SslContextBuilder.forClient()
+                .trustManager(InsecureTrustManagerFactory.INSTANCE)
+                .sslProvider(SslProvider.JDK)
+                .protocols(SslUtils.PROTOCOL_TLS_V1_2)
+                .ciphers(Collections.singletonList(CIPHER_SUITE))
+                .build();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        cert.delete();
+    }
+
+    @Test
+    public void testPrfSha256() throws Exception {
+        byte[] secret = decodeHexDump("9bbe436ba940f017b17652849a71db35");
+        byte[] seed = decodeHexDump("a0ba9f936cda311827a6f796ffd5198c");
+        byte[] expected = decodeHexDump(
+                "e3f229ba727be17b8d122620557cd453c2aab21d07c3d495329b52d4e61edb5a" +
+                "6b301791e90d35c9c9a46b4e14baf9af0fa022f7077def17abfd3797c0564bab" +
+                "4fbc91666e9def9b97fce34f796789baa48082d122ee42c5a72e5a5110fff701" +
+                "87347b66");
+        assertArrayEquals(expected, KernelTls.prf("HmacSHA256", secret,
+                "test label".getBytes(CharsetUtil.US_ASCII), seed, expected.length));
+    }
+
+    @Test
+    public void testOffloadTxAndRx() throws Exception {
+        KernelTlsSslHandler clientHandler = new KernelTlsSslHandler(clientCtx, true);
+        KernelTlsChannel client = new KernelTlsChannel(clientHandler);
+        EmbeddedChannel server = new EmbeddedChannel(serverCtx.newHandler(UnpooledByteBufAllocator.DEFAULT));
+        try {
+            handshake(client, server);
+
+            assertTrue(clientHandler.isKernelTlsTx());
+            assertTrue(clientHandler.isKernelTlsRx());
+            assertArrayEquals(TX_INFO, client.config.tx);
+            assertArrayEquals(RX_INFO, client.config.rx);
+            // The keys must not stay on the heap once they were passed to the kernel.
+            assertArrayEquals(new byte[TX_INFO.length], clientHandler.cryptoInfos[0]);
+            assertArrayEquals(new byte[RX_INFO.length], clientHandler.cryptoInfos[1]);
+
+            // The records are encrypted and decrypted by the kernel, so the data is passed through as is.
+            assertTrue(client.writeOutbound(Unpooled.copiedBuffer("hello", CharsetUtil.US_ASCII)));
+            assertData("hello", readOutbound(client));
+            assertTrue(client.writeInbound(Unpooled.copiedBuffer("world", CharsetUtil.US_ASCII)));
+            assertData("world", client.<ByteBuf>readInbound());
+        } finally {
+            client.finishAndReleaseAll();
+            server.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testWritesHeldBackUntilFinishedFlushed() throws Exception {
+        HoldingHandler holder = new HoldingHandler();
+        KernelTlsSslHandler serverHandler = new KernelTlsSslHandler(serverCtx, false);
+        KernelTlsChannel server = new KernelTlsChannel(holder, serverHandler);
+        EmbeddedChannel client = new EmbeddedChannel(clientCtx.newHandler(UnpooledByteBufAllocator.DEFAULT));
+        try {
+            // The server completes the handshake once it received the Finished message of the client, which is the
+            // last message of the client.
+            forward(client, server);
+            forward(server, client);
+            holder.hold = true;
+            forward(client, server);
+            assertTrue(serverHandler.handshakeFuture().isSuccess());
+            assertTrue(serverHandler.isKernelTlsRx());
+            assertFalse(serverHandler.isKernelTlsTx());
+            assertNull(server.config.tx);
+            assertFalse(holder.pending.isEmpty());
+
+            // The data must not be written until the Finished message of the server was written, as the kernel
+            // encrypts everything that is written to the socket afterwards.
+            ChannelFuture future = server.writeAndFlush(Unpooled.copiedBuffer("hello", CharsetUtil.US_ASCII));
+            assertFalse(future.isDone());
+            for (Object msg : holder.pending) {
+                assertFalse(isData("hello", (ByteBuf) msg));
+            }
+
+            holder.release();
+            assertTrue(future.isSuccess());
+            assertTrue(serverHandler.isKernelTlsTx());
+            assertArrayEquals(TX_INFO, server.config.tx);
+
+            List<ByteBuf> written = new ArrayList<ByteBuf>();
+            for (;;) {
+                ByteBuf buf = readOutbound(server);
+                if (buf == null) {
+                    break;
+                }
+                written.add(buf);
+            }
+            assertTrue(written.size() > 1);
+            ByteBuf last = written.remove(written.size() - 1);
+            assertData("hello", last);
+            // Make sure the client can complete the handshake with the records that were held back.
+            for (ByteBuf buf : written) {
+                client.writeInbound(buf);
+            }
+            assertTrue(client.pipeline().get(SslHandler.class).handshakeFuture().isSuccess());
+        } finally {
+            client.finishAndReleaseAll();
+            server.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testRxNotOffloadedIfDataFollowsFinished() throws Exception {
+        KernelTlsSslHandler clientHandler = new KernelTlsSslHandler(clientCtx, true);
+        KernelTlsChannel client = new KernelTlsChannel(clientHandler);
+        EmbeddedChannel server = new EmbeddedChannel(serverCtx.newHandler(UnpooledByteBufAllocator.DEFAULT));
+        try {
+            forward(client, server);
+            forward(server, client);
+            forward(client, server);
+            // Send the Finished message of the server and application data in one read.
+            assertTrue(server.writeOutbound(Unpooled.copiedBuffer("hello", CharsetUtil.US_ASCII)));
+            ByteBuf records = Unpooled.buffer();
+            for (;;) {
+                ByteBuf buf = server.readOutbound();
+                if (buf == null) {
+                    break;
+                }
+                records.writeBytes(buf);
+                buf.release();
+            }
+            assertTrue(client.writeInbound(records));
+            assertTrue(clientHandler.handshakeFuture().isSuccess());
+
+            assertTrue(clientHandler.isKernelTlsTx());
+            assertFalse(clientHandler.isKernelTlsRx());
+            assertArrayEquals(TX_INFO, client.config.tx);
+            assertNull(client.config.rx);
+            // The record which followed the Finished message was decrypted by the engine.
+            assertData("hello", client.<ByteBuf>readInbound());
+        } finally {
+            client.finishAndReleaseAll();
+            server.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testFallbackIfRejectedByKernel() throws Exception {
+        KernelTlsSslHandler clientHandler = new KernelTlsSslHandler(clientCtx, true);
+        KernelTlsChannel client = new KernelTlsChannel(clientHandler);
+        client.config.reject = true;
+        testFallback(clientHandler, client);
+    }
+
+    @Test
+    public void testFallbackIfNotSupportedByTransport() throws Exception {
+        KernelTlsSslHandler clientHandler = new KernelTlsSslHandler(clientCtx, true);
+        testFallback(clientHandler, new EmbeddedChannel(clientHandler));
+    }
+
+    @Test
+    public void testFallbackIfCipherSuiteNotSupported() throws Exception {
+        KernelTlsSslHandler clientHandler = new KernelTlsSslHandler(clientCtx, true);
+        clientHandler.cryptoInfos = null;
+        KernelTlsChannel client = new KernelTlsChannel(clientHandler);
+        testFallback(clientHandler, client);
+        assertNull(client.config.tx);
+        assertNull(client.config.rx);
+    }
+
+    @Test
+    public void testNotOffloadedIfDisabled() throws Exception {
+        KernelTlsSslHandler clientHandler = new KernelTlsSslHandler(clientCtx, true);
+        clientHandler.setKernelTlsOffload(false);
+        KernelTlsChannel client = new KernelTlsChannel(clientHandler);
+        testFallback(clientHandler, client);
+        assertNull(client.config.tx);
+        assertNull(client.config.rx);
+    }
+
+    private static void testFallback(SslHandler clientHandler, EmbeddedChannel client) throws Exception {
+        EmbeddedChannel server = new EmbeddedChannel(serverCtx.newHandler(UnpooledByteBufAllocator.DEFAULT));
+        try {
+            handshake(client, server);
+            assertFalse(clientHandler.isKernelTlsTx());
+            assertFalse(clientHandler.isKernelTlsRx());
+
+            // The records are still encrypted and decrypted by the engine.
+            client.writeOutbound(Unpooled.copiedBuffer("hello", CharsetUtil.US_ASCII));
+            forward(client, server);
+            assertData("hello", server.<ByteBuf>readInbound());
+            server.writeOutbound(Unpooled.copiedBuffer("world", CharsetUtil.US_ASCII));
+            forward(server, client);
+            assertData("world", client.<ByteBuf>readInbound());
+        } finally {
+            client.finishAndReleaseAll();
+            server.finishAndReleaseAll();
+        }
+    }
+
+    private static void handshake(EmbeddedChannel client, EmbeddedChannel server) {
+        SslHandler clientHandler = client.pipeline().get(SslHandler.class);
+        SslHandler serverHandler = server.pipeline().get(SslHandler.class);
+        while (!clientHandler.handshakeFuture().isDone() || !serverHandler.handshakeFuture().isDone()) {
+            if (!forward(client, server) && !forward(server, client)) {
+                break;
+            }
+        }
+        assertTrue(clientHandler.handshakeFuture().isSuccess());
+        assertTrue(serverHandler.handshakeFuture().isSuccess());
+    }
+
+    private static boolean forward(EmbeddedChannel from, EmbeddedChannel to) {
+        boolean forwarded = false;
+        for (;;) {
+            ByteBuf buf = readOutbound(from);
+            if (buf == null) {
+                return forwarded;
+            }
+            to.writeInbound(buf);
+            forwarded = true;
+        }
+    }
+
+    /**
+     * Reads the next outbound buffer, skipping the empty ones which are only written to get notified once everything
+     * before was flushed.
+     */
+    private static ByteBuf readOutbound(EmbeddedChannel channel) {
+        for (;;) {
+            ByteBuf buf = channel.readOutbound();
+            if (buf == null || buf.isReadable()) {
+                return buf;
+            }
+            buf.release();
+        }
+    }
+
+    private static boolean isData(String expected, ByteBuf buf) {
+        return expected.equals(buf.toString(CharsetUtil.US_ASCII));
+    }
+
+    private static void assertData(String expected, ByteBuf buf) {
+        try {
+            assertEquals(expected, buf.toString(CharsetUtil.US_ASCII));
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * {@link SslHandler} which pretends that the crypto infos can be derived from the JDK {@link SSLEngine}.
+     */
+    private static final class KernelTlsSslHandler extends SslHandler {
+        byte[][] cryptoInfos = { TX_INFO.clone(), RX_INFO.clone() };
+
+        KernelTlsSslHandler(SslContext ctx, boolean client) {
+            super(ctx.newEngine(UnpooledByteBufAllocator.DEFAULT));
+            assertEquals(client, engine().getUseClientMode());
+            setKernelTlsOffload(true);
+        }
+
+        @Override
+        boolean isKernelTlsSupported() {
+            return true;
+        }
+
+        @Override
+        byte[][] kernelTlsCryptoInfos() {
+            return cryptoInfos;
+        }
+    }
+
+    /**
+     * {@link ChannelConfig} which accepts the kTLS options like the one of the epoll transport.
+     */
+    private static final class KernelTlsConfig extends DefaultChannelConfig {
+        boolean reject;
+        byte[] tx;
+        byte[] rx;
+
+        KernelTlsConfig(EmbeddedChannel channel) {
+            super(channel);
+        }
+
+        @Override
+        public <T> boolean setOption(ChannelOption<T> option, T value) {
+            if (option == KernelTls.TLS_TX || option == KernelTls.TLS_RX) {
+                if (reject) {
+                    // Like setsockopt(..., TCP_ULP, "tls") fails if the tls module is not available.
+                    throw new ChannelException("Protocol not available");
+                }
+                byte[] cryptoInfo = ((byte[]) value).clone();
+                if (option == KernelTls.TLS_TX) {
+                    tx = cryptoInfo;
+                } else {
+                    rx = cryptoInfo;
+                }
+                return true;
+            }
+            return super.setOption(option, value);
+        }
+    }
+
+    private static final class KernelTlsChannel extends EmbeddedChannel {
+        final KernelTlsConfig config = new KernelTlsConfig(this);
+
+        KernelTlsChannel(ChannelHandler... handlers) throws Exception {
+            super(DefaultChannelId.newInstance(), false, false, handlers);
+            register();
+        }
+
+        @Override
+        public ChannelConfig config() {
+            return config;
+        }
+    }
+
+    /**
+     * Holds back all writes, like a socket whose send buffer is full, until {@link #release()} is called.
+     */
+    private static final class HoldingHandler extends ChannelOutboundHandlerAdapter {
+        final List<Object> pending = new ArrayList<Object>();
+        private final List<ChannelPromise> promises = new ArrayList<ChannelPromise>();
+        private ChannelHandlerContext ctx;
+        boolean hold;
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            this.ctx = ctx;
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            if (hold) {
+                pending.add(msg);
+                promises.add(promise);
+            } else {
+                ctx.write(msg, promise);
+            }
+        }
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) {
+            if (!hold) {
+                ctx.flush();
+            }
+        }
+
+        void release() {
+            hold = false;
+            for (int i = 0; i < pending.size(); i++) {
+                ctx.write(pending.get(i), promises.get(i));
+            }
+            pending.clear();
+            promises.clear();
+            ctx.flush();
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) {
+            for (Object msg : pending) {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+    }
+}
@@ -100,6 +100,37 @@ public class IdleStateHandlerTest {
         }
     }
 
+    @Test
+    public void testReaderIdleWithSweeper() throws Exception {
+        IdleStateSweeper sweeper = new IdleStateSweeper(1, TimeUnit.MILLISECONDS);
+        final List<Object> events = new ArrayList<Object>();
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new IdleStateHandler(sweeper, false, 10L, 0L, 0L, TimeUnit.MILLISECONDS),
+                new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+                        events.add(evt);
+                    }
+                });
+        try {
+            assertEquals(1, sweeper.size(channel.eventLoop()));
+
+            Thread.sleep(50L);
+            channel.runPendingTasks();
+            assertEquals(1, events.size());
+            assertSame(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT, events.get(0));
+
+            // Reading resets the idle state.
+            channel.writeInbound("Hello, World!");
+            channel.runPendingTasks();
+            assertEquals(1, events.size());
+            assertEquals("Hello, World!", channel.readInbound());
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+        assertEquals(0, sweeper.size(channel.eventLoop()));
+    }
+
     @Test
     public void testReaderNotIdle() throws Exception {
         TestableIdleStateHandler idleStateHandler = new TestableIdleStateHandler(
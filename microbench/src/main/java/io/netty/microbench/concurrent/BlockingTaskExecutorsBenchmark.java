@@ -0,0 +1,131 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.concurrent;
+
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.VirtualThreadEventExecutorGroup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares running blocking tasks of many {@link EventExecutor}s, as used for many
+ * {@link io.netty.channel.ChannelHandlerContext}s, on a {@link DefaultEventExecutorGroup} and on a
+ * {@link VirtualThreadEventExecutorGroup}. Requires Java 21 or later for the latter.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BlockingTaskExecutorsBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "1000" })
+    public int executors;
+
+    @Param({ "100", "1000" })
+    public int blockingMicros;
+
+    public abstract static class GroupState {
+        private EventExecutorGroup group;
+        EventExecutor[] ordered;
+
+        abstract EventExecutorGroup newGroup();
+
+        @Setup
+        public void setup(BlockingTaskExecutorsBenchmark benchmark) {
+            group = newGroup();
+            ordered = new EventExecutor[benchmark.executors];
+            for (int i = 0; i < ordered.length; i++) {
+                ordered[i] = group.next();
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws InterruptedException {
+            group.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS).await();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class DefaultGroup extends GroupState {
+        // Only the DefaultEventExecutorGroup has a fixed number of threads.
+        @Param({ "16", "256" })
+        public int threads;
+
+        @Override
+        EventExecutorGroup newGroup() {
+            return new DefaultEventExecutorGroup(threads);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class VirtualGroup extends GroupState {
+        @Override
+        EventExecutorGroup newGroup() {
+            return new VirtualThreadEventExecutorGroup();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public void defaultGroup(DefaultGroup group) throws InterruptedException {
+        blockingTaskPerExecutor(group.ordered);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public void virtualGroup(VirtualGroup group) throws InterruptedException {
+        blockingTaskPerExecutor(group.ordered);
+    }
+
+    /**
+     * Submits one blocking task to each {@link EventExecutor} and waits until all of them completed.
+     */
+    private void blockingTaskPerExecutor(EventExecutor[] ordered) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(ordered.length);
+        final long blockingNanos = TimeUnit.MICROSECONDS.toNanos(blockingMicros);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(blockingNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    latch.countDown();
+                }
+            }
+        };
+        for (EventExecutor executor: ordered) {
+            executor.execute(task);
+        }
+        latch.await();
+    }
+}
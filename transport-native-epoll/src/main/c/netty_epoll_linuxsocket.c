@@ -21,11 +21,15 @@
  */
 #define _GNU_SOURCE
 
+#include <stdint.h>
 #include <stdlib.h>
 #include <string.h>
 #include <errno.h>
+#include <fcntl.h>
 #include <netinet/in.h>
 #include <sys/sendfile.h>
+#include <linux/errqueue.h>
+#include <linux/filter.h>
 #include <linux/tcp.h> // TCP_NOTSENT_LOWAT is a linux specific define
 
 #include "netty_epoll_linuxsocket.h"
@@ -55,6 +59,71 @@
 #define SO_BUSY_POLL 46
 #endif
 
+#ifndef SOL_UDP
+#define SOL_UDP 17
+#endif
+
+// UDP_SEGMENT is defined in linux 4.18. We define this here so older kernels can compile.
+#ifndef UDP_SEGMENT
+#define UDP_SEGMENT 103
+#endif
+
+// UDP_GRO is defined in linux 5.0. We define this here so older kernels can compile.
+#ifndef UDP_GRO
+#define UDP_GRO 104
+#endif
+
+// SO_ZEROCOPY and MSG_ZEROCOPY are defined in linux 4.14. We define these here so older kernels can compile.
+#ifndef SO_ZEROCOPY
+#define SO_ZEROCOPY 60
+#endif
+
+#ifndef MSG_ZEROCOPY
+#define MSG_ZEROCOPY 0x4000000
+#endif
+
+#ifndef SO_EE_ORIGIN_ZEROCOPY
+#define SO_EE_ORIGIN_ZEROCOPY 5
+#endif
+
+#ifndef SO_EE_CODE_ZEROCOPY_COPIED
+#define SO_EE_CODE_ZEROCOPY_COPIED 1
+#endif
+
+// SO_INCOMING_CPU is defined in linux 3.19. We define this here so older kernels can compile.
+#ifndef SO_INCOMING_CPU
+#define SO_INCOMING_CPU 49
+#endif
+
+// SO_ATTACH_REUSEPORT_CBPF is defined in linux 4.5. We define this here so older kernels can compile.
+#ifndef SO_ATTACH_REUSEPORT_CBPF
+#define SO_ATTACH_REUSEPORT_CBPF 51
+#endif
+
+// TCP_ULP and SOL_TLS are defined in linux 4.13. We define these here so older kernels can compile.
+#ifndef TCP_ULP
+#define TCP_ULP 31
+#endif
+
+#ifndef SOL_TLS
+#define SOL_TLS 282
+#endif
+
+#ifndef TLS_TX
+#define TLS_TX 1
+#endif
+
+#ifndef TLS_RX
+#define TLS_RX 2
+#endif
+
+// The largest struct tls12_crypto_info_* used, which is tls12_crypto_info_aes_gcm_256.
+#define TLS_CRYPTO_INFO_MAX_SIZE 56
+
+#ifndef SKF_AD_CPU
+#define SKF_AD_CPU 36
+#endif
+
 static jclass peerCredentialsClass = NULL;
 static jmethodID peerCredentialsMethodId = NULL;
 
@@ -120,6 +189,18 @@ static void netty_epoll_linuxsocket_setSoBusyPoll(JNIEnv* env, jclass clazz, jin
     netty_unix_socket_setOption(env, fd, SOL_SOCKET, SO_BUSY_POLL, &optval, sizeof(optval));
 }
 
+static void netty_epoll_linuxsocket_setUdpSegment(JNIEnv* env, jclass clazz, jint fd, jint optval) {
+    netty_unix_socket_setOption(env, fd, SOL_UDP, UDP_SEGMENT, &optval, sizeof(optval));
+}
+
+static void netty_epoll_linuxsocket_setZeroCopy(JNIEnv* env, jclass clazz, jint fd, jint optval) {
+    netty_unix_socket_setOption(env, fd, SOL_SOCKET, SO_ZEROCOPY, &optval, sizeof(optval));
+}
+
+static void netty_epoll_linuxsocket_setUdpGro(JNIEnv* env, jclass clazz, jint fd, jint optval) {
+    netty_unix_socket_setOption(env, fd, SOL_UDP, UDP_GRO, &optval, sizeof(optval));
+}
+
 static void netty_epoll_linuxsocket_setTcpMd5Sig(JNIEnv* env, jclass clazz, jint fd, jbyteArray address, jint scopeId, jbyteArray key) {
     struct sockaddr_storage addr;
     socklen_t addrSize;
@@ -273,6 +354,30 @@ static jint netty_epoll_linuxsocket_getSoBusyPoll(JNIEnv* env, jclass clazz, jin
     return optval;
 }
 
+static jint netty_epoll_linuxsocket_isZeroCopy(JNIEnv* env, jclass clazz, jint fd) {
+    int optval;
+    if (netty_unix_socket_getOption(env, fd, SOL_SOCKET, SO_ZEROCOPY, &optval, sizeof(optval)) == -1) {
+        return -1;
+    }
+    return optval;
+}
+
+static jint netty_epoll_linuxsocket_isUdpGro(JNIEnv* env, jclass clazz, jint fd) {
+    int optval;
+    if (netty_unix_socket_getOption(env, fd, SOL_UDP, UDP_GRO, &optval, sizeof(optval)) == -1) {
+        return -1;
+    }
+    return optval;
+}
+
+static jint netty_epoll_linuxsocket_getUdpSegment(JNIEnv* env, jclass clazz, jint fd) {
+    int optval;
+    if (netty_unix_socket_getOption(env, fd, SOL_UDP, UDP_SEGMENT, &optval, sizeof(optval)) == -1) {
+        return -1;
+    }
+    return optval;
+}
+
 static jint netty_epoll_linuxsocket_getTcpDeferAccept(JNIEnv* env, jclass clazz, jint fd) {
     int optval;
     if (netty_unix_socket_getOption(env, fd, IPPROTO_TCP, TCP_DEFER_ACCEPT, &optval, sizeof(optval)) == -1) {
@@ -353,17 +458,186 @@ static jlong netty_epoll_linuxsocket_sendFile(JNIEnv* env, jclass clazz, jint fd
 
     return res;
 }
+static jint netty_epoll_linuxsocket_sendSegmented(JNIEnv* env, jclass clazz, jint fd, jlong iovAddress, jint iovcnt,
+                                                  jbyteArray address, jint scopeId, jint port, jint segmentSize) {
+    struct sockaddr_storage addr;
+    socklen_t addrSize;
+    struct msghdr msg;
+    struct cmsghdr* cmsg;
+    char control[CMSG_SPACE(sizeof(uint16_t))];
+
+    memset(&msg, 0, sizeof(msg));
+    memset(control, 0, sizeof(control));
+
+    if (address != NULL) {
+        if (netty_unix_socket_initSockaddr(env, address, scopeId, port, &addr, &addrSize) == -1) {
+            return -1;
+        }
+        msg.msg_name = &addr;
+        msg.msg_namelen = addrSize;
+    }
+    msg.msg_iov = (struct iovec*) (intptr_t) iovAddress;
+    msg.msg_iovlen = iovcnt;
+    msg.msg_control = control;
+    msg.msg_controllen = sizeof(control);
+
+    // Let the kernel split the payload into datagrams of segmentSize bytes.
+    cmsg = CMSG_FIRSTHDR(&msg);
+    cmsg->cmsg_level = SOL_UDP;
+    cmsg->cmsg_type = UDP_SEGMENT;
+    cmsg->cmsg_len = CMSG_LEN(sizeof(uint16_t));
+    *((uint16_t*) CMSG_DATA(cmsg)) = (uint16_t) segmentSize;
+
+    ssize_t res;
+    int err;
+    do {
+        res = sendmsg(fd, &msg, 0);
+        // keep on writing if it was interrupted
+    } while (res == -1 && ((err = errno) == EINTR));
+
+    if (res < 0) {
+        return -err;
+    }
+    return (jint) res;
+}
+
+static jlong netty_epoll_linuxsocket_writevAddressesZeroCopy(JNIEnv* env, jclass clazz, jint fd, jlong memoryAddress, jint length) {
+    struct msghdr msg;
+
+    memset(&msg, 0, sizeof(msg));
+    msg.msg_iov = (struct iovec*) (intptr_t) memoryAddress;
+    msg.msg_iovlen = length;
+
+    ssize_t res;
+    int err;
+    do {
+        res = sendmsg(fd, &msg, MSG_ZEROCOPY);
+        // keep on writing if it was interrupted
+    } while (res == -1 && ((err = errno) == EINTR));
+
+    if (res < 0) {
+        return -err;
+    }
+    return (jlong) res;
+}
+
+static jint netty_epoll_linuxsocket_dup(JNIEnv* env, jclass clazz, jint fd) {
+    int res = fcntl(fd, F_DUPFD_CLOEXEC, 0);
+    if (res < 0) {
+        return -errno;
+    }
+    return res;
+}
+
+static jint netty_epoll_linuxsocket_recvZeroCopyCompletion(JNIEnv* env, jclass clazz, jint fd, jintArray completion) {
+    char control[CMSG_SPACE(sizeof(struct sock_extended_err) + sizeof(struct sockaddr_in6))];
+    struct msghdr msg;
+    struct cmsghdr* cmsg;
+
+    for (;;) {
+        memset(&msg, 0, sizeof(msg));
+        msg.msg_control = control;
+        msg.msg_controllen = sizeof(control);
+
+        ssize_t res;
+        int err;
+        do {
+            res = recvmsg(fd, &msg, MSG_ERRQUEUE);
+            // keep on reading if it was interrupted
+        } while (res == -1 && ((err = errno) == EINTR));
+
+        if (res < 0) {
+            if (err == EAGAIN || err == EWOULDBLOCK) {
+                // The error queue is empty.
+                return 0;
+            }
+            return -err;
+        }
+
+        for (cmsg = CMSG_FIRSTHDR(&msg); cmsg != NULL; cmsg = CMSG_NXTHDR(&msg, cmsg)) {
+            if ((cmsg->cmsg_level == SOL_IP && cmsg->cmsg_type == IP_RECVERR) ||
+                (cmsg->cmsg_level == SOL_IPV6 && cmsg->cmsg_type == IPV6_RECVERR)) {
+                struct sock_extended_err* serr = (struct sock_extended_err*) CMSG_DATA(cmsg);
+                if (serr->ee_errno == 0 && serr->ee_origin == SO_EE_ORIGIN_ZEROCOPY) {
+                    // ee_info and ee_data hold the inclusive range of the completed sendmsg(...) calls.
+                    jint copied = (serr->ee_code & SO_EE_CODE_ZEROCOPY_COPIED) != 0 ? 1 : 0;
+                    jint values[3] = { (jint) serr->ee_info, (jint) serr->ee_data, copied };
+                    (*env)->SetIntArrayRegion(env, completion, 0, 3, values);
+                    return 1;
+                }
+            }
+        }
+        // Not a MSG_ZEROCOPY completion notification, try the next one.
+    }
+}
+static void netty_epoll_linuxsocket_setIncomingCpu(JNIEnv* env, jclass clazz, jint fd, jint optval) {
+    netty_unix_socket_setOption(env, fd, SOL_SOCKET, SO_INCOMING_CPU, &optval, sizeof(optval));
+}
+
+static jint netty_epoll_linuxsocket_getIncomingCpu(JNIEnv* env, jclass clazz, jint fd) {
+     int optval;
+     if (netty_unix_socket_getOption(env, fd, SOL_SOCKET, SO_INCOMING_CPU, &optval, sizeof(optval)) == -1) {
+         return -1;
+     }
+     return optval;
+}
+
+static void netty_epoll_linuxsocket_attachReusePortCpuSteering(JNIEnv* env, jclass clazz, jint fd) {
+    // Select the socket of the reuseport group whose index is the id of the CPU which handles the packet. If there
+    // is no such socket, the kernel falls back to select one by the hash of the packet.
+    struct sock_filter code[] = {
+        { BPF_LD | BPF_W | BPF_ABS, 0, 0, SKF_AD_OFF + SKF_AD_CPU },
+        { BPF_RET | BPF_A, 0, 0, 0 }
+    };
+    struct sock_fprog prog = { .len = sizeof(code) / sizeof(code[0]), .filter = code };
+    netty_unix_socket_setOption(env, fd, SOL_SOCKET, SO_ATTACH_REUSEPORT_CBPF, &prog, sizeof(prog));
+}
+
+static void netty_epoll_linuxsocket_setTlsCryptoInfo(JNIEnv* env, jclass clazz, jint fd, jint direction, jbyteArray info) {
+    // The crypto info is passed in network byte order, while the struct tls_crypto_info header uses the host byte order.
+    jbyte bytes[TLS_CRYPTO_INFO_MAX_SIZE];
+    unsigned char cryptoInfo[TLS_CRYPTO_INFO_MAX_SIZE];
+    jsize len = (*env)->GetArrayLength(env, info);
+    if (len <= 4 || len > TLS_CRYPTO_INFO_MAX_SIZE) {
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "invalid crypto info: ", EINVAL);
+        return;
+    }
+    (*env)->GetByteArrayRegion(env, info, 0, len, bytes);
+    if ((*env)->ExceptionCheck(env) == JNI_TRUE) {
+        return;
+    }
+    uint16_t version = (uint16_t) (((bytes[0] & 0xff) << 8) | (bytes[1] & 0xff));
+    uint16_t cipherType = (uint16_t) (((bytes[2] & 0xff) << 8) | (bytes[3] & 0xff));
+    memcpy(cryptoInfo, &version, sizeof(version));
+    memcpy(cryptoInfo + 2, &cipherType, sizeof(cipherType));
+    memcpy(cryptoInfo + 4, bytes + 4, len - 4);
+
+    // Attaching the tls upper layer protocol fails with EEXIST if it was attached for the other direction already.
+    if (setsockopt(fd, IPPROTO_TCP, TCP_ULP, "tls", sizeof("tls")) < 0 && errno != EEXIST) {
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "setsockopt() failed: ", errno);
+        return;
+    }
+    netty_unix_socket_setOption(env, fd, SOL_TLS, direction == 0 ? TLS_TX : TLS_RX, cryptoInfo, len);
+    memset(cryptoInfo, 0, sizeof(cryptoInfo));
+    memset(bytes, 0, sizeof(bytes));
+}
 // JNI Registered Methods End
 
 // JNI Method Registration Table Begin
 static const JNINativeMethod fixed_method_table[] = {
   { "setTcpCork", "(II)V", (void *) netty_epoll_linuxsocket_setTcpCork },
   { "setSoBusyPoll", "(II)V", (void *) netty_epoll_linuxsocket_setSoBusyPoll },
+  { "setUdpSegment", "(II)V", (void *) netty_epoll_linuxsocket_setUdpSegment },
+  { "setUdpGro", "(II)V", (void *) netty_epoll_linuxsocket_setUdpGro },
+  { "setZeroCopy", "(II)V", (void *) netty_epoll_linuxsocket_setZeroCopy },
   { "setTcpQuickAck", "(II)V", (void *) netty_epoll_linuxsocket_setTcpQuickAck },
   { "setTcpDeferAccept", "(II)V", (void *) netty_epoll_linuxsocket_setTcpDeferAccept },
   { "setTcpNotSentLowAt", "(II)V", (void *) netty_epoll_linuxsocket_setTcpNotSentLowAt },
   { "isTcpCork", "(I)I", (void *) netty_epoll_linuxsocket_isTcpCork },
   { "getSoBusyPoll", "(I)I", (void *) netty_epoll_linuxsocket_getSoBusyPoll },
+  { "getUdpSegment", "(I)I", (void *) netty_epoll_linuxsocket_getUdpSegment },
+  { "isUdpGro", "(I)I", (void *) netty_epoll_linuxsocket_isUdpGro },
+  { "isZeroCopy", "(I)I", (void *) netty_epoll_linuxsocket_isZeroCopy },
   { "getTcpDeferAccept", "(I)I", (void *) netty_epoll_linuxsocket_getTcpDeferAccept },
   { "getTcpNotSentLowAt", "(I)I", (void *) netty_epoll_linuxsocket_getTcpNotSentLowAt },
   { "isTcpQuickAck", "(I)I", (void *) netty_epoll_linuxsocket_isTcpQuickAck },
@@ -385,7 +659,15 @@ static const JNINativeMethod fixed_method_table[] = {
   { "isIpTransparent", "(I)I", (void *) netty_epoll_linuxsocket_isIpTransparent },
   { "isIpRecvOrigDestAddr", "(I)I", (void *) netty_epoll_linuxsocket_isIpRecvOrigDestAddr },
   { "getTcpInfo", "(I[J)V", (void *) netty_epoll_linuxsocket_getTcpInfo },
-  { "setTcpMd5Sig", "(I[BI[B)V", (void *) netty_epoll_linuxsocket_setTcpMd5Sig }
+  { "setTcpMd5Sig", "(I[BI[B)V", (void *) netty_epoll_linuxsocket_setTcpMd5Sig },
+  { "sendSegmented", "(IJI[BIII)I", (void *) netty_epoll_linuxsocket_sendSegmented },
+  { "writevAddressesZeroCopy", "(IJI)J", (void *) netty_epoll_linuxsocket_writevAddressesZeroCopy },
+  { "recvZeroCopyCompletion", "(I[I)I", (void *) netty_epoll_linuxsocket_recvZeroCopyCompletion },
+  { "dup", "(I)I", (void *) netty_epoll_linuxsocket_dup },
+  { "setIncomingCpu", "(II)V", (void *) netty_epoll_linuxsocket_setIncomingCpu },
+  { "getIncomingCpu", "(I)I", (void *) netty_epoll_linuxsocket_getIncomingCpu },
+  { "attachReusePortCpuSteering", "(I)V", (void *) netty_epoll_linuxsocket_attachReusePortCpuSteering },
+  { "setTlsCryptoInfo", "(II[B)V", (void *) netty_epoll_linuxsocket_setTlsCryptoInfo }
   // "sendFile" has a dynamic signature
 };
 
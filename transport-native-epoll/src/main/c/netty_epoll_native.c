@@ -36,6 +36,7 @@
 #include <inttypes.h>
 #include <link.h>
 #include <time.h>
+#include <sched.h>
 
 #include "netty_epoll_linuxsocket.h"
 #include "netty_unix_buffer.h"
@@ -51,11 +52,26 @@
 #define TCP_FASTOPEN 23
 #endif
 
+#ifndef SOL_UDP
+#define SOL_UDP 17
+#endif
+
+// UDP_SEGMENT is defined in linux 4.18. We define this here so older kernels can compile.
+#ifndef UDP_SEGMENT
+#define UDP_SEGMENT 103
+#endif
+
+// UDP_GRO is defined in linux 5.0. We define this here so older kernels can compile.
+#ifndef UDP_GRO
+#define UDP_GRO 104
+#endif
+
 // optional
 extern int epoll_create1(int flags) __attribute__((weak));
 
 #ifdef IO_NETTY_SENDMMSG_NOT_FOUND
 extern int sendmmsg(int sockfd, struct mmsghdr* msgvec, unsigned int vlen, unsigned int flags) __attribute__((weak));
+extern int recvmmsg(int sockfd, struct mmsghdr* msgvec, unsigned int vlen, int flags, struct timespec* timeout) __attribute__((weak));
 
 #ifndef __USE_GNU
 struct mmsghdr {
@@ -67,10 +83,12 @@ struct mmsghdr {
 
 // Those are initialized in the init(...) method and cached for performance reasons
 static jfieldID packetAddrFieldId = NULL;
+static jfieldID packetAddrLenFieldId = NULL;
 static jfieldID packetScopeIdFieldId = NULL;
 static jfieldID packetPortFieldId = NULL;
 static jfieldID packetMemoryAddressFieldId = NULL;
 static jfieldID packetCountFieldId = NULL;
+static jfieldID packetSegmentSizeFieldId = NULL;
 
 // util methods
 static int getSysctlValue(const char * property, int* returnValue) {
@@ -304,6 +322,85 @@ static jint netty_epoll_native_sendmmsg0(JNIEnv* env, jclass clazz, jint fd, job
     return (jint) res;
 }
 
+static jint netty_epoll_native_recvmmsg0(JNIEnv* env, jclass clazz, jint fd, jobjectArray packets, jint offset, jint len) {
+    struct mmsghdr msg[len];
+    struct sockaddr_storage addr[len];
+    // Holds the UDP_GRO control message which contains the size of the coalesced datagrams, if any.
+    char control[len][CMSG_SPACE(sizeof(int))];
+    int i;
+
+    memset(msg, 0, sizeof(msg));
+
+    for (i = 0; i < len; i++) {
+        jobject packet = (*env)->GetObjectArrayElement(env, packets, i + offset);
+
+        msg[i].msg_hdr.msg_name = &addr[i];
+        msg[i].msg_hdr.msg_namelen = (socklen_t) sizeof(struct sockaddr_storage);
+
+        msg[i].msg_hdr.msg_iov = (struct iovec*) (intptr_t) (*env)->GetLongField(env, packet, packetMemoryAddressFieldId);
+        msg[i].msg_hdr.msg_iovlen = (*env)->GetIntField(env, packet, packetCountFieldId);
+
+        msg[i].msg_hdr.msg_control = control[i];
+        msg[i].msg_hdr.msg_controllen = sizeof(control[i]);
+    }
+
+    int res;
+    int err;
+    do {
+       res = recvmmsg(fd, msg, len, 0, NULL);
+       // keep on reading if it was interrupted
+    } while (res == -1 && ((err = errno) == EINTR));
+
+    if (res < 0) {
+        return -err;
+    }
+
+    for (i = 0; i < res; i++) {
+        jobject packet = (*env)->GetObjectArrayElement(env, packets, i + offset);
+        jbyteArray address = (jbyteArray) (*env)->GetObjectField(env, packet, packetAddrFieldId);
+
+        // Store the number of received bytes in the count field.
+        (*env)->SetIntField(env, packet, packetCountFieldId, msg[i].msg_len);
+
+        jint segmentSize = 0;
+        struct cmsghdr* cmsg;
+        for (cmsg = CMSG_FIRSTHDR(&msg[i].msg_hdr); cmsg != NULL; cmsg = CMSG_NXTHDR(&msg[i].msg_hdr, cmsg)) {
+            if (cmsg->cmsg_level == SOL_UDP && cmsg->cmsg_type == UDP_GRO) {
+                // The kernel reports the size as an int, which may not be aligned within the control buffer.
+                int gsoSize;
+                memcpy(&gsoSize, CMSG_DATA(cmsg), sizeof(gsoSize));
+                segmentSize = gsoSize;
+                break;
+            }
+        }
+        (*env)->SetIntField(env, packet, packetSegmentSizeFieldId, segmentSize);
+
+        if (addr[i].ss_family == AF_INET) {
+            struct sockaddr_in* ipaddr = (struct sockaddr_in*) &addr[i];
+
+            (*env)->SetByteArrayRegion(env, address, 0, 4, (jbyte*) &ipaddr->sin_addr.s_addr);
+            (*env)->SetIntField(env, packet, packetAddrLenFieldId, 4);
+            (*env)->SetIntField(env, packet, packetScopeIdFieldId, 0);
+            (*env)->SetIntField(env, packet, packetPortFieldId, ntohs(ipaddr->sin_port));
+        } else {
+            struct sockaddr_in6* ip6addr = (struct sockaddr_in6*) &addr[i];
+
+            if (IN6_IS_ADDR_V4MAPPED(&ip6addr->sin6_addr)) {
+                // IPv4-mapped-on-IPv6, only expose the IPv4 part.
+                (*env)->SetByteArrayRegion(env, address, 0, 4, (jbyte*) &ip6addr->sin6_addr.s6_addr[12]);
+                (*env)->SetIntField(env, packet, packetAddrLenFieldId, 4);
+                (*env)->SetIntField(env, packet, packetScopeIdFieldId, 0);
+            } else {
+                (*env)->SetByteArrayRegion(env, address, 0, 16, (jbyte*) &ip6addr->sin6_addr.s6_addr);
+                (*env)->SetIntField(env, packet, packetAddrLenFieldId, 16);
+                (*env)->SetIntField(env, packet, packetScopeIdFieldId, ip6addr->sin6_scope_id);
+            }
+            (*env)->SetIntField(env, packet, packetPortFieldId, ntohs(ip6addr->sin6_port));
+        }
+    }
+    return (jint) res;
+}
+
 static jstring netty_epoll_native_kernelVersion(JNIEnv* env, jclass clazz) {
     struct utsname name;
 
@@ -324,6 +421,32 @@ static jboolean netty_epoll_native_isSupportingSendmmsg(JNIEnv* env, jclass claz
     return JNI_FALSE;
 }
 
+static jboolean netty_epoll_native_isSupportingRecvmmsg(JNIEnv* env, jclass clazz) {
+    // Use & to avoid warnings with -Wtautological-pointer-compare when recvmmsg is
+    // not weakly defined.
+    if (&recvmmsg == NULL) {
+        return JNI_FALSE;
+    }
+    // GLIBC may provide the symbol while the kernel does not support the syscall (linux < 2.6.33). Probe with an
+    // invalid file descriptor, which fails with EBADF if the syscall exists.
+    if (recvmmsg(-1, NULL, 0, 0, NULL) == -1 && errno == ENOSYS) {
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+static jboolean netty_epoll_native_isSupportingUdpSegment(JNIEnv* env, jclass clazz) {
+    int fd = socket(AF_INET, SOCK_DGRAM, 0);
+    if (fd == -1) {
+        return JNI_FALSE;
+    }
+    // Kernels without UDP GSO support (linux < 4.18) will fail with ENOPROTOOPT.
+    int gsoSize = 512;
+    int res = setsockopt(fd, SOL_UDP, UDP_SEGMENT, &gsoSize, sizeof(gsoSize));
+    close(fd);
+    return res == 0 ? JNI_TRUE : JNI_FALSE;
+}
+
 static jboolean netty_epoll_native_isSupportingTcpFastopen(JNIEnv* env, jclass clazz) {
     int fastopen = 0;
     getSysctlValue("/proc/sys/net/ipv4/tcp_fastopen", &fastopen);
@@ -353,6 +476,26 @@ static jint netty_epoll_native_epollerr(JNIEnv* env, jclass clazz) {
     return EPOLLERR;
 }
 
+static jint netty_epoll_native_errnoENOBUFS(JNIEnv* env, jclass clazz) {
+    return ENOBUFS;
+}
+
+static jint netty_epoll_native_errnoEIO(JNIEnv* env, jclass clazz) {
+    return EIO;
+}
+
+static jint netty_epoll_native_errnoEINVAL(JNIEnv* env, jclass clazz) {
+    return EINVAL;
+}
+
+static jint netty_epoll_native_errnoENOPROTOOPT(JNIEnv* env, jclass clazz) {
+    return ENOPROTOOPT;
+}
+
+static jint netty_epoll_native_errnoEOPNOTSUPP(JNIEnv* env, jclass clazz) {
+    return EOPNOTSUPP;
+}
+
 static jint netty_epoll_native_sizeofEpollEvent(JNIEnv* env, jclass clazz) {
     return sizeof(struct epoll_event);
 }
@@ -391,6 +534,51 @@ static jint netty_epoll_native_tcpMd5SigMaxKeyLen(JNIEnv* env, jclass clazz) {
 
     return TCP_MD5SIG_MAXKEYLEN;
 }
+
+static jint netty_epoll_native_cpuSetSize(JNIEnv* env, jclass clazz) {
+    return CPU_SETSIZE;
+}
+
+static jint netty_epoll_native_setCpuAffinity0(JNIEnv* env, jclass clazz, jint cpu) {
+    if (cpu < 0 || cpu >= CPU_SETSIZE) {
+        return -EINVAL;
+    }
+    cpu_set_t set;
+    CPU_ZERO(&set);
+    CPU_SET(cpu, &set);
+    // Use 0 as pid to only pin the calling thread.
+    if (sched_setaffinity(0, sizeof(set), &set) == -1) {
+        return -errno;
+    }
+    return 0;
+}
+
+static jint netty_epoll_native_allowedCpus0(JNIEnv* env, jclass clazz, jintArray cpus) {
+    cpu_set_t set;
+    CPU_ZERO(&set);
+    // Use 0 as pid to get the CPUs the calling thread is allowed to run on.
+    if (sched_getaffinity(0, sizeof(set), &set) == -1) {
+        return -errno;
+    }
+    jint len = (*env)->GetArrayLength(env, cpus);
+    jint count = 0;
+    int cpu;
+    for (cpu = 0; cpu < CPU_SETSIZE && count < len; cpu++) {
+        if (CPU_ISSET(cpu, &set)) {
+            jint value = cpu;
+            (*env)->SetIntArrayRegion(env, cpus, count++, 1, &value);
+        }
+    }
+    return count;
+}
+
+static jint netty_epoll_native_currentCpu0(JNIEnv* env, jclass clazz) {
+    int cpu = sched_getcpu();
+    if (cpu == -1) {
+        return -errno;
+    }
+    return cpu;
+}
 // JNI Registered Methods End
 
 // JNI Method Registration Table Begin
@@ -400,8 +588,16 @@ static const JNINativeMethod statically_referenced_fixed_method_table[] = {
   { "epollout", "()I", (void *) netty_epoll_native_epollout },
   { "epollrdhup", "()I", (void *) netty_epoll_native_epollrdhup },
   { "epollerr", "()I", (void *) netty_epoll_native_epollerr },
+  { "errnoENOBUFS", "()I", (void *) netty_epoll_native_errnoENOBUFS },
+  { "errnoEIO", "()I", (void *) netty_epoll_native_errnoEIO },
+  { "errnoEINVAL", "()I", (void *) netty_epoll_native_errnoEINVAL },
+  { "errnoENOPROTOOPT", "()I", (void *) netty_epoll_native_errnoENOPROTOOPT },
+  { "errnoEOPNOTSUPP", "()I", (void *) netty_epoll_native_errnoEOPNOTSUPP },
   { "tcpMd5SigMaxKeyLen", "()I", (void *) netty_epoll_native_tcpMd5SigMaxKeyLen },
+  { "cpuSetSize", "()I", (void *) netty_epoll_native_cpuSetSize },
   { "isSupportingSendmmsg", "()Z", (void *) netty_epoll_native_isSupportingSendmmsg },
+  { "isSupportingRecvmmsg", "()Z", (void *) netty_epoll_native_isSupportingRecvmmsg },
+  { "isSupportingUdpSegment", "()Z", (void *) netty_epoll_native_isSupportingUdpSegment },
   { "isSupportingTcpFastopen", "()Z", (void *) netty_epoll_native_isSupportingTcpFastopen },
   { "kernelVersion", "()Ljava/lang/String;", (void *) netty_epoll_native_kernelVersion }
 };
@@ -419,14 +615,18 @@ static const JNINativeMethod fixed_method_table[] = {
   { "epollCtlMod0", "(III)I", (void *) netty_epoll_native_epollCtlMod0 },
   { "epollCtlDel0", "(II)I", (void *) netty_epoll_native_epollCtlDel0 },
   // "sendmmsg0" has a dynamic signature
+  // "recvmmsg0" has a dynamic signature
   { "sizeofEpollEvent", "()I", (void *) netty_epoll_native_sizeofEpollEvent },
   { "offsetofEpollData", "()I", (void *) netty_epoll_native_offsetofEpollData },
-  { "splice0", "(IJIJJ)I", (void *) netty_epoll_native_splice0 }
+  { "splice0", "(IJIJJ)I", (void *) netty_epoll_native_splice0 },
+  { "setCpuAffinity0", "(I)I", (void *) netty_epoll_native_setCpuAffinity0 },
+  { "allowedCpus0", "([I)I", (void *) netty_epoll_native_allowedCpus0 },
+  { "currentCpu0", "()I", (void *) netty_epoll_native_currentCpu0 }
 };
 static const jint fixed_method_table_size = sizeof(fixed_method_table) / sizeof(fixed_method_table[0]);
 
 static jint dynamicMethodsTableSize() {
-    return fixed_method_table_size + 1; // 1 is for the dynamic method signatures.
+    return fixed_method_table_size + 2; // 2 is for the dynamic method signatures.
 }
 
 static JNINativeMethod* createDynamicMethodsTable(const char* packagePrefix) {
@@ -437,6 +637,11 @@ static JNINativeMethod* createDynamicMethodsTable(const char* packagePrefix) {
     dynamicMethod->name = "sendmmsg0";
     dynamicMethod->signature = netty_unix_util_prepend("(I[L", dynamicTypeName);
     dynamicMethod->fnPtr = (void *) netty_epoll_native_sendmmsg0;
+
+    ++dynamicMethod;
+    dynamicMethod->name = "recvmmsg0";
+    dynamicMethod->signature = netty_unix_util_prepend("(I[L", dynamicTypeName);
+    dynamicMethod->fnPtr = (void *) netty_epoll_native_recvmmsg0;
     free(dynamicTypeName);
     return dynamicMethods;
 }
@@ -525,6 +730,11 @@ static jint netty_epoll_native_JNI_OnLoad(JNIEnv* env, const char* packagePrefix
         netty_unix_errors_throwRuntimeException(env, "failed to get field ID: NativeDatagramPacket.addr");
         goto error;
     }
+    packetAddrLenFieldId = (*env)->GetFieldID(env, nativeDatagramPacketCls, "addrLen", "I");
+    if (packetAddrLenFieldId == NULL) {
+        netty_unix_errors_throwRuntimeException(env, "failed to get field ID: NativeDatagramPacket.addrLen");
+        goto error;
+    }
     packetScopeIdFieldId = (*env)->GetFieldID(env, nativeDatagramPacketCls, "scopeId", "I");
     if (packetScopeIdFieldId == NULL) {
         netty_unix_errors_throwRuntimeException(env, "failed to get field ID: NativeDatagramPacket.scopeId");
@@ -547,6 +757,12 @@ static jint netty_epoll_native_JNI_OnLoad(JNIEnv* env, const char* packagePrefix
         goto error;
     }
 
+    packetSegmentSizeFieldId = (*env)->GetFieldID(env, nativeDatagramPacketCls, "segmentSize", "I");
+    if (packetSegmentSizeFieldId == NULL) {
+        netty_unix_errors_throwRuntimeException(env, "failed to get field ID: NativeDatagramPacket.segmentSize");
+        goto error;
+    }
+
     return NETTY_JNI_VERSION;
 
 error:
@@ -569,10 +785,12 @@ error:
        netty_epoll_linuxsocket_JNI_OnUnLoad(env);
    }
    packetAddrFieldId = NULL;
+   packetAddrLenFieldId = NULL;
    packetScopeIdFieldId = NULL;
    packetPortFieldId = NULL;
    packetMemoryAddressFieldId = NULL;
    packetCountFieldId = NULL;
+   packetSegmentSizeFieldId = NULL;
 
    return JNI_ERR;
 }
@@ -586,10 +804,12 @@ static void netty_epoll_native_JNI_OnUnLoad(JNIEnv* env) {
     netty_epoll_linuxsocket_JNI_OnUnLoad(env);
 
     packetAddrFieldId = NULL;
+    packetAddrLenFieldId = NULL;
     packetScopeIdFieldId = NULL;
     packetPortFieldId = NULL;
     packetMemoryAddressFieldId = NULL;
     packetCountFieldId = NULL;
+    packetSegmentSizeFieldId = NULL;
 }
 
 // Invoked by the JVM when statically linked
@@ -388,6 +388,14 @@ abstract class AbstractEpollChannel extends AbstractChannel implements UnixChann
          */
         abstract void epollInReady();
 
+        /**
+         * Called once EPOLLERR event is ready to be processed, before {@link #epollOutReady()} and
+         * {@link #epollInReady()} are called.
+         */
+        void epollErrReady() {
+            // NOOP by default
+        }
+
         final void epollInBefore() {
             maybeMoreDataToRead = false;
         }
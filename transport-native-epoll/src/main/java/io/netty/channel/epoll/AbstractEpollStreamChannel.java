@@ -49,6 +49,7 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.WritableByteChannel;
 import java.util.Queue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import static io.netty.channel.internal.ChannelUtils.MAX_BYTES_PER_GATHERING_WRITE_ATTEMPTED_LOW_THRESHOLD;
 import static io.netty.channel.internal.ChannelUtils.WRITE_STATUS_SNDBUF_FULL;
@@ -84,9 +85,16 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
     // Lazy init these if we need to splice(...)
     private FileDescriptor pipeIn;
     private FileDescriptor pipeOut;
+    // The number of bytes spliced into the pipe which were not spliced out of it yet.
+    private int pipeBytes;
 
     private WritableByteChannel byteChannel;
 
+    // Lazy init these if we need to write via MSG_ZEROCOPY
+    private ZeroCopyCompletionQueue zeroCopyQueue;
+    // Set once the kernel reported that it copied the data of a MSG_ZEROCOPY write anyway.
+    private boolean zeroCopyCopied;
+
     protected AbstractEpollStreamChannel(Channel parent, int fd) {
         this(parent, new LinuxSocket(fd));
     }
@@ -265,6 +273,9 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             return 0;
         }
 
+        if (isZeroCopyWrite(readableBytes)) {
+            return doWriteMultiple(in);
+        }
         if (buf.hasMemoryAddress() || buf.nioBufferCount() == 1) {
             return doWriteBytes(in, buf);
         } else {
@@ -317,6 +328,85 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         return WRITE_STATUS_SNDBUF_FULL;
     }
 
+    /**
+     * Write multiple bytes via {@link IovArray} using {@code MSG_ZEROCOPY}. The written {@link ByteBuf}s are retained
+     * until the kernel reported the completion of the write.
+     * @param in the collection which contains objects to write.
+     * @param array The array which contains the content to write.
+     * @return The value that should be decremented from the write quantum which starts at
+     * {@link ChannelConfig#getWriteSpinCount()}. The typical use cases are as follows:
+     * <ul>
+     *     <li>0 - if no write was attempted. This is appropriate if an empty {@link ByteBuf} (or other empty content)
+     *     is encountered</li>
+     *     <li>1 - if a single call to write data was made to the OS</li>
+     *     <li>{@link ChannelUtils#WRITE_STATUS_SNDBUF_FULL} - if an attempt to write data was made to the OS, but
+     *     no data was accepted</li>
+     * </ul>
+     * @throws Exception If an I/O exception occurs during write.
+     */
+    private int writeBytesMultipleZeroCopy(ChannelOutboundBuffer in, IovArray array) throws Exception {
+        final long expectedWrittenBytes = array.size();
+        assert expectedWrittenBytes != 0;
+        final int cnt = array.count();
+        assert cnt != 0;
+
+        final long localWrittenBytes = socket.writevAddressesZeroCopy(array.memoryAddress(0), cnt);
+        if (localWrittenBytes < 0) {
+            // The kernel was not able to pin the memory, so just copy it this time.
+            return writeBytesMultiple(in, array);
+        }
+        if (localWrittenBytes > 0) {
+            adjustMaxBytesPerGatheringWrite(expectedWrittenBytes, localWrittenBytes, array.maxBytes());
+            if (zeroCopyQueue == null) {
+                zeroCopyQueue = new ZeroCopyCompletionQueue();
+            }
+            // Retain the written buffers before they are removed, as the kernel still references their memory.
+            zeroCopyQueue.add(in, localWrittenBytes);
+            in.removeBytes(localWrittenBytes);
+            return 1;
+        }
+        return WRITE_STATUS_SNDBUF_FULL;
+    }
+
+    /**
+     * Returns {@code true} if a write of {@code bytes} should be done via {@code MSG_ZEROCOPY}.
+     */
+    private boolean isZeroCopyWrite(long bytes) {
+        if (zeroCopyCopied) {
+            return false;
+        }
+        int threshold = zeroCopyThreshold();
+        return threshold >= 0 && bytes >= threshold;
+    }
+
+    /**
+     * Returns the minimal number of bytes that must be written at once to use {@code MSG_ZEROCOPY}, or {@code -1} if
+     * {@code MSG_ZEROCOPY} should not be used.
+     */
+    int zeroCopyThreshold() {
+        return -1;
+    }
+
+    /**
+     * Read the completion notifications of {@code MSG_ZEROCOPY} writes from the error queue of the socket and release
+     * the written {@link ByteBuf}s once the kernel does not reference them anymore.
+     */
+    private void readZeroCopyCompletions() {
+        if (zeroCopyQueue == null || zeroCopyQueue.isEmpty()) {
+            return;
+        }
+        try {
+            if (zeroCopyQueue.readCompletions(socket)) {
+                // The kernel copied the data anyway (for example because the packets were routed via the
+                // loopback device), so there is no benefit in using MSG_ZEROCOPY for this channel.
+                zeroCopyCopied = true;
+            }
+        } catch (IOException e) {
+            // The error will also be reported by the next read or write.
+            logger.debug("Failed to read MSG_ZEROCOPY completions", e);
+        }
+    }
+
     /**
      * Write multiple bytes via {@link ByteBuffer} array.
      * @param in the collection which contains objects to write.
@@ -515,6 +605,9 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         in.forEachFlushedMessage(array);
 
         if (array.count() >= 1) {
+            if (isZeroCopyWrite(array.size())) {
+                return writeBytesMultipleZeroCopy(in, array);
+            }
             // TODO: Handle the case where cnt == 1 specially.
             return writeBytesMultiple(in, array);
         }
@@ -676,13 +769,93 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
 
     @Override
     protected void doClose() throws Exception {
+        LinuxSocket zeroCopySocket = null;
         try {
+            // The completions of MSG_ZEROCOPY writes can only be read as long as the socket is open, so keep a
+            // duplicate of it before it is closed.
+            zeroCopySocket = duplicateForZeroCopyCompletions();
             // Calling super.doClose() first so spliceTo(...) will fail on next call.
             super.doClose();
         } finally {
             safeClosePipe(pipeIn);
             safeClosePipe(pipeOut);
             clearSpliceQueue();
+            if (zeroCopyQueue != null) {
+                lingerZeroCopyWrites(zeroCopySocket);
+            }
+        }
+    }
+
+    /**
+     * Returns a duplicate of the file descriptor if there are {@code MSG_ZEROCOPY} writes which wait for their
+     * completion, or {@code null} otherwise. The duplicate is shutdown as otherwise closing the channel would not
+     * close the connection.
+     */
+    private LinuxSocket duplicateForZeroCopyCompletions() {
+        if (zeroCopyQueue == null || !isRegistered()) {
+            return null;
+        }
+        if (eventLoop().inEventLoop()) {
+            readZeroCopyCompletions();
+        }
+        if (zeroCopyQueue.isEmpty()) {
+            return null;
+        }
+        LinuxSocket duplicate;
+        try {
+            duplicate = socket.duplicate();
+        } catch (IOException e) {
+            logger.debug("Failed to duplicate the socket to wait for MSG_ZEROCOPY completions", e);
+            return null;
+        }
+        try {
+            duplicate.shutdown();
+        } catch (IOException ignore) {
+            // The connection may already be shutdown or reset.
+        }
+        return duplicate;
+    }
+
+    /**
+     * Hand the {@code MSG_ZEROCOPY} writes which wait for their completion over to the {@link EpollEventLoop}, which
+     * releases their {@link ByteBuf}s once the kernel reported their completion via the given duplicate of the
+     * closed socket. If the completions can not be read, the {@link ByteBuf}s are released right away as the socket
+     * was closed.
+     */
+    private void lingerZeroCopyWrites(final LinuxSocket duplicate) {
+        final ZeroCopyCompletionQueue queue = zeroCopyQueue;
+        zeroCopyQueue = null;
+        if (duplicate == null) {
+            releaseZeroCopyWrites(queue, null);
+            return;
+        }
+        final EpollEventLoop loop = (EpollEventLoop) eventLoop();
+        if (loop.inEventLoop()) {
+            loop.addZeroCopyLinger(duplicate, queue);
+        } else {
+            try {
+                loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        loop.addZeroCopyLinger(duplicate, queue);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                try {
+                    duplicate.close();
+                } catch (IOException ignore) {
+                    // ignore
+                }
+                releaseZeroCopyWrites(queue, e);
+            }
+        }
+    }
+
+    private static void releaseZeroCopyWrites(ZeroCopyCompletionQueue queue, Throwable cause) {
+        int released = queue.releaseAll();
+        if (released > 0) {
+            logger.debug("Released the buffers of {} MSG_ZEROCOPY writes of a closed channel which did not complete",
+                    released, cause);
         }
     }
 
@@ -741,6 +914,11 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             return new EpollRecvByteAllocatorStreamingHandle(handle);
         }
 
+        @Override
+        void epollErrReady() {
+            readZeroCopyCompletions();
+        }
+
         @Override
         void epollInReady() {
             final ChannelConfig config = config();
@@ -771,6 +949,11 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
                                 }
                                 continue;
                             } else {
+                                if (spliceTask.isEndOfInput(allocHandle)) {
+                                    // There is nothing left to splice as we received an EOF.
+                                    close = true;
+                                    readPending = false;
+                                }
                                 break;
                             }
                         }
@@ -850,6 +1033,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
     protected abstract class SpliceInTask {
         final ChannelPromise promise;
         int len;
+        int lastSplicedIn;
 
         protected SpliceInTask(int len, ChannelPromise promise) {
             this.promise = promise;
@@ -858,6 +1042,15 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
 
         abstract boolean spliceIn(RecvByteBufAllocator.Handle handle);
 
+        /**
+         * Returns {@code true} if the last {@link #spliceIn(RecvByteBufAllocator.Handle)} did not splice anything
+         * because the remote peer closed the connection. As splice(...) also returns {@code 0} on EOF this relies on
+         * {@link Native#EPOLLRDHUP} and a drained pipe, as a full pipe stops splicing in as well.
+         */
+        boolean isEndOfInput(EpollRecvByteAllocatorHandle handle) {
+            return lastSplicedIn == 0 && handle.isReceivedRdHup();
+        }
+
         protected final int spliceIn(FileDescriptor pipeOut, RecvByteBufAllocator.Handle handle) throws IOException {
             // calculate the maximum amount of data we are allowed to splice
             int length = Math.min(handle.guess(), len);
@@ -872,6 +1065,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
                 length -= localSplicedIn;
             }
 
+            lastSplicedIn = splicedIn;
             return splicedIn;
         }
     }
@@ -913,6 +1107,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
 
                 int splicedIn = spliceIn(pipeOut, handle);
                 if (splicedIn > 0) {
+                    ch.pipeBytes += splicedIn;
                     // Integer.MAX_VALUE is a special value which will result in splice forever.
                     if (len != Integer.MAX_VALUE) {
                         len -= splicedIn;
@@ -948,6 +1143,11 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
                 return true;
             }
         }
+
+        @Override
+        boolean isEndOfInput(EpollRecvByteAllocatorHandle handle) {
+            return ch.pipeBytes == 0 && super.isEndOfInput(handle);
+        }
     }
 
     private final class SpliceOutTask {
@@ -966,6 +1166,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             try {
                 int splicedOut = Native.splice(ch.pipeIn.intValue(), -1, ch.socket.intValue(), -1, len);
                 len -= splicedOut;
+                ch.pipeBytes -= splicedOut;
                 if (len == 0) {
                     if (autoRead) {
                         // AutoRead was used and we spliced everything so start reading again
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.channel.SelectStrategy;
+import io.netty.util.IntSupplier;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SelectStrategy} for an {@link EpollEventLoopGroup} which busy polls via {@link Native#epollBusyWait} for a
+ * configurable spin budget after the last I/O activity and falls back to a blocking {@code epoll_wait} once the
+ * event loop was idle for longer. This keeps the wake-up latency low under load without burning a core while idle.
+ * <p>
+ * Instances are created per event loop by a {@link EpollAdaptiveSelectStrategyFactory} and are only used by the event
+ * loop thread, except for the getters which may be called from any thread.
+ */
+public final class EpollAdaptiveSelectStrategy implements SelectStrategy {
+
+    // The length of the window over which the event rate is measured.
+    private static final long RATE_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final long spinBudgetNanos;
+    private long lastActivityNanos;
+    private long windowStartNanos;
+    private long windowEvents;
+    private volatile double eventRate;
+    private volatile boolean spinning;
+
+    EpollAdaptiveSelectStrategy(long spinBudgetNanos) {
+        this.spinBudgetNanos = spinBudgetNanos;
+        long nanoTime = System.nanoTime();
+        // Start blocking until the first I/O activity.
+        lastActivityNanos = nanoTime - spinBudgetNanos;
+        windowStartNanos = nanoTime;
+    }
+
+    @Override
+    public int calculateStrategy(IntSupplier selectSupplier, boolean hasTasks) throws Exception {
+        if (hasTasks) {
+            return selectSupplier.get();
+        }
+        boolean spinning = System.nanoTime() - lastActivityNanos < spinBudgetNanos;
+        this.spinning = spinning;
+        return spinning ? BUSY_WAIT : SELECT;
+    }
+
+    /**
+     * Called by the event loop with the number of events returned by each poll.
+     */
+    void eventsReady(int ready) {
+        long nanoTime = System.nanoTime();
+        if (ready > 0) {
+            lastActivityNanos = nanoTime;
+            windowEvents += ready;
+        }
+        long windowNanos = nanoTime - windowStartNanos;
+        if (windowNanos >= RATE_WINDOW_NANOS) {
+            eventRate = windowEvents * (double) TimeUnit.SECONDS.toNanos(1) / windowNanos;
+            windowEvents = 0;
+            windowStartNanos = nanoTime;
+        }
+    }
+
+    /**
+     * Returns the spin budget in nanoseconds.
+     */
+    public long spinBudgetNanos() {
+        return spinBudgetNanos;
+    }
+
+    /**
+     * Returns the number of events per second which were processed by the event loop during the last measured
+     * window.
+     */
+    public double eventRate() {
+        return eventRate;
+    }
+
+    /**
+     * Returns {@code true} if the event loop busy polls at the moment, {@code false} if it blocks.
+     */
+    public boolean isSpinning() {
+        return spinning;
+    }
+}
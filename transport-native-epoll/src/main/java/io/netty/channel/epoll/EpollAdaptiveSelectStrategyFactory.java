@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.channel.SelectStrategy;
+import io.netty.channel.SelectStrategyFactory;
+import io.netty.util.internal.ObjectUtil;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SelectStrategyFactory} which creates an {@link EpollAdaptiveSelectStrategy} per event loop of an
+ * {@link EpollEventLoopGroup}.
+ * Pass it to {@link EpollEventLoopGroup#EpollEventLoopGroup(int, SelectStrategyFactory)}.
+ */
+public final class EpollAdaptiveSelectStrategyFactory implements SelectStrategyFactory {
+
+    private static final long DEFAULT_SPIN_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final long spinBudgetNanos;
+    private final List<EpollAdaptiveSelectStrategy> strategies =
+            new CopyOnWriteArrayList<EpollAdaptiveSelectStrategy>();
+
+    /**
+     * Creates a new instance which spins for {@code 1} millisecond after the last I/O activity.
+     */
+    public EpollAdaptiveSelectStrategyFactory() {
+        spinBudgetNanos = DEFAULT_SPIN_BUDGET_NANOS;
+    }
+
+    /**
+     * Creates a new instance which spins for the given budget after the last I/O activity.
+     */
+    public EpollAdaptiveSelectStrategyFactory(long spinBudget, TimeUnit unit) {
+        ObjectUtil.checkNotNull(unit, "unit");
+        spinBudgetNanos = unit.toNanos(ObjectUtil.checkPositiveOrZero(spinBudget, "spinBudget"));
+    }
+
+    @Override
+    public SelectStrategy newSelectStrategy() {
+        EpollAdaptiveSelectStrategy strategy = new EpollAdaptiveSelectStrategy(spinBudgetNanos);
+        strategies.add(strategy);
+        return strategy;
+    }
+
+    /**
+     * Returns the {@link EpollAdaptiveSelectStrategy}s created so far, one per event loop.
+     */
+    public List<EpollAdaptiveSelectStrategy> strategies() {
+        return Collections.unmodifiableList(strategies);
+    }
+}
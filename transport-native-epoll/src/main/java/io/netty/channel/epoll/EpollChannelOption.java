@@ -39,6 +39,18 @@ public final class EpollChannelOption<T> extends UnixChannelOption<T> {
             ChannelOption.valueOf(EpollChannelOption.class, "TCP_DEFER_ACCEPT");
     public static final ChannelOption<Boolean> TCP_QUICKACK = valueOf(EpollChannelOption.class, "TCP_QUICKACK");
     public static final ChannelOption<Integer> SO_BUSY_POLL = valueOf(EpollChannelOption.class, "SO_BUSY_POLL");
+    public static final ChannelOption<Integer> RECVMMSG_BATCH_SIZE =
+            valueOf(EpollChannelOption.class, "RECVMMSG_BATCH_SIZE");
+    public static final ChannelOption<Integer> UDP_SEGMENT = valueOf(EpollChannelOption.class, "UDP_SEGMENT");
+    public static final ChannelOption<Boolean> UDP_GRO = valueOf(EpollChannelOption.class, "UDP_GRO");
+    public static final ChannelOption<Boolean> UDP_GRO_SPLIT = valueOf(EpollChannelOption.class, "UDP_GRO_SPLIT");
+    public static final ChannelOption<Boolean> SO_ZEROCOPY = valueOf(EpollChannelOption.class, "SO_ZEROCOPY");
+    public static final ChannelOption<Integer> SO_INCOMING_CPU =
+            valueOf(EpollChannelOption.class, "SO_INCOMING_CPU");
+    public static final ChannelOption<Integer> ZEROCOPY_THRESHOLD =
+            valueOf(EpollChannelOption.class, "ZEROCOPY_THRESHOLD");
+    public static final ChannelOption<byte[]> TLS_TX = valueOf(EpollChannelOption.class, "TLS_TX");
+    public static final ChannelOption<byte[]> TLS_RX = valueOf(EpollChannelOption.class, "TLS_RX");
 
     public static final ChannelOption<EpollMode> EPOLL_MODE =
             ChannelOption.valueOf(EpollChannelOption.class, "EPOLL_MODE");
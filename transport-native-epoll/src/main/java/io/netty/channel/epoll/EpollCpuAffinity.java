@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * Binds CPU-affine servers, which keep each connection on one CPU all the way from the softirq which received its
+ * packets to its {@link io.netty.channel.ChannelHandler}s.
+ * <p>
+ * Each {@link EventLoop} of an {@link EpollEventLoopGroup} gets its own {@link EpollServerSocketChannel}. All of
+ * these are bound to the same address with {@code SO_REUSEPORT}, and a classic BPF program attached to their
+ * reuseport group selects the listener at the index of the CPU which received the connection. The accepted
+ * {@link Channel}s are served by the {@link EventLoop} of their listener.
+ * <p>
+ * The {@link EventLoop}s are pinned round-robin to the CPUs the process is allowed to run on, as returned by
+ * {@code sched_getaffinity(...)}. So if it may run on all CPUs the {@code n}-th {@link EventLoop} is pinned to CPU
+ * {@code n}, and the connections stay on the CPU which received them. Otherwise the {@code n}-th {@link EventLoop} is
+ * pinned to the {@code n}-th allowed CPU, and connections may be served by another CPU than the one which received
+ * them.
+ * <p>
+ * Connections received by CPUs without a listener, for example because the group has fewer {@link EventLoop}s than
+ * there are CPUs, are distributed by the hash of their addresses like for any reuseport group. As closing a listener
+ * changes the order of the group, the steering is only exact as long as all listeners are bound. Requires Linux
+ * kernel 4.5 or later.
+ */
+public final class EpollCpuAffinity {
+
+    private EpollCpuAffinity() { }
+
+    /**
+     * Bind one listener per {@link EventLoop} of the given {@link EpollEventLoopGroup} to the given address, using
+     * the given {@link ServerBootstrap} as template for each of them. The {@link ServerBootstrap} must be configured
+     * to create {@link EpollServerSocketChannel}s and must not have an {@link io.netty.channel.EventLoopGroup} set, as
+     * the {@link EventLoop} of each listener is used for it and its accepted {@link Channel}s.
+     * <p>
+     * The returned {@link Future} is notified with the listeners, ordered by their index in the reuseport group, once
+     * all of them are bound. If one of them could not be bound, those bound already are closed again.
+     */
+    public static Future<List<Channel>> bind(ServerBootstrap bootstrap, EpollEventLoopGroup group,
+                                             SocketAddress localAddress) {
+        checkNotNull(bootstrap, "bootstrap");
+        checkNotNull(group, "group");
+        checkNotNull(localAddress, "localAddress");
+        if (bootstrap.config().group() != null) {
+            throw new IllegalArgumentException("bootstrap must not have a group set");
+        }
+
+        Promise<List<Channel>> promise = GlobalEventExecutor.INSTANCE.newPromise();
+        final int[] cpus;
+        try {
+            cpus = Native.allowedCpus();
+        } catch (IOException e) {
+            return promise.setFailure(e);
+        }
+        if (cpus.length == 0) {
+            return promise.setFailure(new IllegalStateException("no CPU allowed by sched_getaffinity(...)"));
+        }
+        List<EventLoop> loops = new ArrayList<EventLoop>(group.executorCount());
+        for (EventExecutor loop: group) {
+            loops.add((EventLoop) loop);
+        }
+        bindNext(bootstrap, loops, cpus, localAddress, new ArrayList<Channel>(loops.size()), promise);
+        return promise;
+    }
+
+    /**
+     * Bind the next listener. The listeners are bound one after another, as the reuseport group is ordered by the time
+     * its sockets joined it.
+     */
+    private static void bindNext(final ServerBootstrap bootstrap, final List<EventLoop> loops, final int[] cpus,
+                                 final SocketAddress localAddress, final List<Channel> listeners,
+                                 final Promise<List<Channel>> promise) {
+        final int index = listeners.size();
+        if (index == loops.size()) {
+            promise.setSuccess(Collections.unmodifiableList(listeners));
+            return;
+        }
+
+        final EventLoop loop = loops.get(index);
+        final int cpu = cpus[index % cpus.length];
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Native.setCpuAffinity(cpu);
+                } catch (Throwable cause) {
+                    fail(listeners, promise, cause);
+                    return;
+                }
+
+                // Use the port the first listener was bound to, in case an ephemeral port was requested.
+                SocketAddress address = index == 0 ? localAddress : listeners.get(0).localAddress();
+                bootstrap.clone().group(loop, loop).option(EpollChannelOption.SO_REUSEPORT, true)
+                        .bind(address).addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        if (!future.isSuccess()) {
+                            fail(listeners, promise, future.cause());
+                            return;
+                        }
+                        Channel listener = future.channel();
+                        listeners.add(listener);
+                        if (!(listener instanceof EpollServerSocketChannel)) {
+                            fail(listeners, promise, new IllegalArgumentException(
+                                    "bootstrap must create " + EpollServerSocketChannel.class.getSimpleName()));
+                            return;
+                        }
+                        if (index == 0) {
+                            // The program is shared by all sockets of the reuseport group, including those which join
+                            // it later.
+                            try {
+                                ((EpollServerSocketChannel) listener).socket.attachReusePortCpuSteering();
+                            } catch (Throwable cause) {
+                                fail(listeners, promise, cause);
+                                return;
+                            }
+                        }
+                        bindNext(bootstrap, loops, cpus, localAddress, listeners, promise);
+                    }
+                });
+            }
+        });
+    }
+
+    private static void fail(List<Channel> listeners, Promise<List<Channel>> promise, Throwable cause) {
+        for (Channel listener: listeners) {
+            listener.close();
+        }
+        promise.setFailure(cause);
+    }
+}
@@ -17,6 +17,7 @@ package io.netty.channel.epoll;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.AddressedEnvelope;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelMetadata;
@@ -25,12 +26,13 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.DefaultAddressedEnvelope;
 import io.netty.channel.socket.DatagramChannel;
-import io.netty.channel.socket.DatagramChannelConfig;
 import io.netty.channel.socket.DatagramPacket;
 import io.netty.channel.unix.DatagramSocketAddress;
 import io.netty.channel.unix.Errors;
 import io.netty.channel.unix.IovArray;
 import io.netty.channel.unix.UnixChannelUtil;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.RecyclableArrayList;
 import io.netty.util.internal.StringUtil;
 
 import java.io.IOException;
@@ -43,6 +45,10 @@ import java.net.SocketException;
 import java.nio.ByteBuffer;
 
 import static io.netty.channel.epoll.LinuxSocket.newSocketDgram;
+import static io.netty.channel.unix.Limits.UIO_MAX_IOV;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 /**
  * {@link DatagramChannel} implementation that uses linux EPOLL Edge-Triggered Mode for
@@ -52,13 +58,21 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
     private static final ChannelMetadata METADATA = new ChannelMetadata(true);
     private static final String EXPECTED_TYPES =
             " (expected: " + StringUtil.simpleClassName(DatagramPacket.class) + ", " +
+            StringUtil.simpleClassName(SegmentedDatagramPacket.class) + ", " +
             StringUtil.simpleClassName(AddressedEnvelope.class) + '<' +
             StringUtil.simpleClassName(ByteBuf.class) + ", " +
             StringUtil.simpleClassName(InetSocketAddress.class) + ">, " +
             StringUtil.simpleClassName(ByteBuf.class) + ')';
 
+    // The maximum number of datagrams the kernel splits a single write into, see UDP_MAX_SEGMENTS in linux/udp.h.
+    private static final int MAX_SEGMENTS = 64;
+    // The maximum payload of a single write, as the whole IPv4 / UDP packet is limited to 65535 bytes.
+    private static final int MAX_SEGMENTED_PAYLOAD = 65507;
+
     private final EpollDatagramChannelConfig config;
     private volatile boolean connected;
+    // Only accessed from within the EventLoop.
+    private boolean segmentationOffload = Native.IS_SUPPORTING_UDP_SEGMENT;
 
     public EpollDatagramChannel() {
         super(newSocketDgram());
@@ -322,6 +336,10 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
     }
 
     private boolean doWriteMessage(Object msg) throws Exception {
+        if (msg instanceof SegmentedDatagramPacket) {
+            return doWriteSegmented((SegmentedDatagramPacket) msg);
+        }
+
         final ByteBuf data;
         InetSocketAddress remoteAddress;
         if (msg instanceof AddressedEnvelope) {
@@ -334,7 +352,60 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
             data = (ByteBuf) msg;
             remoteAddress = null;
         }
+        return doWriteDatagram(data, remoteAddress);
+    }
+
+    private boolean doWriteSegmented(SegmentedDatagramPacket packet) throws Exception {
+        final ByteBuf data = packet.content();
+        final InetSocketAddress remoteAddress = packet.recipient();
+        final int segmentSize = checkPositive(packet.segmentSize(), "segmentSize");
+        final int maxLength = segmentSize * max(1, min(MAX_SEGMENTS, MAX_SEGMENTED_PAYLOAD / segmentSize));
+
+        while (data.isReadable()) {
+            if (segmentationOffload && data.readableBytes() > segmentSize) {
+                final int len = min(data.readableBytes(), maxLength);
+                IovArray array = ((EpollEventLoop) eventLoop()).cleanIovArray();
+                if (array.add(data, data.readerIndex(), len)) {
+                    final int writtenBytes;
+                    try {
+                        writtenBytes = socket.sendSegmented(array.memoryAddress(0), array.count(),
+                                remoteAddress.getAddress(), remoteAddress.getPort(), segmentSize);
+                    } catch (Errors.NativeIoException e) {
+                        if (!isSegmentationOffloadUnsupported(e.expectedErr())) {
+                            throw e;
+                        }
+                        // The kernel rejected the segmentation offload, for example because the network device does
+                        // not support checksum offloading. Split the payload ourselves from now on.
+                        segmentationOffload = false;
+                        continue;
+                    }
+                    if (writtenBytes == 0) {
+                        return false;
+                    }
+                    data.skipBytes(len);
+                    continue;
+                }
+            }
+            final int len = min(data.readableBytes(), segmentSize);
+            if (!doWriteDatagram(data.slice(data.readerIndex(), len), remoteAddress)) {
+                return false;
+            }
+            // Skip the written segment, so we continue with the next one if we need to retry.
+            data.skipBytes(len);
+        }
+        return true;
+    }
 
+    /**
+     * Returns {@code true} if the given negative errno of a {@code sendmsg(...)} call with {@code UDP_SEGMENT} means
+     * that the segmentation offload is not supported for this socket.
+     */
+    private static boolean isSegmentationOffloadUnsupported(int err) {
+        return err == Native.ERRNO_EIO_NEGATIVE || err == Native.ERRNO_EINVAL_NEGATIVE ||
+                err == Native.ERRNO_ENOPROTOOPT_NEGATIVE || err == Native.ERRNO_EOPNOTSUPP_NEGATIVE;
+    }
+
+    private boolean doWriteDatagram(ByteBuf data, InetSocketAddress remoteAddress) throws Exception {
         final int dataLen = data.readableBytes();
         if (dataLen == 0) {
             return true;
@@ -376,6 +447,13 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
 
     @Override
     protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof SegmentedDatagramPacket) {
+            SegmentedDatagramPacket packet = (SegmentedDatagramPacket) msg;
+            ByteBuf content = packet.content();
+            return UnixChannelUtil.isBufferCopyNeededForWrite(content) ?
+                    packet.replace(newDirectBuffer(packet, content)) : msg;
+        }
+
         if (msg instanceof DatagramPacket) {
             DatagramPacket packet = (DatagramPacket) msg;
             ByteBuf content = packet.content();
@@ -436,7 +514,7 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
         @Override
         void epollInReady() {
             assert eventLoop().inEventLoop();
-            DatagramChannelConfig config = config();
+            EpollDatagramChannelConfig config = config();
             if (shouldBreakEpollInReady(config)) {
                 clearEpollIn0();
                 return;
@@ -454,66 +532,69 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
                 ByteBuf byteBuf = null;
                 try {
                     boolean connected = isConnected();
-                    do {
-                        byteBuf = allocHandle.allocate(allocator);
-                        allocHandle.attemptedBytesRead(byteBuf.writableBytes());
-
-                        final DatagramPacket packet;
-                        if (connected) {
-                            try {
-                                allocHandle.lastBytesRead(doReadBytes(byteBuf));
-                            } catch (Errors.NativeIoException e) {
-                                // We need to correctly translate connect errors to match NIO behaviour.
-                                if (e.expectedErr() == Errors.ERROR_ECONNREFUSED_NEGATIVE) {
-                                    PortUnreachableException error = new PortUnreachableException(e.getMessage());
-                                    error.initCause(e);
-                                    throw error;
+                    if (!config.isRecvmmsgEnabled() ||
+                            !scatteringRead(allocHandle, allocator, connected, config)) {
+                        do {
+                            byteBuf = allocHandle.allocate(allocator);
+                            allocHandle.attemptedBytesRead(byteBuf.writableBytes());
+
+                            final DatagramPacket packet;
+                            if (connected) {
+                                try {
+                                    allocHandle.lastBytesRead(doReadBytes(byteBuf));
+                                } catch (Errors.NativeIoException e) {
+                                    // We need to correctly translate connect errors to match NIO behaviour.
+                                    if (e.expectedErr() == Errors.ERROR_ECONNREFUSED_NEGATIVE) {
+                                        PortUnreachableException error = new PortUnreachableException(e.getMessage());
+                                        error.initCause(e);
+                                        throw error;
+                                    }
+                                    throw e;
                                 }
-                                throw e;
-                            }
-                            if (allocHandle.lastBytesRead() <= 0) {
-                                // nothing was read, release the buffer.
-                                byteBuf.release();
-                                byteBuf = null;
-                                break;
-                            }
-                            packet = new DatagramPacket(
-                                    byteBuf, (InetSocketAddress) localAddress(), (InetSocketAddress) remoteAddress());
-                        } else {
-                            final DatagramSocketAddress remoteAddress;
-                            if (byteBuf.hasMemoryAddress()) {
-                                // has a memory address so use optimized call
-                                remoteAddress = socket.recvFromAddress(byteBuf.memoryAddress(), byteBuf.writerIndex(),
-                                        byteBuf.capacity());
+                                if (allocHandle.lastBytesRead() <= 0) {
+                                    // nothing was read, release the buffer.
+                                    byteBuf.release();
+                                    byteBuf = null;
+                                    break;
+                                }
+                                packet = new DatagramPacket(byteBuf,
+                                        (InetSocketAddress) localAddress(), (InetSocketAddress) remoteAddress());
                             } else {
-                                ByteBuffer nioData = byteBuf.internalNioBuffer(
-                                        byteBuf.writerIndex(), byteBuf.writableBytes());
-                                remoteAddress = socket.recvFrom(nioData, nioData.position(), nioData.limit());
-                            }
+                                final DatagramSocketAddress remoteAddress;
+                                if (byteBuf.hasMemoryAddress()) {
+                                    // has a memory address so use optimized call
+                                    remoteAddress = socket.recvFromAddress(byteBuf.memoryAddress(),
+                                            byteBuf.writerIndex(), byteBuf.capacity());
+                                } else {
+                                    ByteBuffer nioData = byteBuf.internalNioBuffer(
+                                            byteBuf.writerIndex(), byteBuf.writableBytes());
+                                    remoteAddress = socket.recvFrom(nioData, nioData.position(), nioData.limit());
+                                }
 
-                            if (remoteAddress == null) {
-                                allocHandle.lastBytesRead(-1);
-                                byteBuf.release();
-                                byteBuf = null;
-                                break;
-                            }
-                            InetSocketAddress localAddress = remoteAddress.localAddress();
-                            if (localAddress == null) {
-                                localAddress = (InetSocketAddress) localAddress();
-                            }
-                            allocHandle.lastBytesRead(remoteAddress.receivedAmount());
-                            byteBuf.writerIndex(byteBuf.writerIndex() + allocHandle.lastBytesRead());
+                                if (remoteAddress == null) {
+                                    allocHandle.lastBytesRead(-1);
+                                    byteBuf.release();
+                                    byteBuf = null;
+                                    break;
+                                }
+                                InetSocketAddress localAddress = remoteAddress.localAddress();
+                                if (localAddress == null) {
+                                    localAddress = (InetSocketAddress) localAddress();
+                                }
+                                allocHandle.lastBytesRead(remoteAddress.receivedAmount());
+                                byteBuf.writerIndex(byteBuf.writerIndex() + allocHandle.lastBytesRead());
 
-                            packet = new DatagramPacket(byteBuf, localAddress, remoteAddress);
-                        }
+                                packet = new DatagramPacket(byteBuf, localAddress, remoteAddress);
+                            }
 
-                        allocHandle.incMessagesRead(1);
+                            allocHandle.incMessagesRead(1);
 
-                        readPending = false;
-                        pipeline.fireChannelRead(packet);
+                            readPending = false;
+                            pipeline.fireChannelRead(packet);
 
-                        byteBuf = null;
-                    } while (allocHandle.continueReading());
+                            byteBuf = null;
+                        } while (allocHandle.continueReading());
+                    }
                 } catch (Throwable t) {
                     if (byteBuf != null) {
                         byteBuf.release();
@@ -531,5 +612,133 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
                 epollInFinally(config);
             }
         }
+
+        /**
+         * Read datagrams in batches via {@code recvmmsg(...)}. Each datagram is read into its own buffer, and all
+         * datagrams of a batch are fired through the pipeline once the system call returned. Returns {@code false} if
+         * nothing was read as the allocated buffers are not direct, in which case datagrams need to be read one at a
+         * time. If UDP_GRO is enabled direct buffers are always used, even if the {@link ByteBufAllocator} does not
+         * provide them, as only {@code recvmmsg(...)} reports the size of coalesced datagrams.
+         */
+        private boolean scatteringRead(EpollRecvByteAllocatorHandle allocHandle, ByteBufAllocator allocator,
+                                    boolean connected, EpollDatagramChannelConfig config) throws Exception {
+            final ChannelPipeline pipeline = pipeline();
+            final InetSocketAddress localAddress = (InetSocketAddress) localAddress();
+            final int batchSize = min(config.getRecvmmsgBatchSize(), UIO_MAX_IOV);
+            final boolean directRequired = config.isDirectRecvmmsgRequired();
+            final boolean splitSegments = config.isUdpGroSplit();
+
+            // Holds the allocated buffers and later the received packets until they are fired through the pipeline.
+            RecyclableArrayList msgs = RecyclableArrayList.newInstance(batchSize);
+            // The number of messages in msgs which were already fired through the pipeline.
+            int fired = 0;
+            boolean readAny = false;
+            try {
+                int count;
+                int received;
+                do {
+                    // The array may be reused by writes triggered from within the pipeline, so we need to obtain a
+                    // clean one for each batch and must not access it once we fired the packets.
+                    NativeDatagramPacketArray array = ((EpollEventLoop) eventLoop()).cleanDatagramPacketArray();
+                    for (int i = 0; i < batchSize; i++) {
+                        ByteBuf byteBuf = allocHandle.allocate(allocator);
+                        if (!byteBuf.isDirect() && directRequired) {
+                            ByteBuf directBuf = Unpooled.directBuffer(byteBuf.writableBytes());
+                            byteBuf.release();
+                            byteBuf = directBuf;
+                        }
+                        if (!byteBuf.isDirect()) {
+                            // recvmmsg(...) needs the memory address of the buffers.
+                            byteBuf.release();
+                            if (msgs.isEmpty() && !readAny) {
+                                return false;
+                            }
+                            break;
+                        }
+                        if (!byteBuf.isWritable()) {
+                            // Nothing could be read into it, so don't add a packet for it.
+                            byteBuf.release();
+                            continue;
+                        }
+                        if (!array.addWritable(byteBuf, byteBuf.writerIndex(), byteBuf.writableBytes())) {
+                            byteBuf.release();
+                            break;
+                        }
+                        msgs.add(byteBuf);
+                    }
+                    count = array.count();
+                    assert count == msgs.size();
+                    if (count == 0) {
+                        allocHandle.lastBytesRead(-1);
+                        break;
+                    }
+
+                    NativeDatagramPacketArray.NativeDatagramPacket[] packets = array.packets();
+                    try {
+                        received = Native.recvmmsg(socket.intValue(), packets, 0, count);
+                    } catch (Errors.NativeIoException e) {
+                        // We need to correctly translate connect errors to match NIO behaviour.
+                        if (connected && e.expectedErr() == Errors.ERROR_ECONNREFUSED_NEGATIVE) {
+                            PortUnreachableException error = new PortUnreachableException(e.getMessage());
+                            error.initCause(e);
+                            throw error;
+                        }
+                        throw e;
+                    }
+                    if (received == 0) {
+                        // Nothing was read, the buffers are released below.
+                        allocHandle.lastBytesRead(-1);
+                        break;
+                    }
+
+                    for (int i = 0; i < received; i++) {
+                        ByteBuf byteBuf = (ByteBuf) msgs.get(i);
+                        int writerIndex = byteBuf.writerIndex();
+                        allocHandle.attemptedBytesRead(byteBuf.writableBytes());
+                        msgs.set(i, packets[i].newDatagramPacket(byteBuf, localAddress));
+                        allocHandle.lastBytesRead(byteBuf.writerIndex() - writerIndex);
+                        allocHandle.incMessagesRead(1);
+                    }
+                    for (int i = msgs.size() - 1; i >= received; i--) {
+                        ((ByteBuf) msgs.remove(i)).release();
+                    }
+
+                    while (fired < received) {
+                        Object packet = msgs.get(fired++);
+                        readPending = false;
+                        if (splitSegments && packet instanceof SegmentedDatagramPacket) {
+                            fireSegments(pipeline, (SegmentedDatagramPacket) packet);
+                        } else {
+                            pipeline.fireChannelRead(packet);
+                        }
+                    }
+                    msgs.clear();
+                    fired = 0;
+                    readAny = true;
+                    // If we received less datagrams than requested there is nothing left to read for now.
+                } while (received == count && allocHandle.continueReading());
+            } finally {
+                for (int i = fired; i < msgs.size(); i++) {
+                    ReferenceCountUtil.release(msgs.get(i));
+                }
+                msgs.recycle();
+            }
+            return true;
+        }
+
+        /**
+         * Fires each datagram of a packet which was coalesced via UDP_GRO as a separate {@link DatagramPacket}, whose
+         * content is a retained slice of the coalesced buffer. The given packet is released.
+         */
+        private void fireSegments(ChannelPipeline pipeline, SegmentedDatagramPacket packet) {
+            try {
+                int segmentCount = packet.segmentCount();
+                for (int i = 0; i < segmentCount; i++) {
+                    pipeline.fireChannelRead(packet.retainedSegment(i));
+                }
+            } finally {
+                packet.release();
+            }
+        }
     }
 }
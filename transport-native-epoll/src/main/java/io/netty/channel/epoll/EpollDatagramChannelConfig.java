@@ -23,6 +23,7 @@ import io.netty.channel.MessageSizeEstimator;
 import io.netty.channel.RecvByteBufAllocator;
 import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.socket.DatagramChannelConfig;
+import io.netty.util.internal.ObjectUtil;
 
 import java.io.IOException;
 import java.net.InetAddress;
@@ -32,6 +33,10 @@ import java.util.Map;
 public final class EpollDatagramChannelConfig extends EpollChannelConfig implements DatagramChannelConfig {
     private static final RecvByteBufAllocator DEFAULT_RCVBUF_ALLOCATOR = new FixedRecvByteBufAllocator(2048);
     private boolean activeOnOpen;
+    private volatile int recvmmsgBatchSize = 1;
+    private volatile boolean ipRecvOrigDestAddr;
+    private volatile boolean udpGro;
+    private volatile boolean udpGroSplit;
 
     EpollDatagramChannelConfig(EpollDatagramChannel channel) {
         super(channel);
@@ -48,7 +53,8 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
                 ChannelOption.IP_MULTICAST_ADDR, ChannelOption.IP_MULTICAST_IF, ChannelOption.IP_MULTICAST_TTL,
                 ChannelOption.IP_TOS, ChannelOption.DATAGRAM_CHANNEL_ACTIVE_ON_REGISTRATION,
                 EpollChannelOption.SO_REUSEPORT, EpollChannelOption.IP_FREEBIND, EpollChannelOption.IP_TRANSPARENT,
-                EpollChannelOption.IP_RECVORIGDSTADDR);
+                EpollChannelOption.IP_RECVORIGDSTADDR, EpollChannelOption.RECVMMSG_BATCH_SIZE,
+                EpollChannelOption.UDP_SEGMENT, EpollChannelOption.UDP_GRO, EpollChannelOption.UDP_GRO_SPLIT);
     }
 
     @SuppressWarnings({ "unchecked", "deprecation" })
@@ -96,6 +102,18 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
         if (option == EpollChannelOption.IP_RECVORIGDSTADDR) {
             return (T) Boolean.valueOf(isIpRecvOrigDestAddr());
         }
+        if (option == EpollChannelOption.RECVMMSG_BATCH_SIZE) {
+            return (T) Integer.valueOf(getRecvmmsgBatchSize());
+        }
+        if (option == EpollChannelOption.UDP_SEGMENT) {
+            return (T) Integer.valueOf(getUdpSegment());
+        }
+        if (option == EpollChannelOption.UDP_GRO) {
+            return (T) Boolean.valueOf(isUdpGro());
+        }
+        if (option == EpollChannelOption.UDP_GRO_SPLIT) {
+            return (T) Boolean.valueOf(isUdpGroSplit());
+        }
         return super.getOption(option);
     }
 
@@ -132,6 +150,14 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
             setIpTransparent((Boolean) value);
         } else if (option == EpollChannelOption.IP_RECVORIGDSTADDR) {
             setIpRecvOrigDestAddr((Boolean) value);
+        } else if (option == EpollChannelOption.RECVMMSG_BATCH_SIZE) {
+            setRecvmmsgBatchSize((Integer) value);
+        } else if (option == EpollChannelOption.UDP_SEGMENT) {
+            setUdpSegment((Integer) value);
+        } else if (option == EpollChannelOption.UDP_GRO) {
+            setUdpGro((Boolean) value);
+        } else if (option == EpollChannelOption.UDP_GRO_SPLIT) {
+            setUdpGroSplit((Boolean) value);
         } else {
             return super.setOption(option, value);
         }
@@ -456,10 +482,156 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
     public EpollDatagramChannelConfig setIpRecvOrigDestAddr(boolean ipTransparent) {
         try {
             ((EpollDatagramChannel) channel).socket.setIpRecvOrigDestAddr(ipTransparent);
+            ipRecvOrigDestAddr = ipTransparent;
+            return this;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Returns the maximum number of datagrams that are received with a single
+     * <a href="http://man7.org/linux/man-pages/man2/recvmmsg.2.html">recvmmsg(...)</a> call.
+     */
+    public int getRecvmmsgBatchSize() {
+        return recvmmsgBatchSize;
+    }
+
+    /**
+     * Set the maximum number of datagrams that are received with a single
+     * <a href="http://man7.org/linux/man-pages/man2/recvmmsg.2.html">recvmmsg(...)</a> call. Each datagram is read
+     * into its own buffer allocated by the configured {@link RecvByteBufAllocator}, and the number of datagrams read
+     * per wake-up is still bounded by its {@code maxMessagesPerRead}.
+     * <p>
+     * The default is {@code 1}, which reads one datagram per system call. Values greater than {@code 1} are only
+     * used if {@code recvmmsg(...)} is supported by the system and
+     * <a href="http://man7.org/linux/man-pages/man7/ip.7.html">IP_RECVORIGDSTADDR</a> is disabled, otherwise
+     * datagrams are read one by one.
+     */
+    public EpollDatagramChannelConfig setRecvmmsgBatchSize(int recvmmsgBatchSize) {
+        this.recvmmsgBatchSize = ObjectUtil.checkPositive(recvmmsgBatchSize, "recvmmsgBatchSize");
+        return this;
+    }
+
+    /**
+     * Returns the segment size used for
+     * <a href="http://man7.org/linux/man-pages/man7/udp.7.html">UDP_SEGMENT</a> (generic segmentation offload), or
+     * {@code 0} if it is disabled.
+     */
+    public int getUdpSegment() {
+        try {
+            return ((EpollDatagramChannel) channel).socket.getUdpSegment();
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Set the segment size used for
+     * <a href="http://man7.org/linux/man-pages/man7/udp.7.html">UDP_SEGMENT</a> (generic segmentation offload). If
+     * set every written datagram that is larger than {@code segmentSize} is split into multiple datagrams of
+     * {@code segmentSize} bytes by the kernel. Use {@code 0} to disable it, which is the default.
+     * <p>
+     * To only segment some of the written data use {@link SegmentedDatagramPacket} instead.
+     * This requires linux 4.18+, see {@link SegmentedDatagramPacket#isSupported()}.
+     */
+    public EpollDatagramChannelConfig setUdpSegment(int segmentSize) {
+        try {
+            ((EpollDatagramChannel) channel).socket.setUdpSegment(segmentSize);
+            return this;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Returns {@code true} if <a href="http://man7.org/linux/man-pages/man7/udp.7.html">UDP_GRO</a> (generic
+     * receive offload) is enabled, {@code false} otherwise.
+     */
+    public boolean isUdpGro() {
+        try {
+            return ((EpollDatagramChannel) channel).socket.isUdpGro();
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * If {@code true} is used <a href="http://man7.org/linux/man-pages/man7/udp.7.html">UDP_GRO</a> (generic receive
+     * offload) is enabled, {@code false} for disable it. Default is disabled. This requires linux 5.0+.
+     * <p>
+     * If enabled the kernel may coalesce multiple datagrams of the same size received from the same sender into a
+     * single buffer, which is then fired through the pipeline as one {@link SegmentedDatagramPacket} instead of one
+     * {@link io.netty.channel.socket.DatagramPacket} per datagram. Use
+     * {@link SegmentedDatagramPacket#retainedSegment(int)} to access the individual datagrams without copying, or
+     * {@link #setUdpGroSplit(boolean)} to have them fired as separate packets. Datagrams that were not coalesced are
+     * still fired as {@link io.netty.channel.socket.DatagramPacket}.
+     * <p>
+     * The configured {@link RecvByteBufAllocator} should provide buffers which are large enough to hold a coalesced
+     * payload of up to {@code 65535} bytes, as the kernel truncates it otherwise. Datagrams are always read into
+     * direct buffers via <a href="http://man7.org/linux/man-pages/man2/recvmmsg.2.html">recvmmsg(...)</a> while this
+     * is enabled, as only it reports the size of coalesced datagrams. So the local address of a received packet is
+     * the address this channel is bound to, even if
+     * <a href="http://man7.org/linux/man-pages/man7/ip.7.html">IP_RECVORIGDSTADDR</a> is enabled.
+     *
+     * @throws ChannelException if UDP_GRO or {@code recvmmsg(...)} is not supported
+     */
+    public EpollDatagramChannelConfig setUdpGro(boolean udpGro) {
+        if (udpGro && !Native.IS_SUPPORTING_RECVMMSG) {
+            // Coalesced datagrams would be read as a single datagram otherwise.
+            throw new ChannelException("UDP_GRO requires recvmmsg(...), which is not supported");
+        }
+        try {
+            ((EpollDatagramChannel) channel).socket.setUdpGro(udpGro);
+            this.udpGro = udpGro;
             return this;
         } catch (IOException e) {
             throw new ChannelException(e);
         }
     }
 
+    /**
+     * Returns {@code true} if datagrams which were coalesced via
+     * <a href="http://man7.org/linux/man-pages/man7/udp.7.html">UDP_GRO</a> are fired as one
+     * {@link io.netty.channel.socket.DatagramPacket} per datagram, {@code false} if they are fired as a single
+     * {@link SegmentedDatagramPacket}.
+     */
+    public boolean isUdpGroSplit() {
+        return udpGroSplit;
+    }
+
+    /**
+     * If {@code true} is used datagrams which were coalesced via
+     * <a href="http://man7.org/linux/man-pages/man7/udp.7.html">UDP_GRO</a> are fired through the pipeline as one
+     * {@link io.netty.channel.socket.DatagramPacket} per datagram, in the order they were received. The content of
+     * each packet is a retained slice of the coalesced buffer, so no data is copied. If {@code false} is used a
+     * single {@link SegmentedDatagramPacket} is fired instead. Default is {@code false}.
+     * <p>
+     * This has only an effect if {@link #setUdpGro(boolean)} is enabled.
+     */
+    public EpollDatagramChannelConfig setUdpGroSplit(boolean udpGroSplit) {
+        this.udpGroSplit = udpGroSplit;
+        return this;
+    }
+
+    /**
+     * Returns {@code true} if {@code recvmmsg(...)} should be used to read datagrams.
+     */
+    boolean isRecvmmsgEnabled() {
+        if (!Native.IS_SUPPORTING_RECVMMSG) {
+            return false;
+        }
+        // The size of coalesced datagrams is only retrieved via recvmmsg(...).
+        // The local address is only retrieved via recvmsg(...) when IP_RECVORIGDSTADDR is used.
+        return udpGro || recvmmsgBatchSize > 1 && !ipRecvOrigDestAddr;
+    }
+
+    /**
+     * Returns {@code true} if datagrams must be read into direct buffers via {@code recvmmsg(...)}, even if the
+     * {@link ByteBufAllocator} provides heap buffers.
+     */
+    boolean isDirectRecvmmsgRequired() {
+        // The size of coalesced datagrams is only retrieved via recvmmsg(...), which needs direct buffers.
+        return udpGro;
+    }
 }
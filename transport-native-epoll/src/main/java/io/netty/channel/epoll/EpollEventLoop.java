@@ -25,6 +25,7 @@ import io.netty.channel.unix.IovArray;
 import io.netty.util.IntSupplier;
 import io.netty.util.collection.IntObjectHashMap;
 import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.IoEventExecutor;
 import io.netty.util.concurrent.RejectedExecutionHandler;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
@@ -41,7 +42,7 @@ import static java.lang.Math.min;
 /**
  * {@link EventLoop} which uses epoll under the covers. Only works on Linux!
  */
-class EpollEventLoop extends SingleThreadEventLoop {
+class EpollEventLoop extends SingleThreadEventLoop implements IoEventExecutor {
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(EpollEventLoop.class);
     private static final AtomicIntegerFieldUpdater<EpollEventLoop> WAKEN_UP_UPDATER =
             AtomicIntegerFieldUpdater.newUpdater(EpollEventLoop.class, "wakenUp");
@@ -58,6 +59,8 @@ class EpollEventLoop extends SingleThreadEventLoop {
     private final FileDescriptor eventFd;
     private final FileDescriptor timerFd;
     private final IntObjectMap<AbstractEpollChannel> channels = new IntObjectHashMap<AbstractEpollChannel>(4096);
+    // Duplicates of the sockets of closed channels which wait for the completion of their MSG_ZEROCOPY writes.
+    private final IntObjectMap<ZeroCopyLinger> zeroCopyLingers = new IntObjectHashMap<ZeroCopyLinger>(4);
     private final boolean allowGrowing;
     private final EpollEventArray events;
 
@@ -66,6 +69,8 @@ class EpollEventLoop extends SingleThreadEventLoop {
     private NativeDatagramPacketArray datagramPacketArray;
 
     private final SelectStrategy selectStrategy;
+    // Non-null if the selectStrategy needs to know the number of events returned by each poll.
+    private final EpollAdaptiveSelectStrategy adaptiveStrategy;
     private final IntSupplier selectNowSupplier = new IntSupplier() {
         @Override
         public int get() throws Exception {
@@ -83,6 +88,8 @@ class EpollEventLoop extends SingleThreadEventLoop {
                    SelectStrategy strategy, RejectedExecutionHandler rejectedExecutionHandler) {
         super(parent, executor, false, DEFAULT_MAX_PENDING_TASKS, rejectedExecutionHandler);
         selectStrategy = ObjectUtil.checkNotNull(strategy, "strategy");
+        adaptiveStrategy = strategy instanceof EpollAdaptiveSelectStrategy ?
+                (EpollAdaptiveSelectStrategy) strategy : null;
         if (maxEvents == 0) {
             allowGrowing = true;
             events = new EpollEventArray(4096);
@@ -202,6 +209,40 @@ class EpollEventLoop extends SingleThreadEventLoop {
         }
     }
 
+    /**
+     * Keep the given duplicate of the socket of a closed channel registered until the kernel reported the completion
+     * of all of its {@code MSG_ZEROCOPY} writes, and only then close the socket. The buffers of writes which did not
+     * complete are released once the socket was closed, which happens at the latest when this event loop shuts down.
+     */
+    void addZeroCopyLinger(LinuxSocket socket, ZeroCopyCompletionQueue queue) {
+        assert inEventLoop();
+        ZeroCopyLinger linger = new ZeroCopyLinger(socket, queue);
+        int fd = socket.intValue();
+        try {
+            // EPOLLERR is always reported, so no other flags are needed to be notified about new completions.
+            Native.epollCtlAdd(epollFd.intValue(), fd, Native.EPOLLET);
+        } catch (IOException e) {
+            logger.debug("Failed to register a closed socket to wait for MSG_ZEROCOPY completions", e);
+            linger.close();
+            return;
+        }
+        zeroCopyLingers.put(fd, linger);
+        // Some completions may have been reported before the socket was registered.
+        processZeroCopyLinger(fd, linger);
+    }
+
+    private void processZeroCopyLinger(int fd, ZeroCopyLinger linger) {
+        try {
+            linger.queue.readCompletions(linger.socket);
+        } catch (IOException e) {
+            logger.debug("Failed to read MSG_ZEROCOPY completions", e);
+        }
+        if (linger.queue.isEmpty()) {
+            zeroCopyLingers.remove(fd);
+            linger.close();
+        }
+    }
+
     @Override
     protected Queue<Runnable> newTaskQueue(int maxPendingTasks) {
         // This event loop never calls takeTask()
@@ -309,19 +350,24 @@ class EpollEventLoop extends SingleThreadEventLoop {
                         // fallthrough
                     default:
                 }
+                if (adaptiveStrategy != null) {
+                    adaptiveStrategy.eventsReady(strategy);
+                }
 
                 final int ioRatio = this.ioRatio;
                 if (ioRatio == 100) {
+                    final long ioStartTime = ioStarted();
                     try {
                         if (strategy > 0) {
                             processReady(events, strategy);
                         }
                     } finally {
+                        recordIoTime(System.nanoTime() - ioStartTime, strategy);
                         // Ensure we always run tasks.
                         runAllTasks();
                     }
                 } else {
-                    final long ioStartTime = System.nanoTime();
+                    final long ioStartTime = ioStarted();
 
                     try {
                         if (strategy > 0) {
@@ -330,6 +376,7 @@ class EpollEventLoop extends SingleThreadEventLoop {
                     } finally {
                         // Ensure we always run tasks.
                         final long ioTime = System.nanoTime() - ioStartTime;
+                        recordIoTime(ioTime, strategy);
                         runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
                     }
                 }
@@ -404,6 +451,12 @@ class EpollEventLoop extends SingleThreadEventLoop {
                     // past.
                     AbstractEpollUnsafe unsafe = (AbstractEpollUnsafe) ch.unsafe();
 
+                    // EPOLLERR is also signaled if there are messages in the error queue of the socket, like the
+                    // completion notifications of MSG_ZEROCOPY writes. Drain these first.
+                    if ((ev & Native.EPOLLERR) != 0) {
+                        unsafe.epollErrReady();
+                    }
+
                     // First check for EPOLLOUT as we may need to fail the connect ChannelPromise before try
                     // to read from the file descriptor.
                     // See https://github.com/netty/netty/issues/3785
@@ -433,6 +486,8 @@ class EpollEventLoop extends SingleThreadEventLoop {
                     if ((ev & Native.EPOLLRDHUP) != 0) {
                         unsafe.epollRdHupReady();
                     }
+                } else if (zeroCopyLingers.containsKey(fd)) {
+                    processZeroCopyLinger(fd, zeroCopyLingers.get(fd));
                 } else {
                     // We received an event for an fd which we not use anymore. Remove it from the epoll_event set.
                     try {
@@ -451,6 +506,15 @@ class EpollEventLoop extends SingleThreadEventLoop {
     @Override
     protected void cleanup() {
         try {
+            for (ZeroCopyLinger linger : zeroCopyLingers.values()) {
+                try {
+                    linger.queue.readCompletions(linger.socket);
+                } catch (IOException ignore) {
+                    // ignore on close
+                }
+                linger.close();
+            }
+            zeroCopyLingers.clear();
             try {
                 epollFd.close();
             } catch (IOException e) {
@@ -479,4 +543,30 @@ class EpollEventLoop extends SingleThreadEventLoop {
             events.free();
         }
     }
+
+    private static final class ZeroCopyLinger {
+        final LinuxSocket socket;
+        final ZeroCopyCompletionQueue queue;
+
+        ZeroCopyLinger(LinuxSocket socket, ZeroCopyCompletionQueue queue) {
+            this.socket = socket;
+            this.queue = queue;
+        }
+
+        /**
+         * Close the socket and release the buffers of all writes which did not complete, as their completions can not
+         * be read anymore.
+         */
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close a socket which waited for MSG_ZEROCOPY completions", e);
+            }
+            int released = queue.releaseAll();
+            if (released > 0) {
+                logger.debug("Released the buffers of {} MSG_ZEROCOPY writes which did not complete", released);
+            }
+        }
+    }
 }
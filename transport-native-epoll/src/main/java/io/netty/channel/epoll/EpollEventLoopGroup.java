@@ -129,6 +129,17 @@ public final class EpollEventLoopGroup extends MultithreadEventLoopGroup {
         }
     }
 
+    /**
+     * Enables or disables recording the {@link io.netty.channel.EventLoopMetrics} of the child event loops.
+     *
+     * @see io.netty.channel.SingleThreadEventLoop#setMetricsEnabled(boolean)
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        for (EventExecutor e: this) {
+            ((EpollEventLoop) e).setMetricsEnabled(enabled);
+        }
+    }
+
     @Override
     protected EventLoop newChild(Executor executor, Object... args) throws Exception {
         return new EpollEventLoop(this, executor, (Integer) args[0],
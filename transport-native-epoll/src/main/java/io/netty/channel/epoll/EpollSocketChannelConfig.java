@@ -22,6 +22,7 @@ import io.netty.channel.MessageSizeEstimator;
 import io.netty.channel.RecvByteBufAllocator;
 import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.socket.SocketChannelConfig;
+import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
 
 import java.io.IOException;
@@ -38,7 +39,12 @@ import static io.netty.channel.ChannelOption.SO_SNDBUF;
 import static io.netty.channel.ChannelOption.TCP_NODELAY;
 
 public final class EpollSocketChannelConfig extends EpollChannelConfig implements SocketChannelConfig {
+    // The kernel documentation states that MSG_ZEROCOPY is generally only effective for writes over around 10 KB.
+    private static final int DEFAULT_ZEROCOPY_THRESHOLD = 10 * 1024;
+
     private volatile boolean allowHalfClosure;
+    private volatile boolean zeroCopy;
+    private volatile int zeroCopyThreshold = DEFAULT_ZEROCOPY_THRESHOLD;
 
     /**
      * Creates a new instance.
@@ -60,7 +66,9 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
                 ALLOW_HALF_CLOSURE, EpollChannelOption.TCP_CORK, EpollChannelOption.TCP_NOTSENT_LOWAT,
                 EpollChannelOption.TCP_KEEPCNT, EpollChannelOption.TCP_KEEPIDLE, EpollChannelOption.TCP_KEEPINTVL,
                 EpollChannelOption.TCP_MD5SIG, EpollChannelOption.TCP_QUICKACK, EpollChannelOption.IP_TRANSPARENT,
-                EpollChannelOption.TCP_FASTOPEN_CONNECT, EpollChannelOption.SO_BUSY_POLL);
+                EpollChannelOption.TCP_FASTOPEN_CONNECT, EpollChannelOption.SO_BUSY_POLL,
+                EpollChannelOption.SO_ZEROCOPY, EpollChannelOption.ZEROCOPY_THRESHOLD,
+                EpollChannelOption.SO_INCOMING_CPU);
     }
 
     @SuppressWarnings("unchecked")
@@ -120,6 +128,15 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
         if (option == EpollChannelOption.SO_BUSY_POLL) {
             return (T) Integer.valueOf(getSoBusyPoll());
         }
+        if (option == EpollChannelOption.SO_ZEROCOPY) {
+            return (T) Boolean.valueOf(isZeroCopy());
+        }
+        if (option == EpollChannelOption.ZEROCOPY_THRESHOLD) {
+            return (T) Integer.valueOf(getZeroCopyThreshold());
+        }
+        if (option == EpollChannelOption.SO_INCOMING_CPU) {
+            return (T) Integer.valueOf(getIncomingCpu());
+        }
         return super.getOption(option);
     }
 
@@ -167,6 +184,16 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
             setTcpFastOpenConnect((Boolean) value);
         } else if (option == EpollChannelOption.SO_BUSY_POLL) {
             setSoBusyPoll((Integer) value);
+        } else if (option == EpollChannelOption.SO_ZEROCOPY) {
+            setZeroCopy((Boolean) value);
+        } else if (option == EpollChannelOption.ZEROCOPY_THRESHOLD) {
+            setZeroCopyThreshold((Integer) value);
+        } else if (option == EpollChannelOption.SO_INCOMING_CPU) {
+            setIncomingCpu((Integer) value);
+        } else if (option == EpollChannelOption.TLS_TX) {
+            setTlsTx((byte[]) value);
+        } else if (option == EpollChannelOption.TLS_RX) {
+            setTlsRx((byte[]) value);
         } else {
             return super.setOption(option, value);
         }
@@ -575,6 +602,120 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
         }
     }
 
+    /**
+     * Set the {@code SO_ZEROCOPY} option on the socket. Requires Linux kernel 4.14 or later. If enabled, writes of at
+     * least {@link #getZeroCopyThreshold()} bytes are done via {@code sendmsg(...)} with {@code MSG_ZEROCOPY}, which
+     * avoids copying the data into the kernel. The written {@link io.netty.buffer.ByteBuf}s are retained until the
+     * kernel reported the completion of the transmission, so their content must not be modified once written.
+     * <p>
+     * If the kernel reports that it copied the data anyway, for example because the connection uses the loopback
+     * device, {@code MSG_ZEROCOPY} is not used for further writes of this channel.
+     * See <a href="https://www.kernel.org/doc/html/latest/networking/msg_zerocopy.html">MSG_ZEROCOPY</a> for more
+     * details.
+     */
+    public EpollSocketChannelConfig setZeroCopy(boolean zeroCopy) {
+        try {
+            ((EpollSocketChannel) channel).socket.setZeroCopy(zeroCopy);
+            this.zeroCopy = zeroCopy;
+            return this;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Returns {@code true} if {@code SO_ZEROCOPY} is enabled, {@code false} otherwise.
+     */
+    public boolean isZeroCopy() {
+        try {
+            return ((EpollSocketChannel) channel).socket.isZeroCopy();
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Set the minimal number of bytes that must be written at once to use {@code MSG_ZEROCOPY} if
+     * {@link #setZeroCopy(boolean)} is enabled. Smaller writes are copied as the overhead of pinning the memory and
+     * of the completion notifications outweighs the saved copy. The default is {@code 10240}.
+     */
+    public EpollSocketChannelConfig setZeroCopyThreshold(int zeroCopyThreshold) {
+        this.zeroCopyThreshold = ObjectUtil.checkPositiveOrZero(zeroCopyThreshold, "zeroCopyThreshold");
+        return this;
+    }
+
+    /**
+     * Returns the minimal number of bytes that must be written at once to use {@code MSG_ZEROCOPY}.
+     */
+    public int getZeroCopyThreshold() {
+        return zeroCopyThreshold;
+    }
+
+    /**
+     * Returns the {@link #getZeroCopyThreshold()} if {@code SO_ZEROCOPY} is enabled, or {@code -1} otherwise.
+     */
+    int zeroCopyThresholdIfEnabled() {
+        return zeroCopy ? zeroCopyThreshold : -1;
+    }
+
+    /**
+     * Returns the {@code SO_INCOMING_CPU} option of the socket, which is the CPU that processed the last packet
+     * received by the socket, or {@code -1} if none was received yet. Requires Linux kernel 3.19 or later.
+     */
+    public int getIncomingCpu() {
+        try {
+            return ((EpollSocketChannel) channel).socket.getIncomingCpu();
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Set the {@code SO_INCOMING_CPU} option of the socket. Requires Linux kernel 4.4 or later.
+     */
+    public EpollSocketChannelConfig setIncomingCpu(int cpu) {
+        try {
+            ((EpollSocketChannel) channel).socket.setIncomingCpu(cpu);
+            return this;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Offload the encryption of all further writes to the kernel (kTLS) by installing the given
+     * {@code struct tls12_crypto_info_*} via {@code setsockopt(SOL_TLS, TLS_TX, ...)}. The two leading {@code u16}
+     * fields ({@code version} and {@code cipher_type}) must be in network byte order. Requires Linux kernel 4.13 or
+     * later and the {@code tls} kernel module. This is usually done by the {@code SslHandler} once the handshake
+     * completed, as all bytes written to the socket before must be encrypted already.
+     * <p>
+     * {@code MSG_ZEROCOPY} is not used anymore afterwards, as the kernel does not support it for TLS sockets.
+     */
+    public EpollSocketChannelConfig setTlsTx(byte[] cryptoInfo) {
+        try {
+            ((EpollSocketChannel) channel).socket.setTlsCryptoInfo(true, cryptoInfo);
+            zeroCopy = false;
+            return this;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Offload the decryption of all further reads to the kernel (kTLS) by installing the given
+     * {@code struct tls12_crypto_info_*} via {@code setsockopt(SOL_TLS, TLS_RX, ...)}, see
+     * {@link #setTlsTx(byte[])}. Requires Linux kernel 4.17 or later. Receiving a record which does not contain
+     * application data, like a {@code close_notify} alert, fails the read.
+     */
+    public EpollSocketChannelConfig setTlsRx(byte[] cryptoInfo) {
+        try {
+            ((EpollSocketChannel) channel).socket.setTlsCryptoInfo(false, cryptoInfo);
+            return this;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
     @Override
     public boolean isAllowHalfClosure() {
         return allowHalfClosure;
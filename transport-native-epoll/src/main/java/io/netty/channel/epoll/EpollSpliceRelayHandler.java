@@ -0,0 +1,189 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.util.internal.ObjectUtil;
+
+/**
+ * Relays all data received by a {@link Channel} to a peer {@link Channel} and vice versa, as used by proxies once the
+ * connection to the remote side was established (for example after a HTTP CONNECT or a SOCKS5 handshake). Use
+ * {@link #relay(Channel, Channel)} to install a relay on both channels.
+ * <p>
+ * Each direction is relayed via {@link AbstractEpollStreamChannel#spliceTo(AbstractEpollStreamChannel, int)}, so the
+ * bytes never get copied to user space, if:
+ * <ul>
+ *   <li>both channels are {@link AbstractEpollStreamChannel}s registered to the same
+ *   {@link io.netty.channel.EventLoop}</li>
+ *   <li>both channels use {@link EpollMode#LEVEL_TRIGGERED}, which must be configured before they are registered</li>
+ *   <li>no other {@link ChannelHandler} is in front of the relay in either pipeline, as for example a
+ *   {@code SslHandler} has to see every byte</li>
+ * </ul>
+ * Otherwise the {@link io.netty.buffer.ByteBuf}s are written to the peer as they are received. In both cases reading
+ * is stopped while the peer is not writable, and the peer is closed once this {@link Channel} was closed.
+ */
+public final class EpollSpliceRelayHandler extends ChannelInboundHandlerAdapter {
+
+    private final Channel peer;
+    private boolean started;
+    private boolean splicing;
+
+    /**
+     * Creates a new instance which relays to the given peer {@link Channel}.
+     */
+    public EpollSpliceRelayHandler(Channel peer) {
+        this.peer = ObjectUtil.checkNotNull(peer, "peer");
+    }
+
+    /**
+     * Relays the data between the given {@link Channel}s by adding a {@link EpollSpliceRelayHandler} to the end of
+     * both pipelines.
+     */
+    public static void relay(Channel first, Channel second) {
+        ObjectUtil.checkNotNull(first, "first");
+        ObjectUtil.checkNotNull(second, "second");
+        first.pipeline().addLast(new EpollSpliceRelayHandler(second));
+        second.pipeline().addLast(new EpollSpliceRelayHandler(first));
+    }
+
+    /**
+     * Returns {@code true} if the data received by the {@link Channel} of this handler is spliced to the peer.
+     */
+    public boolean isSplicing() {
+        return splicing;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        if (ctx.channel().isActive()) {
+            start(ctx);
+        }
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        start(ctx);
+        ctx.fireChannelActive();
+    }
+
+    private void start(final ChannelHandlerContext ctx) {
+        if (started) {
+            return;
+        }
+        started = true;
+        if (canSplice(ctx)) {
+            splicing = true;
+            ((AbstractEpollStreamChannel) ctx.channel()).spliceTo((AbstractEpollStreamChannel) peer, Integer.MAX_VALUE)
+                    .addListener(new ChannelFutureListener() {
+                        @Override
+                        public void operationComplete(ChannelFuture future) {
+                            // The splicing only ends once it failed, which is expected if one of the channels was
+                            // closed in the meantime.
+                            if (!future.isSuccess() && ctx.channel().isActive() && peer.isActive()) {
+                                ctx.fireExceptionCaught(future.cause());
+                            }
+                        }
+                    });
+        }
+        if (!ctx.channel().config().isAutoRead()) {
+            ctx.read();
+        }
+    }
+
+    private boolean canSplice(ChannelHandlerContext ctx) {
+        Channel channel = ctx.channel();
+        if (!(channel instanceof AbstractEpollStreamChannel) || !(peer instanceof AbstractEpollStreamChannel)) {
+            return false;
+        }
+        if (channel.eventLoop() != peer.eventLoop()
+                || ((AbstractEpollStreamChannel) channel).config().getEpollMode() != EpollMode.LEVEL_TRIGGERED
+                || ((AbstractEpollStreamChannel) peer).config().getEpollMode() != EpollMode.LEVEL_TRIGGERED) {
+            return false;
+        }
+        // Spliced bytes bypass both pipelines, so no other handler may transform them.
+        if (ctx.pipeline().first() != this) {
+            return false;
+        }
+        ChannelHandler peerFirst = peer.pipeline().first();
+        return peerFirst == null || peerFirst instanceof EpollSpliceRelayHandler;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        // Only used for the data which is not spliced, which includes data received before the relay was started.
+        peer.write(msg);
+        if (!peer.isWritable()) {
+            peer.flush();
+            if (!peer.isWritable()) {
+                ctx.channel().config().setAutoRead(false);
+            }
+        }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        peer.flush();
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            // The peer may continue to read as we caught up with writing.
+            peer.config().setAutoRead(true);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt == ChannelInputShutdownEvent.INSTANCE && peer instanceof DuplexChannel) {
+            // Forward the half-closure once everything was written to the peer.
+            peer.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    ((DuplexChannel) peer).shutdownOutput();
+                }
+            });
+        }
+        ctx.fireUserEventTriggered(evt);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        closeOnFlush(peer);
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        closeOnFlush(ctx.channel());
+    }
+
+    private static void closeOnFlush(Channel channel) {
+        if (channel.isActive()) {
+            channel.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+}
@@ -23,12 +23,17 @@ import io.netty.channel.unix.Socket;
 import io.netty.util.internal.ThrowableUtil;
 
 import java.io.IOException;
+import java.net.Inet6Address;
 import java.net.InetAddress;
+import java.net.PortUnreachableException;
 import java.nio.channels.ClosedChannelException;
 
 import static io.netty.channel.unix.Errors.ERRNO_EPIPE_NEGATIVE;
+import static io.netty.channel.unix.Errors.ERROR_ECONNREFUSED_NEGATIVE;
 import static io.netty.channel.unix.Errors.ioResult;
 import static io.netty.channel.unix.Errors.newConnectionResetException;
+import static io.netty.channel.unix.Errors.newIOException;
+import static io.netty.channel.unix.NativeInetAddress.ipv4MappedIpv6Address;
 
 /**
  * A socket which provides access Linux native methods.
@@ -39,6 +44,13 @@ final class LinuxSocket extends Socket {
             newConnectionResetException("syscall:sendfile(...)", ERRNO_EPIPE_NEGATIVE);
     private static final ClosedChannelException SENDFILE_CLOSED_CHANNEL_EXCEPTION = ThrowableUtil.unknownStackTrace(
             new ClosedChannelException(), Native.class, "sendfile(...)");
+    private static final NativeIoException SENDMSG_CONNECTION_RESET_EXCEPTION =
+            newConnectionResetException("syscall:sendmsg(...)", ERRNO_EPIPE_NEGATIVE);
+    private static final ClosedChannelException SENDMSG_CLOSED_CHANNEL_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            new ClosedChannelException(), LinuxSocket.class, "sendSegmented(...)");
+    private static final ClosedChannelException WRITEV_ZEROCOPY_CLOSED_CHANNEL_EXCEPTION =
+            ThrowableUtil.unknownStackTrace(new ClosedChannelException(), LinuxSocket.class,
+                    "writevAddressesZeroCopy(...)");
 
     LinuxSocket(int fd) {
         super(fd);
@@ -107,6 +119,38 @@ final class LinuxSocket extends Socket {
         setIpRecvOrigDestAddr(intValue(), enabled ? 1 : 0);
     }
 
+    void setUdpSegment(int segmentSize) throws IOException {
+        setUdpSegment(intValue(), segmentSize);
+    }
+
+    void setUdpGro(boolean enabled) throws IOException {
+        setUdpGro(intValue(), enabled ? 1 : 0);
+    }
+
+    void setZeroCopy(boolean enabled) throws IOException {
+        setZeroCopy(intValue(), enabled ? 1 : 0);
+    }
+
+    void setIncomingCpu(int cpu) throws IOException {
+        setIncomingCpu(intValue(), cpu);
+    }
+
+    /**
+     * Attach a classic BPF program to the {@code SO_REUSEPORT} group of this socket, which selects the socket at the
+     * index of the CPU that received the packet.
+     */
+    void attachReusePortCpuSteering() throws IOException {
+        attachReusePortCpuSteering(intValue());
+    }
+
+    /**
+     * Attach the {@code tls} upper layer protocol to this socket and install the given crypto info for the transmit
+     * or receive direction.
+     */
+    void setTlsCryptoInfo(boolean tx, byte[] cryptoInfo) throws IOException {
+        setTlsCryptoInfo(intValue(), tx ? 0 : 1, cryptoInfo);
+    }
+
     void getTcpInfo(EpollTcpInfo info) throws IOException {
         getTcpInfo(intValue(), info.info);
     }
@@ -164,6 +208,64 @@ final class LinuxSocket extends Socket {
         return isIpRecvOrigDestAddr(intValue()) != 0;
     }
 
+    int getUdpSegment() throws IOException {
+        return getUdpSegment(intValue());
+    }
+
+    boolean isUdpGro() throws IOException {
+        return isUdpGro(intValue()) != 0;
+    }
+
+    boolean isZeroCopy() throws IOException {
+        return isZeroCopy(intValue()) != 0;
+    }
+
+    int getIncomingCpu() throws IOException {
+        return getIncomingCpu(intValue());
+    }
+
+    /**
+     * Write the {@code iovec}s at the given {@code memoryAddress} via {@code sendmsg(...)} with {@code MSG_ZEROCOPY}.
+     * Returns the number of written bytes, or {@code -1} if the kernel could not pin the memory, in which case the
+     * data must be written without {@code MSG_ZEROCOPY}.
+     */
+    long writevAddressesZeroCopy(long memoryAddress, int length) throws IOException {
+        long res = writevAddressesZeroCopy(intValue(), memoryAddress, length);
+        if (res >= 0) {
+            return res;
+        }
+        if (res == Native.ERRNO_ENOBUFS_NEGATIVE) {
+            return -1;
+        }
+        return ioResult("sendmsg", (int) res, SENDMSG_CONNECTION_RESET_EXCEPTION,
+                WRITEV_ZEROCOPY_CLOSED_CHANNEL_EXCEPTION);
+    }
+
+    /**
+     * Read the next {@code MSG_ZEROCOPY} completion notification from the error queue of the socket. If there is one
+     * {@code true} is returned, and {@code completion} holds the first and the last id of the completed
+     * {@code sendmsg(...)} calls, followed by {@code 1} if the kernel copied the data anyway or {@code 0} otherwise.
+     */
+    boolean recvZeroCopyCompletion(int[] completion) throws IOException {
+        int res = recvZeroCopyCompletion(intValue(), completion);
+        if (res >= 0) {
+            return res != 0;
+        }
+        throw newIOException("recvmsg", res);
+    }
+
+    /**
+     * Returns a new {@link LinuxSocket} which refers to the same socket via a duplicate of the file descriptor. The
+     * socket stays open until both of them are closed.
+     */
+    LinuxSocket duplicate() throws IOException {
+        int res = dup(intValue());
+        if (res < 0) {
+            throw newIOException("dup", res);
+        }
+        return new LinuxSocket(res);
+    }
+
     PeerCredentials getPeerCredentials() throws IOException {
         return getPeerCredentials(intValue());
     }
@@ -180,6 +282,32 @@ final class LinuxSocket extends Socket {
         return ioResult("sendfile", (int) res, SENDFILE_CONNECTION_RESET_EXCEPTION, SENDFILE_CLOSED_CHANNEL_EXCEPTION);
     }
 
+    /**
+     * Send the data described by the given {@code iovec} array with a single {@code sendmsg(...)} call, and let the
+     * kernel split it into datagrams of {@code segmentSize} bytes via {@code UDP_SEGMENT}. If {@code addr} is
+     * {@code null} the data is sent to the connected peer.
+     */
+    int sendSegmented(long iovAddress, int iovCount, InetAddress addr, int port, int segmentSize)
+            throws IOException {
+        byte[] address = null;
+        int scopeId = 0;
+        if (addr instanceof Inet6Address) {
+            address = addr.getAddress();
+            scopeId = ((Inet6Address) addr).getScopeId();
+        } else if (addr != null) {
+            // convert to ipv4 mapped ipv6 address;
+            address = ipv4MappedIpv6Address(addr.getAddress());
+        }
+        int res = sendSegmented(intValue(), iovAddress, iovCount, address, scopeId, port, segmentSize);
+        if (res >= 0) {
+            return res;
+        }
+        if (res == ERROR_ECONNREFUSED_NEGATIVE) {
+            throw new PortUnreachableException("sendSegmented failed");
+        }
+        return ioResult("sendmsg", res, SENDMSG_CONNECTION_RESET_EXCEPTION, SENDMSG_CLOSED_CHANNEL_EXCEPTION);
+    }
+
     public static LinuxSocket newSocketStream() {
         return new LinuxSocket(newSocketStream0());
     }
@@ -210,6 +338,10 @@ final class LinuxSocket extends Socket {
     private static native void getTcpInfo(int fd, long[] array) throws IOException;
     private static native PeerCredentials getPeerCredentials(int fd) throws IOException;
     private static native int isTcpFastOpenConnect(int fd) throws IOException;
+    private static native int getUdpSegment(int fd) throws IOException;
+    private static native int isUdpGro(int fd) throws IOException;
+    private static native int isZeroCopy(int fd) throws IOException;
+    private static native int getIncomingCpu(int fd) throws IOException;
 
     private static native void setTcpDeferAccept(int fd, int deferAccept) throws IOException;
     private static native void setTcpQuickAck(int fd, int quickAck) throws IOException;
@@ -226,4 +358,15 @@ final class LinuxSocket extends Socket {
     private static native void setIpTransparent(int fd, int transparent) throws IOException;
     private static native void setIpRecvOrigDestAddr(int fd, int transparent) throws IOException;
     private static native void setTcpMd5Sig(int fd, byte[] address, int scopeId, byte[] key) throws IOException;
+    private static native void setUdpSegment(int fd, int segmentSize) throws IOException;
+    private static native void setUdpGro(int fd, int gro) throws IOException;
+    private static native void setZeroCopy(int fd, int zeroCopy) throws IOException;
+    private static native void setIncomingCpu(int fd, int cpu) throws IOException;
+    private static native void attachReusePortCpuSteering(int fd) throws IOException;
+    private static native void setTlsCryptoInfo(int fd, int direction, byte[] cryptoInfo) throws IOException;
+    private static native long writevAddressesZeroCopy(int fd, long memoryAddress, int length);
+    private static native int recvZeroCopyCompletion(int fd, int[] completion);
+    private static native int dup(int fd);
+    private static native int sendSegmented(int fd, long iovAddress, int iovCount, byte[] address, int scopeId,
+                                            int port, int segmentSize);
 }
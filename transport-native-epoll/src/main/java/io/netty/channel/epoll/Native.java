@@ -27,15 +27,24 @@ import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.io.IOException;
 import java.nio.channels.ClosedChannelException;
+import java.util.Arrays;
 import java.util.Locale;
 
+import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.cpuSetSize;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.epollerr;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.epollet;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.epollin;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.epollout;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.epollrdhup;
+import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.errnoEINVAL;
+import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.errnoEIO;
+import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.errnoENOBUFS;
+import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.errnoENOPROTOOPT;
+import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.errnoEOPNOTSUPP;
+import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.isSupportingRecvmmsg;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.isSupportingSendmmsg;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.isSupportingTcpFastopen;
+import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.isSupportingUdpSegment;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.kernelVersion;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.tcpMd5SigMaxKeyLen;
 import static io.netty.channel.unix.Errors.ERRNO_EPIPE_NEGATIVE;
@@ -69,22 +78,35 @@ public final class Native {
     public static final int EPOLLRDHUP = epollrdhup();
     public static final int EPOLLET = epollet();
     public static final int EPOLLERR = epollerr();
+    static final int ERRNO_ENOBUFS_NEGATIVE = -errnoENOBUFS();
+    static final int ERRNO_EIO_NEGATIVE = -errnoEIO();
+    static final int ERRNO_EINVAL_NEGATIVE = -errnoEINVAL();
+    static final int ERRNO_ENOPROTOOPT_NEGATIVE = -errnoENOPROTOOPT();
+    static final int ERRNO_EOPNOTSUPP_NEGATIVE = -errnoEOPNOTSUPP();
 
     public static final boolean IS_SUPPORTING_SENDMMSG = isSupportingSendmmsg();
+    static final boolean IS_SUPPORTING_RECVMMSG = isSupportingRecvmmsg();
+    static final boolean IS_SUPPORTING_UDP_SEGMENT = isSupportingUdpSegment();
     public static final boolean IS_SUPPORTING_TCP_FASTOPEN = isSupportingTcpFastopen();
     public static final int TCP_MD5SIG_MAXKEYLEN = tcpMd5SigMaxKeyLen();
+    static final int CPU_SETSIZE = cpuSetSize();
     public static final String KERNEL_VERSION = kernelVersion();
 
     private static final NativeIoException SENDMMSG_CONNECTION_RESET_EXCEPTION;
+    private static final NativeIoException RECVMMSG_CONNECTION_RESET_EXCEPTION;
     private static final NativeIoException SPLICE_CONNECTION_RESET_EXCEPTION;
     private static final ClosedChannelException SENDMMSG_CLOSED_CHANNEL_EXCEPTION = ThrowableUtil.unknownStackTrace(
             new ClosedChannelException(), Native.class, "sendmmsg(...)");
+    private static final ClosedChannelException RECVMMSG_CLOSED_CHANNEL_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            new ClosedChannelException(), Native.class, "recvmmsg(...)");
     private static final ClosedChannelException SPLICE_CLOSED_CHANNEL_EXCEPTION = ThrowableUtil.unknownStackTrace(
             new ClosedChannelException(), Native.class, "splice(...)");
 
     static {
         SENDMMSG_CONNECTION_RESET_EXCEPTION = newConnectionResetException("syscall:sendmmsg(...)",
                 ERRNO_EPIPE_NEGATIVE);
+        RECVMMSG_CONNECTION_RESET_EXCEPTION = newConnectionResetException("syscall:recvmmsg(...)",
+                ERRNO_EPIPE_NEGATIVE);
         SPLICE_CONNECTION_RESET_EXCEPTION = newConnectionResetException("syscall:splice(...)",
                 ERRNO_EPIPE_NEGATIVE);
     }
@@ -182,6 +204,67 @@ public final class Native {
     private static native int sendmmsg0(
             int fd, NativeDatagramPacketArray.NativeDatagramPacket[] msgs, int offset, int len);
 
+    /**
+     * Receive up to {@code len} datagrams with a single
+     * <a href="http://man7.org/linux/man-pages/man2/recvmmsg.2.html">recvmmsg(...)</a> call. The number of
+     * received datagrams is returned, which is {@code 0} if nothing was left to read.
+     */
+    static int recvmmsg(
+            int fd, NativeDatagramPacketArray.NativeDatagramPacket[] msgs, int offset, int len) throws IOException {
+        int res = recvmmsg0(fd, msgs, offset, len);
+        if (res >= 0) {
+            return res;
+        }
+        return ioResult("recvmmsg", res, RECVMMSG_CONNECTION_RESET_EXCEPTION, RECVMMSG_CLOSED_CHANNEL_EXCEPTION);
+    }
+
+    private static native int recvmmsg0(
+            int fd, NativeDatagramPacketArray.NativeDatagramPacket[] msgs, int offset, int len);
+
+    /**
+     * Pin the calling thread to the given CPU via
+     * <a href="http://man7.org/linux/man-pages/man2/sched_setaffinity.2.html">sched_setaffinity(...)</a>.
+     */
+    static void setCpuAffinity(int cpu) throws IOException {
+        if (cpu < 0 || cpu >= CPU_SETSIZE) {
+            throw new IllegalArgumentException("cpu: " + cpu + " (expected: 0-" + (CPU_SETSIZE - 1) + ')');
+        }
+        int res = setCpuAffinity0(cpu);
+        if (res < 0) {
+            throw newIOException("sched_setaffinity", res);
+        }
+    }
+
+    private static native int setCpuAffinity0(int cpu);
+
+    /**
+     * Returns the CPUs the calling thread is allowed to run on in ascending order, as returned by
+     * <a href="http://man7.org/linux/man-pages/man2/sched_getaffinity.2.html">sched_getaffinity(...)</a>.
+     */
+    static int[] allowedCpus() throws IOException {
+        int[] cpus = new int[CPU_SETSIZE];
+        int res = allowedCpus0(cpus);
+        if (res < 0) {
+            throw newIOException("sched_getaffinity", res);
+        }
+        return Arrays.copyOf(cpus, res);
+    }
+
+    private static native int allowedCpus0(int[] cpus);
+
+    /**
+     * Returns the CPU the calling thread is running on.
+     */
+    static int currentCpu() throws IOException {
+        int res = currentCpu0();
+        if (res < 0) {
+            throw newIOException("sched_getcpu", res);
+        }
+        return res;
+    }
+
+    private static native int currentCpu0();
+
     // epoll_event related
     public static native int sizeofEpollEvent();
     public static native int offsetofEpollData();
@@ -16,18 +16,21 @@
 package io.netty.channel.epoll;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
 import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.socket.DatagramPacket;
 import io.netty.channel.unix.IovArray;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
 
 import static io.netty.channel.unix.Limits.UIO_MAX_IOV;
 import static io.netty.channel.unix.NativeInetAddress.ipv4MappedIpv6Address;
 
 /**
- * Support <a href="http://linux.die.net/man/2/sendmmsg">sendmmsg(...)</a> on linux with GLIBC 2.14+
+ * Support <a href="http://linux.die.net/man/2/sendmmsg">sendmmsg(...)</a> on linux with GLIBC 2.14+ and
+ * <a href="http://man7.org/linux/man-pages/man2/recvmmsg.2.html">recvmmsg(...)</a> on linux with GLIBC 2.12+.
  */
 final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessageProcessor {
 
@@ -50,24 +53,36 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
      * {@code false} otherwise.
      */
     boolean add(DatagramPacket packet) {
+        ByteBuf content = packet.content();
+        return add0(content, content.readerIndex(), content.readableBytes(), packet.recipient());
+    }
+
+    /**
+     * Try to add the writable region of the given {@link ByteBuf}, starting at {@code index} with {@code len} bytes,
+     * so it can be filled by a {@link Native#recvmmsg(int, NativeDatagramPacket[], int, int)} call. The
+     * {@link ByteBuf} must be direct. Returns {@code true} on success, {@code false} otherwise, which includes an empty
+     * region as no packet would be added for it.
+     */
+    boolean addWritable(ByteBuf buf, int index, int len) {
+        assert buf.isDirect();
+        return len > 0 && add0(buf, index, len, null);
+    }
+
+    private boolean add0(ByteBuf content, int index, int len, InetSocketAddress recipient) {
         if (count == packets.length) {
-            // We already filled up to UIO_MAX_IOV messages. This is the max allowed per sendmmsg(...) call, we will
-            // try again later.
+            // We already filled up to UIO_MAX_IOV messages. This is the max allowed per sendmmsg(...) or
+            // recvmmsg(...) call, we will try again later.
             return false;
         }
-        ByteBuf content = packet.content();
-        int len = content.readableBytes();
         if (len == 0) {
             return true;
         }
-        NativeDatagramPacket p = packets[count];
-        InetSocketAddress recipient = packet.recipient();
-
         int offset = iovArray.count();
-        if (!iovArray.add(content)) {
+        if (!iovArray.add(content, index, len)) {
             // Not enough space to hold the whole content, we will try again later.
             return false;
         }
+        NativeDatagramPacket p = packets[count];
         p.init(iovArray.memoryAddress(offset), iovArray.count() - offset, recipient);
 
         count++;
@@ -110,25 +125,62 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
 
         // This is the actual struct iovec*
         private long memoryAddress;
+        // The number of iovec entries. Once filled by recvmmsg(...) this holds the number of bytes received.
         private int count;
 
-        private byte[] addr;
+        // We use 16 bytes as this allows us to fit ipv6, ipv4 and ipv4 mapped ipv6 addresses in the array.
+        private final byte[] addr = new byte[16];
+        private int addrLen;
         private int scopeId;
         private int port;
+        // The size of the coalesced datagrams as reported via UDP_GRO by recvmmsg(...), or 0 if none.
+        private int segmentSize;
 
         private void init(long memoryAddress, int count, InetSocketAddress recipient) {
             this.memoryAddress = memoryAddress;
             this.count = count;
 
-            InetAddress address = recipient.getAddress();
-            if (address instanceof Inet6Address) {
-                addr = address.getAddress();
-                scopeId = ((Inet6Address) address).getScopeId();
+            if (recipient == null) {
+                // This packet will be filled by recvmmsg(...).
+                this.scopeId = 0;
+                this.port = 0;
+                this.addrLen = 0;
+            } else {
+                InetAddress address = recipient.getAddress();
+                if (address instanceof Inet6Address) {
+                    System.arraycopy(address.getAddress(), 0, addr, 0, addr.length);
+                    scopeId = ((Inet6Address) address).getScopeId();
+                } else {
+                    System.arraycopy(ipv4MappedIpv6Address(address.getAddress()), 0, addr, 0, addr.length);
+                    scopeId = 0;
+                }
+                addrLen = addr.length;
+                port = recipient.getPort();
+            }
+        }
+
+        /**
+         * Create a new {@link DatagramPacket} out of the data received by recvmmsg(...), or a
+         * {@link SegmentedDatagramPacket} if the kernel coalesced multiple datagrams via UDP_GRO. The given
+         * {@link ByteBuf} must be the buffer that was passed to {@link #addWritable(ByteBuf, int, int)} for this
+         * packet.
+         */
+        ByteBufHolder newDatagramPacket(ByteBuf buffer, InetSocketAddress localAddress) throws UnknownHostException {
+            final InetAddress address;
+            if (addrLen == addr.length) {
+                address = scopeId == 0 ? InetAddress.getByAddress(addr) :
+                        Inet6Address.getByAddress(null, addr, scopeId);
             } else {
-                addr = ipv4MappedIpv6Address(address.getAddress());
-                scopeId = 0;
+                byte[] ipv4 = new byte[addrLen];
+                System.arraycopy(addr, 0, ipv4, 0, addrLen);
+                address = InetAddress.getByAddress(ipv4);
+            }
+            buffer.writerIndex(buffer.writerIndex() + count);
+            InetSocketAddress remoteAddress = new InetSocketAddress(address, port);
+            if (segmentSize > 0 && count > segmentSize) {
+                return new SegmentedDatagramPacket(buffer, segmentSize, localAddress, remoteAddress);
             }
-            port = recipient.getPort();
+            return new DatagramPacket(buffer, localAddress, remoteAddress);
         }
     }
 }
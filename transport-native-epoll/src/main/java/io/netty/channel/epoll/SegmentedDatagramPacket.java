@@ -0,0 +1,146 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.DefaultAddressedEnvelope;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.internal.ObjectUtil;
+
+import java.net.InetSocketAddress;
+
+/**
+ * A message which holds the payload of multiple datagrams of the same size, which is written with a single
+ * {@code sendmsg(...)} call by {@link EpollDatagramChannel}. The kernel then splits the payload into datagrams of
+ * {@link #segmentSize()} bytes via
+ * <a href="http://man7.org/linux/man-pages/man7/udp.7.html">UDP_SEGMENT</a> (generic segmentation offload). The last
+ * datagram may be smaller than {@link #segmentSize()}.
+ * <p>
+ * If UDP segmentation offload is not supported by the system, or the kernel rejects it, the payload is split into
+ * multiple datagrams before it is written.
+ * <p>
+ * If {@link EpollDatagramChannelConfig#setUdpGro(boolean)} is enabled, {@link EpollDatagramChannel} also fires
+ * instances of this class for datagrams which were coalesced by the kernel via
+ * <a href="http://man7.org/linux/man-pages/man7/udp.7.html">UDP_GRO</a> (generic receive offload), unless
+ * {@link EpollDatagramChannelConfig#setUdpGroSplit(boolean)} is enabled.
+ */
+public final class SegmentedDatagramPacket
+        extends DefaultAddressedEnvelope<ByteBuf, InetSocketAddress> implements ByteBufHolder {
+
+    private final int segmentSize;
+
+    /**
+     * Create a new instance with the specified packet {@code data}, {@code segmentSize} and {@code recipient}
+     * address.
+     */
+    public SegmentedDatagramPacket(ByteBuf data, int segmentSize, InetSocketAddress recipient) {
+        super(data, recipient);
+        this.segmentSize = ObjectUtil.checkPositive(segmentSize, "segmentSize");
+    }
+
+    /**
+     * Create a new instance with the specified packet {@code data}, {@code segmentSize}, {@code recipient} address,
+     * and {@code sender} address.
+     */
+    public SegmentedDatagramPacket(ByteBuf data, int segmentSize, InetSocketAddress recipient,
+                                   InetSocketAddress sender) {
+        super(data, recipient, sender);
+        this.segmentSize = ObjectUtil.checkPositive(segmentSize, "segmentSize");
+    }
+
+    /**
+     * Returns {@code true} if the underlying system supports UDP segmentation offload, and so the payload of a
+     * {@link SegmentedDatagramPacket} can be split by the kernel.
+     */
+    public static boolean isSupported() {
+        return Epoll.isAvailable() && Native.IS_SUPPORTING_UDP_SEGMENT;
+    }
+
+    /**
+     * Returns the size of each datagram the payload is split into.
+     */
+    public int segmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Returns the number of datagrams the payload is split into.
+     */
+    public int segmentCount() {
+        int len = content().readableBytes();
+        return len == 0 ? 0 : (len - 1) / segmentSize + 1;
+    }
+
+    /**
+     * Returns a {@link DatagramPacket} which holds the datagram at the given {@code index} of the payload. The returned
+     * packet shares the content of this packet, and its content is retained so it needs to be released separately.
+     */
+    public DatagramPacket retainedSegment(int index) {
+        int segmentCount = segmentCount();
+        if (index < 0 || index >= segmentCount) {
+            throw new IndexOutOfBoundsException("index: " + index + " (expected: 0-" + (segmentCount - 1) + ')');
+        }
+        ByteBuf content = content();
+        int offset = index * segmentSize;
+        int len = Math.min(segmentSize, content.readableBytes() - offset);
+        return new DatagramPacket(content.retainedSlice(content.readerIndex() + offset, len), recipient(), sender());
+    }
+
+    @Override
+    public SegmentedDatagramPacket copy() {
+        return replace(content().copy());
+    }
+
+    @Override
+    public SegmentedDatagramPacket duplicate() {
+        return replace(content().duplicate());
+    }
+
+    @Override
+    public SegmentedDatagramPacket retainedDuplicate() {
+        return replace(content().retainedDuplicate());
+    }
+
+    @Override
+    public SegmentedDatagramPacket replace(ByteBuf content) {
+        return new SegmentedDatagramPacket(content, segmentSize, recipient(), sender());
+    }
+
+    @Override
+    public SegmentedDatagramPacket retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public SegmentedDatagramPacket retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public SegmentedDatagramPacket touch() {
+        super.touch();
+        return this;
+    }
+
+    @Override
+    public SegmentedDatagramPacket touch(Object hint) {
+        super.touch(hint);
+        return this;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelOutboundBuffer.MessageProcessor;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the {@link ByteBuf}s which were written via {@code MSG_ZEROCOPY} alive until the kernel reported the
+ * completion of the write via the error queue of the socket, as the kernel still references their memory until then.
+ * <p>
+ * The kernel assigns consecutive ids to each {@code sendmsg(...)} call with {@code MSG_ZEROCOPY} that wrote at least
+ * one byte, and reports completions as ranges of these ids.
+ * <p>
+ * <strong>Not thread-safe</strong>, this is only accessed from within the {@link EpollEventLoop}.
+ */
+final class ZeroCopyCompletionQueue implements MessageProcessor {
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<Entry>();
+    private final List<ByteBuf> retained = new ArrayList<ByteBuf>(2);
+    private final int[] completion = new int[3];
+    // The id of the first entry in the queue.
+    private int headId;
+    // The id which the kernel assigns to the next sendmsg(...) call.
+    private int nextId;
+    private long remaining;
+
+    /**
+     * Retain the {@link ByteBuf}s at the head of the {@link ChannelOutboundBuffer} which hold the
+     * {@code writtenBytes} that were just written via {@code MSG_ZEROCOPY}. This must be called before the bytes are
+     * removed from the {@link ChannelOutboundBuffer}.
+     */
+    void add(ChannelOutboundBuffer in, long writtenBytes) throws Exception {
+        assert writtenBytes > 0;
+        remaining = writtenBytes;
+        in.forEachFlushedMessage(this);
+
+        final Object buffers;
+        if (retained.size() == 1) {
+            buffers = retained.get(0);
+        } else {
+            buffers = retained.toArray(new ByteBuf[0]);
+        }
+        retained.clear();
+
+        if (entries.isEmpty()) {
+            headId = nextId;
+        }
+        entries.add(new Entry(buffers));
+        nextId++;
+    }
+
+    @Override
+    public boolean processMessage(Object msg) {
+        if (!(msg instanceof ByteBuf)) {
+            return false;
+        }
+        ByteBuf buf = (ByteBuf) msg;
+        int readableBytes = buf.readableBytes();
+        if (readableBytes == 0) {
+            return true;
+        }
+        retained.add(buf.retain());
+        remaining -= readableBytes;
+        return remaining > 0;
+    }
+
+    /**
+     * Read the completion notifications from the error queue of the given {@link LinuxSocket} and release all
+     * {@link ByteBuf}s which are not referenced by the kernel anymore. Returns {@code true} if the kernel copied the
+     * data of any of the completed writes anyway.
+     */
+    boolean readCompletions(LinuxSocket socket) throws IOException {
+        boolean copied = false;
+        while (socket.recvZeroCopyCompletion(completion)) {
+            complete(completion[0], completion[1]);
+            copied |= completion[2] != 0;
+        }
+        return copied;
+    }
+
+    /**
+     * Notify about the completion of the {@code sendmsg(...)} calls with the ids {@code lo} to {@code hi}
+     * (inclusive), and release all {@link ByteBuf}s which are not referenced by the kernel anymore.
+     */
+    void complete(int lo, int hi) {
+        // Completions are usually reported in order, but this is not guaranteed. The ids are unsigned 32 bit integers
+        // which may wrap around, so compare the distance between them.
+        int id = headId;
+        for (Entry entry : entries) {
+            if (id - lo >= 0 && hi - id >= 0) {
+                entry.completed = true;
+            }
+            id++;
+        }
+        for (;;) {
+            Entry entry = entries.peek();
+            if (entry == null || !entry.completed) {
+                break;
+            }
+            entries.remove();
+            entry.release();
+            headId++;
+        }
+    }
+
+    /**
+     * Returns {@code true} if there are no writes which wait for their completion.
+     */
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Release the {@link ByteBuf}s of all writes which wait for their completion, and return the number of these
+     * writes. This must only be called once the socket and all duplicates of it were closed, as the completions can
+     * not be read anymore then and the {@link ByteBuf}s would be leaked otherwise.
+     */
+    int releaseAll() {
+        int released = entries.size();
+        for (;;) {
+            Entry entry = entries.poll();
+            if (entry == null) {
+                break;
+            }
+            entry.release();
+        }
+        headId = nextId;
+        return released;
+    }
+
+    private static final class Entry {
+        // Either a single ByteBuf or a ByteBuf[].
+        private final Object buffers;
+        boolean completed;
+
+        Entry(Object buffers) {
+            this.buffers = buffers;
+        }
+
+        void release() {
+            if (buffers instanceof ByteBuf) {
+                ((ByteBuf) buffers).release();
+            } else {
+                for (ByteBuf buf : (ByteBuf[]) buffers) {
+                    buf.release();
+                }
+            }
+        }
+    }
+}
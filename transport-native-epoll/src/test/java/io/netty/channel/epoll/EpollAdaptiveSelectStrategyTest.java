@@ -0,0 +1,93 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.channel.SelectStrategy;
+import io.netty.util.IntSupplier;
+import io.netty.util.concurrent.Future;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EpollAdaptiveSelectStrategyTest {
+
+    private static final IntSupplier SUPPLIER = new IntSupplier() {
+        @Override
+        public int get() {
+            return 3;
+        }
+    };
+
+    @Test
+    public void testPollsIfTasksArePending() throws Exception {
+        EpollAdaptiveSelectStrategy strategy = new EpollAdaptiveSelectStrategy(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(3, strategy.calculateStrategy(SUPPLIER, true));
+    }
+
+    @Test
+    public void testSpinsAfterActivityOnly() throws Exception {
+        long budget = TimeUnit.MILLISECONDS.toNanos(50);
+        EpollAdaptiveSelectStrategy strategy = new EpollAdaptiveSelectStrategy(budget);
+        assertEquals(SelectStrategy.SELECT, strategy.calculateStrategy(SUPPLIER, false));
+        assertFalse(strategy.isSpinning());
+
+        strategy.eventsReady(1);
+        assertEquals(SelectStrategy.BUSY_WAIT, strategy.calculateStrategy(SUPPLIER, false));
+        assertTrue(strategy.isSpinning());
+
+        // Polls which did not return any events do not extend the budget.
+        strategy.eventsReady(0);
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(budget) * 2);
+        assertEquals(SelectStrategy.SELECT, strategy.calculateStrategy(SUPPLIER, false));
+        assertFalse(strategy.isSpinning());
+    }
+
+    @Test
+    public void testEventRate() throws Exception {
+        EpollAdaptiveSelectStrategy strategy = new EpollAdaptiveSelectStrategy(0);
+        strategy.eventsReady(100);
+        Thread.sleep(150);
+        strategy.eventsReady(0);
+        assertTrue(strategy.eventRate() > 0);
+    }
+
+    @Test(timeout = 10000)
+    public void testEventLoopGroup() throws Exception {
+        EpollAdaptiveSelectStrategyFactory factory =
+                new EpollAdaptiveSelectStrategyFactory(1, TimeUnit.MILLISECONDS);
+        EpollEventLoopGroup group = new EpollEventLoopGroup(2, factory);
+        try {
+            assertEquals(2, factory.strategies().size());
+            for (int i = 0; i < 10; i++) {
+                Future<Integer> future = group.next().submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return 1;
+                    }
+                });
+                assertEquals(1, (int) future.sync().getNow());
+                Thread.sleep(2);
+            }
+        } finally {
+            group.shutdownGracefully().sync();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.NetUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EpollCpuAffinityTest {
+    private EpollEventLoopGroup group;
+
+    @Before
+    public void setup() {
+        group = new EpollEventLoopGroup(Math.min(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    @After
+    public void teardown() {
+        group.shutdownGracefully();
+    }
+
+    @Test(timeout = 10000)
+    public void testAcceptedChannelsStayOnListenerEventLoop() throws Exception {
+        final BlockingQueue<Channel> accepted = new LinkedBlockingQueue<Channel>();
+        ServerBootstrap bootstrap = new ServerBootstrap()
+                .channel(EpollServerSocketChannel.class)
+                .childHandler(new AcceptedHandler(accepted));
+
+        List<Channel> listeners = EpollCpuAffinity.bind(
+                bootstrap, group, new InetSocketAddress(NetUtil.LOCALHOST4, 0)).sync().getNow();
+        try {
+            assertEquals(group.executorCount(), listeners.size());
+            InetSocketAddress address = (InetSocketAddress) listeners.get(0).localAddress();
+            for (Channel listener: listeners) {
+                assertTrue(listener.isActive());
+                assertEquals(address, listener.localAddress());
+            }
+
+            for (int i = 0; i < listeners.size() * 2; i++) {
+                Socket socket = new Socket(address.getAddress(), address.getPort());
+                try {
+                    Channel child = accepted.take();
+                    assertNotNull(child.parent());
+                    assertTrue(listeners.contains(child.parent()));
+                    assertSame(child.parent().eventLoop(), child.eventLoop());
+                } finally {
+                    socket.close();
+                }
+            }
+        } finally {
+            for (Channel listener: listeners) {
+                listener.close().syncUninterruptibly();
+            }
+        }
+    }
+
+    @Test
+    public void testAllowedCpus() throws Exception {
+        int[] cpus = Native.allowedCpus();
+        assertTrue(cpus.length > 0);
+        for (int i = 0; i < cpus.length; i++) {
+            assertTrue(cpus[i] >= 0 && cpus[i] < Native.CPU_SETSIZE);
+            assertTrue(i == 0 || cpus[i] > cpus[i - 1]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCpuOutOfRange() throws Exception {
+        Native.setCpuAffinity(Native.CPU_SETSIZE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBootstrapWithGroup() {
+        EpollCpuAffinity.bind(new ServerBootstrap().group(group).channel(EpollServerSocketChannel.class),
+                group, new InetSocketAddress(NetUtil.LOCALHOST4, 0));
+    }
+
+    @Sharable
+    private static final class AcceptedHandler extends ChannelInboundHandlerAdapter {
+        private final BlockingQueue<Channel> accepted;
+
+        AcceptedHandler(BlockingQueue<Channel> accepted) {
+            this.accepted = accepted;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            accepted.add(ctx.channel());
+            ctx.fireChannelActive();
+        }
+    }
+}
@@ -15,8 +15,12 @@
  */
 package io.netty.channel.epoll;
 
+import io.netty.channel.ChannelException;
+import org.junit.Assume;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class EpollDatagramChannelConfigTest {
@@ -29,4 +33,64 @@ public class EpollDatagramChannelConfigTest {
         assertTrue(channel.config().getOption(EpollChannelOption.IP_FREEBIND));
         channel.fd().close();
     }
+
+    @Test
+    public void testRecvmmsgBatchSize() throws Exception {
+        Epoll.ensureAvailability();
+        EpollDatagramChannel channel = new EpollDatagramChannel();
+        assertEquals(1, (int) channel.config().getOption(EpollChannelOption.RECVMMSG_BATCH_SIZE));
+        assertTrue(channel.config().setOption(EpollChannelOption.RECVMMSG_BATCH_SIZE, 32));
+        assertEquals(32, (int) channel.config().getOption(EpollChannelOption.RECVMMSG_BATCH_SIZE));
+        channel.fd().close();
+    }
+
+    @Test
+    public void testUdpSegment() throws Exception {
+        Epoll.ensureAvailability();
+        Assume.assumeTrue(SegmentedDatagramPacket.isSupported());
+        EpollDatagramChannel channel = new EpollDatagramChannel();
+        assertTrue(channel.config().setOption(EpollChannelOption.UDP_SEGMENT, 1200));
+        assertEquals(1200, (int) channel.config().getOption(EpollChannelOption.UDP_SEGMENT));
+        channel.fd().close();
+    }
+
+    @Test
+    public void testUdpGro() throws Exception {
+        Epoll.ensureAvailability();
+        EpollDatagramChannel channel = new EpollDatagramChannel();
+        try {
+            try {
+                channel.config().setUdpGro(true);
+            } catch (ChannelException e) {
+                // UDP_GRO requires linux 5.0+
+                Assume.assumeNoException(e);
+            }
+            assertTrue(channel.config().getOption(EpollChannelOption.UDP_GRO));
+            assertTrue(channel.config().setOption(EpollChannelOption.UDP_GRO, false));
+            assertFalse(channel.config().getOption(EpollChannelOption.UDP_GRO));
+        } finally {
+            channel.fd().close();
+        }
+    }
+
+    @Test
+    public void testUdpGroSplit() throws Exception {
+        Epoll.ensureAvailability();
+        EpollDatagramChannel channel = new EpollDatagramChannel();
+        assertFalse(channel.config().getOption(EpollChannelOption.UDP_GRO_SPLIT));
+        assertTrue(channel.config().setOption(EpollChannelOption.UDP_GRO_SPLIT, true));
+        assertTrue(channel.config().getOption(EpollChannelOption.UDP_GRO_SPLIT));
+        channel.fd().close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRecvmmsgBatchSizeMustBePositive() throws Exception {
+        Epoll.ensureAvailability();
+        EpollDatagramChannel channel = new EpollDatagramChannel();
+        try {
+            channel.config().setRecvmmsgBatchSize(0);
+        } finally {
+            channel.fd().close();
+        }
+    }
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.AbstractByteBufAllocator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.NetUtil;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EpollDatagramUdpGroTest {
+
+    private static final int SEGMENT_SIZE = 100;
+    private static final int SEGMENTS = 10;
+
+    private static EventLoopGroup group;
+
+    @BeforeClass
+    public static void setUp() {
+        Epoll.ensureAvailability();
+        group = new EpollEventLoopGroup(1);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        group.shutdownGracefully();
+    }
+
+    @Test(timeout = 10000)
+    public void testSegmentedPacket() throws Throwable {
+        testUdpGro(PooledByteBufAllocator.DEFAULT, false);
+    }
+
+    @Test(timeout = 10000)
+    public void testSplitSegments() throws Throwable {
+        testUdpGro(PooledByteBufAllocator.DEFAULT, true);
+    }
+
+    @Test(timeout = 10000)
+    public void testSegmentedPacketHeapAllocator() throws Throwable {
+        // The datagrams must still be read into direct buffers via recvmmsg(...), as they would be merged otherwise.
+        testUdpGro(new HeapBufferAllocator(), false);
+    }
+
+    @Test(timeout = 10000)
+    public void testSplitSegmentsHeapAllocator() throws Throwable {
+        testUdpGro(new HeapBufferAllocator(), true);
+    }
+
+    /**
+     * Provides heap buffers even if direct buffers are requested, which {@code recvmmsg(...)} can not read into.
+     */
+    private static final class HeapBufferAllocator extends AbstractByteBufAllocator {
+
+        @Override
+        protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
+            return UnpooledByteBufAllocator.DEFAULT.heapBuffer(initialCapacity, maxCapacity);
+        }
+
+        @Override
+        protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
+            return UnpooledByteBufAllocator.DEFAULT.heapBuffer(initialCapacity, maxCapacity);
+        }
+
+        @Override
+        public boolean isDirectBufferPooled() {
+            return false;
+        }
+    }
+
+    private static void testUdpGro(ByteBufAllocator allocator, boolean split) throws Throwable {
+        Assume.assumeTrue(SegmentedDatagramPacket.isSupported());
+        final byte[] data = new byte[SEGMENT_SIZE * SEGMENTS];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i / SEGMENT_SIZE);
+        }
+        final ByteBuf received = Unpooled.buffer(data.length);
+        final List<Object> errors = new ArrayList<Object>();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        Bootstrap bootstrap = new Bootstrap().group(group).channel(EpollDatagramChannel.class)
+                .option(EpollChannelOption.UDP_GRO_SPLIT, split)
+                .option(EpollChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(65536))
+                .option(EpollChannelOption.ALLOCATOR, allocator)
+                .handler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ByteBuf content = ((ByteBufHolder) msg).content();
+                        if (msg instanceof SegmentedDatagramPacket) {
+                            if (split || ((SegmentedDatagramPacket) msg).segmentSize() != SEGMENT_SIZE) {
+                                errors.add(msg.getClass());
+                            }
+                        } else if (!(msg instanceof DatagramPacket) || content.readableBytes() != SEGMENT_SIZE) {
+                            // Datagrams which were coalesced must never be fired as a single datagram.
+                            errors.add(content.readableBytes());
+                        }
+                        received.writeBytes(content);
+                        ((ByteBufHolder) msg).release();
+                        if (!received.isWritable()) {
+                            latch.countDown();
+                        }
+                    }
+                });
+        Channel receiver = bootstrap.bind(new InetSocketAddress(NetUtil.LOCALHOST4, 0)).sync().channel();
+        Channel sender = null;
+        try {
+            try {
+                ((EpollDatagramChannel) receiver).config().setUdpGro(true);
+            } catch (ChannelException e) {
+                // UDP_GRO requires linux 5.0+
+                Assume.assumeNoException(e);
+            }
+            sender = new Bootstrap().group(group).channel(EpollDatagramChannel.class)
+                    .handler(new ChannelInboundHandlerAdapter())
+                    .bind(new InetSocketAddress(NetUtil.LOCALHOST4, 0)).sync().channel();
+            // The kernel splits the payload via UDP_SEGMENT and may coalesce the datagrams again via UDP_GRO.
+            sender.writeAndFlush(new SegmentedDatagramPacket(Unpooled.wrappedBuffer(data), SEGMENT_SIZE,
+                    (InetSocketAddress) receiver.localAddress())).sync();
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(0, errors.size());
+            assertArrayEquals(data, received.array());
+        } finally {
+            if (sender != null) {
+                sender.close().sync();
+            }
+            receiver.close().sync();
+            received.release();
+        }
+    }
+}
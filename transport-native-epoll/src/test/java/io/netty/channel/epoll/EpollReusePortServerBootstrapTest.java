@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.ReusePortServerBootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoop;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.util.NetUtil;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EpollReusePortServerBootstrapTest {
+    private EpollEventLoopGroup group;
+
+    @Before
+    public void setup() {
+        group = new EpollEventLoopGroup(4);
+    }
+
+    @After
+    public void teardown() {
+        group.shutdownGracefully();
+    }
+
+    private ServerBootstrap newBootstrap() {
+        return new ServerBootstrap()
+                .group(group)
+                .channel(EpollServerSocketChannel.class)
+                .childHandler(new ChannelInboundHandlerAdapter());
+    }
+
+    @Test(timeout = 10000)
+    public void testBindsOneListenerPerEventLoop() throws Exception {
+        ReusePortServerBootstrap bootstrap = new ReusePortServerBootstrap(
+                newBootstrap().option(EpollChannelOption.SO_REUSEPORT, true));
+        ChannelGroup listeners = bootstrap.bind(new InetSocketAddress(NetUtil.LOCALHOST4, 0)).sync().getNow();
+        try {
+            assertEquals(group.executorCount(), listeners.size());
+            Set<EventLoop> loops = new HashSet<EventLoop>();
+            InetSocketAddress address = null;
+            for (Channel listener: listeners) {
+                assertTrue(listener.isActive());
+                loops.add(listener.eventLoop());
+                if (address == null) {
+                    address = (InetSocketAddress) listener.localAddress();
+                } else {
+                    assertEquals(address, listener.localAddress());
+                }
+            }
+            assertEquals(group.executorCount(), loops.size());
+            assertEquals(group.executorCount(), bootstrap.metrics().activeListeners());
+
+            int connections = 16;
+            for (int i = 0; i < connections; i++) {
+                new Socket(address.getAddress(), address.getPort()).close();
+            }
+            while (bootstrap.metrics().acceptedCount() < connections) {
+                Thread.sleep(10);
+            }
+            assertEquals(connections, bootstrap.metrics().acceptedCount());
+        } finally {
+            listeners.close().sync();
+        }
+        assertTrue(listeners.newCloseFuture().isDone());
+        // channelInactive is fired after the close future was notified.
+        while (bootstrap.metrics().activeListeners() != 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testBindsSingleListenerWithoutReusePort() throws Exception {
+        ReusePortServerBootstrap bootstrap = new ReusePortServerBootstrap(newBootstrap()).acceptors(4);
+        Future<ChannelGroup> future = bootstrap.bind(new InetSocketAddress(NetUtil.LOCALHOST4, 0)).sync();
+        ChannelGroup listeners = future.getNow();
+        try {
+            assertEquals(1, listeners.size());
+        } finally {
+            listeners.close().sync();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBindWithoutGroup() {
+        new ReusePortServerBootstrap(new ServerBootstrap()).bind(0);
+    }
+}
@@ -134,6 +134,30 @@ public class EpollSocketChannelConfigTest {
         assertTrue(ch.config().isTcpQuickAck());
     }
 
+    @Test
+    public void testZeroCopy() {
+        try {
+            ch.config().setZeroCopy(true);
+        } catch (ChannelException e) {
+            // SO_ZEROCOPY requires linux 4.14+
+            assumeNoException(e);
+        }
+        assertTrue(ch.config().isZeroCopy());
+        assertTrue(ch.config().getOption(EpollChannelOption.SO_ZEROCOPY));
+    }
+
+    @Test
+    public void testZeroCopyThreshold() {
+        assertEquals(10 * 1024, ch.config().getZeroCopyThreshold());
+        assertTrue(ch.config().setOption(EpollChannelOption.ZEROCOPY_THRESHOLD, 0));
+        assertEquals(0, (int) ch.config().getOption(EpollChannelOption.ZEROCOPY_THRESHOLD));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeZeroCopyThreshold() {
+        ch.config().setZeroCopyThreshold(-1);
+    }
+
     @Test
     public void testSetOptionWhenClosed() {
         ch.close().syncUninterruptibly();
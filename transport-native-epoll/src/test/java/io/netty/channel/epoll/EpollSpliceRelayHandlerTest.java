@@ -0,0 +1,157 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.NetUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class EpollSpliceRelayHandlerTest {
+
+    private static final byte[] data = new byte[1048576];
+
+    static {
+        new Random().nextBytes(data);
+    }
+
+    private EventLoopGroup group;
+    private Channel echoServer;
+
+    @Before
+    public void setup() {
+        group = new EpollEventLoopGroup(1);
+        echoServer = new ServerBootstrap()
+                .group(group)
+                .channel(EpollServerSocketChannel.class)
+                .childHandler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ctx.write(msg);
+                    }
+
+                    @Override
+                    public void channelReadComplete(ChannelHandlerContext ctx) {
+                        ctx.flush();
+                    }
+                }).bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+    }
+
+    @After
+    public void teardown() {
+        echoServer.close().syncUninterruptibly();
+        group.shutdownGracefully();
+    }
+
+    @Test(timeout = 30000)
+    public void testRelayWithSplice() throws Throwable {
+        testRelay(EpollMode.LEVEL_TRIGGERED, true);
+    }
+
+    @Test(timeout = 30000)
+    public void testRelayFallsBackToByteBufs() throws Throwable {
+        testRelay(EpollMode.EDGE_TRIGGERED, false);
+    }
+
+    private void testRelay(final EpollMode mode, boolean splicing) throws Throwable {
+        final BlockingQueue<Channel> inbound = new LinkedBlockingQueue<Channel>();
+        Channel proxy = new ServerBootstrap()
+                .group(group)
+                .channel(EpollServerSocketChannel.class)
+                .childOption(EpollChannelOption.EPOLL_MODE, mode)
+                .childHandler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelActive(ChannelHandlerContext ctx) {
+                        final Channel in = ctx.channel();
+                        in.config().setAutoRead(false);
+                        ctx.pipeline().remove(this);
+                        new Bootstrap()
+                                .group(in.eventLoop())
+                                .channel(EpollSocketChannel.class)
+                                .option(EpollChannelOption.EPOLL_MODE, mode)
+                                .handler(new ChannelInboundHandlerAdapter())
+                                .connect(echoServer.localAddress()).addListener(new ChannelFutureListener() {
+                                    @Override
+                                    public void operationComplete(ChannelFuture future) {
+                                        if (!future.isSuccess()) {
+                                            in.close();
+                                            return;
+                                        }
+                                        Channel out = future.channel();
+                                        out.pipeline().remove(ChannelInboundHandlerAdapter.class);
+                                        EpollSpliceRelayHandler.relay(in, out);
+                                        in.config().setAutoRead(true);
+                                        inbound.add(in);
+                                    }
+                                });
+                    }
+                }).bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+        try {
+            InetSocketAddress address = (InetSocketAddress) proxy.localAddress();
+            final Socket socket = new Socket(address.getAddress(), address.getPort());
+            Channel in = inbound.take();
+            ChannelHandler relay = in.pipeline().first();
+            assertEquals(splicing, ((EpollSpliceRelayHandler) relay).isSplicing());
+
+            Thread writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        OutputStream out = socket.getOutputStream();
+                        for (int i = 0; i < data.length; i += 8192) {
+                            out.write(data, i, Math.min(8192, data.length - i));
+                        }
+                        out.flush();
+                    } catch (IOException ignore) {
+                        // The read side fails in this case.
+                    }
+                }
+            });
+            writer.start();
+            byte[] received = new byte[data.length];
+            new DataInputStream(socket.getInputStream()).readFully(received);
+            writer.join();
+            assertArrayEquals(data, received);
+
+            // Closing the client must close both sides of the relay.
+            socket.close();
+            in.closeFuture().sync();
+        } finally {
+            proxy.close().syncUninterruptibly();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.NetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that the buffers of {@code MSG_ZEROCOPY} writes which are still in flight when the channel is closed are
+ * released eventually.
+ */
+public class EpollZeroCopyCloseTest {
+
+    private static final int SIZE = 4 * 1024 * 1024;
+
+    @Test(timeout = 30000)
+    public void testReleasedOnCompletion() throws Throwable {
+        testReleasedAfterClose(true);
+    }
+
+    @Test(timeout = 30000)
+    public void testReleasedOnShutdown() throws Throwable {
+        testReleasedAfterClose(false);
+    }
+
+    private static void testReleasedAfterClose(boolean read) throws Throwable {
+        Epoll.ensureAvailability();
+        EventLoopGroup serverGroup = new EpollEventLoopGroup(1);
+        EventLoopGroup clientGroup = new EpollEventLoopGroup(1);
+        try {
+            final Channel server = new ServerBootstrap().group(serverGroup).channel(EpollServerSocketChannel.class)
+                    // Nothing is read until the client was closed, so its writes do not complete before.
+                    .childOption(ChannelOption.AUTO_READ, false)
+                    .childHandler(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            ReferenceCountUtil.release(msg);
+                        }
+                    })
+                    .bind(new InetSocketAddress(NetUtil.LOCALHOST4, 0)).sync().channel();
+            final AtomicReference<Channel> accepted = new AtomicReference<Channel>();
+            server.pipeline().addFirst(new ChannelInboundHandlerAdapter() {
+                @Override
+                public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                    accepted.set((Channel) msg);
+                    ctx.fireChannelRead(msg);
+                }
+            });
+            final Channel client = new Bootstrap().group(clientGroup).channel(EpollSocketChannel.class)
+                    .option(EpollChannelOption.ZEROCOPY_THRESHOLD, 0)
+                    .handler(new ChannelInboundHandlerAdapter())
+                    .connect(server.localAddress()).sync().channel();
+            try {
+                ((EpollSocketChannel) client).config().setZeroCopy(true);
+            } catch (ChannelException e) {
+                // SO_ZEROCOPY requires linux 4.14+
+                client.close().sync();
+                Assume.assumeNoException(e);
+            }
+
+            final ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(SIZE).writeZero(SIZE);
+            // The flush writes the first bytes right away, so the channel is closed while the write is in flight.
+            client.eventLoop().submit(new Runnable() {
+                @Override
+                public void run() {
+                    client.writeAndFlush(buf);
+                    client.close();
+                }
+            }).sync();
+            client.closeFuture().sync();
+            // The kernel may still reference the memory, so it must be kept until the write completed.
+            assertEquals(1, buf.refCnt());
+
+            if (read) {
+                while (accepted.get() == null) {
+                    Thread.sleep(10);
+                }
+                accepted.get().config().setAutoRead(true);
+                while (buf.refCnt() != 0) {
+                    Thread.sleep(10);
+                }
+            } else {
+                // The completions can not be read anymore once the event loop shut down.
+                clientGroup.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS).sync();
+            }
+            assertEquals(0, buf.refCnt());
+        } finally {
+            clientGroup.shutdownGracefully();
+            serverGroup.shutdownGracefully();
+        }
+    }
+}
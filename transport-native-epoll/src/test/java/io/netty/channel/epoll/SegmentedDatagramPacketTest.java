@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.socket.DatagramPacket;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class SegmentedDatagramPacketTest {
+
+    private static final InetSocketAddress RECIPIENT = new InetSocketAddress("127.0.0.1", 9);
+
+    @Test
+    public void testSegmentCount() {
+        assertSegmentCount(0, 0);
+        assertSegmentCount(1, 1);
+        assertSegmentCount(1, 100);
+        assertSegmentCount(2, 101);
+        assertSegmentCount(3, 300);
+    }
+
+    private static void assertSegmentCount(int expected, int length) {
+        SegmentedDatagramPacket packet = new SegmentedDatagramPacket(
+                Unpooled.buffer(length).writerIndex(length), 100, RECIPIENT);
+        try {
+            assertEquals(expected, packet.segmentCount());
+        } finally {
+            packet.release();
+        }
+    }
+
+    @Test
+    public void testRetainedSegment() {
+        ByteBuf buffer = Unpooled.buffer(250);
+        for (int i = 0; i < 250; i++) {
+            buffer.writeByte(i);
+        }
+        // Skip one byte to ensure the segments are relative to the readerIndex.
+        buffer.skipBytes(1);
+        SegmentedDatagramPacket packet = new SegmentedDatagramPacket(buffer, 100, RECIPIENT);
+
+        DatagramPacket last = packet.retainedSegment(2);
+        assertEquals(49, last.content().readableBytes());
+        assertEquals(201, last.content().getUnsignedByte(0));
+        assertSame(RECIPIENT, last.recipient());
+        assertEquals(2, buffer.refCnt());
+
+        packet.release();
+        assertEquals(1, last.refCnt());
+        last.release();
+        assertEquals(0, buffer.refCnt());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testRetainedSegmentOutOfBounds() {
+        SegmentedDatagramPacket packet = new SegmentedDatagramPacket(
+                Unpooled.buffer(200).writerIndex(200), 100, RECIPIENT);
+        try {
+            packet.retainedSegment(2);
+        } finally {
+            packet.release();
+        }
+    }
+
+    @Test
+    public void testReplace() {
+        SegmentedDatagramPacket packet = new SegmentedDatagramPacket(Unpooled.buffer(), 100, RECIPIENT);
+        SegmentedDatagramPacket replaced = packet.replace(Unpooled.buffer());
+        try {
+            assertEquals(100, replaced.segmentSize());
+            assertSame(RECIPIENT, replaced.recipient());
+        } finally {
+            packet.release();
+            replaced.release();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSegmentSizeMustBePositive() {
+        new SegmentedDatagramPacket(Unpooled.EMPTY_BUFFER, 0, RECIPIENT);
+    }
+}
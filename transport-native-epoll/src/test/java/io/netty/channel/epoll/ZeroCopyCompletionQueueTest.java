@@ -0,0 +1,128 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ZeroCopyCompletionQueueTest {
+
+    private EmbeddedChannel channel;
+    private ChannelOutboundBuffer in;
+    private ZeroCopyCompletionQueue queue;
+
+    @Before
+    public void setUp() {
+        channel = new EmbeddedChannel();
+        in = channel.unsafe().outboundBuffer();
+        queue = new ZeroCopyCompletionQueue();
+    }
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    private ByteBuf write(int length) {
+        ByteBuf buf = Unpooled.directBuffer(length).writeZero(length);
+        channel.write(buf);
+        in.addFlush();
+        return buf;
+    }
+
+    private void written(long bytes) throws Exception {
+        queue.add(in, bytes);
+        in.removeBytes(bytes);
+    }
+
+    @Test
+    public void testBuffersAreRetainedUntilCompletion() throws Exception {
+        ByteBuf first = write(8);
+        ByteBuf second = write(8);
+        written(12);
+
+        // The first buffer was removed from the ChannelOutboundBuffer, but is still referenced by the kernel.
+        assertEquals(1, first.refCnt());
+        assertEquals(2, second.refCnt());
+
+        // The second buffer is referenced by both writes.
+        written(4);
+        assertEquals(2, second.refCnt());
+        assertFalse(queue.isEmpty());
+
+        queue.complete(0, 0);
+        assertEquals(0, first.refCnt());
+        assertEquals(1, second.refCnt());
+
+        queue.complete(1, 1);
+        assertEquals(0, second.refCnt());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testCompletionOutOfOrder() throws Exception {
+        ByteBuf first = write(8);
+        written(8);
+        ByteBuf second = write(8);
+        written(8);
+        ByteBuf third = write(8);
+        written(8);
+
+        queue.complete(1, 2);
+        // The buffers must be released in order, as the first write is still referenced by the kernel.
+        assertEquals(1, first.refCnt());
+        assertEquals(1, second.refCnt());
+        assertEquals(1, third.refCnt());
+
+        queue.complete(0, 0);
+        assertEquals(0, first.refCnt());
+        assertEquals(0, second.refCnt());
+        assertEquals(0, third.refCnt());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testReleaseAll() throws Exception {
+        ByteBuf first = write(8);
+        written(8);
+        ByteBuf second = write(8);
+        written(8);
+        assertEquals(1, first.refCnt());
+        assertEquals(1, second.refCnt());
+
+        assertEquals(2, queue.releaseAll());
+        assertEquals(0, first.refCnt());
+        assertEquals(0, second.refCnt());
+        assertTrue(queue.isEmpty());
+
+        // Completions of the released writes must be ignored.
+        ByteBuf third = write(8);
+        written(8);
+        queue.complete(0, 1);
+        assertEquals(1, third.refCnt());
+        queue.complete(2, 2);
+        assertEquals(0, third.refCnt());
+    }
+}
@@ -0,0 +1,508 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+#define _GNU_SOURCE
+#include <jni.h>
+#include <stdint.h>
+#include <stdlib.h>
+#include <string.h>
+#include <errno.h>
+#include <poll.h>
+#include <sys/eventfd.h>
+#include <sys/mman.h>
+#include <sys/socket.h>
+#include <sys/syscall.h>
+#include <sys/types.h>
+#include <netinet/in.h>
+#include <unistd.h>
+#include <dlfcn.h>
+#include <stdio.h>
+
+#include "netty_io_uring.h"
+#include "netty_unix_buffer.h"
+#include "netty_unix_errors.h"
+#include "netty_unix_filedescriptor.h"
+#include "netty_unix_jni.h"
+#include "netty_unix_limits.h"
+#include "netty_unix_socket.h"
+#include "netty_unix_util.h"
+
+// The number of values which are returned by ioUringSetup(...), see also Native.java.
+#define RING_PARAMS_LEN 21
+
+// JNI Registered Methods Begin
+static jint netty_io_uring_native_eventFd(JNIEnv* env, jclass clazz) {
+    jint eventFD = eventfd(0, EFD_CLOEXEC | EFD_NONBLOCK);
+
+    if (eventFD < 0) {
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "eventfd() failed: ", errno);
+    }
+    return eventFD;
+}
+
+static void netty_io_uring_native_eventFdWrite(JNIEnv* env, jclass clazz, jint fd, jlong value) {
+    jint eventFD = eventfd_write(fd, (eventfd_t) value);
+
+    if (eventFD < 0 && errno != EAGAIN) {
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "eventfd_write() failed: ", errno);
+    }
+}
+
+static jlongArray netty_io_uring_native_ioUringSetup(JNIEnv* env, jclass clazz, jint entries) {
+    struct io_uring_params p;
+    memset(&p, 0, sizeof(p));
+
+    int ringFd = syscall(__NR_io_uring_setup, entries, &p);
+    if (ringFd < 0) {
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "io_uring_setup() failed: ", errno);
+        return NULL;
+    }
+
+    size_t sqRingSize = p.sq_off.array + p.sq_entries * sizeof(uint32_t);
+    size_t cqRingSize = p.cq_off.cqes + p.cq_entries * sizeof(struct io_uring_cqe);
+    size_t sqesSize = p.sq_entries * sizeof(struct io_uring_sqe);
+    int singleMmap = (p.features & IORING_FEAT_SINGLE_MMAP) != 0;
+    if (singleMmap) {
+        if (cqRingSize > sqRingSize) {
+            sqRingSize = cqRingSize;
+        }
+        cqRingSize = sqRingSize;
+    }
+
+    void* sqRing = mmap(NULL, sqRingSize, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, ringFd,
+                        IORING_OFF_SQ_RING);
+    if (sqRing == MAP_FAILED) {
+        int err = errno;
+        close(ringFd);
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "mmap() failed: ", err);
+        return NULL;
+    }
+    void* cqRing;
+    if (singleMmap) {
+        cqRing = sqRing;
+    } else {
+        cqRing = mmap(NULL, cqRingSize, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, ringFd,
+                      IORING_OFF_CQ_RING);
+        if (cqRing == MAP_FAILED) {
+            int err = errno;
+            munmap(sqRing, sqRingSize);
+            close(ringFd);
+            netty_unix_errors_throwChannelExceptionErrorNo(env, "mmap() failed: ", err);
+            return NULL;
+        }
+    }
+    void* sqes = mmap(NULL, sqesSize, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, ringFd, IORING_OFF_SQES);
+    if (sqes == MAP_FAILED) {
+        int err = errno;
+        if (!singleMmap) {
+            munmap(cqRing, cqRingSize);
+        }
+        munmap(sqRing, sqRingSize);
+        close(ringFd);
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "mmap() failed: ", err);
+        return NULL;
+    }
+
+    jlong params[RING_PARAMS_LEN] = {
+        ringFd,
+        (jlong) (sqRing + p.sq_off.head),
+        (jlong) (sqRing + p.sq_off.tail),
+        (jlong) (sqRing + p.sq_off.ring_mask),
+        (jlong) (sqRing + p.sq_off.ring_entries),
+        (jlong) (sqRing + p.sq_off.flags),
+        (jlong) (sqRing + p.sq_off.dropped),
+        (jlong) (sqRing + p.sq_off.array),
+        (jlong) sqes,
+        (jlong) sqRingSize,
+        (jlong) sqRing,
+        (jlong) sqesSize,
+        (jlong) (cqRing + p.cq_off.head),
+        (jlong) (cqRing + p.cq_off.tail),
+        (jlong) (cqRing + p.cq_off.ring_mask),
+        (jlong) (cqRing + p.cq_off.ring_entries),
+        (jlong) (cqRing + p.cq_off.overflow),
+        (jlong) (cqRing + p.cq_off.cqes),
+        (jlong) (singleMmap ? 0 : cqRingSize),
+        (jlong) cqRing,
+        (jlong) p.features
+    };
+
+    jlongArray array = (*env)->NewLongArray(env, RING_PARAMS_LEN);
+    if (array == NULL) {
+        // An OOME was thrown already.
+        if (!singleMmap) {
+            munmap(cqRing, cqRingSize);
+        }
+        munmap(sqRing, sqRingSize);
+        munmap(sqes, sqesSize);
+        close(ringFd);
+        return NULL;
+    }
+    (*env)->SetLongArrayRegion(env, array, 0, RING_PARAMS_LEN, params);
+    return array;
+}
+
+static void netty_io_uring_native_ioUringExit(JNIEnv* env, jclass clazz, jlong sqRing, jlong sqRingSize,
+                                              jlong cqRing, jlong cqRingSize, jlong sqes, jlong sqesSize,
+                                              jint ringFd) {
+    munmap((void*) sqes, (size_t) sqesSize);
+    if (cqRingSize != 0) {
+        // Only unmap if the completion ring does not share the mapping with the submission ring.
+        munmap((void*) cqRing, (size_t) cqRingSize);
+    }
+    munmap((void*) sqRing, (size_t) sqRingSize);
+    if (close(ringFd) < 0) {
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "close() failed: ", errno);
+    }
+}
+
+static jint netty_io_uring_native_ioUringEnter0(JNIEnv* env, jclass clazz, jint ringFd, jint toSubmit,
+                                                jint minComplete, jint flags) {
+    int result = syscall(__NR_io_uring_enter, ringFd, toSubmit, minComplete, flags, NULL, 0);
+    if (result < 0) {
+        return -errno;
+    }
+    return result;
+}
+
+static jboolean netty_io_uring_native_ioUringProbe0(JNIEnv* env, jclass clazz, jint ringFd, jintArray ops) {
+    // There are at most 256 opcodes as the opcode is an unsigned char.
+    size_t probeSize = sizeof(struct io_uring_probe) + 256 * sizeof(struct io_uring_probe_op);
+    struct io_uring_probe* probe = calloc(1, probeSize);
+    if (probe == NULL) {
+        netty_unix_errors_throwOutOfMemoryError(env);
+        return JNI_FALSE;
+    }
+    if (syscall(__NR_io_uring_register, ringFd, IORING_REGISTER_PROBE, probe, 256) < 0) {
+        // Probing is supported since Linux 5.6, so assume the operations are not supported.
+        free(probe);
+        return JNI_FALSE;
+    }
+
+    jboolean supported = JNI_TRUE;
+    jint len = (*env)->GetArrayLength(env, ops);
+    jint* elements = (*env)->GetIntArrayElements(env, ops, 0);
+    if (elements == NULL) {
+        // An OOME was thrown already.
+        free(probe);
+        return JNI_FALSE;
+    }
+    int i;
+    for (i = 0; i < len; i++) {
+        int op = elements[i];
+        if (op > probe->last_op || (probe->ops[op].flags & IO_URING_OP_SUPPORTED) == 0) {
+            supported = JNI_FALSE;
+            break;
+        }
+    }
+    (*env)->ReleaseIntArrayElements(env, ops, elements, JNI_ABORT);
+    free(probe);
+    return supported;
+}
+
+static jint netty_io_uring_native_writeSockaddr(JNIEnv* env, jclass clazz, jlong memoryAddress, jbyteArray address,
+                                                jint scopeId, jint port) {
+    struct sockaddr_storage addr;
+    socklen_t addrSize;
+    if (netty_unix_socket_initSockaddr(env, address, scopeId, port, &addr, &addrSize) == -1) {
+        return -1;
+    }
+    memcpy((void*) memoryAddress, &addr, addrSize);
+    return addrSize;
+}
+
+static jint netty_io_uring_native_ioringOpWritev(JNIEnv* env, jclass clazz) {
+    return IORING_OP_WRITEV;
+}
+
+static jint netty_io_uring_native_ioringOpPollAdd(JNIEnv* env, jclass clazz) {
+    return IORING_OP_POLL_ADD;
+}
+
+static jint netty_io_uring_native_ioringOpSendmsg(JNIEnv* env, jclass clazz) {
+    return IORING_OP_SENDMSG;
+}
+
+static jint netty_io_uring_native_ioringOpRecvmsg(JNIEnv* env, jclass clazz) {
+    return IORING_OP_RECVMSG;
+}
+
+static jint netty_io_uring_native_ioringOpTimeout(JNIEnv* env, jclass clazz) {
+    return IORING_OP_TIMEOUT;
+}
+
+static jint netty_io_uring_native_ioringOpTimeoutRemove(JNIEnv* env, jclass clazz) {
+    return IORING_OP_TIMEOUT_REMOVE;
+}
+
+static jint netty_io_uring_native_ioringOpAccept(JNIEnv* env, jclass clazz) {
+    return IORING_OP_ACCEPT;
+}
+
+static jint netty_io_uring_native_ioringOpAsyncCancel(JNIEnv* env, jclass clazz) {
+    return IORING_OP_ASYNC_CANCEL;
+}
+
+static jint netty_io_uring_native_ioringOpConnect(JNIEnv* env, jclass clazz) {
+    return IORING_OP_CONNECT;
+}
+
+static jint netty_io_uring_native_ioringOpRead(JNIEnv* env, jclass clazz) {
+    return IORING_OP_READ;
+}
+
+static jint netty_io_uring_native_ioringOpWrite(JNIEnv* env, jclass clazz) {
+    return IORING_OP_WRITE;
+}
+
+static jint netty_io_uring_native_ioringEnterGetevents(JNIEnv* env, jclass clazz) {
+    return IORING_ENTER_GETEVENTS;
+}
+
+static jint netty_io_uring_native_ioringFeatFastPoll(JNIEnv* env, jclass clazz) {
+    return IORING_FEAT_FAST_POLL;
+}
+
+static jint netty_io_uring_native_pollin(JNIEnv* env, jclass clazz) {
+    return POLLIN;
+}
+
+static jint netty_io_uring_native_pollout(JNIEnv* env, jclass clazz) {
+    return POLLOUT;
+}
+
+static jint netty_io_uring_native_errnoECANCELED(JNIEnv* env, jclass clazz) {
+    return ECANCELED;
+}
+
+static jint netty_io_uring_native_errnoETIME(JNIEnv* env, jclass clazz) {
+    return ETIME;
+}
+
+static jint netty_io_uring_native_errnoEINTR(JNIEnv* env, jclass clazz) {
+    return EINTR;
+}
+
+static jint netty_io_uring_native_errnoEBUSY(JNIEnv* env, jclass clazz) {
+    return EBUSY;
+}
+
+static jint netty_io_uring_native_afInet(JNIEnv* env, jclass clazz) {
+    return AF_INET;
+}
+
+static jint netty_io_uring_native_afInet6(JNIEnv* env, jclass clazz) {
+    return AF_INET6;
+}
+
+static jint netty_io_uring_native_sockNonblock(JNIEnv* env, jclass clazz) {
+    return SOCK_NONBLOCK;
+}
+
+static jint netty_io_uring_native_sockCloexec(JNIEnv* env, jclass clazz) {
+    return SOCK_CLOEXEC;
+}
+
+static jint netty_io_uring_native_sizeofSockaddrStorage(JNIEnv* env, jclass clazz) {
+    return sizeof(struct sockaddr_storage);
+}
+
+static jint netty_io_uring_native_sizeofMsghdr(JNIEnv* env, jclass clazz) {
+    return sizeof(struct msghdr);
+}
+// JNI Registered Methods End
+
+// JNI Method Registration Table Begin
+static const JNINativeMethod statically_referenced_fixed_method_table[] = {
+  { "ioringOpWritev", "()I", (void *) netty_io_uring_native_ioringOpWritev },
+  { "ioringOpPollAdd", "()I", (void *) netty_io_uring_native_ioringOpPollAdd },
+  { "ioringOpSendmsg", "()I", (void *) netty_io_uring_native_ioringOpSendmsg },
+  { "ioringOpRecvmsg", "()I", (void *) netty_io_uring_native_ioringOpRecvmsg },
+  { "ioringOpTimeout", "()I", (void *) netty_io_uring_native_ioringOpTimeout },
+  { "ioringOpTimeoutRemove", "()I", (void *) netty_io_uring_native_ioringOpTimeoutRemove },
+  { "ioringOpAccept", "()I", (void *) netty_io_uring_native_ioringOpAccept },
+  { "ioringOpAsyncCancel", "()I", (void *) netty_io_uring_native_ioringOpAsyncCancel },
+  { "ioringOpConnect", "()I", (void *) netty_io_uring_native_ioringOpConnect },
+  { "ioringOpRead", "()I", (void *) netty_io_uring_native_ioringOpRead },
+  { "ioringOpWrite", "()I", (void *) netty_io_uring_native_ioringOpWrite },
+  { "ioringEnterGetevents", "()I", (void *) netty_io_uring_native_ioringEnterGetevents },
+  { "ioringFeatFastPoll", "()I", (void *) netty_io_uring_native_ioringFeatFastPoll },
+  { "pollin", "()I", (void *) netty_io_uring_native_pollin },
+  { "pollout", "()I", (void *) netty_io_uring_native_pollout },
+  { "errnoECANCELED", "()I", (void *) netty_io_uring_native_errnoECANCELED },
+  { "errnoETIME", "()I", (void *) netty_io_uring_native_errnoETIME },
+  { "errnoEINTR", "()I", (void *) netty_io_uring_native_errnoEINTR },
+  { "errnoEBUSY", "()I", (void *) netty_io_uring_native_errnoEBUSY },
+  { "afInet", "()I", (void *) netty_io_uring_native_afInet },
+  { "afInet6", "()I", (void *) netty_io_uring_native_afInet6 },
+  { "sockNonblock", "()I", (void *) netty_io_uring_native_sockNonblock },
+  { "sockCloexec", "()I", (void *) netty_io_uring_native_sockCloexec },
+  { "sizeofSockaddrStorage", "()I", (void *) netty_io_uring_native_sizeofSockaddrStorage },
+  { "sizeofMsghdr", "()I", (void *) netty_io_uring_native_sizeofMsghdr }
+};
+static const jint statically_referenced_fixed_method_table_size = sizeof(statically_referenced_fixed_method_table) / sizeof(statically_referenced_fixed_method_table[0]);
+static const JNINativeMethod fixed_method_table[] = {
+  { "eventFd", "()I", (void *) netty_io_uring_native_eventFd },
+  { "eventFdWrite", "(IJ)V", (void *) netty_io_uring_native_eventFdWrite },
+  { "ioUringSetup", "(I)[J", (void *) netty_io_uring_native_ioUringSetup },
+  { "ioUringExit", "(JJJJJJI)V", (void *) netty_io_uring_native_ioUringExit },
+  { "ioUringEnter0", "(IIII)I", (void *) netty_io_uring_native_ioUringEnter0 },
+  { "ioUringProbe0", "(I[I)Z", (void *) netty_io_uring_native_ioUringProbe0 },
+  { "writeSockaddr", "(J[BII)I", (void *) netty_io_uring_native_writeSockaddr }
+};
+static const jint fixed_method_table_size = sizeof(fixed_method_table) / sizeof(fixed_method_table[0]);
+// JNI Method Registration Table End
+
+static jint netty_io_uring_native_JNI_OnLoad(JNIEnv* env, const char* packagePrefix) {
+    int limitsOnLoadCalled = 0;
+    int errorsOnLoadCalled = 0;
+    int filedescriptorOnLoadCalled = 0;
+    int socketOnLoadCalled = 0;
+    int bufferOnLoadCalled = 0;
+
+    // We must register the statically referenced methods first!
+    if (netty_unix_util_register_natives(env,
+            packagePrefix,
+            "io/netty/channel/uring/NativeStaticallyReferencedJniMethods",
+            statically_referenced_fixed_method_table,
+            statically_referenced_fixed_method_table_size) != 0) {
+        goto error;
+    }
+    // Register the methods which are not referenced by static member variables
+    if (netty_unix_util_register_natives(env,
+            packagePrefix,
+            "io/netty/channel/uring/Native",
+            fixed_method_table,
+            fixed_method_table_size) != 0) {
+        goto error;
+    }
+    // Load all c modules that we depend upon
+    if (netty_unix_limits_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        goto error;
+    }
+    limitsOnLoadCalled = 1;
+
+    if (netty_unix_errors_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        goto error;
+    }
+    errorsOnLoadCalled = 1;
+
+    if (netty_unix_filedescriptor_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        goto error;
+    }
+    filedescriptorOnLoadCalled = 1;
+
+    if (netty_unix_socket_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        goto error;
+    }
+    socketOnLoadCalled = 1;
+
+    if (netty_unix_buffer_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        goto error;
+    }
+    bufferOnLoadCalled = 1;
+
+    return NETTY_JNI_VERSION;
+
+error:
+   if (limitsOnLoadCalled == 1) {
+       netty_unix_limits_JNI_OnUnLoad(env);
+   }
+   if (errorsOnLoadCalled == 1) {
+       netty_unix_errors_JNI_OnUnLoad(env);
+   }
+   if (filedescriptorOnLoadCalled == 1) {
+       netty_unix_filedescriptor_JNI_OnUnLoad(env);
+   }
+   if (socketOnLoadCalled == 1) {
+       netty_unix_socket_JNI_OnUnLoad(env);
+   }
+   if (bufferOnLoadCalled == 1) {
+       netty_unix_buffer_JNI_OnUnLoad(env);
+   }
+   return JNI_ERR;
+}
+
+static void netty_io_uring_native_JNI_OnUnLoad(JNIEnv* env) {
+    netty_unix_limits_JNI_OnUnLoad(env);
+    netty_unix_errors_JNI_OnUnLoad(env);
+    netty_unix_filedescriptor_JNI_OnUnLoad(env);
+    netty_unix_socket_JNI_OnUnLoad(env);
+    netty_unix_buffer_JNI_OnUnLoad(env);
+}
+
+// Invoked by the JVM when statically linked
+static jint JNI_OnLoad_netty_transport_native_io_uring0(JavaVM* vm, void* reserved) {
+    JNIEnv* env;
+    if ((*vm)->GetEnv(vm, (void**) &env, NETTY_JNI_VERSION) != JNI_OK) {
+        return JNI_ERR;
+    }
+    char* packagePrefix = NULL;
+#ifndef NETTY_BUILD_STATIC
+    Dl_info dlinfo;
+    jint status = 0;
+    // We need to use an address of a function that is uniquely part of this library, so choose a static
+    // function. See https://github.com/netty/netty/issues/4840.
+    if (!dladdr((void*) netty_io_uring_native_JNI_OnUnLoad, &dlinfo)) {
+        fprintf(stderr, "FATAL: transport-native-io_uring JNI call to dladdr failed!\n");
+        return JNI_ERR;
+    }
+    packagePrefix = netty_unix_util_parse_package_prefix(dlinfo.dli_fname, "netty_transport_native_io_uring", &status);
+    if (status == JNI_ERR) {
+        fprintf(stderr, "FATAL: transport-native-io_uring JNI encountered unexpected dlinfo.dli_fname: %s\n", dlinfo.dli_fname);
+        return JNI_ERR;
+    }
+#endif /* NETTY_BUILD_STATIC */
+    jint ret = netty_io_uring_native_JNI_OnLoad(env, packagePrefix);
+
+    if (packagePrefix != NULL) {
+      free(packagePrefix);
+      packagePrefix = NULL;
+    }
+
+    return ret;
+}
+
+static void JNI_OnUnload_netty_transport_native_io_uring0(JavaVM* vm, void* reserved) {
+    JNIEnv* env;
+    if ((*vm)->GetEnv(vm, (void**) &env, NETTY_JNI_VERSION) != JNI_OK) {
+        // Something is wrong but nothing we can do about this :(
+        return;
+    }
+    netty_io_uring_native_JNI_OnUnLoad(env);
+}
+
+// We build with -fvisibility=hidden so ensure we mark everything that needs to be visible with JNIEXPORT
+// http://mail.openjdk.java.net/pipermail/core-libs-dev/2013-February/014549.html
+
+// Invoked by the JVM when statically linked
+JNIEXPORT jint JNI_OnLoad_netty_transport_native_io_uring(JavaVM* vm, void* reserved) {
+    return JNI_OnLoad_netty_transport_native_io_uring0(vm, reserved);
+}
+
+// Invoked by the JVM when statically linked
+JNIEXPORT void JNI_OnUnload_netty_transport_native_io_uring(JavaVM* vm, void* reserved) {
+    JNI_OnUnload_netty_transport_native_io_uring0(vm, reserved);
+}
+
+#ifndef NETTY_BUILD_STATIC
+JNIEXPORT jint JNI_OnLoad(JavaVM* vm, void* reserved) {
+    return JNI_OnLoad_netty_transport_native_io_uring0(vm, reserved);
+}
+
+JNIEXPORT void JNI_OnUnload(JavaVM* vm, void* reserved) {
+    JNI_OnUnload_netty_transport_native_io_uring0(vm, reserved);
+}
+#endif /* NETTY_BUILD_STATIC */
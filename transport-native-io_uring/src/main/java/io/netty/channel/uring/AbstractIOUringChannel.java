@@ -0,0 +1,699 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.AbstractChannel;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.ChannelInputShutdownReadComplete;
+import io.netty.channel.socket.SocketChannelConfig;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.UnixChannel;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.ThrowableUtil;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.AlreadyConnectedException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ConnectionPendingException;
+import java.nio.channels.NotYetConnectedException;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.channel.unix.UnixChannelUtil.computeRemoteAddr;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+abstract class AbstractIOUringChannel extends AbstractChannel implements UnixChannel {
+    private static final ClosedChannelException DO_CLOSE_CLOSED_CHANNEL_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            new ClosedChannelException(), AbstractIOUringChannel.class, "doClose()");
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false);
+
+    // Flags of the operations which were submitted to the ring and did not complete yet. There is at most one
+    // operation of each kind in flight.
+    static final int READ_SCHEDULED = 1;
+    static final int WRITE_SCHEDULED = 1 << 1;
+    static final int CONNECT_SCHEDULED = 1 << 2;
+
+    final LinuxSocket socket;
+
+    /**
+     * The id assigned by the {@link IOUringEventLoop} on registration, which is encoded into the {@code user_data}
+     * of all operations of this channel.
+     */
+    int id;
+    /**
+     * The {@code *_SCHEDULED} flags of the operations in flight. Memory which is used by these operations must not be
+     * released before they completed.
+     */
+    int ioState;
+    // The *_SCHEDULED flags of the operations for which a cancellation was submitted already.
+    private int cancelState;
+    private long readUserData;
+    private long writeUserData;
+    private long connectUserData;
+
+    /**
+     * The future of the current connection attempt.  If not null, subsequent
+     * connection attempts will fail.
+     */
+    private ChannelPromise connectPromise;
+    private ScheduledFuture<?> connectTimeoutFuture;
+    private SocketAddress requestedRemoteAddress;
+    // The struct sockaddr of the remote peer which is read by the kernel for IORING_OP_CONNECT.
+    private long connectAddressMemory;
+
+    private volatile SocketAddress local;
+    private volatile SocketAddress remote;
+
+    boolean inputClosedSeenErrorOnRead;
+
+    protected volatile boolean active;
+
+    AbstractIOUringChannel(LinuxSocket fd) {
+        this(null, fd, false);
+    }
+
+    AbstractIOUringChannel(Channel parent, LinuxSocket fd, boolean active) {
+        super(parent);
+        socket = checkNotNull(fd, "fd");
+        this.active = active;
+        if (active) {
+            // Directly cache the remote and local addresses
+            // See https://github.com/netty/netty/issues/2359
+            local = fd.localAddress();
+            remote = fd.remoteAddress();
+        }
+    }
+
+    AbstractIOUringChannel(Channel parent, LinuxSocket fd, SocketAddress remote) {
+        super(parent);
+        socket = checkNotNull(fd, "fd");
+        active = true;
+        // Directly cache the remote and local addresses
+        // See https://github.com/netty/netty/issues/2359
+        this.remote = remote;
+        local = fd.localAddress();
+    }
+
+    @Override
+    public final FileDescriptor fd() {
+        return socket;
+    }
+
+    @Override
+    public abstract IOUringChannelConfig config();
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    /**
+     * Returns the {@link IOUringSubmissionQueue} of the {@link IOUringEventLoop} this channel is registered with.
+     */
+    final IOUringSubmissionQueue submissionQueue() {
+        return ((IOUringEventLoop) eventLoop()).submissionQueue();
+    }
+
+    /**
+     * Returns the {@code user_data} to submit the operation {@code op} of this channel with.
+     */
+    final long userData(int op, int data) {
+        return UserData.encode(id, op, data);
+    }
+
+    final void readScheduled(long userData) {
+        ioState |= READ_SCHEDULED;
+        readUserData = userData;
+    }
+
+    final void writeScheduled(long userData) {
+        ioState |= WRITE_SCHEDULED;
+        writeUserData = userData;
+    }
+
+    private void connectScheduled(long userData) {
+        ioState |= CONNECT_SCHEDULED;
+        connectUserData = userData;
+    }
+
+    private void operationCompleted(int flag) {
+        ioState &= ~flag;
+        cancelState &= ~flag;
+    }
+
+    /**
+     * Cancel all operations which are in flight. They still complete, with {@code -ECANCELED} unless they completed
+     * anyway in the meantime.
+     */
+    final void cancelPendingOperations() {
+        int toCancel = ioState & ~cancelState;
+        if (toCancel == 0) {
+            return;
+        }
+        IOUringSubmissionQueue submissionQueue = submissionQueue();
+        long cancelUserData = userData(Native.IORING_OP_ASYNC_CANCEL, 0);
+        if ((toCancel & READ_SCHEDULED) != 0) {
+            submissionQueue.addCancel(readUserData, cancelUserData);
+        }
+        if ((toCancel & WRITE_SCHEDULED) != 0) {
+            submissionQueue.addCancel(writeUserData, cancelUserData);
+        }
+        if ((toCancel & CONNECT_SCHEDULED) != 0) {
+            submissionQueue.addCancel(connectUserData, cancelUserData);
+        }
+        cancelState |= toCancel;
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        active = false;
+        // Even if we allow half closed sockets we should give up on reading. Otherwise we may allow a read attempt on a
+        // socket which has not even been connected yet. This has been observed to block during unit tests.
+        inputClosedSeenErrorOnRead = true;
+        try {
+            ChannelPromise promise = connectPromise;
+            if (promise != null) {
+                // Use tryFailure() instead of setFailure() to avoid the race against cancel().
+                promise.tryFailure(DO_CLOSE_CLOSED_CHANNEL_EXCEPTION);
+                connectPromise = null;
+            }
+
+            ScheduledFuture<?> future = connectTimeoutFuture;
+            if (future != null) {
+                future.cancel(false);
+                connectTimeoutFuture = null;
+            }
+
+            if (isRegistered()) {
+                // Cancel the operations in flight, as otherwise they keep the socket alive even once it is closed.
+                doDeregister();
+            }
+        } finally {
+            socket.close();
+            if (ioState == 0) {
+                freeResources();
+            }
+            // Otherwise the resources are released once the last operation completed, see processCompletion(...).
+        }
+    }
+
+    /**
+     * Release the native resources of this channel. This is called once the channel was closed and all its operations
+     * completed, as the kernel may access these until then.
+     */
+    void freeResources() {
+        if (connectAddressMemory != 0) {
+            PlatformDependent.freeMemory(connectAddressMemory);
+            connectAddressMemory = 0;
+        }
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        doClose();
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return loop instanceof IOUringEventLoop;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return socket.isOpen();
+    }
+
+    @Override
+    protected void doRegister() throws Exception {
+        ((IOUringEventLoop) eventLoop()).add(this);
+    }
+
+    @Override
+    protected void doDeregister() throws Exception {
+        ((IOUringEventLoop) eventLoop()).remove(this);
+    }
+
+    @Override
+    protected final void doBeginRead() throws Exception {
+        // Channel.read() or ChannelHandlerContext.read() was called
+        final AbstractUringUnsafe unsafe = (AbstractUringUnsafe) unsafe();
+        unsafe.readPending = true;
+
+        // There is at most one read in flight, once it completes a new one is scheduled if there is still a read
+        // pending.
+        if ((ioState & READ_SCHEDULED) == 0 && !shouldBreakReadReady(config())) {
+            unsafe.scheduleRead();
+        }
+    }
+
+    /**
+     * Called once auto read was turned off, which cancels the read in flight so no data is read until the next call
+     * to {@link #read()}.
+     */
+    final void clearReadPending() {
+        if (isRegistered()) {
+            final EventLoop loop = eventLoop();
+            if (loop.inEventLoop()) {
+                clearReadPending0();
+            } else {
+                // schedule a task as the state may only be modified from within the EventLoop
+                loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!config().isAutoRead()) {
+                            // Still no read triggered so clear it now
+                            clearReadPending0();
+                        }
+                    }
+                });
+            }
+        } else {
+            // The EventLoop is not registered atm so just update the state so the correct value
+            // will be used once the channel is registered
+            ((AbstractUringUnsafe) unsafe()).readPending = false;
+        }
+    }
+
+    private void clearReadPending0() {
+        AbstractUringUnsafe unsafe = (AbstractUringUnsafe) unsafe();
+        if (!unsafe.readPending) {
+            return;
+        }
+        unsafe.readPending = false;
+        if ((ioState & READ_SCHEDULED) != 0 && (cancelState & READ_SCHEDULED) == 0) {
+            // A read which already completed is still processed, so no data is lost.
+            submissionQueue().addCancel(readUserData, userData(Native.IORING_OP_ASYNC_CANCEL, 0));
+            cancelState |= READ_SCHEDULED;
+        }
+    }
+
+    final boolean shouldBreakReadReady(ChannelConfig config) {
+        return socket.isInputShutdown() && (inputClosedSeenErrorOnRead || !isAllowHalfClosure(config));
+    }
+
+    private static boolean isAllowHalfClosure(ChannelConfig config) {
+        return config instanceof SocketChannelConfig &&
+                ((SocketChannelConfig) config).isAllowHalfClosure();
+    }
+
+    @Override
+    protected abstract AbstractUringUnsafe newUnsafe();
+
+    /**
+     * Returns an off-heap copy of the specified {@link ByteBuf}, and releases the original one.
+     */
+    protected final ByteBuf newDirectBuffer(ByteBuf buf) {
+        return newDirectBuffer(buf, buf);
+    }
+
+    /**
+     * Returns an off-heap copy of the specified {@link ByteBuf}, and releases the specified holder.
+     * The caller must ensure that the holder releases the original {@link ByteBuf} when the holder is released by
+     * this method.
+     */
+    protected final ByteBuf newDirectBuffer(Object holder, ByteBuf buf) {
+        final int readableBytes = buf.readableBytes();
+        if (readableBytes == 0) {
+            ReferenceCountUtil.release(holder);
+            return Unpooled.EMPTY_BUFFER;
+        }
+
+        final ByteBufAllocator alloc = alloc();
+        if (alloc.isDirectBufferPooled()) {
+            return newDirectBuffer0(holder, buf, alloc, readableBytes);
+        }
+
+        final ByteBuf directBuf = ByteBufUtil.threadLocalDirectBuffer();
+        if (directBuf == null) {
+            return newDirectBuffer0(holder, buf, alloc, readableBytes);
+        }
+
+        directBuf.writeBytes(buf, buf.readerIndex(), readableBytes);
+        ReferenceCountUtil.safeRelease(holder);
+        return directBuf;
+    }
+
+    private static ByteBuf newDirectBuffer0(Object holder, ByteBuf buf, ByteBufAllocator alloc, int capacity) {
+        final ByteBuf directBuf = alloc.directBuffer(capacity);
+        directBuf.writeBytes(buf, buf.readerIndex(), capacity);
+        ReferenceCountUtil.safeRelease(holder);
+        return directBuf;
+    }
+
+    /**
+     * Returns the address of the memory of the given direct {@link ByteBuf}, which is passed to the kernel.
+     */
+    static long memoryAddress(ByteBuf buf) {
+        if (buf.hasMemoryAddress()) {
+            return buf.memoryAddress();
+        }
+        // Use internalNioBuffer to reduce object creation.
+        return PlatformDependent.directBufferAddress(buf.internalNioBuffer(0, buf.capacity()));
+    }
+
+    protected static void checkResolvable(InetSocketAddress addr) {
+        if (addr.isUnresolved()) {
+            throw new UnresolvedAddressException();
+        }
+    }
+
+    protected abstract class AbstractUringUnsafe extends AbstractUnsafe {
+        boolean readPending;
+
+        /**
+         * Submit the read operation of this channel and mark it via {@link #readScheduled(long)}.
+         */
+        abstract void scheduleRead();
+
+        /**
+         * Called once the read operation completed with the given {@code res}. This is also called if the operation
+         * was cancelled or the channel was closed in the meantime, so any memory used by it can be released.
+         */
+        abstract void readComplete(int op, int res, int data);
+
+        /**
+         * Called once the write operation completed with the given {@code res}. This is also called if the operation
+         * was cancelled or the channel was closed in the meantime, so any memory used by it can be released.
+         */
+        void writeComplete(int op, int res, int data) {
+            // NOOP by default
+        }
+
+        /**
+         * Called by the {@link IOUringEventLoop} for every completion of an operation of this channel.
+         */
+        final void processCompletion(int op, int res, int data) {
+            if (op == Native.IORING_OP_ASYNC_CANCEL) {
+                // The cancelled operation itself completes as well, there is nothing to do for the cancellation.
+                return;
+            }
+            if (op == Native.IORING_OP_CONNECT) {
+                operationCompleted(CONNECT_SCHEDULED);
+                connectComplete(res);
+            } else if (op == Native.IORING_OP_WRITE || op == Native.IORING_OP_WRITEV ||
+                    op == Native.IORING_OP_SENDMSG) {
+                operationCompleted(WRITE_SCHEDULED);
+                writeComplete(op, res, data);
+            } else {
+                operationCompleted(READ_SCHEDULED);
+                readComplete(op, res, data);
+            }
+            if (ioState == 0 && !isOpen()) {
+                freeResources();
+            }
+        }
+
+        /**
+         * Schedule the next read if the user called {@link #read()} while there was no read in flight.
+         */
+        final void scheduleReadIfPending() {
+            if (readPending && (ioState & READ_SCHEDULED) == 0 && isActive() && isRegistered() &&
+                    eventLoop().inEventLoop() && !shouldBreakReadReady(config())) {
+                scheduleRead();
+            }
+        }
+
+        /**
+         * Returns {@code true} if the completed operation should not be processed any further, as it was cancelled
+         * or the channel was closed in the meantime.
+         */
+        final boolean isCancelled(int res) {
+            return res == Native.ERRNO_ECANCELED_NEGATIVE || !isOpen();
+        }
+
+        /**
+         * Shutdown the input side of the channel.
+         */
+        void shutdownInput(boolean rdHup) {
+            if (!socket.isInputShutdown()) {
+                if (isAllowHalfClosure(config())) {
+                    try {
+                        socket.shutdown(true, false);
+                    } catch (IOException ignored) {
+                        // We attempted to shutdown and failed, which means the input has already effectively been
+                        // shutdown.
+                        fireEventAndClose(ChannelInputShutdownEvent.INSTANCE);
+                        return;
+                    } catch (NotYetConnectedException ignore) {
+                        // We attempted to shutdown and failed, which means the input has already effectively been
+                        // shutdown.
+                    }
+                    readPending = false;
+                    pipeline().fireUserEventTriggered(ChannelInputShutdownEvent.INSTANCE);
+                } else {
+                    close(voidPromise());
+                }
+            } else if (!rdHup) {
+                inputClosedSeenErrorOnRead = true;
+                pipeline().fireUserEventTriggered(ChannelInputShutdownReadComplete.INSTANCE);
+            }
+        }
+
+        private void fireEventAndClose(Object evt) {
+            pipeline().fireUserEventTriggered(evt);
+            close(voidPromise());
+        }
+
+        @Override
+        protected final void flush0() {
+            // Flush immediately only when there's no write in flight.
+            // If there's one, forceFlush() will be called once it completed, and thus there's no need to call it now.
+            if ((ioState & WRITE_SCHEDULED) == 0) {
+                super.flush0();
+            }
+        }
+
+        /**
+         * Called once a write completed to continue with the next one.
+         */
+        final void forceFlush() {
+            super.flush0();
+        }
+
+        @Override
+        public void connect(
+                final SocketAddress remoteAddress, final SocketAddress localAddress, final ChannelPromise promise) {
+            if (!promise.setUncancellable() || !ensureOpen(promise)) {
+                return;
+            }
+
+            try {
+                if (connectPromise != null) {
+                    throw new ConnectionPendingException();
+                }
+
+                boolean wasActive = isActive();
+                if (doConnect(remoteAddress, localAddress)) {
+                    fulfillConnectPromise(promise, wasActive);
+                } else {
+                    connectPromise = promise;
+                    requestedRemoteAddress = remoteAddress;
+
+                    // Schedule connect timeout.
+                    int connectTimeoutMillis = config().getConnectTimeoutMillis();
+                    if (connectTimeoutMillis > 0) {
+                        connectTimeoutFuture = eventLoop().schedule(new Runnable() {
+                            @Override
+                            public void run() {
+                                ChannelPromise connectPromise = AbstractIOUringChannel.this.connectPromise;
+                                ConnectTimeoutException cause =
+                                        new ConnectTimeoutException("connection timed out: " + remoteAddress);
+                                if (connectPromise != null && connectPromise.tryFailure(cause)) {
+                                    close(voidPromise());
+                                }
+                            }
+                        }, connectTimeoutMillis, TimeUnit.MILLISECONDS);
+                    }
+
+                    promise.addListener(new ChannelFutureListener() {
+                        @Override
+                        public void operationComplete(ChannelFuture future) throws Exception {
+                            if (future.isCancelled()) {
+                                if (connectTimeoutFuture != null) {
+                                    connectTimeoutFuture.cancel(false);
+                                }
+                                connectPromise = null;
+                                close(voidPromise());
+                            }
+                        }
+                    });
+                }
+            } catch (Throwable t) {
+                closeIfClosed();
+                promise.tryFailure(annotateConnectException(t, remoteAddress));
+            }
+        }
+
+        private void fulfillConnectPromise(ChannelPromise promise, boolean wasActive) {
+            if (promise == null) {
+                // Closed via cancellation and the promise has been notified already.
+                return;
+            }
+            active = true;
+
+            // Get the state as trySuccess() may trigger an ChannelFutureListener that will close the Channel.
+            // We still need to ensure we call fireChannelActive() in this case.
+            boolean active = isActive();
+
+            // trySuccess() will return false if a user cancelled the connection attempt.
+            boolean promiseSet = promise.trySuccess();
+
+            // Regardless if the connection attempt was cancelled, channelActive() event should be triggered,
+            // because what happened is what happened.
+            if (!wasActive && active) {
+                pipeline().fireChannelActive();
+            }
+
+            // If a user cancelled the connection attempt, close the channel, which is followed by channelInactive().
+            if (!promiseSet) {
+                close(voidPromise());
+            }
+        }
+
+        private void fulfillConnectPromise(ChannelPromise promise, Throwable cause) {
+            if (promise == null) {
+                // Closed via cancellation and the promise has been notified already.
+                return;
+            }
+
+            // Use tryFailure() instead of setFailure() to avoid the race against cancel().
+            promise.tryFailure(cause);
+            closeIfClosed();
+        }
+
+        private void connectComplete(int res) {
+            // Note the connectPromise is null if the connection attempt was cancelled or timed out in the meantime.
+            if (connectPromise == null || isCancelled(res)) {
+                return;
+            }
+            try {
+                boolean wasActive = isActive();
+                if (res < 0) {
+                    throw newConnectException(res);
+                }
+                if (requestedRemoteAddress instanceof InetSocketAddress) {
+                    remote = computeRemoteAddr((InetSocketAddress) requestedRemoteAddress, socket.remoteAddress());
+                }
+                local = socket.localAddress();
+                requestedRemoteAddress = null;
+                fulfillConnectPromise(connectPromise, wasActive);
+            } catch (Throwable t) {
+                fulfillConnectPromise(connectPromise, annotateConnectException(t, requestedRemoteAddress));
+            } finally {
+                // Check for null as the connectTimeoutFuture is only created if a connectTimeoutMillis > 0 is used
+                // See https://github.com/netty/netty/issues/1770
+                if (connectTimeoutFuture != null) {
+                    connectTimeoutFuture.cancel(false);
+                }
+                connectPromise = null;
+            }
+        }
+    }
+
+    private static ConnectException newConnectException(int res) {
+        return new ConnectException(Errors.newIOException("connect", res).getMessage());
+    }
+
+    @Override
+    protected void doBind(SocketAddress local) throws Exception {
+        if (local instanceof InetSocketAddress) {
+            checkResolvable((InetSocketAddress) local);
+        }
+        socket.bind(local);
+        this.local = socket.localAddress();
+    }
+
+    /**
+     * Connect to the remote peer. This submits the connect to the ring and so always returns {@code false}, the
+     * connect promise is fulfilled once it completed.
+     */
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        if (localAddress instanceof InetSocketAddress) {
+            checkResolvable((InetSocketAddress) localAddress);
+        }
+
+        if (!(remoteAddress instanceof InetSocketAddress)) {
+            throw new Error("Unexpected SocketAddress implementation " + remoteAddress);
+        }
+        InetSocketAddress remoteSocketAddr = (InetSocketAddress) remoteAddress;
+        checkResolvable(remoteSocketAddr);
+
+        if (remote != null) {
+            // Check if already connected before trying to connect.
+            throw new AlreadyConnectedException();
+        }
+
+        if (localAddress != null) {
+            socket.bind(localAddress);
+        }
+        // We always need to set the localAddress even if not connected yet as the bind already took place.
+        //
+        // See https://github.com/netty/netty/issues/3463
+        local = socket.localAddress();
+
+        if (connectAddressMemory == 0) {
+            connectAddressMemory = PlatformDependent.allocateMemory(Native.SIZEOF_SOCKADDR_STORAGE);
+        }
+        int socklen = Native.writeSockaddr(connectAddressMemory, remoteSocketAddr);
+        long userData = userData(Native.IORING_OP_CONNECT, 0);
+        if (!submissionQueue().addConnect(socket.intValue(), connectAddressMemory, socklen, userData)) {
+            throw new IOException("io_uring submission queue is full");
+        }
+        connectScheduled(userData);
+        return false;
+    }
+
+    /**
+     * Set the address the channel is connected to, used by channels which connect without the ring.
+     */
+    final void connected(SocketAddress remote) {
+        this.remote = remote;
+        local = socket.localAddress();
+    }
+
+    @Override
+    protected SocketAddress localAddress0() {
+        return local;
+    }
+
+    @Override
+    protected SocketAddress remoteAddress0() {
+        return remote;
+    }
+}
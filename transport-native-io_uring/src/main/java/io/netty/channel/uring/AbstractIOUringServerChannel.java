@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.unix.Errors;
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+public abstract class AbstractIOUringServerChannel extends AbstractIOUringChannel implements ServerChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false, 16);
+    private static final int SOCKLEN_SIZE = 4;
+
+    // The struct sockaddr and its length the kernel fills with the address of the accepted connection.
+    private long acceptedAddressMemory;
+
+    AbstractIOUringServerChannel(LinuxSocket fd, boolean active) {
+        super(null, fd, active);
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    protected InetSocketAddress remoteAddress0() {
+        return null;
+    }
+
+    @Override
+    protected AbstractUringUnsafe newUnsafe() {
+        return new IOUringServerSocketUnsafe();
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    void freeResources() {
+        try {
+            super.freeResources();
+        } finally {
+            if (acceptedAddressMemory != 0) {
+                PlatformDependent.freeMemory(acceptedAddressMemory);
+                acceptedAddressMemory = 0;
+            }
+        }
+    }
+
+    abstract Channel newChildChannel(int fd, InetSocketAddress remote) throws Exception;
+
+    final class IOUringServerSocketUnsafe extends AbstractUringUnsafe {
+
+        @Override
+        public void connect(SocketAddress socketAddress, SocketAddress socketAddress2, ChannelPromise channelPromise) {
+            // Connect not supported by ServerChannel implementations
+            channelPromise.setFailure(new UnsupportedOperationException());
+        }
+
+        @Override
+        void scheduleRead() {
+            if (acceptedAddressMemory == 0) {
+                acceptedAddressMemory = PlatformDependent.allocateMemory(
+                        Native.SIZEOF_SOCKADDR_STORAGE + SOCKLEN_SIZE);
+            }
+            long socklenAddress = acceptedAddressMemory + Native.SIZEOF_SOCKADDR_STORAGE;
+            PlatformDependent.putInt(socklenAddress, Native.SIZEOF_SOCKADDR_STORAGE);
+            long userData = userData(Native.IORING_OP_ACCEPT, 0);
+            if (!submissionQueue().addAccept(socket.intValue(), acceptedAddressMemory, socklenAddress, userData)) {
+                pipeline().fireExceptionCaught(new IOException("io_uring submission queue is full"));
+                return;
+            }
+            readScheduled(userData);
+        }
+
+        @Override
+        void readComplete(int op, int res, int data) {
+            if (isCancelled(res)) {
+                if (res >= 0) {
+                    // The connection was accepted even though the channel was closed in the meantime.
+                    closeAcceptedFd(res);
+                }
+                scheduleReadIfPending();
+                return;
+            }
+            final ChannelConfig config = config();
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            final ChannelPipeline pipeline = pipeline();
+            allocHandle.reset(config);
+            allocHandle.attemptedBytesRead(1);
+
+            Throwable exception = null;
+            if (res >= 0) {
+                // lastBytesRead represents the fd, like it is done for the other transports.
+                allocHandle.lastBytesRead(res);
+                allocHandle.incMessagesRead(1);
+                readPending = false;
+                try {
+                    pipeline.fireChannelRead(newChildChannel(res, SockaddrIn.readAddress(acceptedAddressMemory)));
+                } catch (Throwable t) {
+                    exception = t;
+                }
+            } else {
+                allocHandle.lastBytesRead(-1);
+                exception = Errors.newIOException("accept", res);
+            }
+            allocHandle.readComplete();
+            pipeline.fireChannelReadComplete();
+
+            if (exception != null) {
+                pipeline.fireExceptionCaught(exception);
+            }
+
+            scheduleReadIfPending();
+        }
+
+        private void closeAcceptedFd(int fd) {
+            try {
+                new LinuxSocket(fd).close();
+            } catch (IOException ignore) {
+                // ignore
+            }
+        }
+    }
+
+    @Override
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.IovArray;
+import io.netty.channel.unix.PreferredDirectByteBufAllocator;
+import io.netty.channel.unix.UnixChannelUtil;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+public abstract class AbstractIOUringStreamChannel extends AbstractIOUringChannel implements DuplexChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false, 16);
+    private static final String EXPECTED_TYPES =
+            " (expected: " + StringUtil.simpleClassName(ByteBuf.class) + ')';
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(AbstractIOUringStreamChannel.class);
+
+    // The buffer the read in flight reads into.
+    private ByteBuf readBuffer;
+    // The buffers the write in flight writes from. These are retained until the write completed, as they may be
+    // released by the ChannelOutboundBuffer in the meantime if the channel is closed.
+    private final List<ByteBuf> writeBuffers = new ArrayList<ByteBuf>();
+    // Lazy init this if we need to write more than one buffer at once.
+    private IovArray iovArray;
+    // The failure of the last write, which is rethrown by the next doWrite(...).
+    private IOException writeError;
+
+    private final ChannelOutboundBuffer.MessageProcessor writevProcessor =
+            new ChannelOutboundBuffer.MessageProcessor() {
+        @Override
+        public boolean processMessage(Object msg) {
+            if (!(msg instanceof ByteBuf)) {
+                return false;
+            }
+            ByteBuf buf = (ByteBuf) msg;
+            if (!buf.isReadable()) {
+                return true;
+            }
+            // Retain before adding, as a CompositeByteBuf may have been added partially if false is returned.
+            writeBuffers.add(buf.retain());
+            return iovArray.add(buf);
+        }
+    };
+
+    AbstractIOUringStreamChannel(Channel parent, LinuxSocket fd) {
+        super(parent, fd, true);
+    }
+
+    AbstractIOUringStreamChannel(Channel parent, LinuxSocket fd, SocketAddress remote) {
+        super(parent, fd, remote);
+    }
+
+    AbstractIOUringStreamChannel(LinuxSocket fd, boolean active) {
+        super(null, fd, active);
+    }
+
+    @Override
+    protected AbstractUringUnsafe newUnsafe() {
+        return new IOUringStreamUnsafe();
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        IOException writeError = this.writeError;
+        if (writeError != null) {
+            // The last write failed, let AbstractUnsafe.flush0() fail the pending writes and close the channel.
+            this.writeError = null;
+            throw writeError;
+        }
+
+        ByteBuf buf;
+        for (;;) {
+            buf = (ByteBuf) in.current();
+            if (buf == null) {
+                // Wrote all messages.
+                return;
+            }
+            if (buf.isReadable()) {
+                break;
+            }
+            in.remove();
+        }
+
+        long userData;
+        boolean added;
+        if (in.size() == 1 && buf.hasMemoryAddress()) {
+            userData = userData(Native.IORING_OP_WRITE, 0);
+            writeBuffers.add(buf.retain());
+            added = submissionQueue().addWrite(socket.intValue(), buf.memoryAddress(),
+                    buf.readerIndex(), buf.writerIndex(), userData);
+        } else {
+            if (iovArray == null) {
+                iovArray = new IovArray();
+            } else {
+                iovArray.clear();
+            }
+            in.forEachFlushedMessage(writevProcessor);
+            userData = userData(Native.IORING_OP_WRITEV, 0);
+            added = submissionQueue().addWritev(socket.intValue(), iovArray.memoryAddress(0), iovArray.count(),
+                    userData);
+        }
+        if (!added) {
+            releaseWriteBuffers();
+            throw new IOException("io_uring submission queue is full");
+        }
+        writeScheduled(userData);
+    }
+
+    private void releaseWriteBuffers() {
+        for (int i = 0; i < writeBuffers.size(); i++) {
+            writeBuffers.get(i).release();
+        }
+        writeBuffers.clear();
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof ByteBuf) {
+            ByteBuf buf = (ByteBuf) msg;
+            return UnixChannelUtil.isBufferCopyNeededForWrite(buf)? newDirectBuffer(buf): buf;
+        }
+
+        throw new UnsupportedOperationException(
+                "unsupported message type: " + StringUtil.simpleClassName(msg) + EXPECTED_TYPES);
+    }
+
+    @Override
+    protected final void doShutdownOutput() throws Exception {
+        socket.shutdown(false, true);
+    }
+
+    private void shutdownInput0(final ChannelPromise promise) {
+        try {
+            socket.shutdown(true, false);
+            promise.setSuccess();
+        } catch (Throwable cause) {
+            promise.setFailure(cause);
+        }
+    }
+
+    @Override
+    public boolean isOutputShutdown() {
+        return socket.isOutputShutdown();
+    }
+
+    @Override
+    public boolean isInputShutdown() {
+        return socket.isInputShutdown();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return socket.isShutdown();
+    }
+
+    @Override
+    public ChannelFuture shutdownOutput() {
+        return shutdownOutput(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdownOutput(final ChannelPromise promise) {
+        EventLoop loop = eventLoop();
+        if (loop.inEventLoop()) {
+            ((AbstractUnsafe) unsafe()).shutdownOutput(promise);
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ((AbstractUnsafe) unsafe()).shutdownOutput(promise);
+                }
+            });
+        }
+
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture shutdownInput() {
+        return shutdownInput(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdownInput(final ChannelPromise promise) {
+        EventLoop loop = eventLoop();
+        if (loop.inEventLoop()) {
+            shutdownInput0(promise);
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    shutdownInput0(promise);
+                }
+            });
+        }
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture shutdown() {
+        return shutdown(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdown(final ChannelPromise promise) {
+        ChannelFuture shutdownOutputFuture = shutdownOutput();
+        if (shutdownOutputFuture.isDone()) {
+            shutdownOutputDone(shutdownOutputFuture, promise);
+        } else {
+            shutdownOutputFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(final ChannelFuture shutdownOutputFuture) throws Exception {
+                    shutdownOutputDone(shutdownOutputFuture, promise);
+                }
+            });
+        }
+        return promise;
+    }
+
+    private void shutdownOutputDone(final ChannelFuture shutdownOutputFuture, final ChannelPromise promise) {
+        ChannelFuture shutdownInputFuture = shutdownInput();
+        if (shutdownInputFuture.isDone()) {
+            shutdownDone(shutdownOutputFuture, shutdownInputFuture, promise);
+        } else {
+            shutdownInputFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture shutdownInputFuture) throws Exception {
+                    shutdownDone(shutdownOutputFuture, shutdownInputFuture, promise);
+                }
+            });
+        }
+    }
+
+    private static void shutdownDone(ChannelFuture shutdownOutputFuture,
+                              ChannelFuture shutdownInputFuture,
+                              ChannelPromise promise) {
+        Throwable shutdownOutputCause = shutdownOutputFuture.cause();
+        Throwable shutdownInputCause = shutdownInputFuture.cause();
+        if (shutdownOutputCause != null) {
+            if (shutdownInputCause != null) {
+                logger.debug("Exception suppressed because a previous exception occurred.",
+                        shutdownInputCause);
+            }
+            promise.setFailure(shutdownOutputCause);
+        } else if (shutdownInputCause != null) {
+            promise.setFailure(shutdownInputCause);
+        } else {
+            promise.setSuccess();
+        }
+    }
+
+    @Override
+    void freeResources() {
+        try {
+            super.freeResources();
+        } finally {
+            if (iovArray != null) {
+                iovArray.release();
+                iovArray = null;
+            }
+        }
+    }
+
+    class IOUringStreamUnsafe extends AbstractUringUnsafe {
+        private final PreferredDirectByteBufAllocator allocator = new PreferredDirectByteBufAllocator();
+
+        @Override
+        void scheduleRead() {
+            final ChannelConfig config = config();
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            allocator.updateAllocator(config.getAllocator());
+            allocHandle.reset(config);
+
+            // we use a direct buffer here as the kernel can only read into memory with a fixed address.
+            ByteBuf byteBuf = allocHandle.allocate(allocator);
+            allocHandle.attemptedBytesRead(byteBuf.writableBytes());
+            long userData = userData(Native.IORING_OP_READ, 0);
+            if (!submissionQueue().addRead(socket.intValue(), memoryAddress(byteBuf), byteBuf.writerIndex(),
+                    byteBuf.capacity(), userData)) {
+                byteBuf.release();
+                pipeline().fireExceptionCaught(new IOException("io_uring submission queue is full"));
+                return;
+            }
+            readBuffer = byteBuf;
+            readScheduled(userData);
+        }
+
+        @Override
+        void readComplete(int op, int res, int data) {
+            ByteBuf byteBuf = readBuffer;
+            readBuffer = null;
+            if (isCancelled(res)) {
+                byteBuf.release();
+                scheduleReadIfPending();
+                return;
+            }
+
+            final ChannelPipeline pipeline = pipeline();
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            if (res > 0) {
+                byteBuf.writerIndex(byteBuf.writerIndex() + res);
+                allocHandle.lastBytesRead(res);
+                allocHandle.incMessagesRead(1);
+                readPending = false;
+                pipeline.fireChannelRead(byteBuf);
+                allocHandle.readComplete();
+                pipeline.fireChannelReadComplete();
+            } else {
+                // nothing was read, release the buffer.
+                byteBuf.release();
+                allocHandle.lastBytesRead(-1);
+                allocHandle.readComplete();
+                if (res == 0) {
+                    // There is nothing left to read as we received an EOF.
+                    readPending = false;
+                    pipeline.fireChannelReadComplete();
+                } else {
+                    pipeline.fireChannelReadComplete();
+                    pipeline.fireExceptionCaught(Errors.newIOException("read", res));
+                }
+                shutdownInput(false);
+            }
+
+            scheduleReadIfPending();
+        }
+
+        @Override
+        void writeComplete(int op, int res, int data) {
+            releaseWriteBuffers();
+            if (isCancelled(res)) {
+                return;
+            }
+            ChannelOutboundBuffer in = outboundBuffer();
+            if (in == null) {
+                // The output was shutdown in the meantime.
+                return;
+            }
+            if (res >= 0) {
+                in.removeBytes(res);
+            } else {
+                writeError = Errors.newIOException(op == Native.IORING_OP_WRITE ? "write" : "writev", res);
+            }
+            // Continue with the remaining data, or fail it if the write failed.
+            forceFlush();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+
+/**
+ * Tells if {@code netty-transport-native-io_uring} is supported.
+ * <p>
+ * This requires a Linux kernel which supports all the io_uring operations used by this transport and polls sockets
+ * internally instead of offloading blocked operations to worker threads, which is the case since Linux 5.7.
+ */
+public final class IOUring {
+
+    private static final Throwable UNAVAILABILITY_CAUSE;
+
+    static {
+        Throwable cause = null;
+
+        if (SystemPropertyUtil.getBoolean("io.netty.transport.noNative", false)) {
+            cause = new UnsupportedOperationException(
+                    "Native transport was explicit disabled with -Dio.netty.transport.noNative=true");
+        } else if (!PlatformDependent.hasUnsafe()) {
+            cause = new UnsupportedOperationException(
+                    "io_uring requires sun.misc.Unsafe", PlatformDependent.getUnsafeUnavailabilityCause());
+        } else if (PlatformDependent.addressSize() != 8) {
+            cause = new UnsupportedOperationException("io_uring is only supported on 64 bit systems");
+        } else {
+            RingBuffer ringBuffer = null;
+            try {
+                ringBuffer = Native.createRingBuffer(8);
+                if (!ringBuffer.hasFeatures(Native.IORING_FEAT_FAST_POLL)) {
+                    cause = new UnsupportedOperationException("io_uring does not support IORING_FEAT_FAST_POLL");
+                } else if (!Native.ioUringProbe(ringBuffer.fd(), Native.IORING_OP_READ, Native.IORING_OP_WRITE,
+                        Native.IORING_OP_WRITEV, Native.IORING_OP_ACCEPT, Native.IORING_OP_CONNECT,
+                        Native.IORING_OP_RECVMSG, Native.IORING_OP_SENDMSG, Native.IORING_OP_POLL_ADD,
+                        Native.IORING_OP_TIMEOUT, Native.IORING_OP_TIMEOUT_REMOVE, Native.IORING_OP_ASYNC_CANCEL)) {
+                    cause = new UnsupportedOperationException("io_uring does not support all required operations");
+                }
+            } catch (Throwable t) {
+                cause = t;
+            } finally {
+                if (ringBuffer != null) {
+                    try {
+                        ringBuffer.close();
+                    } catch (Exception ignore) {
+                        // ignore
+                    }
+                }
+            }
+        }
+
+        UNAVAILABILITY_CAUSE = cause;
+    }
+
+    /**
+     * Returns {@code true} if and only if {@code netty-transport-native-io_uring} is available.
+     */
+    public static boolean isAvailable() {
+        return UNAVAILABILITY_CAUSE == null;
+    }
+
+    /**
+     * Ensure that {@code netty-transport-native-io_uring} is available.
+     *
+     * @throws UnsatisfiedLinkError if unavailable
+     */
+    public static void ensureAvailability() {
+        if (UNAVAILABILITY_CAUSE != null) {
+            throw (Error) new UnsatisfiedLinkError(
+                    "failed to load the required native library").initCause(UNAVAILABILITY_CAUSE);
+        }
+    }
+
+    /**
+     * Returns the cause of unavailability of {@code netty-transport-native-io_uring}.
+     *
+     * @return the cause if unavailable. {@code null} if available.
+     */
+    public static Throwable unavailabilityCause() {
+        return UNAVAILABILITY_CAUSE;
+    }
+
+    private IOUring() { }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * The completion ring of an io_uring instance, which holds the results of the submitted operations.
+ * <p>
+ * See also {@code man io_uring_setup}.
+ * <p>
+ * <strong>Not thread-safe</strong>, this is only accessed from within the {@link IOUringEventLoop}.
+ */
+final class IOUringCompletionQueue {
+
+    // Offsets of the fields of struct io_uring_cqe
+    private static final int CQE_SIZE = 16;
+    private static final int CQE_USER_DATA_FIELD = 0;
+    private static final int CQE_RES_FIELD = 8;
+    private static final int CQE_FLAGS_FIELD = 12;
+
+    private final long kHeadAddress;
+    private final long kTailAddress;
+    private final long completionQueueArrayAddress;
+    private final int ringMask;
+
+    final long ringSize;
+    final long ringAddress;
+
+    private int head;
+
+    IOUringCompletionQueue(long kHeadAddress, long kTailAddress, long kRingMaskAddress, long kRingEntriesAddress,
+                           long kOverflowAddress, long completionQueueArrayAddress, long ringSize, long ringAddress,
+                           int ringFd) {
+        this.kHeadAddress = kHeadAddress;
+        this.kTailAddress = kTailAddress;
+        this.completionQueueArrayAddress = completionQueueArrayAddress;
+        this.ringSize = ringSize;
+        this.ringAddress = ringAddress;
+
+        ringMask = PlatformDependent.getInt(kRingMaskAddress);
+        head = PlatformDependent.getIntVolatile(kHeadAddress);
+    }
+
+    /**
+     * Returns {@code true} if there are completions which were not processed yet.
+     */
+    boolean hasCompletions() {
+        return head != PlatformDependent.getIntVolatile(kTailAddress);
+    }
+
+    /**
+     * Process all completions which are available, and return the number of processed completions.
+     */
+    int process(CompletionCallback callback) {
+        int tail = PlatformDependent.getIntVolatile(kTailAddress);
+        int processed = 0;
+        while (head != tail) {
+            long cqe = completionQueueArrayAddress + (long) (head & ringMask) * CQE_SIZE;
+            long userData = PlatformDependent.getLong(cqe + CQE_USER_DATA_FIELD);
+            int res = PlatformDependent.getInt(cqe + CQE_RES_FIELD);
+            int flags = PlatformDependent.getInt(cqe + CQE_FLAGS_FIELD);
+
+            // Hand the entry back to the kernel before we call the callback, so it can be reused while we process it.
+            PlatformDependent.putIntOrdered(kHeadAddress, ++head);
+            processed++;
+
+            callback.handle(res, flags, userData);
+
+            if (head == tail) {
+                // Check if there are new completions which were added in the meantime.
+                tail = PlatformDependent.getIntVolatile(kTailAddress);
+            }
+        }
+        return processed;
+    }
+
+    interface CompletionCallback {
+        /**
+         * Called for each completion with the result {@code res} of the operation, the {@code flags} of the
+         * completion and the {@code userData} of the operation as it was submitted.
+         */
+        void handle(int res, int flags, long userData);
+    }
+}
@@ -0,0 +1,528 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.AddressedEnvelope;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultAddressedEnvelope;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.IovArray;
+import io.netty.channel.unix.PreferredDirectByteBufAllocator;
+import io.netty.channel.unix.UnixChannelUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.StringUtil;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.PortUnreachableException;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.channels.AlreadyConnectedException;
+
+import static io.netty.channel.uring.LinuxSocket.newSocketDgram;
+
+/**
+ * {@link DatagramChannel} implementation that uses io_uring. Datagrams are received via {@code IORING_OP_RECVMSG}
+ * and sent via {@code IORING_OP_SENDMSG}, with at most one of each in flight.
+ */
+public final class IOUringDatagramChannel extends AbstractIOUringChannel implements DatagramChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(true);
+    private static final String EXPECTED_TYPES =
+            " (expected: " + StringUtil.simpleClassName(DatagramPacket.class) + ", " +
+            StringUtil.simpleClassName(AddressedEnvelope.class) + '<' +
+            StringUtil.simpleClassName(ByteBuf.class) + ", " +
+            StringUtil.simpleClassName(InetSocketAddress.class) + ">, " +
+            StringUtil.simpleClassName(ByteBuf.class) + ')';
+
+    // Offsets of the fields of struct msghdr and the size of struct iovec, see bits/socket.h.
+    private static final int MSGHDR_NAME_OFFSET = 0;
+    private static final int MSGHDR_NAMELEN_OFFSET = 8;
+    private static final int MSGHDR_IOV_OFFSET = 16;
+    private static final int MSGHDR_IOVLEN_OFFSET = 24;
+    private static final int MSGHDR_CONTROL_OFFSET = 32;
+    private static final int MSGHDR_CONTROLLEN_OFFSET = 40;
+    private static final int MSGHDR_FLAGS_OFFSET = 48;
+    private static final int IOVEC_SIZE = 16;
+
+    private final IOUringDatagramChannelConfig config;
+    private volatile boolean connected;
+
+    // The struct msghdr, struct iovec and struct sockaddr of the receive in flight.
+    private long recvMemory;
+    // The buffer the receive in flight reads into.
+    private ByteBuf recvBuffer;
+    // The struct msghdr and struct sockaddr of the send in flight, its struct iovec array is sendIovArray.
+    private long sendMemory;
+    private IovArray sendIovArray;
+    // The content of the send in flight, which is retained until the send completed.
+    private ByteBuf sendBuffer;
+
+    public IOUringDatagramChannel() {
+        super(newSocketDgram());
+        config = new IOUringDatagramChannelConfig(this);
+    }
+
+    @Override
+    public InetSocketAddress remoteAddress() {
+        return (InetSocketAddress) super.remoteAddress();
+    }
+
+    @Override
+    public InetSocketAddress localAddress() {
+        return (InetSocketAddress) super.localAddress();
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public boolean isActive() {
+        return socket.isOpen() && (config.getActiveOnOpen() && isRegistered() || active);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public IOUringDatagramChannelConfig config() {
+        return config;
+    }
+
+    @Override
+    public ChannelFuture joinGroup(InetAddress multicastAddress) {
+        return joinGroup(multicastAddress, newPromise());
+    }
+
+    @Override
+    public ChannelFuture joinGroup(InetAddress multicastAddress, ChannelPromise promise) {
+        try {
+            return joinGroup(
+                    multicastAddress,
+                    NetworkInterface.getByInetAddress(localAddress().getAddress()), null, promise);
+        } catch (SocketException e) {
+            promise.setFailure(e);
+        }
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture joinGroup(
+            InetSocketAddress multicastAddress, NetworkInterface networkInterface) {
+        return joinGroup(multicastAddress, networkInterface, newPromise());
+    }
+
+    @Override
+    public ChannelFuture joinGroup(
+            InetSocketAddress multicastAddress, NetworkInterface networkInterface,
+            ChannelPromise promise) {
+        return joinGroup(multicastAddress.getAddress(), networkInterface, null, promise);
+    }
+
+    @Override
+    public ChannelFuture joinGroup(
+            InetAddress multicastAddress, NetworkInterface networkInterface, InetAddress source) {
+        return joinGroup(multicastAddress, networkInterface, source, newPromise());
+    }
+
+    @Override
+    public ChannelFuture joinGroup(
+            final InetAddress multicastAddress, final NetworkInterface networkInterface,
+            final InetAddress source, final ChannelPromise promise) {
+
+        if (multicastAddress == null) {
+            throw new NullPointerException("multicastAddress");
+        }
+
+        if (networkInterface == null) {
+            throw new NullPointerException("networkInterface");
+        }
+
+        promise.setFailure(new UnsupportedOperationException("Multicast not supported"));
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(InetAddress multicastAddress) {
+        return leaveGroup(multicastAddress, newPromise());
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(InetAddress multicastAddress, ChannelPromise promise) {
+        try {
+            return leaveGroup(
+                    multicastAddress, NetworkInterface.getByInetAddress(localAddress().getAddress()), null, promise);
+        } catch (SocketException e) {
+            promise.setFailure(e);
+        }
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(
+            InetSocketAddress multicastAddress, NetworkInterface networkInterface) {
+        return leaveGroup(multicastAddress, networkInterface, newPromise());
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(
+            InetSocketAddress multicastAddress,
+            NetworkInterface networkInterface, ChannelPromise promise) {
+        return leaveGroup(multicastAddress.getAddress(), networkInterface, null, promise);
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(
+            InetAddress multicastAddress, NetworkInterface networkInterface, InetAddress source) {
+        return leaveGroup(multicastAddress, networkInterface, source, newPromise());
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(
+            final InetAddress multicastAddress, final NetworkInterface networkInterface, final InetAddress source,
+            final ChannelPromise promise) {
+        if (multicastAddress == null) {
+            throw new NullPointerException("multicastAddress");
+        }
+        if (networkInterface == null) {
+            throw new NullPointerException("networkInterface");
+        }
+
+        promise.setFailure(new UnsupportedOperationException("Multicast not supported"));
+
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture block(
+            InetAddress multicastAddress, NetworkInterface networkInterface,
+            InetAddress sourceToBlock) {
+        return block(multicastAddress, networkInterface, sourceToBlock, newPromise());
+    }
+
+    @Override
+    public ChannelFuture block(
+            final InetAddress multicastAddress, final NetworkInterface networkInterface,
+            final InetAddress sourceToBlock, final ChannelPromise promise) {
+        if (multicastAddress == null) {
+            throw new NullPointerException("multicastAddress");
+        }
+        if (sourceToBlock == null) {
+            throw new NullPointerException("sourceToBlock");
+        }
+
+        if (networkInterface == null) {
+            throw new NullPointerException("networkInterface");
+        }
+        promise.setFailure(new UnsupportedOperationException("Multicast not supported"));
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture block(InetAddress multicastAddress, InetAddress sourceToBlock) {
+        return block(multicastAddress, sourceToBlock, newPromise());
+    }
+
+    @Override
+    public ChannelFuture block(
+            InetAddress multicastAddress, InetAddress sourceToBlock, ChannelPromise promise) {
+        try {
+            return block(
+                    multicastAddress,
+                    NetworkInterface.getByInetAddress(localAddress().getAddress()),
+                    sourceToBlock, promise);
+        } catch (Throwable e) {
+            promise.setFailure(e);
+        }
+        return promise;
+    }
+
+    @Override
+    protected AbstractUringUnsafe newUnsafe() {
+        return new IOUringDatagramChannelUnsafe();
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        super.doBind(localAddress);
+        active = true;
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        for (;;) {
+            Object msg = in.current();
+            if (msg == null) {
+                // Wrote all messages.
+                return;
+            }
+
+            final ByteBuf data;
+            final InetSocketAddress remoteAddress;
+            if (msg instanceof AddressedEnvelope) {
+                @SuppressWarnings("unchecked")
+                AddressedEnvelope<ByteBuf, InetSocketAddress> envelope =
+                        (AddressedEnvelope<ByteBuf, InetSocketAddress>) msg;
+                data = envelope.content();
+                remoteAddress = envelope.recipient();
+            } else {
+                data = (ByteBuf) msg;
+                remoteAddress = null;
+            }
+
+            if (sendMemory == 0) {
+                sendMemory = PlatformDependent.allocateMemory(Native.SIZEOF_MSGHDR + Native.SIZEOF_SOCKADDR_STORAGE);
+                sendIovArray = new IovArray();
+            }
+            sendIovArray.clear();
+            if (!sendIovArray.add(data)) {
+                in.remove(new IOException("Too many components in datagram: " + data.nioBufferCount()));
+                continue;
+            }
+
+            long nameAddress = 0;
+            int nameLength = 0;
+            if (remoteAddress != null) {
+                nameAddress = sendMemory + Native.SIZEOF_MSGHDR;
+                nameLength = Native.writeSockaddr(nameAddress, remoteAddress);
+            }
+            writeMsghdr(sendMemory, nameAddress, nameLength, sendIovArray.memoryAddress(0), sendIovArray.count());
+
+            long userData = userData(Native.IORING_OP_SENDMSG, 0);
+            if (!submissionQueue().addSendmsg(socket.intValue(), sendMemory, userData)) {
+                throw new IOException("io_uring submission queue is full");
+            }
+            // Retain the content as the ChannelOutboundBuffer may release it if the channel is closed in the meantime.
+            sendBuffer = data.retain();
+            writeScheduled(userData);
+            return;
+        }
+    }
+
+    private static void writeMsghdr(long msghdrAddress, long nameAddress, int nameLength,
+                                    long iovAddress, int iovLength) {
+        PlatformDependent.putLong(msghdrAddress + MSGHDR_NAME_OFFSET, nameAddress);
+        PlatformDependent.putInt(msghdrAddress + MSGHDR_NAMELEN_OFFSET, nameLength);
+        PlatformDependent.putLong(msghdrAddress + MSGHDR_IOV_OFFSET, iovAddress);
+        PlatformDependent.putLong(msghdrAddress + MSGHDR_IOVLEN_OFFSET, iovLength);
+        PlatformDependent.putLong(msghdrAddress + MSGHDR_CONTROL_OFFSET, 0);
+        PlatformDependent.putLong(msghdrAddress + MSGHDR_CONTROLLEN_OFFSET, 0);
+        PlatformDependent.putInt(msghdrAddress + MSGHDR_FLAGS_OFFSET, 0);
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof DatagramPacket) {
+            DatagramPacket packet = (DatagramPacket) msg;
+            ByteBuf content = packet.content();
+            return UnixChannelUtil.isBufferCopyNeededForWrite(content) ?
+                    new DatagramPacket(newDirectBuffer(packet, content), packet.recipient()) : msg;
+        }
+
+        if (msg instanceof ByteBuf) {
+            ByteBuf buf = (ByteBuf) msg;
+            return UnixChannelUtil.isBufferCopyNeededForWrite(buf)? newDirectBuffer(buf) : buf;
+        }
+
+        if (msg instanceof AddressedEnvelope) {
+            @SuppressWarnings("unchecked")
+            AddressedEnvelope<Object, SocketAddress> e = (AddressedEnvelope<Object, SocketAddress>) msg;
+            if (e.content() instanceof ByteBuf &&
+                (e.recipient() == null || e.recipient() instanceof InetSocketAddress)) {
+
+                ByteBuf content = (ByteBuf) e.content();
+                return UnixChannelUtil.isBufferCopyNeededForWrite(content)?
+                        new DefaultAddressedEnvelope<ByteBuf, InetSocketAddress>(
+                            newDirectBuffer(e, content), (InetSocketAddress) e.recipient()) : e;
+            }
+        }
+
+        throw new UnsupportedOperationException(
+                "unsupported message type: " + StringUtil.simpleClassName(msg) + EXPECTED_TYPES);
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        socket.disconnect();
+        connected(null);
+        connected = active = false;
+    }
+
+    /**
+     * Connecting a datagram socket does not block, so it is done directly instead of via the ring.
+     */
+    @Override
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        if (localAddress instanceof InetSocketAddress) {
+            checkResolvable((InetSocketAddress) localAddress);
+        }
+        if (remoteAddress instanceof InetSocketAddress) {
+            checkResolvable((InetSocketAddress) remoteAddress);
+        }
+        if (connected) {
+            throw new AlreadyConnectedException();
+        }
+        if (localAddress != null) {
+            socket.bind(localAddress);
+        }
+        socket.connect(remoteAddress);
+        connected(remoteAddress);
+        connected = true;
+        return true;
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        super.doClose();
+        connected = false;
+    }
+
+    @Override
+    void freeResources() {
+        try {
+            super.freeResources();
+        } finally {
+            if (recvMemory != 0) {
+                PlatformDependent.freeMemory(recvMemory);
+                recvMemory = 0;
+            }
+            if (sendMemory != 0) {
+                PlatformDependent.freeMemory(sendMemory);
+                sendMemory = 0;
+                sendIovArray.release();
+                sendIovArray = null;
+            }
+        }
+    }
+
+    final class IOUringDatagramChannelUnsafe extends AbstractUringUnsafe {
+        private final PreferredDirectByteBufAllocator allocator = new PreferredDirectByteBufAllocator();
+
+        @Override
+        void scheduleRead() {
+            final IOUringDatagramChannelConfig config = config();
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            allocator.updateAllocator(config.getAllocator());
+            allocHandle.reset(config);
+
+            if (recvMemory == 0) {
+                recvMemory = PlatformDependent.allocateMemory(
+                        Native.SIZEOF_MSGHDR + IOVEC_SIZE + Native.SIZEOF_SOCKADDR_STORAGE);
+            }
+            long iovAddress = recvMemory + Native.SIZEOF_MSGHDR;
+            long nameAddress = iovAddress + IOVEC_SIZE;
+
+            // we use a direct buffer here as the kernel can only read into memory with a fixed address.
+            ByteBuf byteBuf = allocHandle.allocate(allocator);
+            allocHandle.attemptedBytesRead(byteBuf.writableBytes());
+            PlatformDependent.putLong(iovAddress, memoryAddress(byteBuf) + byteBuf.writerIndex());
+            PlatformDependent.putLong(iovAddress + 8, byteBuf.writableBytes());
+            writeMsghdr(recvMemory, nameAddress, Native.SIZEOF_SOCKADDR_STORAGE, iovAddress, 1);
+
+            long userData = userData(Native.IORING_OP_RECVMSG, 0);
+            if (!submissionQueue().addRecvmsg(socket.intValue(), recvMemory, userData)) {
+                byteBuf.release();
+                pipeline().fireExceptionCaught(new IOException("io_uring submission queue is full"));
+                return;
+            }
+            recvBuffer = byteBuf;
+            readScheduled(userData);
+        }
+
+        @Override
+        void readComplete(int op, int res, int data) {
+            ByteBuf byteBuf = recvBuffer;
+            recvBuffer = null;
+            if (isCancelled(res)) {
+                byteBuf.release();
+                scheduleReadIfPending();
+                return;
+            }
+
+            final ChannelPipeline pipeline = pipeline();
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            Throwable exception = null;
+            if (res >= 0) {
+                // Unlike for stream sockets, an empty datagram is a valid message.
+                byteBuf.writerIndex(byteBuf.writerIndex() + res);
+                allocHandle.lastBytesRead(res);
+                allocHandle.incMessagesRead(1);
+                readPending = false;
+                try {
+                    InetSocketAddress local = IOUringDatagramChannel.this.localAddress();
+                    InetSocketAddress sender = isConnected() ? IOUringDatagramChannel.this.remoteAddress() :
+                            SockaddrIn.readAddress(recvMemory + Native.SIZEOF_MSGHDR + IOVEC_SIZE);
+                    pipeline.fireChannelRead(new DatagramPacket(byteBuf, local, sender));
+                } catch (Throwable t) {
+                    exception = t;
+                }
+            } else {
+                byteBuf.release();
+                allocHandle.lastBytesRead(-1);
+                // We need to correctly translate connect errors to match NIO behaviour.
+                if (res == Errors.ERROR_ECONNREFUSED_NEGATIVE) {
+                    exception = new PortUnreachableException(Errors.newIOException("recvmsg", res).getMessage());
+                } else {
+                    exception = Errors.newIOException("recvmsg", res);
+                }
+            }
+            allocHandle.readComplete();
+            pipeline.fireChannelReadComplete();
+
+            if (exception != null) {
+                pipeline.fireExceptionCaught(exception);
+            }
+
+            scheduleReadIfPending();
+        }
+
+        @Override
+        void writeComplete(int op, int res, int data) {
+            sendBuffer.release();
+            sendBuffer = null;
+            if (isCancelled(res)) {
+                return;
+            }
+            ChannelOutboundBuffer in = outboundBuffer();
+            if (in == null) {
+                return;
+            }
+            if (res >= 0) {
+                in.remove();
+            } else {
+                // Continue on write error as a DatagramChannel can write to multiple remote peers
+                //
+                // See https://github.com/netty/netty/issues/2665
+                in.remove(Errors.newIOException("sendmsg", res));
+            }
+            forceFlush();
+        }
+    }
+}
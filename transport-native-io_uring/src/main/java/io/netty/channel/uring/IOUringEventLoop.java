@@ -0,0 +1,350 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SingleThreadEventLoop;
+import io.netty.channel.uring.AbstractIOUringChannel.AbstractUringUnsafe;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.IoEventExecutor;
+import io.netty.util.concurrent.RejectedExecutionHandler;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import static java.lang.Math.max;
+
+/**
+ * {@link EventLoop} which uses io_uring under the covers. Only works on Linux!
+ * <p>
+ * All the operations of the registered channels are added to the {@link IOUringSubmissionQueue} while the loop
+ * processes completions and tasks, and are handed over to the kernel with a single {@code io_uring_enter(...)} per
+ * loop iteration, which also waits for the next completion if there is nothing else to do.
+ */
+final class IOUringEventLoop extends SingleThreadEventLoop
+        implements IoEventExecutor, IOUringCompletionQueue.CompletionCallback {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(IOUringEventLoop.class);
+    private static final AtomicIntegerFieldUpdater<IOUringEventLoop> WAKEN_UP_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(IOUringEventLoop.class, "wakenUp");
+
+    // The id of the operations of the event loop itself, channels are assigned ids starting from 1.
+    private static final int EVENT_LOOP_ID = 0;
+    private static final long EVENTFD_READ_USER_DATA = UserData.encode(EVENT_LOOP_ID, Native.IORING_OP_READ, 0);
+
+    // Size of struct __kernel_timespec.
+    private static final int TIMESPEC_SIZE = 16;
+    private static final int EVENTFD_BUFFER_SIZE = 8;
+    private static final long NANOSECONDS_PER_SECOND = 1000000000L;
+
+    static {
+        // Ensure JNI is initialized by the time this class is loaded by this time!
+        // We use unix-common methods in this class which are backed by JNI methods.
+        IOUring.ensureAvailability();
+    }
+
+    // The deadline of the scheduled task the pending timeout was submitted for.
+    private long prevDeadlineNanos = -1;
+    private final RingBuffer ringBuffer;
+    private final FileDescriptor eventFd;
+    private final IntObjectMap<AbstractIOUringChannel> channels =
+            new IntObjectHashMap<AbstractIOUringChannel>(4096);
+    // Memory the kernel reads the eventfd counter into and the timeout from, which must stay valid while submitted.
+    private final long eventFdBufferAddress;
+    private final long timespecAddress;
+
+    private int nextChannelId = EVENT_LOOP_ID + 1;
+    // Each timeout gets its own sequence number, so we can tell if the completion is for the latest one.
+    private int timeoutSequence;
+    private boolean timeoutPending;
+
+    @SuppressWarnings("unused") // AtomicIntegerFieldUpdater
+    private volatile int wakenUp;
+    private volatile int ioRatio = 50;
+
+    IOUringEventLoop(EventLoopGroup parent, Executor executor, int ringSize,
+                     RejectedExecutionHandler rejectedExecutionHandler) {
+        super(parent, executor, false, DEFAULT_MAX_PENDING_TASKS, rejectedExecutionHandler);
+        boolean success = false;
+        RingBuffer ringBuffer = null;
+        FileDescriptor eventFd = null;
+        try {
+            this.ringBuffer = ringBuffer = Native.createRingBuffer(ringSize);
+            this.eventFd = eventFd = Native.newEventFd();
+            success = true;
+        } finally {
+            if (!success) {
+                if (ringBuffer != null) {
+                    try {
+                        ringBuffer.close();
+                    } catch (Exception e) {
+                        // ignore
+                    }
+                }
+                if (eventFd != null) {
+                    try {
+                        eventFd.close();
+                    } catch (Exception e) {
+                        // ignore
+                    }
+                }
+            }
+        }
+        eventFdBufferAddress = PlatformDependent.allocateMemory(EVENTFD_BUFFER_SIZE);
+        timespecAddress = PlatformDependent.allocateMemory(TIMESPEC_SIZE);
+        addEventFdRead();
+    }
+
+    /**
+     * Returns the {@link IOUringSubmissionQueue} all operations of this {@link EventLoop} are added to.
+     */
+    IOUringSubmissionQueue submissionQueue() {
+        return ringBuffer.submissionQueue();
+    }
+
+    @Override
+    protected void wakeup(boolean inEventLoop) {
+        if (!inEventLoop && WAKEN_UP_UPDATER.compareAndSet(this, 0, 1)) {
+            // write to the evfd which will then complete the pending read and so wake-up io_uring_enter(...)
+            Native.eventFdWrite(eventFd.intValue(), 1L);
+        }
+    }
+
+    /**
+     * Register the given channel with this {@link EventLoop} and assign it the id its operations are submitted with.
+     */
+    void add(AbstractIOUringChannel ch) {
+        assert inEventLoop();
+        if (channels.get(ch.id) == ch) {
+            // Still known from a previous registration, as not all of its operations completed yet.
+            return;
+        }
+        int id;
+        do {
+            id = nextChannelId++;
+            if (id <= EVENT_LOOP_ID) {
+                // Wrapped around, start again from the first id.
+                nextChannelId = EVENT_LOOP_ID + 2;
+                id = EVENT_LOOP_ID + 1;
+            }
+        } while (channels.containsKey(id));
+        ch.id = id;
+        channels.put(id, ch);
+    }
+
+    /**
+     * Deregister the given channel from this {@link EventLoop}. If there are still operations of the channel in
+     * flight these are cancelled, and the channel is removed once they completed.
+     */
+    void remove(AbstractIOUringChannel ch) {
+        assert inEventLoop();
+        if (channels.get(ch.id) != ch) {
+            return;
+        }
+        if (ch.ioState == 0) {
+            channels.remove(ch.id);
+        } else {
+            ch.cancelPendingOperations();
+        }
+    }
+
+    @Override
+    protected Queue<Runnable> newTaskQueue(int maxPendingTasks) {
+        // This event loop never calls takeTask()
+        return maxPendingTasks == Integer.MAX_VALUE ? PlatformDependent.<Runnable>newMpscQueue()
+                                                    : PlatformDependent.<Runnable>newMpscQueue(maxPendingTasks);
+    }
+
+    /**
+     * Returns the percentage of the desired amount of time spent for I/O in the event loop.
+     */
+    public int getIoRatio() {
+        return ioRatio;
+    }
+
+    /**
+     * Sets the percentage of the desired amount of time spent for I/O in the event loop.  The default value is
+     * {@code 50}, which means the event loop will try to spend the same amount of time for I/O as for non-I/O tasks.
+     */
+    public void setIoRatio(int ioRatio) {
+        if (ioRatio <= 0 || ioRatio > 100) {
+            throw new IllegalArgumentException("ioRatio: " + ioRatio + " (expected: 0 < ioRatio <= 100)");
+        }
+        this.ioRatio = ioRatio;
+    }
+
+    @Override
+    protected void run() {
+        final IOUringSubmissionQueue submissionQueue = ringBuffer.submissionQueue();
+        final IOUringCompletionQueue completionQueue = ringBuffer.completionQueue();
+        for (;;) {
+            try {
+                // Reset the flag before checking for tasks, so a task which is added after the check will always
+                // write to the eventfd and so complete the pending read.
+                WAKEN_UP_UPDATER.set(this, 0);
+                if (hasTasks() || completionQueue.hasCompletions()) {
+                    submissionQueue.submit();
+                } else {
+                    // Only submit a new timeout if the deadline of the next scheduled task changed, if there is none we
+                    // are woken up via the eventfd once a task is added.
+                    long curDeadlineNanos = nextScheduledTaskDeadlineNanos();
+                    if (curDeadlineNanos != -1 && (curDeadlineNanos != prevDeadlineNanos || !timeoutPending)) {
+                        prevDeadlineNanos = curDeadlineNanos;
+                        addTimeout(max(0, curDeadlineNanos - nanoTime()));
+                    }
+                    submissionQueue.submitAndWait();
+                }
+
+                final int ioRatio = this.ioRatio;
+                final long ioStartTime = ioStarted();
+                int completions = -1;
+                if (ioRatio == 100) {
+                    try {
+                        completions = completionQueue.process(this);
+                    } finally {
+                        // Ensure we always run tasks.
+                        recordIoTime(System.nanoTime() - ioStartTime, completions);
+                        runAllTasks();
+                    }
+                } else {
+                    try {
+                        completions = completionQueue.process(this);
+                    } finally {
+                        // Ensure we always run tasks.
+                        final long ioTime = System.nanoTime() - ioStartTime;
+                        recordIoTime(ioTime, completions);
+                        runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                    }
+                }
+            } catch (Throwable t) {
+                handleLoopException(t);
+            }
+            // Always handle shutdown even if the loop processing threw an exception.
+            try {
+                if (isShuttingDown()) {
+                    closeAll();
+                    if (confirmShutdown()) {
+                        break;
+                    }
+                }
+            } catch (Throwable t) {
+                handleLoopException(t);
+            }
+        }
+    }
+
+    @Override
+    public void handle(int res, int flags, long userData) {
+        int id = UserData.decodeId(userData);
+        int op = UserData.decodeOp(userData);
+        if (id == EVENT_LOOP_ID) {
+            if (op == Native.IORING_OP_READ) {
+                // The eventfd was written by wakeup(...), re-arm the read for the next one.
+                if (res != Native.ERRNO_ECANCELED_NEGATIVE) {
+                    addEventFdRead();
+                }
+            } else if (op == Native.IORING_OP_TIMEOUT) {
+                if (UserData.decodeData(userData) == (timeoutSequence & 0xFFFF)) {
+                    timeoutPending = false;
+                }
+            }
+            // Nothing to do for the completion of IORING_OP_TIMEOUT_REMOVE.
+            return;
+        }
+
+        AbstractIOUringChannel ch = channels.get(id);
+        if (ch == null) {
+            return;
+        }
+        ((AbstractUringUnsafe) ch.unsafe()).processCompletion(op, res, UserData.decodeData(userData));
+        if (ch.ioState == 0 && (!ch.isRegistered() || ch.eventLoop() != this)) {
+            // All operations of a deregistered channel completed, so we can finally forget about it.
+            channels.remove(id);
+        }
+    }
+
+    private void addEventFdRead() {
+        ringBuffer.submissionQueue().addRead(
+                eventFd.intValue(), eventFdBufferAddress, 0, EVENTFD_BUFFER_SIZE, EVENTFD_READ_USER_DATA);
+    }
+
+    private void addTimeout(long delayNanos) {
+        IOUringSubmissionQueue submissionQueue = ringBuffer.submissionQueue();
+        if (timeoutPending) {
+            // Only keep one timeout in flight, the kernel processes the removal before the new timeout.
+            submissionQueue.addTimeoutRemove(
+                    UserData.encode(EVENT_LOOP_ID, Native.IORING_OP_TIMEOUT, timeoutSequence),
+                    UserData.encode(EVENT_LOOP_ID, Native.IORING_OP_TIMEOUT_REMOVE, 0));
+        }
+        long seconds = delayNanos / NANOSECONDS_PER_SECOND;
+        PlatformDependent.putLong(timespecAddress, seconds);
+        PlatformDependent.putLong(timespecAddress + 8, delayNanos - seconds * NANOSECONDS_PER_SECOND);
+        timeoutSequence = (timeoutSequence + 1) & 0xFFFF;
+        timeoutPending = submissionQueue.addTimeout(
+                timespecAddress, UserData.encode(EVENT_LOOP_ID, Native.IORING_OP_TIMEOUT, timeoutSequence));
+    }
+
+    /**
+     * Visible only for testing!
+     */
+    void handleLoopException(Throwable t) {
+        logger.warn("Unexpected exception in the io_uring loop.", t);
+
+        // Prevent possible consecutive immediate failures that lead to
+        // excessive CPU consumption.
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            // Ignore.
+        }
+    }
+
+    private void closeAll() {
+        // Using the intermediate collection to prevent ConcurrentModificationException.
+        // In the `close()` method, the channel is deleted from `channels` map.
+        AbstractIOUringChannel[] localChannels = channels.values().toArray(new AbstractIOUringChannel[0]);
+
+        for (AbstractIOUringChannel ch : localChannels) {
+            if (ch.isOpen()) {
+                ch.unsafe().close(ch.unsafe().voidPromise());
+            }
+        }
+    }
+
+    @Override
+    protected void cleanup() {
+        try {
+            try {
+                eventFd.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close the event fd.", e);
+            }
+            // Closing the ring cancels all operations which are still in flight.
+            ringBuffer.close();
+        } finally {
+            // release native memory
+            PlatformDependent.freeMemory(eventFdBufferAddress);
+            PlatformDependent.freeMemory(timespecAddress);
+        }
+    }
+}
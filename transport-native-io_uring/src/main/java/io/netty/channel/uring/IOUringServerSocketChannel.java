@@ -0,0 +1,64 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.Channel;
+import io.netty.channel.socket.ServerSocketChannel;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+import static io.netty.channel.uring.LinuxSocket.newSocketStream;
+
+/**
+ * {@link ServerSocketChannel} implementation that uses io_uring to submit its accepts.
+ */
+public final class IOUringServerSocketChannel extends AbstractIOUringServerChannel implements ServerSocketChannel {
+
+    private final IOUringServerSocketChannelConfig config;
+
+    public IOUringServerSocketChannel() {
+        super(newSocketStream(), false);
+        config = new IOUringServerSocketChannelConfig(this);
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        super.doBind(localAddress);
+        socket.listen(config.getBacklog());
+        active = true;
+    }
+
+    @Override
+    public InetSocketAddress remoteAddress() {
+        return (InetSocketAddress) super.remoteAddress();
+    }
+
+    @Override
+    public InetSocketAddress localAddress() {
+        return (InetSocketAddress) super.localAddress();
+    }
+
+    @Override
+    public IOUringServerSocketChannelConfig config() {
+        return config;
+    }
+
+    @Override
+    Channel newChildChannel(int fd, InetSocketAddress remote) throws Exception {
+        return new IOUringSocketChannel(this, new LinuxSocket(fd), remote);
+    }
+}
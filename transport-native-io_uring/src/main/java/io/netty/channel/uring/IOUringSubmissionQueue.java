@@ -0,0 +1,202 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.ChannelException;
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.IOException;
+
+/**
+ * The submission ring of an io_uring instance. Entries are only written into the ring when added, and handed over to
+ * the kernel with a single {@code io_uring_enter(...)} call by {@link #submit()} or {@link #submitAndWait()}, which
+ * allows to batch all the operations of an event loop iteration.
+ * <p>
+ * See also {@code man io_uring_setup}.
+ * <p>
+ * <strong>Not thread-safe</strong>, this is only accessed from within the {@link IOUringEventLoop}.
+ */
+final class IOUringSubmissionQueue {
+
+    // Offsets of the fields of struct io_uring_sqe
+    private static final int SQE_SIZE = 64;
+    private static final int SQE_OP_CODE_FIELD = 0;
+    private static final int SQE_FLAGS_FIELD = 1;
+    private static final int SQE_IOPRIO_FIELD = 2;
+    private static final int SQE_FD_FIELD = 4;
+    private static final int SQE_OFFSET_FIELD = 8;
+    private static final int SQE_ADDRESS_FIELD = 16;
+    private static final int SQE_LEN_FIELD = 24;
+    private static final int SQE_OP_FLAGS_FIELD = 28;
+    private static final int SQE_USER_DATA_FIELD = 32;
+    private static final int SQE_PAD_FIELD = 40;
+    private static final int SQE_PAD_LENGTH = 24;
+
+    private static final int INT_SIZE = 4;
+
+    private final long kHeadAddress;
+    private final long kTailAddress;
+    private final int ringEntries;
+    private final int ringMask;
+    private final int ringFd;
+
+    final long ringSize;
+    final long ringAddress;
+    final long sqesAddress;
+    final long sqesSize;
+
+    // The head of the ring as it was seen by us the last time, entries before it were consumed by the kernel.
+    private int head;
+    // The tail of the ring, entries up to it were added by us but not necessarily submitted yet.
+    private int tail;
+
+    IOUringSubmissionQueue(long kHeadAddress, long kTailAddress, long kRingMaskAddress, long kRingEntriesAddress,
+                           long kFlagsAddress, long kDroppedAddress, long kArrayAddress,
+                           long submissionQueueArrayAddress, long ringSize, long ringAddress, long sqesSize,
+                           int ringFd) {
+        this.kHeadAddress = kHeadAddress;
+        this.kTailAddress = kTailAddress;
+        this.ringSize = ringSize;
+        this.ringAddress = ringAddress;
+        this.sqesAddress = submissionQueueArrayAddress;
+        this.sqesSize = sqesSize;
+        this.ringFd = ringFd;
+
+        ringEntries = PlatformDependent.getInt(kRingEntriesAddress);
+        ringMask = PlatformDependent.getInt(kRingMaskAddress);
+        head = PlatformDependent.getIntVolatile(kHeadAddress);
+        tail = PlatformDependent.getIntVolatile(kTailAddress);
+
+        // The array of the ring holds the indices of the entries in the submission queue array. As we always add the
+        // entries in order we can just use the same index for both and so fill the array once here.
+        for (int i = 0; i < ringEntries; i++) {
+            PlatformDependent.putInt(kArrayAddress + (long) i * INT_SIZE, i);
+        }
+    }
+
+    boolean addRead(int fd, long bufferAddress, int pos, int limit, long userData) {
+        return enqueueSqe(Native.IORING_OP_READ, 0, fd, 0, bufferAddress + pos, limit - pos, userData);
+    }
+
+    boolean addWrite(int fd, long bufferAddress, int pos, int limit, long userData) {
+        return enqueueSqe(Native.IORING_OP_WRITE, 0, fd, 0, bufferAddress + pos, limit - pos, userData);
+    }
+
+    boolean addWritev(int fd, long iovecArrayAddress, int length, long userData) {
+        return enqueueSqe(Native.IORING_OP_WRITEV, 0, fd, 0, iovecArrayAddress, length, userData);
+    }
+
+    boolean addAccept(int fd, long sockaddrAddress, long socklenAddress, long userData) {
+        return enqueueSqe(Native.IORING_OP_ACCEPT, Native.SOCK_NONBLOCK | Native.SOCK_CLOEXEC, fd, socklenAddress,
+                sockaddrAddress, 0, userData);
+    }
+
+    boolean addConnect(int fd, long sockaddrAddress, int socklen, long userData) {
+        return enqueueSqe(Native.IORING_OP_CONNECT, 0, fd, socklen, sockaddrAddress, 0, userData);
+    }
+
+    boolean addRecvmsg(int fd, long msghdrAddress, long userData) {
+        return enqueueSqe(Native.IORING_OP_RECVMSG, 0, fd, 0, msghdrAddress, 1, userData);
+    }
+
+    boolean addSendmsg(int fd, long msghdrAddress, long userData) {
+        return enqueueSqe(Native.IORING_OP_SENDMSG, 0, fd, 0, msghdrAddress, 1, userData);
+    }
+
+    boolean addPollAdd(int fd, int pollMask, long userData) {
+        return enqueueSqe(Native.IORING_OP_POLL_ADD, pollMask, fd, 0, 0, 0, userData);
+    }
+
+    /**
+     * Add a timeout which completes with {@code -ETIME} once the time of the {@code struct __kernel_timespec} at
+     * the given {@code timespecAddress} elapsed. The timespec is read by the kernel once submitted.
+     */
+    boolean addTimeout(long timespecAddress, long userData) {
+        return enqueueSqe(Native.IORING_OP_TIMEOUT, 0, -1, 0, timespecAddress, 1, userData);
+    }
+
+    boolean addTimeoutRemove(long timeoutUserData, long userData) {
+        return enqueueSqe(Native.IORING_OP_TIMEOUT_REMOVE, 0, -1, 0, timeoutUserData, 0, userData);
+    }
+
+    /**
+     * Cancel the pending operation which was added with the given {@code targetUserData}, which then completes with
+     * {@code -ECANCELED}.
+     */
+    boolean addCancel(long targetUserData, long userData) {
+        return enqueueSqe(Native.IORING_OP_ASYNC_CANCEL, 0, -1, 0, targetUserData, 0, userData);
+    }
+
+    private boolean enqueueSqe(int op, int opFlags, int fd, long offset, long address, int length, long userData) {
+        if (tail - head == ringEntries) {
+            // The ring is full, submit what we have so far to make room.
+            submit();
+            if (tail - head == ringEntries) {
+                return false;
+            }
+        }
+        long sqe = sqesAddress + (long) (tail++ & ringMask) * SQE_SIZE;
+        PlatformDependent.putByte(sqe + SQE_OP_CODE_FIELD, (byte) op);
+        PlatformDependent.putByte(sqe + SQE_FLAGS_FIELD, (byte) 0);
+        PlatformDependent.putShort(sqe + SQE_IOPRIO_FIELD, (short) 0);
+        PlatformDependent.putInt(sqe + SQE_FD_FIELD, fd);
+        PlatformDependent.putLong(sqe + SQE_OFFSET_FIELD, offset);
+        PlatformDependent.putLong(sqe + SQE_ADDRESS_FIELD, address);
+        PlatformDependent.putInt(sqe + SQE_LEN_FIELD, length);
+        PlatformDependent.putInt(sqe + SQE_OP_FLAGS_FIELD, opFlags);
+        PlatformDependent.putLong(sqe + SQE_USER_DATA_FIELD, userData);
+        PlatformDependent.setMemory(sqe + SQE_PAD_FIELD, SQE_PAD_LENGTH, (byte) 0);
+        return true;
+    }
+
+    /**
+     * Returns the number of entries which were added but not submitted yet.
+     */
+    int pending() {
+        return tail - head;
+    }
+
+    /**
+     * Submit all pending entries without waiting for any completion. Returns the number of submitted entries.
+     */
+    int submit() {
+        return submit(0, 0);
+    }
+
+    /**
+     * Submit all pending entries and wait until at least one completion is available. Returns the number of submitted
+     * entries.
+     */
+    int submitAndWait() {
+        return submit(1, Native.IORING_ENTER_GETEVENTS);
+    }
+
+    private int submit(int minComplete, int flags) {
+        int toSubmit = tail - head;
+        if (toSubmit == 0 && minComplete == 0) {
+            return 0;
+        }
+        // Publish the entries to the kernel before entering.
+        PlatformDependent.putIntOrdered(kTailAddress, tail);
+        try {
+            return Native.ioUringEnter(ringFd, toSubmit, minComplete, flags);
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        } finally {
+            head = PlatformDependent.getIntVolatile(kHeadAddress);
+        }
+    }
+}
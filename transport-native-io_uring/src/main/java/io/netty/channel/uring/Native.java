@@ -0,0 +1,204 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.NativeInetAddress;
+import io.netty.channel.unix.Socket;
+import io.netty.util.internal.NativeLibraryLoader;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.ThrowableUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.afInet;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.afInet6;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.errnoEBUSY;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.errnoECANCELED;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.errnoEINTR;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.errnoETIME;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringEnterGetevents;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringFeatFastPoll;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringOpAccept;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringOpAsyncCancel;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringOpConnect;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringOpPollAdd;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringOpRead;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringOpRecvmsg;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringOpSendmsg;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringOpTimeout;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringOpTimeoutRemove;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringOpWrite;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringOpWritev;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.pollin;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.pollout;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sizeofMsghdr;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sizeofSockaddrStorage;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sockCloexec;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sockNonblock;
+import static io.netty.channel.unix.Errors.newIOException;
+
+/**
+ * Native helper methods
+ * <p><strong>Internal usage only!</strong>
+ * <p>Static members which call JNI methods must be defined in {@link NativeStaticallyReferencedJniMethods}.
+ */
+final class Native {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(Native.class);
+
+    static {
+        try {
+            // First, try calling a side-effect free JNI method to see if the library was already
+            // loaded by the application.
+            sizeofSockaddrStorage();
+        } catch (UnsatisfiedLinkError ignore) {
+            // The library was not previously loaded, load it now.
+            loadNativeLibrary();
+        }
+        Socket.initialize();
+    }
+
+    static final int IORING_OP_WRITEV = ioringOpWritev();
+    static final int IORING_OP_POLL_ADD = ioringOpPollAdd();
+    static final int IORING_OP_SENDMSG = ioringOpSendmsg();
+    static final int IORING_OP_RECVMSG = ioringOpRecvmsg();
+    static final int IORING_OP_TIMEOUT = ioringOpTimeout();
+    static final int IORING_OP_TIMEOUT_REMOVE = ioringOpTimeoutRemove();
+    static final int IORING_OP_ACCEPT = ioringOpAccept();
+    static final int IORING_OP_ASYNC_CANCEL = ioringOpAsyncCancel();
+    static final int IORING_OP_CONNECT = ioringOpConnect();
+    static final int IORING_OP_READ = ioringOpRead();
+    static final int IORING_OP_WRITE = ioringOpWrite();
+    static final int IORING_ENTER_GETEVENTS = ioringEnterGetevents();
+    static final int IORING_FEAT_FAST_POLL = ioringFeatFastPoll();
+
+    static final int POLLIN = pollin();
+    static final int POLLOUT = pollout();
+    static final int ERRNO_ECANCELED_NEGATIVE = -errnoECANCELED();
+    static final int ERRNO_ETIME_NEGATIVE = -errnoETIME();
+    static final int ERRNO_EINTR_NEGATIVE = -errnoEINTR();
+    static final int ERRNO_EBUSY_NEGATIVE = -errnoEBUSY();
+    static final int AF_INET = afInet();
+    static final int AF_INET6 = afInet6();
+    static final int SOCK_NONBLOCK = sockNonblock();
+    static final int SOCK_CLOEXEC = sockCloexec();
+    static final int SIZEOF_SOCKADDR_STORAGE = sizeofSockaddrStorage();
+    static final int SIZEOF_MSGHDR = sizeofMsghdr();
+
+    /**
+     * The number of entries of the rings of each {@link IOUringEventLoop}, the kernel allocates twice as many entries
+     * for the completion ring.
+     */
+    static final int DEFAULT_RING_SIZE = Math.max(64, SystemPropertyUtil.getInt("io.netty.uring.ringSize", 4096));
+
+    static FileDescriptor newEventFd() {
+        return new FileDescriptor(eventFd());
+    }
+
+    private static native int eventFd();
+    static native void eventFdWrite(int fd, long value);
+
+    /**
+     * Setup a new io_uring instance with the given number of submission queue {@code entries} and map its rings into
+     * the address space of the process.
+     */
+    static RingBuffer createRingBuffer(int entries) {
+        long[] values = ioUringSetup(entries);
+        assert values.length == 21;
+        IOUringSubmissionQueue submissionQueue = new IOUringSubmissionQueue(
+                values[1], values[2], values[3], values[4], values[5], values[6], values[7], values[8],
+                values[9], values[10], values[11], (int) values[0]);
+        IOUringCompletionQueue completionQueue = new IOUringCompletionQueue(
+                values[12], values[13], values[14], values[15], values[16], values[17],
+                values[18], values[19], (int) values[0]);
+        return new RingBuffer((int) values[0], (int) values[20], submissionQueue, completionQueue);
+    }
+
+    private static native long[] ioUringSetup(int entries);
+
+    static native void ioUringExit(long sqRingAddress, long sqRingSize, long cqRingAddress, long cqRingSize,
+                                   long sqesAddress, long sqesSize, int ringFd);
+
+    /**
+     * Submit {@code toSubmit} entries of the submission ring and wait for at least {@code minComplete} completions
+     * if {@link #IORING_ENTER_GETEVENTS} is set in {@code flags}. Returns the number of submitted entries.
+     */
+    static int ioUringEnter(int ringFd, int toSubmit, int minComplete, int flags) throws IOException {
+        int res = ioUringEnter0(ringFd, toSubmit, minComplete, flags);
+        if (res >= 0) {
+            return res;
+        }
+        if (res == ERRNO_EINTR_NEGATIVE || res == ERRNO_EBUSY_NEGATIVE) {
+            // Either interrupted by a signal, or the completion ring is full and the completions need to be processed
+            // before more entries can be submitted.
+            return 0;
+        }
+        throw newIOException("io_uring_enter", res);
+    }
+
+    private static native int ioUringEnter0(int ringFd, int toSubmit, int minComplete, int flags);
+
+    /**
+     * Returns {@code true} if all the given io_uring {@code ops} are supported by the kernel.
+     */
+    static boolean ioUringProbe(int ringFd, int... ops) {
+        return ioUringProbe0(ringFd, ops);
+    }
+
+    private static native boolean ioUringProbe0(int ringFd, int[] ops);
+
+    /**
+     * Write the given {@link InetSocketAddress} as {@code struct sockaddr} to the given {@code memoryAddress}, which
+     * must have room for {@link #SIZEOF_SOCKADDR_STORAGE} bytes. Returns the length of the written
+     * {@code struct sockaddr}.
+     */
+    static int writeSockaddr(long memoryAddress, InetSocketAddress address) {
+        NativeInetAddress nativeAddress = NativeInetAddress.newInstance(address.getAddress());
+        return writeSockaddr(memoryAddress, nativeAddress.address(), nativeAddress.scopeId(), address.getPort());
+    }
+
+    private static native int writeSockaddr(long memoryAddress, byte[] address, int scopeId, int port);
+
+    private static void loadNativeLibrary() {
+        String name = SystemPropertyUtil.get("os.name").toLowerCase(Locale.UK).trim();
+        if (!name.startsWith("linux")) {
+            throw new IllegalStateException("Only supported on Linux");
+        }
+        String staticLibName = "netty_transport_native_io_uring";
+        String sharedLibName = staticLibName + '_' + PlatformDependent.normalizedArch();
+        ClassLoader cl = PlatformDependent.getClassLoader(Native.class);
+        try {
+            NativeLibraryLoader.load(sharedLibName, cl);
+        } catch (UnsatisfiedLinkError e1) {
+            try {
+                NativeLibraryLoader.load(staticLibName, cl);
+                logger.debug("Failed to load {}", sharedLibName, e1);
+            } catch (UnsatisfiedLinkError e2) {
+                ThrowableUtil.addSuppressed(e1, e2);
+                throw e1;
+            }
+        }
+    }
+
+    private Native() {
+        // utility
+    }
+}
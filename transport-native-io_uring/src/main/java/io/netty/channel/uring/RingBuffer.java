@@ -0,0 +1,63 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+/**
+ * An io_uring instance, which consists of the {@link IOUringSubmissionQueue} and the {@link IOUringCompletionQueue}
+ * which are shared with the kernel.
+ */
+final class RingBuffer {
+    private final int ringFd;
+    private final int features;
+    private final IOUringSubmissionQueue submissionQueue;
+    private final IOUringCompletionQueue completionQueue;
+
+    RingBuffer(int ringFd, int features, IOUringSubmissionQueue submissionQueue,
+               IOUringCompletionQueue completionQueue) {
+        this.ringFd = ringFd;
+        this.features = features;
+        this.submissionQueue = submissionQueue;
+        this.completionQueue = completionQueue;
+    }
+
+    int fd() {
+        return ringFd;
+    }
+
+    /**
+     * Returns {@code true} if the kernel supports all the given {@code IORING_FEAT_*} flags.
+     */
+    boolean hasFeatures(int features) {
+        return (this.features & features) == features;
+    }
+
+    IOUringSubmissionQueue submissionQueue() {
+        return submissionQueue;
+    }
+
+    IOUringCompletionQueue completionQueue() {
+        return completionQueue;
+    }
+
+    /**
+     * Unmap the rings and close the io_uring instance. Once closed further using of it may crash the JVM!
+     */
+    void close() {
+        Native.ioUringExit(submissionQueue.ringAddress, submissionQueue.ringSize,
+                completionQueue.ringAddress, completionQueue.ringSize,
+                submissionQueue.sqesAddress, submissionQueue.sqesSize, ringFd);
+    }
+}
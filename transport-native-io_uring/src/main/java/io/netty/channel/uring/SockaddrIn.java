@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Reads the {@code struct sockaddr_in} and {@code struct sockaddr_in6} which are filled by the kernel for completed
+ * accepts and received datagrams.
+ */
+final class SockaddrIn {
+    // Offsets of the fields of struct sockaddr_in and struct sockaddr_in6, which share the first two fields.
+    private static final int SOCKADDR_FAMILY_FIELD = 0;
+    private static final int SOCKADDR_PORT_FIELD = 2;
+    private static final int SOCKADDR_IN_ADDR_FIELD = 4;
+    private static final int SOCKADDR_IN6_ADDR_FIELD = 8;
+    private static final int SOCKADDR_IN6_SCOPE_ID_FIELD = 24;
+
+    private static final int IPV4_MAPPED_IPV6_PREFIX_LENGTH = 12;
+
+    private SockaddrIn() { }
+
+    /**
+     * Returns the {@link InetSocketAddress} of the {@code struct sockaddr} at the given {@code memoryAddress}, or
+     * {@code null} if it is not of the family {@code AF_INET} or {@code AF_INET6}.
+     */
+    static InetSocketAddress readAddress(long memoryAddress) {
+        int family = PlatformDependent.getShort(memoryAddress + SOCKADDR_FAMILY_FIELD) & 0xFFFF;
+        // The port is stored in network byte order.
+        int port = (PlatformDependent.getByte(memoryAddress + SOCKADDR_PORT_FIELD) & 0xFF) << 8 |
+                PlatformDependent.getByte(memoryAddress + SOCKADDR_PORT_FIELD + 1) & 0xFF;
+        try {
+            final InetAddress address;
+            if (family == Native.AF_INET) {
+                byte[] ipv4 = new byte[4];
+                PlatformDependent.copyMemory(memoryAddress + SOCKADDR_IN_ADDR_FIELD, ipv4, 0, ipv4.length);
+                address = InetAddress.getByAddress(ipv4);
+            } else if (family == Native.AF_INET6) {
+                if (isIpv4MappedIpv6Address(memoryAddress + SOCKADDR_IN6_ADDR_FIELD)) {
+                    byte[] ipv4 = new byte[4];
+                    PlatformDependent.copyMemory(memoryAddress + SOCKADDR_IN6_ADDR_FIELD +
+                            IPV4_MAPPED_IPV6_PREFIX_LENGTH, ipv4, 0, ipv4.length);
+                    address = InetAddress.getByAddress(ipv4);
+                } else {
+                    byte[] ipv6 = new byte[16];
+                    PlatformDependent.copyMemory(memoryAddress + SOCKADDR_IN6_ADDR_FIELD, ipv6, 0, ipv6.length);
+                    int scopeId = PlatformDependent.getInt(memoryAddress + SOCKADDR_IN6_SCOPE_ID_FIELD);
+                    address = Inet6Address.getByAddress(null, ipv6, scopeId);
+                }
+            } else {
+                return null;
+            }
+            return new InetSocketAddress(address, port);
+        } catch (UnknownHostException e) {
+            throw new Error("Should never happen", e);
+        }
+    }
+
+    private static boolean isIpv4MappedIpv6Address(long memoryAddress) {
+        for (int i = 0; i < 10; i++) {
+            if (PlatformDependent.getByte(memoryAddress + i) != 0) {
+                return false;
+            }
+        }
+        return PlatformDependent.getByte(memoryAddress + 10) == (byte) 0xFF &&
+                PlatformDependent.getByte(memoryAddress + 11) == (byte) 0xFF;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+/**
+ * Encodes the {@code user_data} of a submission, which the kernel copies into its completion. It identifies the
+ * channel the operation belongs to, the io_uring opcode of the operation and some operation specific data:
+ * <pre>
+ * | channel id (32 bits) | unused (8 bits) | opcode (8 bits) | data (16 bits) |
+ * </pre>
+ */
+final class UserData {
+
+    private UserData() { }
+
+    static long encode(int id, int op, int data) {
+        return (long) id << 32 | (op & 0xFF) << 16 | data & 0xFFFF;
+    }
+
+    static int decodeId(long userData) {
+        return (int) (userData >>> 32);
+    }
+
+    static int decodeOp(long userData) {
+        return (int) (userData >>> 16) & 0xFF;
+    }
+
+    static int decodeData(long userData) {
+        return (int) userData & 0xFFFF;
+    }
+}
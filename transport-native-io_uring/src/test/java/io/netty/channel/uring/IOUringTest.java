@@ -0,0 +1,41 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+
+public class IOUringTest {
+    // The opcode of IORING_OP_SENDMSG, see linux/io_uring.h.
+    private static final int IORING_OP_SENDMSG = 9;
+
+    @Test
+    public void testUserDataRoundTrip() {
+        long userData = UserData.encode(Integer.MAX_VALUE, IORING_OP_SENDMSG, 0xFFFF);
+        assertEquals(Integer.MAX_VALUE, UserData.decodeId(userData));
+        assertEquals(IORING_OP_SENDMSG, UserData.decodeOp(userData));
+        assertEquals(0xFFFF, UserData.decodeData(userData));
+    }
+
+    @Test
+    public void testUnavailabilityCause() {
+        assumeTrue(IOUring.isAvailable());
+        assertNull(IOUring.unavailabilityCause());
+    }
+}
@@ -25,6 +25,7 @@ import io.netty.channel.unix.IovArray;
 import io.netty.util.IntSupplier;
 import io.netty.util.collection.IntObjectHashMap;
 import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.IoEventExecutor;
 import io.netty.util.concurrent.RejectedExecutionHandler;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
@@ -41,7 +42,7 @@ import static java.lang.Math.min;
 /**
  * {@link EventLoop} which uses kqueue under the covers. Only works on BSD!
  */
-final class KQueueEventLoop extends SingleThreadEventLoop {
+final class KQueueEventLoop extends SingleThreadEventLoop implements IoEventExecutor {
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(KQueueEventLoop.class);
     private static final AtomicIntegerFieldUpdater<KQueueEventLoop> WAKEN_UP_UPDATER =
             AtomicIntegerFieldUpdater.newUpdater(KQueueEventLoop.class, "wakenUp");
@@ -244,15 +245,17 @@ final class KQueueEventLoop extends SingleThreadEventLoop {
 
                 final int ioRatio = this.ioRatio;
                 if (ioRatio == 100) {
+                    final long ioStartTime = ioStarted();
                     try {
                         if (strategy > 0) {
                             processReady(strategy);
                         }
                     } finally {
+                        recordIoTime(System.nanoTime() - ioStartTime, strategy);
                         runAllTasks();
                     }
                 } else {
-                    final long ioStartTime = System.nanoTime();
+                    final long ioStartTime = ioStarted();
 
                     try {
                         if (strategy > 0) {
@@ -260,6 +263,7 @@ final class KQueueEventLoop extends SingleThreadEventLoop {
                         }
                     } finally {
                         final long ioTime = System.nanoTime() - ioStartTime;
+                        recordIoTime(ioTime, strategy);
                         runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
                     }
                 }
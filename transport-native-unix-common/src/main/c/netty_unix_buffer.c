@@ -13,6 +13,10 @@
  * License for the specific language governing permissions and limitations
  * under the License.
  */
+#include <errno.h>
+#include <stdint.h>
+#include <sys/mman.h>
+
 #include "netty_unix_jni.h"
 #include "netty_unix_util.h"
 #include "netty_unix_buffer.h"
@@ -26,12 +30,58 @@ static jint netty_unix_buffer_addressSize0(JNIEnv* env, jclass clazz) {
    return (jint) sizeof(int*);
 }
 
+static jlong netty_unix_buffer_mmap0(JNIEnv* env, jclass clazz, jlong size, jlong alignment, jboolean hugetlb) {
+    int flags = MAP_PRIVATE | MAP_ANONYMOUS;
+    if (hugetlb == JNI_TRUE) {
+#ifdef MAP_HUGETLB
+        // hugetlb mappings are always aligned to the huge page size.
+        void* address = mmap(NULL, (size_t) size, PROT_READ | PROT_WRITE, flags | MAP_HUGETLB, -1, 0);
+        return address == MAP_FAILED ? -errno : (jlong) address;
+#else
+        return -ENOSYS;
+#endif
+    }
+
+    // Map alignment bytes more than needed and unmap the unaligned head and tail again.
+    size_t mapSize = (size_t) (size + alignment);
+    void* address = mmap(NULL, mapSize, PROT_READ | PROT_WRITE, flags, -1, 0);
+    if (address == MAP_FAILED) {
+        return -errno;
+    }
+    uintptr_t start = (uintptr_t) address;
+    uintptr_t aligned = (start + (uintptr_t) alignment - 1) & ~((uintptr_t) alignment - 1);
+    uintptr_t end = start + mapSize;
+    uintptr_t alignedEnd = aligned + (uintptr_t) size;
+    if (aligned > start) {
+        munmap(address, aligned - start);
+    }
+    if (end > alignedEnd) {
+        munmap((void*) alignedEnd, end - alignedEnd);
+    }
+    return (jlong) aligned;
+}
+
+static jint netty_unix_buffer_madviseHugePage0(JNIEnv* env, jclass clazz, jlong address, jlong size) {
+#ifdef MADV_HUGEPAGE
+    return madvise((void*) (uintptr_t) address, (size_t) size, MADV_HUGEPAGE) == 0 ? 0 : -errno;
+#else
+    return -ENOSYS;
+#endif
+}
+
+static jint netty_unix_buffer_munmap0(JNIEnv* env, jclass clazz, jlong address, jlong size) {
+    return munmap((void*) (uintptr_t) address, (size_t) size) == 0 ? 0 : -errno;
+}
+
 // JNI Registered Methods End
 
 // JNI Method Registration Table Begin
 static const JNINativeMethod statically_referenced_fixed_method_table[] = {
   { "memoryAddress0", "(Ljava/nio/ByteBuffer;)J", (void *) netty_unix_buffer_memoryAddress0 },
-  { "addressSize0", "()I", (void *) netty_unix_buffer_addressSize0 }
+  { "addressSize0", "()I", (void *) netty_unix_buffer_addressSize0 },
+  { "mmap0", "(JJZ)J", (void *) netty_unix_buffer_mmap0 },
+  { "madviseHugePage0", "(JJ)I", (void *) netty_unix_buffer_madviseHugePage0 },
+  { "munmap0", "(JJ)I", (void *) netty_unix_buffer_munmap0 }
 };
 static const jint statically_referenced_fixed_method_table_size = sizeof(statically_referenced_fixed_method_table) / sizeof(statically_referenced_fixed_method_table[0]);
 // JNI Method Registration Table End
@@ -65,4 +65,9 @@ public final class Buffer {
     // If Unsafe can not be used we will need to do JNI calls.
     private static native int addressSize0();
     private static native long memoryAddress0(ByteBuffer buffer);
+
+    // Used by HugePageDirectChunkAllocator, return the negative errno on failure.
+    static native long mmap0(long size, long alignment, boolean hugetlb);
+    static native int madviseHugePage0(long address, long size);
+    static native int munmap0(long address, long size);
 }
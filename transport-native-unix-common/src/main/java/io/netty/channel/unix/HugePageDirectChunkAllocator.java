@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.unix;
+
+import io.netty.buffer.DirectChunkMemoryAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link DirectChunkMemoryAllocator} which maps the chunks of the direct arenas of a {@link PooledByteBufAllocator}
+ * {@value #HUGE_PAGE_SIZE} bytes aligned and asks the kernel to back them with huge pages, which reduces the dTLB
+ * misses caused by the buffers spread over a chunk.
+ *
+ * If {@code useHugetlb} is {@code true} the memory is first mapped with {@code MAP_HUGETLB} from the pool of
+ * reserved huge pages. If that is not possible, for example because the pool is exhausted, or {@code useHugetlb}
+ * is {@code false}, the memory is mapped with base pages and marked with {@code madvise(MADV_HUGEPAGE)} so the
+ * kernel can back it with transparent huge pages. A chunk counts as huge page backed if one of these calls
+ * succeeded; with transparent huge pages the kernel may still fall back to base pages if it can not find free
+ * huge pages.
+ *
+ * The memory is not released by a {@code Cleaner} but unmapped when the allocator destroys the chunk, and it is
+ * not counted against {@code io.netty.maxDirectMemory}. This requires the native library of a transport to be
+ * loaded, for example via {@code Epoll.ensureAvailability()}.
+ */
+@UnstableApi
+public final class HugePageDirectChunkAllocator implements DirectChunkMemoryAllocator {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(HugePageDirectChunkAllocator.class);
+
+    public static final int HUGE_PAGE_SIZE = 2 * 1024 * 1024;
+
+    private final boolean useHugetlb;
+    // The address of every mapping that is still in use, and if it is backed by huge pages.
+    private final ConcurrentMap<Long, Boolean> mappings = PlatformDependent.newConcurrentHashMap();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param useHugetlb {@code true} to try to map the memory from the pool of reserved huge pages before falling
+     *                   back to transparent huge pages.
+     */
+    public HugePageDirectChunkAllocator(boolean useHugetlb) {
+        if (!PlatformDependent.hasDirectBufferNoCleanerConstructor()) {
+            throw new UnsupportedOperationException(
+                    "sun.misc.Unsafe or java.nio.DirectByteBuffer.<init>(long, int) not available");
+        }
+        this.useHugetlb = useHugetlb;
+    }
+
+    @Override
+    public ByteBuffer allocate(int capacity) {
+        long size = mappingSize(capacity);
+        long address = -1;
+        boolean hugePages = false;
+        if (useHugetlb) {
+            address = Buffer.mmap0(size, HUGE_PAGE_SIZE, true);
+            hugePages = address >= 0;
+            if (!hugePages && logger.isDebugEnabled()) {
+                logger.debug("Failed to map {} bytes with MAP_HUGETLB, falling back to transparent huge pages",
+                        size, Errors.newIOException("mmap", (int) address));
+            }
+        }
+        if (!hugePages) {
+            address = Buffer.mmap0(size, HUGE_PAGE_SIZE, false);
+            if (address < 0) {
+                OutOfMemoryError error = new OutOfMemoryError("failed to map " + size + " bytes of direct memory");
+                error.initCause(Errors.newIOException("mmap", (int) address));
+                throw error;
+            }
+            hugePages = Buffer.madviseHugePage0(address, size) == 0;
+        }
+        mappings.put(address, hugePages);
+        return PlatformDependent.directBuffer(address, capacity);
+    }
+
+    @Override
+    public boolean isHugePageBacked(ByteBuffer memory) {
+        return Boolean.TRUE.equals(mappings.get(PlatformDependent.directBufferAddress(memory)));
+    }
+
+    @Override
+    public void free(ByteBuffer memory) {
+        long address = PlatformDependent.directBufferAddress(memory);
+        if (mappings.remove(address) == null) {
+            throw new IllegalArgumentException("memory was not allocated by this allocator");
+        }
+        int res = Buffer.munmap0(address, mappingSize(memory.capacity()));
+        if (res < 0) {
+            throw new IllegalStateException(Errors.newIOException("munmap", res));
+        }
+    }
+
+    private static long mappingSize(int capacity) {
+        return (capacity + (long) HUGE_PAGE_SIZE - 1) & -HUGE_PAGE_SIZE;
+    }
+}
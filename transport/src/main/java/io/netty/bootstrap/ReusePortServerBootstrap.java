@@ -0,0 +1,259 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.bootstrap;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Binds a {@link ServerBootstrap} to the same local address multiple times, once per acceptor, when
+ * {@code SO_REUSEPORT} is enabled via {@link ServerBootstrap#option(ChannelOption, Object)}. Each listening
+ * {@link ServerChannel} is registered to its own {@link EventLoop} of the parent group, so accepting is no longer
+ * serialised on a single event loop and the kernel balances the incoming connections between the listeners.
+ * <p>
+ * All listeners are returned as one {@link ChannelGroup}, use {@link ChannelGroup#newCloseFuture()} to be notified
+ * once all of them were closed. The accepted connections of all listeners are counted by one {@link AcceptMetrics}.
+ * <p>
+ * If {@code SO_REUSEPORT} is not enabled only a single listener is bound. A {@link ChannelHandler} set via
+ * {@link ServerBootstrap#handler(ChannelHandler)} is added to every listener and so must be {@link Sharable}.
+ */
+public final class ReusePortServerBootstrap {
+
+    // Looked up by name as the option is defined by the native transports.
+    private static final ChannelOption<Boolean> SO_REUSEPORT =
+            ChannelOption.valueOf("io.netty.channel.unix.UnixChannelOption#SO_REUSEPORT");
+
+    private final ServerBootstrap bootstrap;
+    private final AcceptMetrics metrics = new AcceptMetrics();
+    private volatile int acceptors;
+
+    /**
+     * Creates a new instance which binds listeners configured like the given {@link ServerBootstrap}.
+     */
+    public ReusePortServerBootstrap(ServerBootstrap bootstrap) {
+        this.bootstrap = ObjectUtil.checkNotNull(bootstrap, "bootstrap").clone();
+    }
+
+    /**
+     * Sets the number of listeners to bind. By default one listener is bound per {@link EventLoop} of the parent
+     * group.
+     */
+    public ReusePortServerBootstrap acceptors(int acceptors) {
+        this.acceptors = ObjectUtil.checkPositive(acceptors, "acceptors");
+        return this;
+    }
+
+    /**
+     * Returns the {@link AcceptMetrics} shared by all listeners bound by this instance.
+     */
+    public AcceptMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Binds all listeners to the given local port.
+     */
+    public Future<ChannelGroup> bind(int inetPort) {
+        return bind(new InetSocketAddress(inetPort));
+    }
+
+    /**
+     * Binds all listeners to the given local address. The returned {@link Future} is notified once all listeners
+     * are bound, or failed if one of them could not be bound in which case all others are closed again.
+     */
+    public Future<ChannelGroup> bind(SocketAddress localAddress) {
+        ObjectUtil.checkNotNull(localAddress, "localAddress");
+        EventLoopGroup parentGroup = bootstrap.config().group();
+        if (parentGroup == null) {
+            throw new IllegalStateException("group not set");
+        }
+        List<EventLoop> loops = new ArrayList<EventLoop>();
+        for (EventExecutor executor: parentGroup) {
+            loops.add((EventLoop) executor);
+        }
+        int count = 1;
+        if (Boolean.TRUE.equals(bootstrap.config().options().get(SO_REUSEPORT))) {
+            count = acceptors == 0 ? loops.size() : acceptors;
+        }
+
+        ChannelHandler handler = new MetricsInitializer(bootstrap.config().handler());
+        List<ServerBootstrap> listeners = new ArrayList<ServerBootstrap>(count);
+        for (int i = 0; i < count; i++) {
+            listeners.add(bootstrap.cloneForParent(loops.get(i % loops.size())).handler(handler));
+        }
+        ChannelGroup group = new DefaultChannelGroup("reuseport-listeners", GlobalEventExecutor.INSTANCE);
+        Promise<ChannelGroup> promise = GlobalEventExecutor.INSTANCE.newPromise();
+        bindFirst(listeners, localAddress, group, promise);
+        return promise;
+    }
+
+    private static void bindFirst(final List<ServerBootstrap> listeners, SocketAddress localAddress,
+                                  final ChannelGroup group, final Promise<ChannelGroup> promise) {
+        listeners.get(0).bind(localAddress).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (!future.isSuccess()) {
+                    promise.setFailure(future.cause());
+                    return;
+                }
+                group.add(future.channel());
+                // Bind the others to the actual address so an ephemeral port is shared as well.
+                bindRemaining(listeners, future.channel().localAddress(), group, promise);
+            }
+        });
+    }
+
+    private static void bindRemaining(List<ServerBootstrap> listeners, SocketAddress localAddress,
+                                      final ChannelGroup group, final Promise<ChannelGroup> promise) {
+        if (listeners.size() == 1) {
+            promise.setSuccess(group);
+            return;
+        }
+        final AtomicInteger pending = new AtomicInteger(listeners.size() - 1);
+        final Throwable[] failure = new Throwable[1];
+        ChannelFutureListener listener = new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (future.isSuccess()) {
+                    group.add(future.channel());
+                } else {
+                    synchronized (failure) {
+                        if (failure[0] == null) {
+                            failure[0] = future.cause();
+                        }
+                    }
+                }
+                if (pending.decrementAndGet() == 0) {
+                    Throwable cause;
+                    synchronized (failure) {
+                        cause = failure[0];
+                    }
+                    if (cause == null) {
+                        promise.setSuccess(group);
+                    } else {
+                        group.close();
+                        promise.setFailure(cause);
+                    }
+                }
+            }
+        };
+        for (int i = 1; i < listeners.size(); i++) {
+            listeners.get(i).bind(localAddress).addListener(listener);
+        }
+    }
+
+    /**
+     * Accept metrics aggregated over all listeners of a {@link ReusePortServerBootstrap}.
+     */
+    public static final class AcceptMetrics {
+        private final LongCounter accepted = PlatformDependent.newLongCounter();
+        private final LongCounter acceptErrors = PlatformDependent.newLongCounter();
+        private final LongCounter listeners = PlatformDependent.newLongCounter();
+
+        AcceptMetrics() { }
+
+        /**
+         * Returns the number of connections accepted by all listeners.
+         */
+        public long acceptedCount() {
+            return accepted.value();
+        }
+
+        /**
+         * Returns the number of exceptions raised by all listeners, which are mostly failed accepts.
+         */
+        public long acceptErrorCount() {
+            return acceptErrors.value();
+        }
+
+        /**
+         * Returns the number of listeners which are currently active.
+         */
+        public long activeListeners() {
+            return listeners.value();
+        }
+    }
+
+    @Sharable
+    private final class MetricsInitializer extends ChannelInitializer<Channel> {
+        private final ChannelHandler handler;
+        private final ChannelHandler metricsHandler = new MetricsHandler();
+
+        MetricsInitializer(ChannelHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        protected void initChannel(Channel ch) {
+            ch.pipeline().addLast(metricsHandler);
+            if (handler != null) {
+                ch.pipeline().addLast(handler);
+            }
+        }
+    }
+
+    @Sharable
+    private final class MetricsHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            metrics.listeners.increment();
+            ctx.fireChannelActive();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            metrics.listeners.decrement();
+            ctx.fireChannelInactive();
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            metrics.accepted.increment();
+            ctx.fireChannelRead(msg);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+            metrics.acceptErrors.increment();
+            ctx.fireExceptionCaught(cause);
+        }
+    }
+}
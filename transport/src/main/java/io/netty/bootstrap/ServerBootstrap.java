@@ -25,6 +25,7 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.ServerChannel;
 import io.netty.util.AttributeKey;
@@ -386,6 +387,19 @@ public class ServerBootstrap extends AbstractBootstrap<ServerBootstrap, ServerCh
         return new ServerBootstrap(this);
     }
 
+    /**
+     * Returns a clone of this bootstrap which registers its {@link ServerChannel} to the given {@link EventLoop} while
+     * the accepted child {@link Channel}s are still registered to the configured child group.
+     */
+    ServerBootstrap cloneForParent(EventLoop parentLoop) {
+        ServerBootstrap bootstrap = new ServerBootstrap(this);
+        if (bootstrap.childGroup == null) {
+            bootstrap.childGroup = group;
+        }
+        bootstrap.group = parentLoop;
+        return bootstrap;
+    }
+
     /**
      * Return the configured {@link EventLoopGroup} which will be used for the child channels or {@code null}
      * if non is configured yet.
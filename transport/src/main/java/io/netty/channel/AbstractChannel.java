@@ -601,6 +601,7 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
                 neverRegistered = false;
                 // registered 置为true , 但是 没有 注册关注的事件
                 registered = true;
+                registeredChannelsChanged(1);
 
 
                 /**
@@ -939,6 +940,13 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
             deregister(promise, false);
         }
 
+        private void registeredChannelsChanged(int delta) {
+            EventLoop eventLoop = AbstractChannel.this.eventLoop;
+            if (eventLoop instanceof SingleThreadEventLoop) {
+                ((SingleThreadEventLoop) eventLoop).registeredChannelsChanged(delta);
+            }
+        }
+
         private void deregister(final ChannelPromise promise, final boolean fireChannelInactive) {
             if (!promise.setUncancellable()) {
                 return;
@@ -975,6 +983,7 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
                         // if it was registered.
                         if (registered) {
                             registered = false;
+                            registeredChannelsChanged(-1);
                             pipeline.fireChannelUnregistered();
                         }
                         safeSetSuccess(promise);
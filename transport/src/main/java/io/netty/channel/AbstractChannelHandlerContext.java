@@ -16,6 +16,7 @@
 package io.netty.channel;
 
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelPipelineProfiler.Event;
 import io.netty.util.Attribute;
 import io.netty.util.AttributeKey;
 import io.netty.util.DefaultAttributeMap;
@@ -35,6 +36,25 @@ import io.netty.util.internal.logging.InternalLoggerFactory;
 import java.net.SocketAddress;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
+import static io.netty.channel.ChannelHandlerMask.MASK_BIND;
+import static io.netty.channel.ChannelHandlerMask.MASK_CHANNEL_ACTIVE;
+import static io.netty.channel.ChannelHandlerMask.MASK_CHANNEL_INACTIVE;
+import static io.netty.channel.ChannelHandlerMask.MASK_CHANNEL_READ;
+import static io.netty.channel.ChannelHandlerMask.MASK_CHANNEL_READ_COMPLETE;
+import static io.netty.channel.ChannelHandlerMask.MASK_CHANNEL_REGISTERED;
+import static io.netty.channel.ChannelHandlerMask.MASK_CHANNEL_UNREGISTERED;
+import static io.netty.channel.ChannelHandlerMask.MASK_CHANNEL_WRITABILITY_CHANGED;
+import static io.netty.channel.ChannelHandlerMask.MASK_CLOSE;
+import static io.netty.channel.ChannelHandlerMask.MASK_CONNECT;
+import static io.netty.channel.ChannelHandlerMask.MASK_DEREGISTER;
+import static io.netty.channel.ChannelHandlerMask.MASK_DISCONNECT;
+import static io.netty.channel.ChannelHandlerMask.MASK_EXCEPTION_CAUGHT;
+import static io.netty.channel.ChannelHandlerMask.MASK_FLUSH;
+import static io.netty.channel.ChannelHandlerMask.MASK_READ;
+import static io.netty.channel.ChannelHandlerMask.MASK_USER_EVENT_TRIGGERED;
+import static io.netty.channel.ChannelHandlerMask.MASK_WRITE;
+import static io.netty.channel.ChannelHandlerMask.mask;
+
 /**
  * 抽象 HandlerContext
  */
@@ -70,8 +90,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
     private static final int INIT = 0;
 
 
-    private final boolean inbound;
-    private final boolean outbound;
+    private final int executionMask;
     // handler的名字 pipeline.addLast() 一路传过来的
     private final String name;
     private final boolean ordered;
@@ -97,16 +116,14 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
     AbstractChannelHandlerContext(DefaultChannelPipeline pipeline,
                                   EventExecutor executor,
                                   String name,
-                                  boolean inbound,
-                                  boolean outbound) {
+                                  Class<? extends ChannelHandler> handlerClass) {
 
         this.name = ObjectUtil.checkNotNull(name, "name");
 
         this.pipeline = pipeline;
         this.executor = executor;
 
-        this.inbound = inbound;
-        this.outbound = outbound;
+        executionMask = mask(handlerClass);
         // Its ordered if its driven by the EventLoop or the given Executor is an instanceof OrderedEventExecutor.
         ordered = executor == null || executor instanceof OrderedEventExecutor;
     }
@@ -153,7 +170,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
     @Override
     public ChannelHandlerContext fireChannelRegistered() {
         // 从前往后找
-        AbstractChannelHandlerContext nextInbound = findContextInbound();
+        AbstractChannelHandlerContext nextInbound = findContextInbound(MASK_CHANNEL_REGISTERED);
         invokeChannelRegistered(nextInbound);
         return this;
     }
@@ -169,7 +186,9 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
             executor.execute(new Runnable() {
                 @Override
                 public void run() {
-                    next.invokeChannelRegistered();
+                    if (next.inExecutor(this)) {
+                        next.invokeChannelRegistered();
+                    }
                 }
             });
         }
@@ -195,7 +214,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
      */
     @Override
     public ChannelHandlerContext fireChannelUnregistered() {
-        AbstractChannelHandlerContext nextInbound = findContextInbound();
+        AbstractChannelHandlerContext nextInbound = findContextInbound(MASK_CHANNEL_UNREGISTERED);
         invokeChannelUnregistered(nextInbound);
         return this;
     }
@@ -208,7 +227,9 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
             executor.execute(new Runnable() {
                 @Override
                 public void run() {
-                    next.invokeChannelUnregistered();
+                    if (next.inExecutor(this)) {
+                        next.invokeChannelUnregistered();
+                    }
                 }
             });
         }
@@ -232,7 +253,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
      */
     @Override
     public ChannelHandlerContext fireChannelActive() {
-        AbstractChannelHandlerContext nextInbound = findContextInbound();
+        AbstractChannelHandlerContext nextInbound = findContextInbound(MASK_CHANNEL_ACTIVE);
         invokeChannelActive(nextInbound);
         return this;
     }
@@ -246,7 +267,9 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
             executor.execute(new Runnable() {
                 @Override
                 public void run() {
-                    next.invokeChannelActive();
+                    if (next.inExecutor(this)) {
+                        next.invokeChannelActive();
+                    }
                 }
             });
         }
@@ -275,7 +298,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
      */
     @Override
     public ChannelHandlerContext fireChannelInactive() {
-        invokeChannelInactive(findContextInbound());
+        invokeChannelInactive(findContextInbound(MASK_CHANNEL_INACTIVE));
         return this;
     }
 
@@ -287,7 +310,9 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
             executor.execute(new Runnable() {
                 @Override
                 public void run() {
-                    next.invokeChannelInactive();
+                    if (next.inExecutor(this)) {
+                        next.invokeChannelInactive();
+                    }
                 }
             });
         }
@@ -311,7 +336,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
      */
     @Override
     public ChannelHandlerContext fireExceptionCaught(final Throwable cause) {
-        invokeExceptionCaught(next, cause);
+        invokeExceptionCaught(findContextInbound(MASK_EXCEPTION_CAUGHT), cause);
         return this;
     }
 
@@ -325,7 +350,9 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
                 executor.execute(new Runnable() {
                     @Override
                     public void run() {
-                        next.invokeExceptionCaught(cause);
+                        if (next.inExecutor(this)) {
+                            next.invokeExceptionCaught(cause);
+                        }
                     }
                 });
             } catch (Throwable t) {
@@ -366,7 +393,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
      */
     @Override
     public ChannelHandlerContext fireUserEventTriggered(final Object event) {
-        invokeUserEventTriggered(findContextInbound(), event);
+        invokeUserEventTriggered(findContextInbound(MASK_USER_EVENT_TRIGGERED), event);
         return this;
     }
 
@@ -379,7 +406,9 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
             executor.execute(new Runnable() {
                 @Override
                 public void run() {
-                    next.invokeUserEventTriggered(event);
+                    if (next.inExecutor(this)) {
+                        next.invokeUserEventTriggered(event);
+                    }
                 }
             });
         }
@@ -388,7 +417,17 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
     private void invokeUserEventTriggered(Object event) {
         if (invokeHandler()) {
             try {
-                ((ChannelInboundHandler) handler()).userEventTriggered(this, event);
+                ChannelPipelineProfiler profiler = profiler();
+                if (profiler == null) {
+                    ((ChannelInboundHandler) handler()).userEventTriggered(this, event);
+                } else {
+                    long startNanos = profiler.enter();
+                    try {
+                        ((ChannelInboundHandler) handler()).userEventTriggered(this, event);
+                    } finally {
+                        profiler.exit(name, Event.USER_EVENT_TRIGGERED, startNanos);
+                    }
+                }
             } catch (Throwable t) {
                 notifyHandlerException(t);
             }
@@ -410,7 +449,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
 //            ctx = ctx.next;
 //        } while (!ctx.inbound);
 //        return ctx;
-        AbstractChannelHandlerContext nextInbound = findContextInbound();
+        AbstractChannelHandlerContext nextInbound = findContextInbound(MASK_CHANNEL_READ);
         invokeChannelRead(nextInbound, msg);
         return this;
     }
@@ -429,7 +468,9 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
             executor.execute(new Runnable() {
                 @Override
                 public void run() {
-                    next.invokeChannelRead(m);
+                    if (next.inExecutor(this)) {
+                        next.invokeChannelRead(m);
+                    }
                 }
             });
         }
@@ -439,8 +480,18 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
         if (invokeHandler()) {
             try {
                 ChannelInboundHandler inboundHandler = (ChannelInboundHandler) handler();
-                // 上面都是1个参数  我是2个参数
-                inboundHandler.channelRead(this, msg);
+                ChannelPipelineProfiler profiler = profiler();
+                if (profiler == null) {
+                    // 上面都是1个参数  我是2个参数
+                    inboundHandler.channelRead(this, msg);
+                } else {
+                    long startNanos = profiler.enter();
+                    try {
+                        inboundHandler.channelRead(this, msg);
+                    } finally {
+                        profiler.exit(name, Event.CHANNEL_READ, startNanos);
+                    }
+                }
                 //((ChannelInboundHandler) handler()).channelRead(this, msg);
             } catch (Throwable t) {
                 notifyHandlerException(t);
@@ -456,7 +507,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
      */
     @Override
     public ChannelHandlerContext fireChannelReadComplete() {
-        invokeChannelReadComplete(findContextInbound());
+        invokeChannelReadComplete(findContextInbound(MASK_CHANNEL_READ_COMPLETE));
         return this;
     }
 
@@ -495,7 +546,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
      */
     @Override
     public ChannelHandlerContext fireChannelWritabilityChanged() {
-        invokeChannelWritabilityChanged(findContextInbound());
+        invokeChannelWritabilityChanged(findContextInbound(MASK_CHANNEL_WRITABILITY_CHANGED));
         return this;
     }
 
@@ -547,7 +598,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
         }
 
         // 从后往前找 应该找到HeadContext
-        final AbstractChannelHandlerContext next = findContextOutbound();
+        final AbstractChannelHandlerContext next = findContextOutbound(MASK_BIND);
         EventExecutor executor = next.executor();
 
         System.out.println(Thread.currentThread().getName()
@@ -559,7 +610,9 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
             safeExecute(executor, new Runnable() {
                 @Override
                 public void run() {
-                    next.invokeBind(localAddress, promise);
+                    if (next.inExecutor(this, promise)) {
+                        next.invokeBind(localAddress, promise);
+                    }
                 }
             }, promise, null);
         }
@@ -624,7 +677,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
             return promise;
         }
 
-        final AbstractChannelHandlerContext next = findContextOutbound();
+        final AbstractChannelHandlerContext next = findContextOutbound(MASK_CONNECT);
         EventExecutor executor = next.executor();
         if (executor.inEventLoop()) {
             next.invokeConnect(remoteAddress, localAddress, promise);
@@ -632,7 +685,9 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
             safeExecute(executor, new Runnable() {
                 @Override
                 public void run() {
-                    next.invokeConnect(remoteAddress, localAddress, promise);
+                    if (next.inExecutor(this, promise)) {
+                        next.invokeConnect(remoteAddress, localAddress, promise);
+                    }
                 }
             }, promise, null);
         }
@@ -660,7 +715,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
             return promise;
         }
 
-        final AbstractChannelHandlerContext next = findContextOutbound();
+        final AbstractChannelHandlerContext next = findContextOutbound(MASK_DISCONNECT);
         EventExecutor executor = next.executor();
         if (executor.inEventLoop()) {
             // Translate disconnect to close if the channel has no notion of disconnect-reconnect.
@@ -674,6 +729,9 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
             safeExecute(executor, new Runnable() {
                 @Override
                 public void run() {
+                    if (!next.inExecutor(this, promise)) {
+                        return;
+                    }
                     if (!channel().metadata().hasDisconnect()) {
                         next.invokeClose(promise);
                     } else {
@@ -706,7 +764,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
             return promise;
         }
 
-        final AbstractChannelHandlerContext next = findContextOutbound();
+        final AbstractChannelHandlerContext next = findContextOutbound(MASK_CLOSE);
         EventExecutor executor = next.executor();
         if (executor.inEventLoop()) {
             next.invokeClose(promise);
@@ -714,7 +772,9 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
             safeExecute(executor, new Runnable() {
                 @Override
                 public void run() {
-                    next.invokeClose(promise);
+                    if (next.inExecutor(this, promise)) {
+                        next.invokeClose(promise);
+                    }
                 }
             }, promise, null);
         }
@@ -743,7 +803,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
             return promise;
         }
 
-        final AbstractChannelHandlerContext next = findContextOutbound();
+        final AbstractChannelHandlerContext next = findContextOutbound(MASK_DEREGISTER);
         EventExecutor executor = next.executor();
         if (executor.inEventLoop()) {
             next.invokeDeregister(promise);
@@ -751,7 +811,9 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
             safeExecute(executor, new Runnable() {
                 @Override
                 public void run() {
-                    next.invokeDeregister(promise);
+                    if (next.inExecutor(this, promise)) {
+                        next.invokeDeregister(promise);
+                    }
                 }
             }, promise, null);
         }
@@ -779,7 +841,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
     @Override
     public ChannelHandlerContext read() {
 
-        final AbstractChannelHandlerContext next = findContextOutbound();
+        final AbstractChannelHandlerContext next = findContextOutbound(MASK_READ);
 
         EventExecutor executor = next.executor();
 
@@ -841,7 +903,17 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
     private void invokeWrite0(Object msg, ChannelPromise promise) {
         try {
             ChannelOutboundHandler outboundHandler = (ChannelOutboundHandler) handler();
-            outboundHandler.write(this, msg, promise);
+            ChannelPipelineProfiler profiler = profiler();
+            if (profiler == null) {
+                outboundHandler.write(this, msg, promise);
+            } else {
+                long startNanos = profiler.enter();
+                try {
+                    outboundHandler.write(this, msg, promise);
+                } finally {
+                    profiler.exit(name, Event.WRITE, startNanos);
+                }
+            }
             //((ChannelOutboundHandler) handler()).write(this, msg, promise);
         } catch (Throwable t) {
             notifyOutboundHandlerException(t, promise);
@@ -850,7 +922,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
 
     @Override
     public ChannelHandlerContext flush() {
-        final AbstractChannelHandlerContext next = findContextOutbound();
+        final AbstractChannelHandlerContext next = findContextOutbound(MASK_FLUSH);
         EventExecutor executor = next.executor();
         if (executor.inEventLoop()) {
             next.invokeFlush();
@@ -879,7 +951,17 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
     private void invokeFlush0() {
         try {
             ChannelOutboundHandler outboundHandler = (ChannelOutboundHandler) handler();
-            outboundHandler.flush(this);
+            ChannelPipelineProfiler profiler = profiler();
+            if (profiler == null) {
+                outboundHandler.flush(this);
+            } else {
+                long startNanos = profiler.enter();
+                try {
+                    outboundHandler.flush(this);
+                } finally {
+                    profiler.exit(name, Event.FLUSH, startNanos);
+                }
+            }
             //((ChannelOutboundHandler) handler()).flush(this);
         } catch (Throwable t) {
             notifyHandlerException(t);
@@ -926,7 +1008,7 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
         }
 
         // 查找上一个节点
-        AbstractChannelHandlerContext next = findContextOutbound();
+        AbstractChannelHandlerContext next = findContextOutbound(flush ? (MASK_WRITE | MASK_FLUSH) : MASK_WRITE);
 
         final Object m = pipeline.touch(msg, next);
         EventExecutor executor = next.executor();
@@ -1066,23 +1148,24 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
 
     /**
      * 这是挑选inbound  第一个肯定是HeadContext，从第二个开始才是用户添加的 所以用do while
+     * 只返回 executionMask 包含该事件的节点，跳过只是把事件传给下一个节点的 handler
      */
-    private AbstractChannelHandlerContext findContextInbound() {
+    private AbstractChannelHandlerContext findContextInbound(int mask) {
         AbstractChannelHandlerContext ctx = this;
         do {
             ctx = ctx.next;
-        } while (!ctx.inbound);
+        } while ((ctx.executionMask & mask) == 0);
         return ctx;
     }
 
     /**
      * 这是挑选outbound  最后一个肯定是TailContext，从倒数第二个开始才是用户添加的 所以用do while
      */
-    private AbstractChannelHandlerContext findContextOutbound() {
+    private AbstractChannelHandlerContext findContextOutbound(int mask) {
         AbstractChannelHandlerContext ctx = this;
         do {
             ctx = ctx.prev;
-        } while (!ctx.outbound);
+        } while ((ctx.executionMask & mask) == 0);
         return ctx;
     }
 
@@ -1151,6 +1234,18 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
         }
     }
 
+    /**
+     * Returns the {@link ChannelPipelineProfiler} of the pipeline, or {@code null} if there is none or this is the
+     * head or the tail of the pipeline, as these are not user handlers and so are not profiled.
+     */
+    private ChannelPipelineProfiler profiler() {
+        ChannelPipelineProfiler profiler = pipeline.profiler;
+        if (profiler == null || this == pipeline.head || this == pipeline.tail) {
+            return null;
+        }
+        return profiler;
+    }
+
     /**
      * Makes best possible effort to detect if {@link ChannelHandler#handlerAdded(ChannelHandlerContext)} was called
      * yet. If not return {@code false} and if called or could not detect return {@code true}.
@@ -1180,6 +1275,41 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
         return channel().hasAttr(key);
     }
 
+    /**
+     * Returns {@code true} if a task which was submitted to the {@link #executor()} of this context may run on the
+     * current thread. Otherwise the given task is submitted to the {@link EventLoop} of the {@link Channel} again and
+     * {@code false} is returned. This happens if the {@link Channel} was moved to another {@link EventLoop} via
+     * {@link ChannelMigration} after the task was submitted, as the task would race with the new {@link EventLoop}
+     * otherwise. Contexts with an {@link EventExecutor} of their own are not affected by a migration.
+     */
+    private boolean inExecutor(Runnable task) {
+        if (executor != null) {
+            return true;
+        }
+        EventLoop eventLoop = channel().eventLoop();
+        if (eventLoop.inEventLoop()) {
+            return true;
+        }
+        eventLoop.execute(task);
+        return false;
+    }
+
+    /**
+     * Same as {@link #inExecutor(Runnable)}, but fails the given {@link ChannelPromise} if the task can not be
+     * submitted again.
+     */
+    private boolean inExecutor(Runnable task, ChannelPromise promise) {
+        if (executor != null) {
+            return true;
+        }
+        EventLoop eventLoop = channel().eventLoop();
+        if (eventLoop.inEventLoop()) {
+            return true;
+        }
+        safeExecute(eventLoop, task, promise, null);
+        return false;
+    }
+
     private static boolean safeExecute(EventExecutor executor, Runnable runnable, ChannelPromise promise, Object msg) {
         try {
             executor.execute(runnable);
@@ -1250,6 +1380,13 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
 
         @Override
         public final void run() {
+            if (ctx.executor == null && !ctx.channel().eventLoop().inEventLoop()) {
+                // The channel was migrated to another EventLoop after this task was submitted.
+                if (!safeExecute(ctx.channel().eventLoop(), this, promise, msg)) {
+                    cancel();
+                }
+                return;
+            }
             try {
                 decrementPendingOutboundBytes();
                 write(ctx, msg, promise);
@@ -1354,28 +1491,36 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
         private final Runnable invokeChannelReadCompleteTask = new Runnable() {
             @Override
             public void run() {
-                next.invokeChannelReadComplete();
+                if (next.inExecutor(this)) {
+                    next.invokeChannelReadComplete();
+                }
             }
         };
 
         private final Runnable invokeReadTask = new Runnable() {
             @Override
             public void run() {
-                next.invokeRead();
+                if (next.inExecutor(this)) {
+                    next.invokeRead();
+                }
             }
         };
 
         private final Runnable invokeChannelWritableStateChangedTask = new Runnable() {
             @Override
             public void run() {
-                next.invokeChannelWritabilityChanged();
+                if (next.inExecutor(this)) {
+                    next.invokeChannelWritabilityChanged();
+                }
             }
         };
 
         private final Runnable invokeFlushTask = new Runnable() {
             @Override
             public void run() {
-                next.invokeFlush();
+                if (next.inExecutor(this)) {
+                    next.invokeFlush();
+                }
             }
         };
 
@@ -15,6 +15,8 @@
  */
 package io.netty.channel;
 
+import io.netty.channel.ChannelHandlerMask.Skip;
+
 import java.net.SocketAddress;
 
 /**
@@ -33,6 +35,7 @@ public class ChannelDuplexHandler extends ChannelInboundHandlerAdapter implement
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void bind(ChannelHandlerContext ctx, SocketAddress localAddress,
                      ChannelPromise promise) throws Exception {
         ctx.bind(localAddress, promise);
@@ -45,6 +48,7 @@ public class ChannelDuplexHandler extends ChannelInboundHandlerAdapter implement
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void connect(ChannelHandlerContext ctx, SocketAddress remoteAddress,
                         SocketAddress localAddress, ChannelPromise promise) throws Exception {
         ctx.connect(remoteAddress, localAddress, promise);
@@ -57,6 +61,7 @@ public class ChannelDuplexHandler extends ChannelInboundHandlerAdapter implement
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise)
             throws Exception {
         ctx.disconnect(promise);
@@ -69,6 +74,7 @@ public class ChannelDuplexHandler extends ChannelInboundHandlerAdapter implement
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
         ctx.close(promise);
     }
@@ -80,6 +86,7 @@ public class ChannelDuplexHandler extends ChannelInboundHandlerAdapter implement
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void deregister(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
         ctx.deregister(promise);
     }
@@ -91,6 +98,7 @@ public class ChannelDuplexHandler extends ChannelInboundHandlerAdapter implement
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void read(ChannelHandlerContext ctx) throws Exception {
         ctx.read();
     }
@@ -102,6 +110,7 @@ public class ChannelDuplexHandler extends ChannelInboundHandlerAdapter implement
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
         ctx.write(msg, promise);
     }
@@ -113,6 +122,7 @@ public class ChannelDuplexHandler extends ChannelInboundHandlerAdapter implement
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void flush(ChannelHandlerContext ctx) throws Exception {
         ctx.flush();
     }
@@ -15,6 +15,8 @@
  */
 package io.netty.channel;
 
+import io.netty.channel.ChannelHandlerMask.Skip;
+
 /**
  * Abstract base class for {@link ChannelInboundHandler} implementations which provide
  * implementations of all of their methods.
@@ -38,6 +40,7 @@ public class ChannelInboundHandlerAdapter extends ChannelHandlerAdapter implemen
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
         ctx.fireChannelRegistered();
     }
@@ -49,6 +52,7 @@ public class ChannelInboundHandlerAdapter extends ChannelHandlerAdapter implemen
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void channelUnregistered(ChannelHandlerContext ctx) throws Exception {
         ctx.fireChannelUnregistered();
     }
@@ -60,6 +64,7 @@ public class ChannelInboundHandlerAdapter extends ChannelHandlerAdapter implemen
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
         ctx.fireChannelActive();
     }
@@ -71,6 +76,7 @@ public class ChannelInboundHandlerAdapter extends ChannelHandlerAdapter implemen
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         ctx.fireChannelInactive();
     }
@@ -82,6 +88,7 @@ public class ChannelInboundHandlerAdapter extends ChannelHandlerAdapter implemen
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         //
         ctx.fireChannelRead(msg);
@@ -94,6 +101,7 @@ public class ChannelInboundHandlerAdapter extends ChannelHandlerAdapter implemen
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
         ctx.fireChannelReadComplete();
     }
@@ -105,6 +113,7 @@ public class ChannelInboundHandlerAdapter extends ChannelHandlerAdapter implemen
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
         ctx.fireUserEventTriggered(evt);
     }
@@ -116,6 +125,7 @@ public class ChannelInboundHandlerAdapter extends ChannelHandlerAdapter implemen
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
         ctx.fireChannelWritabilityChanged();
     }
@@ -127,6 +137,7 @@ public class ChannelInboundHandlerAdapter extends ChannelHandlerAdapter implemen
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         ctx.fireExceptionCaught(cause);
     }
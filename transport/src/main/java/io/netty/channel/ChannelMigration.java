@@ -0,0 +1,162 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Moves registered {@link Channel}s to another {@link EventLoop} of the same {@link EventLoopGroup}, so the load can
+ * be rebalanced between them. See {@link ChannelRebalancer} to do so based on the load of the {@link EventLoop}s.
+ */
+@UnstableApi
+public final class ChannelMigration {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ChannelMigration.class);
+
+    private ChannelMigration() { }
+
+    /**
+     * Moves the {@link Channel} to the given {@link EventLoop}, which must belong to the same {@link EventLoopGroup}
+     * as its current {@link EventLoop}. This is done by deregistering the {@link Channel} and registering it with the
+     * given {@link EventLoop}, which keeps its {@link ChannelPipeline} and the data pending in its
+     * {@link ChannelOutboundBuffer}. A {@link ChannelMigrationEvent} is fired before and after the migration, so
+     * handlers can move their scheduled tasks. As the {@link Channel} is deregistered and registered again, handlers
+     * also see {@link ChannelInboundHandler#channelUnregistered(ChannelHandlerContext)} followed by
+     * {@link ChannelInboundHandler#channelRegistered(ChannelHandlerContext)} between these events, while the
+     * {@link Channel} stays active and no {@code channelInactive} / {@code channelActive} is fired.
+     * <p>
+     * Tasks which were submitted to the old {@link EventLoop} before the {@link Channel} was deregistered, like writes
+     * from other threads, still run on it before the {@link Channel} is registered with the given {@link EventLoop}.
+     * Tasks which the {@link ChannelPipeline} submitted to the old {@link EventLoop} later are submitted to the new
+     * {@link EventLoop} once they run, so they may run after tasks which were submitted to the new {@link EventLoop}
+     * directly.
+     * <p>
+     * Tasks which were scheduled via {@link ChannelHandlerContext#executor()} before the migration still run on the
+     * old {@link EventLoop}. Handlers which schedule tasks must therefore either move them on
+     * {@link ChannelMigrationEvent}s, like the {@code IdleStateHandler} and so the {@code ReadTimeoutHandler} do, or
+     * continue on {@link ChannelHandlerContext#executor()} if the task runs on another {@link EventExecutor}, like
+     * the {@code WriteTimeoutHandler} and the handshake timeout of the {@code SslHandler} do. The {@link Channel}
+     * must not be migrated if it has handlers which do neither.
+     * <p>
+     * If the {@link Channel} can not be registered with the given {@link EventLoop} it is registered with its old
+     * {@link EventLoop} again, or closed if this fails as well.
+     *
+     * @return the {@link ChannelFuture} which is notified from the new {@link EventLoop} once the migration completed.
+     */
+    public static ChannelFuture migrate(final Channel channel, final EventLoop target) {
+        ObjectUtil.checkNotNull(channel, "channel");
+        ObjectUtil.checkNotNull(target, "target");
+        final EventLoop source = channel.eventLoop();
+        if (target.parent() != source.parent()) {
+            throw new IllegalArgumentException("target must belong to the same EventLoopGroup as the channel");
+        }
+        final ChannelPromise promise = new DefaultChannelPromise(channel, target);
+        if (source.inEventLoop()) {
+            migrate0(channel, source, target, promise);
+        } else {
+            source.execute(new Runnable() {
+                @Override
+                public void run() {
+                    migrate0(channel, source, target, promise);
+                }
+            });
+        }
+        return promise;
+    }
+
+    private static void migrate0(final Channel channel, final EventLoop source, final EventLoop target,
+                                 final ChannelPromise promise) {
+        if (channel.eventLoop() != source || !channel.isRegistered()) {
+            promise.setFailure(new IllegalStateException("channel was deregistered or migrated in the meantime"));
+            return;
+        }
+        if (source == target) {
+            promise.setSuccess();
+            return;
+        }
+        channel.pipeline().fireUserEventTriggered(ChannelMigrationEvent.MIGRATING);
+        channel.deregister().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (!future.isSuccess()) {
+                    channel.pipeline().fireUserEventTriggered(ChannelMigrationEvent.MIGRATED);
+                    promise.setFailure(future.cause());
+                    return;
+                }
+                // Tasks which were submitted to the old EventLoop in the meantime must run before the channel is
+                // registered with the new one, as they would race with it otherwise.
+                try {
+                    source.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            register(channel, source, target, promise);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    register(channel, source, target, promise);
+                }
+            }
+        });
+    }
+
+    private static void register(final Channel channel, final EventLoop source, EventLoop target,
+                                 final ChannelPromise promise) {
+        target.register(channel).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (future.isSuccess()) {
+                    migrated(channel);
+                    promise.setSuccess();
+                } else {
+                    reregister(channel, source, future.cause(), promise);
+                }
+            }
+        });
+    }
+
+    private static void reregister(final Channel channel, EventLoop source, final Throwable cause,
+                                   final ChannelPromise promise) {
+        source.register(channel).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (future.isSuccess()) {
+                    migrated(channel);
+                } else {
+                    logger.warn("Failed to register {} with its old EventLoop after its migration failed.",
+                            channel, future.cause());
+                    channel.unsafe().closeForcibly();
+                }
+                promise.setFailure(cause);
+            }
+        });
+    }
+
+    private static void migrated(Channel channel) {
+        // Continue to write the data which was flushed before the migration.
+        ChannelOutboundBuffer outboundBuffer = channel.unsafe().outboundBuffer();
+        if (outboundBuffer != null && !outboundBuffer.isEmpty() &&
+                channel.unsafe() instanceof AbstractChannel.AbstractUnsafe) {
+            ((AbstractChannel.AbstractUnsafe) channel.unsafe()).flush0();
+        }
+        channel.pipeline().fireUserEventTriggered(ChannelMigrationEvent.MIGRATED);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Special event which is passed to the
+ * {@link ChannelInboundHandler#userEventTriggered(ChannelHandlerContext, Object)} methods while a {@link Channel} is
+ * moved to another {@link EventLoop} via {@link ChannelMigration#migrate(Channel, EventLoop)}.
+ * <p>
+ * {@link #MIGRATING} is fired from the old {@link EventLoop} before the {@link Channel} is deregistered from it and
+ * {@link #MIGRATED} from the new {@link EventLoop} once the {@link Channel} was registered with it, or from the old
+ * {@link EventLoop} again if the {@link Channel} could not be moved. Handlers which
+ * scheduled tasks on the old {@link EventLoop} should cancel them on {@link #MIGRATING} and schedule them again on
+ * {@link #MIGRATED}, as they would otherwise run concurrently with the new {@link EventLoop}. Alternatively a task
+ * can check if it runs on {@link ChannelHandlerContext#executor()} and otherwise continue there.
+ * <p>
+ * Between these events the handlers also see {@code channelUnregistered} and {@code channelRegistered}, as the
+ * {@link Channel} is deregistered and registered again. Handlers which release resources on
+ * {@code channelUnregistered} should check for a migration in progress.
+ */
+@UnstableApi
+public final class ChannelMigrationEvent {
+
+    /**
+     * Fired from the old {@link EventLoop} before the {@link Channel} is deregistered from it.
+     */
+    public static final ChannelMigrationEvent MIGRATING = new ChannelMigrationEvent("MIGRATING");
+
+    /**
+     * Fired from the new {@link EventLoop} after the {@link Channel} was registered with it.
+     */
+    public static final ChannelMigrationEvent MIGRATED = new ChannelMigrationEvent("MIGRATED");
+
+    private final String name;
+
+    private ChannelMigrationEvent(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return "ChannelMigrationEvent(" + name + ')';
+    }
+}
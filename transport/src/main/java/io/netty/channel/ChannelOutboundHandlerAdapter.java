@@ -15,6 +15,8 @@
  */
 package io.netty.channel;
 
+import io.netty.channel.ChannelHandlerMask.Skip;
+
 import java.net.SocketAddress;
 
 /**
@@ -30,6 +32,7 @@ public class ChannelOutboundHandlerAdapter extends ChannelHandlerAdapter impleme
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void bind(ChannelHandlerContext ctx, SocketAddress localAddress,
             ChannelPromise promise) throws Exception {
 
@@ -43,6 +46,7 @@ public class ChannelOutboundHandlerAdapter extends ChannelHandlerAdapter impleme
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void connect(ChannelHandlerContext ctx, SocketAddress remoteAddress,
             SocketAddress localAddress, ChannelPromise promise) throws Exception {
 
@@ -56,6 +60,7 @@ public class ChannelOutboundHandlerAdapter extends ChannelHandlerAdapter impleme
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
         ctx.disconnect(promise);
     }
@@ -67,6 +72,7 @@ public class ChannelOutboundHandlerAdapter extends ChannelHandlerAdapter impleme
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
         ctx.close(promise);
     }
@@ -78,6 +84,7 @@ public class ChannelOutboundHandlerAdapter extends ChannelHandlerAdapter impleme
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void deregister(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
         ctx.deregister(promise);
     }
@@ -89,6 +96,7 @@ public class ChannelOutboundHandlerAdapter extends ChannelHandlerAdapter impleme
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void read(ChannelHandlerContext ctx) throws Exception {
         //
         ctx.read();
@@ -101,6 +109,7 @@ public class ChannelOutboundHandlerAdapter extends ChannelHandlerAdapter impleme
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
         //
         ctx.write(msg, promise);
@@ -113,6 +122,7 @@ public class ChannelOutboundHandlerAdapter extends ChannelHandlerAdapter impleme
      * Sub-classes may override this method to change behavior.
      */
     @Override
+    @Skip
     public void flush(ChannelHandlerContext ctx) throws Exception {
         ctx.flush();
     }
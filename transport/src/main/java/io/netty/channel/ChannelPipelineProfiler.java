@@ -0,0 +1,259 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how often each {@link ChannelHandler} of the {@link DefaultChannelPipeline}s it was set on via
+ * {@link DefaultChannelPipeline#setProfiler(ChannelPipelineProfiler)} is invoked per {@link Event}, and the time spent
+ * in it excluding the time spent in the {@link ChannelHandler}s it passed the event on to. The {@link ChannelHandler}s
+ * are identified by their name, so the values of all {@link ChannelPipeline}s sharing a profiler are aggregated.
+ * <p>
+ * The values can be read via {@link #snapshot()} or reported periodically via
+ * {@link #start(long, TimeUnit, SnapshotListener)}. Nothing is measured for the {@link ChannelPipeline}s without a
+ * profiler.
+ */
+@UnstableApi
+public final class ChannelPipelineProfiler {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ChannelPipelineProfiler.class);
+
+    /**
+     * The events which are profiled.
+     */
+    public enum Event {
+        CHANNEL_READ,
+        WRITE,
+        FLUSH,
+        USER_EVENT_TRIGGERED
+    }
+
+    /**
+     * Notified with the {@link #snapshot()} of a profiler periodically.
+     */
+    public interface SnapshotListener {
+        void snapshot(List<Entry> entries);
+    }
+
+    /**
+     * Logs each snapshot at info level.
+     */
+    public static final SnapshotListener LOGGING_LISTENER = new SnapshotListener() {
+        @Override
+        public void snapshot(List<Entry> entries) {
+            for (Entry entry: entries) {
+                logger.info("{}", entry);
+            }
+        }
+    };
+
+    private static final Event[] EVENTS = Event.values();
+
+    // The time spent in the handlers invoked by the handler at each depth of the current thread.
+    private static final FastThreadLocal<long[]> NESTED_NANOS = new FastThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            // The first element is the current depth.
+            return new long[16];
+        }
+    };
+
+    private final ConcurrentMap<String, Stats> stats = PlatformDependent.newConcurrentHashMap();
+    private ScheduledFuture<?> future;
+
+    /**
+     * Called by the {@link AbstractChannelHandlerContext} before it invokes its {@link ChannelHandler}. Returns the
+     * start time to pass to {@link #exit(String, Event, long)}.
+     */
+    long enter() {
+        long[] nested = NESTED_NANOS.get();
+        int depth = (int) ++nested[0];
+        if (depth == nested.length) {
+            long[] newNested = new long[nested.length << 1];
+            System.arraycopy(nested, 0, newNested, 0, nested.length);
+            NESTED_NANOS.set(newNested);
+            nested = newNested;
+        }
+        nested[depth] = 0;
+        return System.nanoTime();
+    }
+
+    /**
+     * Called by the {@link AbstractChannelHandlerContext} once its {@link ChannelHandler} returned.
+     */
+    void exit(String name, Event event, long startNanos) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long[] nested = NESTED_NANOS.get();
+        int depth = (int) nested[0]--;
+        if (depth > 1) {
+            nested[depth - 1] += elapsedNanos;
+        }
+        stats(name).record(event, elapsedNanos - nested[depth]);
+    }
+
+    private Stats stats(String name) {
+        Stats s = stats.get(name);
+        if (s == null) {
+            Stats newStats = new Stats();
+            s = stats.putIfAbsent(name, newStats);
+            if (s == null) {
+                s = newStats;
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Returns the values recorded so far, ordered by the time spent.
+     */
+    public List<Entry> snapshot() {
+        List<Entry> entries = new ArrayList<Entry>();
+        for (Map.Entry<String, Stats> e: stats.entrySet()) {
+            Stats s = e.getValue();
+            for (Event event: EVENTS) {
+                long count = s.counts[event.ordinal()].value();
+                if (count > 0) {
+                    entries.add(new Entry(e.getKey(), event, count, s.nanos[event.ordinal()].value()));
+                }
+            }
+        }
+        Collections.sort(entries);
+        return entries;
+    }
+
+    /**
+     * Removes all values recorded so far.
+     */
+    public void reset() {
+        stats.clear();
+    }
+
+    /**
+     * Notifies the given {@link SnapshotListener} with the {@link #snapshot()} with the given interval until
+     * {@link #stop()} is called.
+     */
+    public synchronized void start(long interval, TimeUnit unit, final SnapshotListener listener) {
+        ObjectUtil.checkPositive(interval, "interval");
+        ObjectUtil.checkNotNull(listener, "listener");
+        if (future != null) {
+            throw new IllegalStateException("started already");
+        }
+        future = GlobalEventExecutor.INSTANCE.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                listener.snapshot(snapshot());
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * Stops notifying the {@link SnapshotListener} periodically.
+     */
+    public synchronized void stop() {
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+    }
+
+    private static final class Stats {
+        final LongCounter[] counts = newCounters();
+        final LongCounter[] nanos = newCounters();
+
+        void record(Event event, long nanos) {
+            counts[event.ordinal()].increment();
+            this.nanos[event.ordinal()].add(nanos);
+        }
+
+        private static LongCounter[] newCounters() {
+            LongCounter[] counters = new LongCounter[EVENTS.length];
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = PlatformDependent.newLongCounter();
+            }
+            return counters;
+        }
+    }
+
+    /**
+     * The values recorded for an {@link Event} of a {@link ChannelHandler}.
+     */
+    public static final class Entry implements Comparable<Entry> {
+        private final String handlerName;
+        private final Event event;
+        private final long count;
+        private final long nanos;
+
+        Entry(String handlerName, Event event, long count, long nanos) {
+            this.handlerName = handlerName;
+            this.event = event;
+            this.count = count;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Returns the name of the {@link ChannelHandler}.
+         */
+        public String handlerName() {
+            return handlerName;
+        }
+
+        public Event event() {
+            return event;
+        }
+
+        /**
+         * Returns how often the {@link ChannelHandler} was invoked for the {@link #event()}.
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * Returns the time spent in the {@link ChannelHandler} for the {@link #event()}, excluding the time spent in
+         * the {@link ChannelHandler}s it passed the event on to.
+         */
+        public long nanos() {
+            return nanos;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            return nanos > o.nanos ? -1 : nanos == o.nanos ? 0 : 1;
+        }
+
+        @Override
+        public String toString() {
+            return handlerName + '.' + event + "(count: " + count + ", time: " +
+                    TimeUnit.NANOSECONDS.toMicros(nanos) + "us)";
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically moves {@link Channel}s from the most loaded to the least loaded {@link EventLoop} of an
+ * {@link EventLoopGroup} via {@link ChannelMigration#migrate(Channel, EventLoop)}. Only the {@link Channel}s whose
+ * {@link ChannelPipeline} contains the {@link #handler()} are considered, and the {@link Policy} decides if and which
+ * of them are moved. The load of the {@link EventLoop}s is estimated the same way as by the
+ * {@link LoadAwareEventLoopChooserFactory}.
+ */
+@UnstableApi
+public final class ChannelRebalancer {
+
+    /**
+     * Decides which {@link Channel} to move when rebalancing.
+     */
+    public interface Policy {
+        /**
+         * Returns the {@link Channel} of the given candidates to move from the most loaded {@link EventLoop} to the
+         * least loaded one, or {@code null} if none should be moved.
+         */
+        Channel select(EventLoop source, long sourceLoad, EventLoop target, long targetLoad, List<Channel> candidates);
+    }
+
+    /**
+     * Moves a single {@link Channel} if the load of the most loaded {@link EventLoop} is more than twice the load of
+     * the least loaded one.
+     */
+    public static final Policy DEFAULT_POLICY = new Policy() {
+        @Override
+        public Channel select(EventLoop source, long sourceLoad, EventLoop target, long targetLoad,
+                              List<Channel> candidates) {
+            if (candidates.isEmpty() || sourceLoad <= 2 * targetLoad + 1) {
+                return null;
+            }
+            return candidates.get(PlatformDependent.threadLocalRandom().nextInt(candidates.size()));
+        }
+    };
+
+    private final EventLoopGroup group;
+    private final Policy policy;
+    private final Set<Channel> channels =
+            Collections.newSetFromMap(PlatformDependent.<Channel, Boolean>newConcurrentHashMap());
+    private final Set<Channel> migrating =
+            Collections.newSetFromMap(PlatformDependent.<Channel, Boolean>newConcurrentHashMap());
+    private final ChannelHandler handler = new RebalanceHandler();
+    private ScheduledFuture<?> future;
+
+    /**
+     * Creates a new instance which rebalances the {@link Channel}s of the given {@link EventLoopGroup} using the
+     * {@link #DEFAULT_POLICY}.
+     */
+    public ChannelRebalancer(EventLoopGroup group) {
+        this(group, DEFAULT_POLICY);
+    }
+
+    /**
+     * Creates a new instance which rebalances the {@link Channel}s of the given {@link EventLoopGroup} using the given
+     * {@link Policy}.
+     */
+    public ChannelRebalancer(EventLoopGroup group, Policy policy) {
+        this.group = ObjectUtil.checkNotNull(group, "group");
+        this.policy = ObjectUtil.checkNotNull(policy, "policy");
+    }
+
+    /**
+     * Returns the {@link Sharable} {@link ChannelHandler} which must be added to the {@link ChannelPipeline} of the
+     * {@link Channel}s which may be moved.
+     */
+    public ChannelHandler handler() {
+        return handler;
+    }
+
+    /**
+     * Calls {@link #rebalance()} with the given interval until {@link #stop()} is called.
+     */
+    public synchronized void start(long interval, TimeUnit unit) {
+        ObjectUtil.checkPositive(interval, "interval");
+        if (future != null) {
+            throw new IllegalStateException("started already");
+        }
+        future = GlobalEventExecutor.INSTANCE.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                rebalance();
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * Stops calling {@link #rebalance()} periodically.
+     */
+    public synchronized void stop() {
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+    }
+
+    /**
+     * Moves a {@link Channel} from the most loaded to the least loaded {@link EventLoop} if the {@link Policy}
+     * decides so. Returns the {@link ChannelFuture} of the migration or {@code null} if no {@link Channel} is moved.
+     */
+    public ChannelFuture rebalance() {
+        EventLoop source = null;
+        EventLoop target = null;
+        long sourceLoad = Long.MIN_VALUE;
+        long targetLoad = Long.MAX_VALUE;
+        for (EventExecutor executor: group) {
+            long load = LoadAwareEventLoopChooserFactory.load(executor);
+            if (load > sourceLoad) {
+                sourceLoad = load;
+                source = (EventLoop) executor;
+            }
+            if (load < targetLoad) {
+                targetLoad = load;
+                target = (EventLoop) executor;
+            }
+        }
+        if (source == null || source == target) {
+            return null;
+        }
+
+        List<Channel> candidates = new ArrayList<Channel>();
+        for (Channel channel: channels) {
+            if (channel.eventLoop() == source && !migrating.contains(channel)) {
+                candidates.add(channel);
+            }
+        }
+        final Channel channel = policy.select(source, sourceLoad, target, targetLoad, candidates);
+        if (channel == null) {
+            return null;
+        }
+        if (!migrating.add(channel)) {
+            return null;
+        }
+        ChannelFuture migration = ChannelMigration.migrate(channel, target);
+        migration.addListener(new GenericFutureListener<Future<? super Void>>() {
+            @Override
+            public void operationComplete(Future<? super Void> future) {
+                migrating.remove(channel);
+            }
+        });
+        return migration;
+    }
+
+    @Sharable
+    private final class RebalanceHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            final Channel channel = ctx.channel();
+            channels.add(channel);
+            channel.closeFuture().addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    channels.remove(channel);
+                }
+            });
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) {
+            channels.remove(ctx.channel());
+        }
+    }
+}
@@ -33,11 +33,7 @@ final class DefaultChannelHandlerContext extends AbstractChannelHandlerContext {
                                  String name,
                                  ChannelHandler handler) {
 
-        super(pipeline, executor, name, isInbound(handler), isOutbound(handler));
-
-        if (handler == null) {
-            throw new NullPointerException("handler");
-        }
+        super(pipeline, executor, name, handler.getClass());
         this.handler = handler;
     }
 
@@ -46,13 +42,4 @@ final class DefaultChannelHandlerContext extends AbstractChannelHandlerContext {
     public ChannelHandler handler() {
         return handler;
     }
-
-    // 判断是 in 还是 out
-    private static boolean isInbound(ChannelHandler handler) {
-        return handler instanceof ChannelInboundHandler;
-    }
-
-    private static boolean isOutbound(ChannelHandler handler) {
-        return handler instanceof ChannelOutboundHandler;
-    }
 }
@@ -76,6 +76,8 @@ public class DefaultChannelPipeline implements ChannelPipeline {
     private Map<EventExecutorGroup, EventExecutor> childExecutors;
 
     private volatile MessageSizeEstimator.Handle estimatorHandle;
+    // Only set if the time spent in the handlers should be measured.
+    volatile ChannelPipelineProfiler profiler;
     // 默认 true
     private boolean firstRegistration = true;
 
@@ -118,6 +120,24 @@ public class DefaultChannelPipeline implements ChannelPipeline {
 
 
 
+    /**
+     * Sets the {@link ChannelPipelineProfiler} which measures the time spent in the {@link ChannelHandler}s of this
+     * pipeline, or {@code null} to stop measuring. The head and the tail of the pipeline are not measured.
+     */
+    @UnstableApi
+    public final DefaultChannelPipeline setProfiler(ChannelPipelineProfiler profiler) {
+        this.profiler = profiler;
+        return this;
+    }
+
+    /**
+     * Returns the {@link ChannelPipelineProfiler} of this pipeline or {@code null}.
+     */
+    @UnstableApi
+    public final ChannelPipelineProfiler profiler() {
+        return profiler;
+    }
+
     final MessageSizeEstimator.Handle estimatorHandle() {
         MessageSizeEstimator.Handle handle = estimatorHandle;
         if (handle == null) {
@@ -1332,7 +1352,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
     final class TailContext extends AbstractChannelHandlerContext implements ChannelInboundHandler {
 
         TailContext(DefaultChannelPipeline pipeline) {
-            super(pipeline, null, TAIL_NAME, true, false);
+            super(pipeline, null, TAIL_NAME, TailContext.class);
             setAddComplete();
         }
 
@@ -1420,7 +1440,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
          * 构造器
          */
         HeadContext(DefaultChannelPipeline pipeline) {
-            super(pipeline, null, HEAD_NAME, true, true);
+            super(pipeline, null, HEAD_NAME, HeadContext.class);
             unsafe = pipeline.channel().unsafe();
             setAddComplete();
         }
@@ -15,6 +15,8 @@
  */
 package io.netty.channel;
 
+import io.netty.util.concurrent.EventExecutorChooserFactory;
+
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
 
@@ -59,6 +61,18 @@ public class DefaultEventLoopGroup extends MultithreadEventLoopGroup {
         super(nThreads, executor);
     }
 
+    /**
+     * Create a new instance
+     *
+     * @param nThreads          the number of threads to use
+     * @param executor          the Executor to use, or {@code null} if the default should be used.
+     * @param chooserFactory    the {@link EventExecutorChooserFactory} which chooses the {@link EventLoop} a
+     *                          {@link Channel} is registered with.
+     */
+    public DefaultEventLoopGroup(int nThreads, Executor executor, EventExecutorChooserFactory chooserFactory) {
+        super(nThreads, executor, chooserFactory);
+    }
+
     @Override
     protected EventLoop newChild(Executor executor, Object... args) throws Exception {
         return new DefaultEventLoop(this, executor);
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Metrics of a {@link SingleThreadEventLoop}, which are recorded once enabled via
+ * {@link SingleThreadEventLoop#setMetricsEnabled(boolean)}.
+ * <p>
+ * All values are only written by the thread of the {@link SingleThreadEventLoop} without any memory barriers, so they
+ * are cheap enough to be recorded all the time but may be slightly stale when read by other threads. Counters are
+ * monotonic, so rates like the wake-ups per second can be derived from the difference of two reads. The latency and
+ * run time of tasks are only measured for every {@link #taskSampleInterval()}th task to keep the overhead low.
+ */
+@UnstableApi
+public final class EventLoopMetrics {
+
+    static final int DEFAULT_TASK_SAMPLE_INTERVAL = 16;
+
+    private static final int BUCKETS = 64;
+
+    private static final AtomicLongFieldUpdater<EventLoopMetrics> IO_TIME_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(EventLoopMetrics.class, "ioTimeNanos");
+    private static final AtomicLongFieldUpdater<EventLoopMetrics> TASK_TIME_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(EventLoopMetrics.class, "taskTimeNanos");
+    private static final AtomicLongFieldUpdater<EventLoopMetrics> WAKEUPS_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(EventLoopMetrics.class, "wakeups");
+    private static final AtomicLongFieldUpdater<EventLoopMetrics> READY_EVENTS_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(EventLoopMetrics.class, "readyEvents");
+    private static final AtomicLongFieldUpdater<EventLoopMetrics> MAX_READY_EVENTS_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(EventLoopMetrics.class, "maxReadyEvents");
+    private static final AtomicLongFieldUpdater<EventLoopMetrics> SAMPLED_TASKS_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(EventLoopMetrics.class, "sampledTasks");
+    private static final AtomicLongFieldUpdater<EventLoopMetrics> MAX_TASK_TIME_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(EventLoopMetrics.class, "maxTaskTimeNanos");
+
+    private final int taskSampleInterval;
+    // Bucket n counts the task latencies in [2^n, 2^(n+1)) nanoseconds.
+    private final AtomicLongArray taskLatencies = new AtomicLongArray(BUCKETS);
+    // Incremented by all threads which submit tasks.
+    private final LongCounter submittedTasks = PlatformDependent.newLongCounter();
+
+    private volatile long ioTimeNanos;
+    private volatile long taskTimeNanos;
+    private volatile long wakeups;
+    private volatile long readyEvents;
+    private volatile long maxReadyEvents;
+    private volatile long sampledTasks;
+    private volatile long maxTaskTimeNanos;
+
+    EventLoopMetrics(int taskSampleInterval) {
+        if (taskSampleInterval <= 0) {
+            throw new IllegalArgumentException("taskSampleInterval: " + taskSampleInterval + " (expected: > 0)");
+        }
+        this.taskSampleInterval = taskSampleInterval;
+    }
+
+    /**
+     * Returns the interval of tasks whose latency and run time are measured.
+     */
+    public int taskSampleInterval() {
+        return taskSampleInterval;
+    }
+
+    /**
+     * Returns the total time in nanoseconds spent processing I/O.
+     */
+    public long ioTimeNanos() {
+        return ioTimeNanos;
+    }
+
+    /**
+     * Returns the total time in nanoseconds spent running tasks. Together with {@link #ioTimeNanos()} this shows the
+     * actual effect of the {@code ioRatio}.
+     */
+    public long taskTimeNanos() {
+        return taskTimeNanos;
+    }
+
+    /**
+     * Returns the number of times the event loop woke up to process I/O and tasks.
+     */
+    public long wakeups() {
+        return wakeups;
+    }
+
+    /**
+     * Returns the total number of I/O events which were ready after waking up, so
+     * {@code readyEvents() / wakeups()} is the average number of ready events per {@code epoll_wait} or
+     * {@code select}.
+     */
+    public long readyEvents() {
+        return readyEvents;
+    }
+
+    /**
+     * Returns the maximal number of I/O events which were ready after waking up once.
+     */
+    public long maxReadyEvents() {
+        return maxReadyEvents;
+    }
+
+    /**
+     * Returns the number of tasks whose latency and run time were measured.
+     */
+    public long sampledTasks() {
+        return sampledTasks;
+    }
+
+    /**
+     * Returns the longest run time in nanoseconds of the measured tasks.
+     */
+    public long maxTaskTimeNanos() {
+        return maxTaskTimeNanos;
+    }
+
+    /**
+     * Returns the histogram of the time the measured tasks waited in the task queue, where index {@code n} counts the
+     * latencies from {@code 2^n} (inclusive) to {@code 2^(n+1)} (exclusive) nanoseconds.
+     */
+    public long[] taskLatencyHistogram() {
+        long[] histogram = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram[i] = taskLatencies.get(i);
+        }
+        return histogram;
+    }
+
+    /**
+     * Returns an upper bound of the given percentile ({@code 0 < percentile <= 100}) of the time the measured tasks
+     * waited in the task queue, or {@code 0} if no task was measured yet.
+     */
+    public long taskLatencyNanos(double percentile) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile: " + percentile + " (expected: 0 < percentile <= 100)");
+        }
+        long[] histogram = taskLatencyHistogram();
+        long count = 0;
+        for (long c: histogram) {
+            count += c;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        for (int i = 0; i < BUCKETS; i++) {
+            rank -= histogram[i];
+            if (rank <= 0 && histogram[i] > 0) {
+                return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Wraps the submitted task if it should be measured.
+     */
+    Runnable submitted(Runnable task) {
+        long submitted = submittedTasks.value();
+        submittedTasks.increment();
+        if (submitted % taskSampleInterval != 0) {
+            return task;
+        }
+        return new MeasuredTask(this, task, System.nanoTime());
+    }
+
+    /**
+     * Returns a task which is equal to the tasks {@link #submitted(Runnable)} wrapped the given task in, so that they
+     * can be removed from the task queue.
+     */
+    static Runnable measuredTask(Runnable task) {
+        return new MeasuredTask(null, task, 0);
+    }
+
+    void ioProcessed(long ioTimeNanos, int readyEvents) {
+        IO_TIME_UPDATER.lazySet(this, this.ioTimeNanos + ioTimeNanos);
+        WAKEUPS_UPDATER.lazySet(this, wakeups + 1);
+        if (readyEvents > 0) {
+            READY_EVENTS_UPDATER.lazySet(this, this.readyEvents + readyEvents);
+            if (readyEvents > maxReadyEvents) {
+                MAX_READY_EVENTS_UPDATER.lazySet(this, readyEvents);
+            }
+        }
+    }
+
+    void tasksProcessed(long taskTimeNanos) {
+        TASK_TIME_UPDATER.lazySet(this, this.taskTimeNanos + taskTimeNanos);
+    }
+
+    private void taskMeasured(long latencyNanos, long runTimeNanos) {
+        int bucket = 63 - Long.numberOfLeadingZeros(Math.max(1, latencyNanos));
+        taskLatencies.lazySet(bucket, taskLatencies.get(bucket) + 1);
+        SAMPLED_TASKS_UPDATER.lazySet(this, sampledTasks + 1);
+        if (runTimeNanos > maxTaskTimeNanos) {
+            MAX_TASK_TIME_UPDATER.lazySet(this, runTimeNanos);
+        }
+    }
+
+    private static final class MeasuredTask implements Runnable {
+        private final EventLoopMetrics metrics;
+        private final Runnable task;
+        private final long submittedNanos;
+
+        MeasuredTask(EventLoopMetrics metrics, Runnable task, long submittedNanos) {
+            this.metrics = metrics;
+            this.task = task;
+            this.submittedNanos = submittedNanos;
+        }
+
+        @Override
+        public void run() {
+            long startNanos = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                metrics.taskMeasured(startNanos - submittedNanos, System.nanoTime() - startNanos);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof MeasuredTask && task.equals(((MeasuredTask) o).task);
+        }
+
+        @Override
+        public int hashCode() {
+            return task.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A stall of an {@link EventLoop} detected by the {@link EventLoopStallDetector}, together with a sample of the stack
+ * of its {@link Thread} taken while it was stalled.
+ */
+@UnstableApi
+public final class EventLoopStall {
+
+    private final EventLoop eventLoop;
+    private final Thread thread;
+    private final long durationNanos;
+    private final StackTraceElement[] stackTrace;
+    private final StackTraceElement handlerFrame;
+    private final StackTraceElement taskFrame;
+
+    EventLoopStall(EventLoop eventLoop, Thread thread, long durationNanos, StackTraceElement[] stackTrace,
+                   StackTraceElement handlerFrame, StackTraceElement taskFrame) {
+        this.eventLoop = eventLoop;
+        this.thread = thread;
+        this.durationNanos = durationNanos;
+        this.stackTrace = stackTrace;
+        this.handlerFrame = handlerFrame;
+        this.taskFrame = taskFrame;
+    }
+
+    /**
+     * Returns the stalled {@link EventLoop}.
+     */
+    public EventLoop eventLoop() {
+        return eventLoop;
+    }
+
+    /**
+     * Returns the {@link Thread} of the stalled {@link EventLoop}.
+     */
+    public Thread thread() {
+        return thread;
+    }
+
+    /**
+     * Returns for how long the current iteration of the {@link EventLoop} was running when the stack was sampled.
+     */
+    public long durationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * Returns the sampled stack of the {@link #thread()}.
+     */
+    public StackTraceElement[] stackTrace() {
+        return stackTrace.clone();
+    }
+
+    /**
+     * Returns the innermost frame of the sampled stack which belongs to a {@link ChannelHandler}, which is the method
+     * of the {@link ChannelHandler} that was running, or {@code null} if no {@link ChannelHandler} was running.
+     */
+    public StackTraceElement handlerFrame() {
+        return handlerFrame;
+    }
+
+    /**
+     * Returns the frame of the sampled stack which is the {@link Runnable#run()} of the task that was running, or
+     * {@code null} if the {@link EventLoop} was not running a task.
+     */
+    public StackTraceElement taskFrame() {
+        return taskFrame;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder(256)
+                .append(StringUtil.simpleClassName(this))
+                .append("(thread: ").append(thread.getName())
+                .append(", duration: ").append(TimeUnit.NANOSECONDS.toMillis(durationNanos)).append("ms");
+        if (handlerFrame != null) {
+            buf.append(", handler: ").append(handlerFrame);
+        }
+        if (taskFrame != null) {
+            buf.append(", task: ").append(taskFrame);
+        }
+        buf.append(')');
+        for (StackTraceElement element: stackTrace) {
+            buf.append(StringUtil.NEWLINE).append("\tat ").append(element);
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the {@link SingleThreadEventLoop}s of an {@link EventLoopGroup} from a dedicated {@link Thread} and notifies
+ * its {@link EventLoopStallListener}s once one of them did not complete an iteration within the threshold, for
+ * example because a {@link ChannelHandler} blocks.
+ * <p>
+ * The {@link EventLoop}s only publish when they start to process I/O and when they finished running all tasks, so the
+ * detector adds no overhead per {@link ChannelHandler} or task. Instead, the stack of a stalled {@link EventLoop} is
+ * sampled and the {@link ChannelHandler} and task which were running are derived from it. Each stall is reported at
+ * most once, and at most once per report interval for each {@link EventLoop}. Only the {@link EventLoop}s which
+ * process I/O are watched, which are those of the NIO and native transports.
+ */
+@UnstableApi
+public final class EventLoopStallDetector {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(EventLoopStallDetector.class);
+
+    private static final String SAFE_EXECUTE_CLASS = "io.netty.util.concurrent.AbstractEventExecutor";
+    private static final String SAFE_EXECUTE_METHOD = "safeExecute";
+    private static final long MIN_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Logs each {@link EventLoopStall} as a warning.
+     */
+    public static final EventLoopStallListener LOGGING_LISTENER = new EventLoopStallListener() {
+        @Override
+        public void stalled(EventLoopStall stall) {
+            logger.warn("Detected a stalled event loop: {}", stall);
+        }
+    };
+
+    private final EventLoopGroup group;
+    private final long thresholdNanos;
+    private final long reportIntervalNanos;
+    private final ThreadFactory threadFactory;
+    private final List<EventLoopStallListener> listeners = new CopyOnWriteArrayList<EventLoopStallListener>();
+
+    // Only accessed while holding the lock of this instance.
+    private final Map<SingleThreadEventLoop, long[]> reports = new IdentityHashMap<SingleThreadEventLoop, long[]>();
+    private final Map<String, Boolean> handlerClasses = new HashMap<String, Boolean>();
+    private Thread thread;
+
+    /**
+     * Creates a new instance which reports {@link EventLoop}s that did not complete an iteration within the given
+     * threshold, at most once per minute for each {@link EventLoop}.
+     */
+    public EventLoopStallDetector(EventLoopGroup group, long threshold, TimeUnit unit) {
+        this(group, ObjectUtil.checkNotNull(unit, "unit").toNanos(threshold), TimeUnit.MINUTES.toNanos(1),
+                TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a new instance which reports {@link EventLoop}s that did not complete an iteration within the given
+     * threshold, at most once per the given report interval for each {@link EventLoop}.
+     */
+    public EventLoopStallDetector(EventLoopGroup group, long threshold, long reportInterval, TimeUnit unit) {
+        this.group = ObjectUtil.checkNotNull(group, "group");
+        ObjectUtil.checkNotNull(unit, "unit");
+        thresholdNanos = unit.toNanos(ObjectUtil.checkPositive(threshold, "threshold"));
+        reportIntervalNanos = unit.toNanos(ObjectUtil.checkPositiveOrZero(reportInterval, "reportInterval"));
+        threadFactory = new DefaultThreadFactory(EventLoopStallDetector.class, true);
+    }
+
+    /**
+     * Adds the given {@link EventLoopStallListener}, for example {@link #LOGGING_LISTENER}.
+     */
+    public EventLoopStallDetector addListener(EventLoopStallListener listener) {
+        listeners.add(ObjectUtil.checkNotNull(listener, "listener"));
+        return this;
+    }
+
+    /**
+     * Removes the given {@link EventLoopStallListener}.
+     */
+    public EventLoopStallDetector removeListener(EventLoopStallListener listener) {
+        listeners.remove(listener);
+        return this;
+    }
+
+    /**
+     * Starts the watchdog {@link Thread}, which checks the {@link EventLoop}s four times per threshold until
+     * {@link #stop()} is called or the {@link EventLoopGroup} is terminated.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("started already");
+        }
+        final long intervalNanos = Math.max(MIN_CHECK_INTERVAL_NANOS, thresholdNanos >>> 2);
+        thread = threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                while (!group.isTerminated()) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(intervalNanos);
+                    } catch (InterruptedException e) {
+                        // Stopped.
+                        return;
+                    }
+                    check(System.nanoTime());
+                }
+            }
+        });
+        thread.start();
+    }
+
+    /**
+     * Stops the watchdog {@link Thread}.
+     */
+    public synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * Checks all {@link EventLoop}s and notifies the {@link EventLoopStallListener}s about those which are stalled.
+     * Returns the number of reported {@link EventLoopStall}s.
+     */
+    synchronized int check(long nanoTime) {
+        int reported = 0;
+        for (EventExecutor executor: group) {
+            if (!(executor instanceof SingleThreadEventLoop)) {
+                continue;
+            }
+            SingleThreadEventLoop loop = (SingleThreadEventLoop) executor;
+            long busySince = loop.busySinceNanos();
+            if (busySince == 0 || nanoTime - busySince < thresholdNanos) {
+                continue;
+            }
+            // Holds the start of the last reported stall and the time it was reported at.
+            long[] report = reports.get(loop);
+            if (report == null) {
+                report = new long[2];
+                reports.put(loop, report);
+            } else if (report[0] == busySince || nanoTime - report[1] < reportIntervalNanos) {
+                continue;
+            }
+            Thread loopThread = loop.busyThread();
+            StackTraceElement[] stackTrace = loopThread.getStackTrace();
+            if (loop.busySinceNanos() != busySince) {
+                // The iteration completed while the stack was sampled, so the stack may belong to the next one.
+                continue;
+            }
+            report[0] = busySince;
+            report[1] = nanoTime;
+            notifyListeners(new EventLoopStall(loop, loopThread, nanoTime - busySince, stackTrace,
+                    handlerFrame(loopThread, stackTrace), taskFrame(stackTrace)));
+            reported++;
+        }
+        return reported;
+    }
+
+    private void notifyListeners(EventLoopStall stall) {
+        for (EventLoopStallListener listener: listeners) {
+            try {
+                listener.stalled(stall);
+            } catch (Throwable t) {
+                logger.warn("An exception was thrown by {}.stalled()", listener.getClass().getName(), t);
+            }
+        }
+    }
+
+    private StackTraceElement handlerFrame(Thread loopThread, StackTraceElement[] stackTrace) {
+        for (StackTraceElement element: stackTrace) {
+            if (isHandlerClass(loopThread, element.getClassName())) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    private boolean isHandlerClass(Thread loopThread, String className) {
+        Boolean handler = handlerClasses.get(className);
+        if (handler == null) {
+            ClassLoader loader = loopThread.getContextClassLoader();
+            if (loader == null) {
+                loader = ChannelHandler.class.getClassLoader();
+            }
+            try {
+                handler = ChannelHandler.class.isAssignableFrom(Class.forName(className, false, loader));
+            } catch (Throwable ignore) {
+                handler = Boolean.FALSE;
+            }
+            handlerClasses.put(className, handler);
+        }
+        return handler;
+    }
+
+    private static StackTraceElement taskFrame(StackTraceElement[] stackTrace) {
+        // The frame above AbstractEventExecutor.safeExecute(...) is the run() method of the task.
+        for (int i = 1; i < stackTrace.length; i++) {
+            StackTraceElement element = stackTrace[i];
+            if (SAFE_EXECUTE_METHOD.equals(element.getMethodName()) &&
+                    SAFE_EXECUTE_CLASS.equals(element.getClassName())) {
+                return stackTrace[i - 1];
+            }
+        }
+        return null;
+    }
+}
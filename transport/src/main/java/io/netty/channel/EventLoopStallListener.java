@@ -0,0 +1,31 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Notified by the {@link EventLoopStallDetector} once an {@link EventLoop} did not complete an iteration within the
+ * threshold. Called from the thread of the {@link EventLoopStallDetector}, so implementations must not block.
+ */
+@UnstableApi
+public interface EventLoopStallListener {
+
+    /**
+     * Called once the given {@link EventLoopStall} was detected.
+     */
+    void stalled(EventLoopStall stall);
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorChooserFactory;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.Random;
+
+/**
+ * {@link EventExecutorChooserFactory} which chooses the less loaded of two randomly picked {@link EventExecutor}s
+ * ("power of two choices"), so long-lived {@link Channel}s are spread by load instead of round-robin.
+ * <p>
+ * The load of a {@link SingleThreadEventLoop} is estimated from its {@link SingleThreadEventLoop#registeredChannels()},
+ * {@link SingleThreadEventLoop#pendingTasks()} and {@link SingleThreadEventLoop#ioTimeNanos()}, where about 16
+ * microseconds of average I/O time per iteration count like one registered {@link Channel}. Other
+ * {@link SingleThreadEventExecutor}s are only compared by their pending tasks.
+ * Reading these values does not synchronize with the {@link EventExecutor}s, so they may be slightly stale.
+ */
+@UnstableApi
+public final class LoadAwareEventLoopChooserFactory implements EventExecutorChooserFactory {
+
+    public static final LoadAwareEventLoopChooserFactory INSTANCE = new LoadAwareEventLoopChooserFactory();
+
+    static final int IO_TIME_SHIFT = 14;
+
+    private LoadAwareEventLoopChooserFactory() { }
+
+    @Override
+    public EventExecutorChooser newChooser(EventExecutor[] executors) {
+        return new LoadAwareEventExecutorChooser(executors);
+    }
+
+    /**
+     * Returns the estimated load of the given {@link EventExecutor}, where lower values mean less load.
+     */
+    static long load(EventExecutor executor) {
+        if (executor instanceof SingleThreadEventLoop) {
+            SingleThreadEventLoop eventLoop = (SingleThreadEventLoop) executor;
+            return eventLoop.registeredChannels() + eventLoop.pendingTasks() +
+                    (eventLoop.ioTimeNanos() >> IO_TIME_SHIFT);
+        }
+        if (executor instanceof SingleThreadEventExecutor) {
+            return ((SingleThreadEventExecutor) executor).pendingTasks();
+        }
+        return 0;
+    }
+
+    private static final class LoadAwareEventExecutorChooser implements EventExecutorChooser {
+        private final EventExecutor[] executors;
+
+        LoadAwareEventExecutorChooser(EventExecutor[] executors) {
+            this.executors = executors;
+        }
+
+        @Override
+        public EventExecutor next() {
+            EventExecutor[] executors = this.executors;
+            if (executors.length == 1) {
+                return executors[0];
+            }
+            Random random = PlatformDependent.threadLocalRandom();
+            int first = random.nextInt(executors.length);
+            int second = random.nextInt(executors.length - 1);
+            if (second >= first) {
+                second++;
+            }
+            return load(executors[second]) < load(executors[first]) ? executors[second] : executors[first];
+        }
+    }
+}
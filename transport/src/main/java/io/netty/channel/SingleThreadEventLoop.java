@@ -18,6 +18,7 @@ package io.netty.channel;
 import io.netty.util.concurrent.RejectedExecutionHandler;
 import io.netty.util.concurrent.RejectedExecutionHandlers;
 import io.netty.util.concurrent.SingleThreadEventExecutor;
+import io.netty.util.concurrent.ThreadPerTaskExecutor;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.UnstableApi;
@@ -25,6 +26,8 @@ import io.netty.util.internal.UnstableApi;
 import java.util.Queue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
  * Abstract base class for {@link EventLoop}s that execute all its submitted tasks in a single thread.
@@ -32,12 +35,31 @@ import java.util.concurrent.ThreadFactory;
  */
 public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor implements EventLoop {
 
+    private static final AtomicLongFieldUpdater<SingleThreadEventLoop> BUSY_SINCE_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(SingleThreadEventLoop.class, "busySinceNanos");
+
     protected static final int DEFAULT_MAX_PENDING_TASKS = Math.max(16,
             SystemPropertyUtil.getInt("io.netty.eventLoop.maxPendingTasks", Integer.MAX_VALUE));
 
+    protected static final long DEFAULT_TIMER_WHEEL_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(Math.max(0,
+            SystemPropertyUtil.getLong("io.netty.eventLoop.timerWheelTickMillis", 0)));
+
     // 和父类中的 taskQueue有啥区别
     private final Queue<Runnable> tailTasks;
 
+    // Only written by the thread of this event loop, but read by others to estimate its load.
+    private volatile int registeredChannels;
+    private volatile long ioTimeNanos;
+
+    private volatile EventLoopMetrics metrics;
+    // The time at which the tasks of the current iteration started to run, only set if the metrics are enabled.
+    private long tasksStartNanos;
+
+    // The time at which the current iteration started to process I/O, or 0 if waiting for I/O. Only written by the
+    // thread of this event loop, which is stored as well, and read by the EventLoopStallDetector.
+    private volatile long busySinceNanos;
+    private volatile Thread busyThread;
+
 
     protected SingleThreadEventLoop(EventLoopGroup parent, ThreadFactory threadFactory, boolean addTaskWakesUp) {
         this(parent, threadFactory, addTaskWakesUp, DEFAULT_MAX_PENDING_TASKS, RejectedExecutionHandlers.reject());
@@ -50,9 +72,8 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
     protected SingleThreadEventLoop(EventLoopGroup parent, ThreadFactory threadFactory,
                                     boolean addTaskWakesUp, int maxPendingTasks,
                                     RejectedExecutionHandler rejectedExecutionHandler) {
-        super(parent, threadFactory, addTaskWakesUp, maxPendingTasks, rejectedExecutionHandler);
-        //
-        tailTasks = newTaskQueue(maxPendingTasks);
+        this(parent, new ThreadPerTaskExecutor(threadFactory), addTaskWakesUp, maxPendingTasks,
+                rejectedExecutionHandler);
     }
 
     /**
@@ -63,8 +84,24 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
                                     boolean addTaskWakesUp,
                                     int maxPendingTasks,
                                     RejectedExecutionHandler rejectedExecutionHandler) {
+        this(parent, executor, addTaskWakesUp, maxPendingTasks, rejectedExecutionHandler,
+                DEFAULT_TIMER_WHEEL_TICK_NANOS);
+    }
 
-        super(parent, executor, addTaskWakesUp, maxPendingTasks, rejectedExecutionHandler);
+    /**
+     * Creates a new instance whose scheduled tasks are held in a hierarchical timing wheel with the given tick
+     * duration until their tick starts, which makes scheduling and cancelling coarse timeouts {@code O(1)}. Use
+     * {@code 0} to only store them in a priority queue. The default is set via the
+     * {@code io.netty.eventLoop.timerWheelTickMillis} system property and is {@code 0}.
+     */
+    protected SingleThreadEventLoop(EventLoopGroup parent,
+                                    Executor executor,
+                                    boolean addTaskWakesUp,
+                                    int maxPendingTasks,
+                                    RejectedExecutionHandler rejectedExecutionHandler,
+                                    long timerWheelTickNanos) {
+
+        super(parent, executor, addTaskWakesUp, maxPendingTasks, rejectedExecutionHandler, timerWheelTickNanos);
 
         // 干什么用的 tailTasks: MpscUnboundedArrayQueue
         tailTasks = newTaskQueue(maxPendingTasks);
@@ -170,6 +207,25 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
     @Override
     protected void afterRunningAllTasks() {
         runAllTasksFrom(tailTasks);
+        BUSY_SINCE_UPDATER.lazySet(this, 0);
+
+        EventLoopMetrics metrics = this.metrics;
+        if (metrics != null && tasksStartNanos != 0) {
+            metrics.tasksProcessed(System.nanoTime() - tasksStartNanos);
+            tasksStartNanos = 0;
+        }
+    }
+
+    @Override
+    protected void addTask(Runnable task) {
+        EventLoopMetrics metrics = this.metrics;
+        super.addTask(metrics == null || task == null ? task : metrics.submitted(task));
+    }
+
+    @Override
+    protected boolean removeTask(Runnable task) {
+        // The task may have been wrapped by addTask(Runnable) to measure it.
+        return super.removeTask(task) || super.removeTask(EventLoopMetrics.measuredTask(task));
     }
 
     @Override
@@ -182,6 +238,105 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
         return super.pendingTasks() + tailTasks.size();
     }
 
+    /**
+     * Returns the number of {@link Channel}s registered with this event loop.
+     */
+    @UnstableApi
+    public int registeredChannels() {
+        return registeredChannels;
+    }
+
+    /**
+     * Returns the moving average of the time in nanoseconds spent processing I/O per iteration of this event loop, as
+     * recorded via {@link #recordIoTime(long)}.
+     */
+    @UnstableApi
+    public long ioTimeNanos() {
+        return ioTimeNanos;
+    }
+
+    /**
+     * Returns {@link System#nanoTime()} and marks this event loop as busy until all tasks were run. Must be called
+     * from the thread of this event loop once it woke up to process I/O.
+     */
+    @UnstableApi
+    protected final long ioStarted() {
+        long nanoTime = System.nanoTime();
+        if (busyThread == null) {
+            busyThread = Thread.currentThread();
+        }
+        BUSY_SINCE_UPDATER.lazySet(this, nanoTime == 0 ? 1 : nanoTime);
+        return nanoTime;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} at which the current iteration of this event loop started to process I/O,
+     * or {@code 0} if it is waiting for I/O.
+     */
+    long busySinceNanos() {
+        return busySinceNanos;
+    }
+
+    /**
+     * Returns the {@link Thread} of this event loop once it processed I/O, or {@code null}.
+     */
+    Thread busyThread() {
+        return busyThread;
+    }
+
+    /**
+     * Records the time spent processing I/O in an iteration of this event loop. Must be called from the thread of
+     * this event loop.
+     */
+    @UnstableApi
+    protected final void recordIoTime(long ioTimeNanos) {
+        recordIoTime(ioTimeNanos, -1);
+    }
+
+    /**
+     * Records the time spent processing I/O and the number of I/O events which were ready in an iteration of this
+     * event loop, or {@code -1} if unknown. Must be called from the thread of this event loop right before the tasks
+     * are run.
+     */
+    @UnstableApi
+    protected final void recordIoTime(long ioTimeNanos, int readyEvents) {
+        long average = this.ioTimeNanos;
+        this.ioTimeNanos = average + ((ioTimeNanos - average) >> 3);
+
+        EventLoopMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.ioProcessed(ioTimeNanos, readyEvents);
+            tasksStartNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Enables or disables recording the {@link #metrics()} of this event loop. The metrics are reset when enabled
+     * again.
+     */
+    @UnstableApi
+    public void setMetricsEnabled(boolean enabled) {
+        metrics = enabled ? new EventLoopMetrics(EventLoopMetrics.DEFAULT_TASK_SAMPLE_INTERVAL) : null;
+    }
+
+    /**
+     * Returns the {@link EventLoopMetrics} of this event loop, or {@code null} if they are not enabled via
+     * {@link #setMetricsEnabled(boolean)}.
+     */
+    @UnstableApi
+    public EventLoopMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Is called by {@link AbstractChannel} from the thread of this event loop once a {@link Channel} was registered
+     * with it ({@code 1}) or deregistered from it ({@code -1}).
+     */
+    void registeredChannelsChanged(int delta) {
+        assert inEventLoop();
+        registeredChannels += delta;
+    }
+
     /**
      * Marker interface for {@link Runnable} that will not trigger an {@link #wakeup(boolean)} in all cases.
      */
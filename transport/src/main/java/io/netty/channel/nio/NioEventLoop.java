@@ -22,6 +22,7 @@ import io.netty.channel.EventLoopException;
 import io.netty.channel.SelectStrategy;
 import io.netty.channel.SingleThreadEventLoop;
 import io.netty.util.IntSupplier;
+import io.netty.util.concurrent.IoEventExecutor;
 import io.netty.util.concurrent.RejectedExecutionHandler;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.ReflectionUtil;
@@ -49,7 +50,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * {@link Selector} and so does the multi-plexing of these in the event loop.
  *
  */
-public final class NioEventLoop extends SingleThreadEventLoop {
+public final class NioEventLoop extends SingleThreadEventLoop implements IoEventExecutor {
 
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(NioEventLoop.class);
 
@@ -487,21 +488,25 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                 needsToSelectAgain = false;
                 final int ioRatio = this.ioRatio;
                 //System.out.println("ioRatio = " + ioRatio);
+                final int readyKeys = selectedKeys != null ? selectedKeys.size() : selector.selectedKeys().size();
                 if (ioRatio == 100) {
+                    final long ioStartTime = ioStarted();
                     try {
                         processSelectedKeys();
                     } finally {
+                        recordIoTime(System.nanoTime() - ioStartTime, readyKeys);
                         // Ensure we always run tasks.  父类.父类中方法
                         runAllTasks();
                     }
                 } else {
-                    final long ioStartTime = System.nanoTime();
+                    final long ioStartTime = ioStarted();
                     try {
                         // 这个负责已经经接入channel的 IO 处理
                         processSelectedKeys();
                     } finally {
                         // Ensure we always run tasks.
                         final long ioTime = System.nanoTime() - ioStartTime;
+                        recordIoTime(ioTime, readyKeys);
                         // 这个新接入channel 任务处理  TODO ??    父类.父类中方法
                         runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
                     }
@@ -120,6 +120,17 @@ public class NioEventLoopGroup extends MultithreadEventLoopGroup {
         }
     }
 
+    /**
+     * Enables or disables recording the {@link io.netty.channel.EventLoopMetrics} of the child event loops.
+     *
+     * @see io.netty.channel.SingleThreadEventLoop#setMetricsEnabled(boolean)
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        for (EventExecutor e: this) {
+            ((NioEventLoop) e).setMetricsEnabled(enabled);
+        }
+    }
+
     /**
      * Replaces the current {@link Selector}s of the child event loops with newly created {@link Selector}s to work
      * around the  infamous epoll 100% CPU bug.
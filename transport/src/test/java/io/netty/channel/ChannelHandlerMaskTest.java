@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import static io.netty.channel.ChannelHandlerMask.MASK_CHANNEL_READ;
+import static io.netty.channel.ChannelHandlerMask.MASK_EXCEPTION_CAUGHT;
+import static io.netty.channel.ChannelHandlerMask.MASK_FLUSH;
+import static io.netty.channel.ChannelHandlerMask.MASK_WRITE;
+import static io.netty.channel.ChannelHandlerMask.mask;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChannelHandlerMaskTest {
+
+    @Test
+    public void testOnlyOverriddenMethodsAreInvoked() {
+        assertEquals(0, mask(ChannelInboundHandlerAdapter.class));
+        assertEquals(0, mask(ChannelDuplexHandler.class));
+        assertEquals(MASK_CHANNEL_READ, mask(ReadHandler.class));
+        assertEquals(MASK_WRITE | MASK_EXCEPTION_CAUGHT, mask(WriteHandler.class));
+        assertEquals(mask(ReadHandler.class), mask(ReadHandler.class));
+        // The head and tail of the pipeline must handle all events they see.
+        assertTrue((mask(DefaultChannelPipeline.HeadContext.class) & MASK_FLUSH) != 0);
+        assertTrue((mask(DefaultChannelPipeline.TailContext.class) & MASK_CHANNEL_READ) != 0);
+    }
+
+    @Test
+    public void testEventsSkipHandlersWhichOnlyForward() {
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new ChannelInboundHandlerAdapter(), new ReadHandler(), new ChannelDuplexHandler(), new WriteHandler());
+        assertTrue(channel.writeInbound(1));
+        assertEquals(2, channel.<Integer>readInbound().intValue());
+        assertTrue(channel.writeOutbound(1));
+        assertEquals(3, channel.<Integer>readOutbound().intValue());
+        channel.finishAndReleaseAll();
+    }
+
+    private static final class ReadHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ctx.fireChannelRead((Integer) msg + 1);
+        }
+    }
+
+    private static final class WriteHandler extends ChannelOutboundHandlerAdapter {
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            ctx.write((Integer) msg + 2, promise);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.fireExceptionCaught(cause);
+        }
+    }
+}
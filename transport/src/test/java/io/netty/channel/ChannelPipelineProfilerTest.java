@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.ChannelPipelineProfiler.Entry;
+import io.netty.channel.ChannelPipelineProfiler.Event;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChannelPipelineProfilerTest {
+
+    @Test
+    public void testTimeExcludesDownstreamHandlers() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        ChannelPipelineProfiler profiler = new ChannelPipelineProfiler();
+        ((DefaultChannelPipeline) channel.pipeline()).setProfiler(profiler);
+        channel.pipeline().addLast("fast", new SleepingHandler(0));
+        channel.pipeline().addLast("slow", new SleepingHandler(20));
+
+        assertTrue(channel.writeInbound("msg"));
+        channel.pipeline().fireUserEventTriggered("evt");
+
+        List<Entry> entries = profiler.snapshot();
+        assertEquals(4, entries.size());
+        Entry slowest = entries.get(0);
+        assertEquals("slow", slowest.handlerName());
+        assertEquals(1, slowest.count());
+        assertTrue(slowest.nanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+        for (Entry entry: entries) {
+            if ("fast".equals(entry.handlerName()) && entry.event() == Event.CHANNEL_READ) {
+                assertEquals(1, entry.count());
+                assertTrue(entry.nanos() < TimeUnit.MILLISECONDS.toNanos(20));
+            }
+        }
+
+        profiler.reset();
+        assertTrue(profiler.snapshot().isEmpty());
+        channel.finishAndReleaseAll();
+    }
+
+    private static final class SleepingHandler extends ChannelInboundHandlerAdapter {
+        private final long sleepMillis;
+
+        SleepingHandler(long sleepMillis) {
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            Thread.sleep(sleepMillis);
+            ctx.fireChannelRead(msg);
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+            ctx.fireUserEventTriggered(evt);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.nio.NioEventLoopGroup;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EventLoopMetricsTest {
+
+    @Test(timeout = 10000)
+    public void testMetrics() throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        try {
+            SingleThreadEventLoop eventLoop = (SingleThreadEventLoop) group.next();
+            assertNull(eventLoop.metrics());
+            group.setMetricsEnabled(true);
+            EventLoopMetrics metrics = eventLoop.metrics();
+            assertNotNull(metrics);
+
+            for (int i = 0; i < 4 * metrics.taskSampleInterval(); i++) {
+                eventLoop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                    }
+                });
+            }
+            eventLoop.schedule(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }, 10, TimeUnit.MILLISECONDS).syncUninterruptibly();
+
+            // Every 16th of the 64 tasks and the task which added the scheduled task were measured.
+            assertEquals(5, metrics.sampledTasks());
+            assertTrue(metrics.wakeups() > 0);
+            assertTrue(metrics.taskTimeNanos() > 0);
+            assertTrue(metrics.taskLatencyNanos(100) > 0);
+            long count = 0;
+            for (long c: metrics.taskLatencyHistogram()) {
+                count += c;
+            }
+            assertEquals(5, count);
+
+            group.setMetricsEnabled(false);
+            assertNull(eventLoop.metrics());
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testRemoveMeasuredTask() throws Exception {
+        DefaultEventLoop eventLoop = new DefaultEventLoop();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch unblock = new CountDownLatch(1);
+        try {
+            eventLoop.setMetricsEnabled(true);
+            eventLoop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    blocked.countDown();
+                    try {
+                        unblock.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            blocked.await();
+
+            final AtomicInteger runs = new AtomicInteger();
+            Runnable[] tasks = new Runnable[2 * eventLoop.metrics().taskSampleInterval()];
+            for (int i = 0; i < tasks.length; i++) {
+                tasks[i] = new Runnable() {
+                    @Override
+                    public void run() {
+                        runs.incrementAndGet();
+                    }
+                };
+                eventLoop.execute(tasks[i]);
+            }
+            // Some of the tasks were wrapped to measure them, which must not prevent removing them.
+            for (Runnable task : tasks) {
+                assertTrue(eventLoop.removeTask(task));
+            }
+            assertFalse(eventLoop.removeTask(tasks[0]));
+
+            unblock.countDown();
+            eventLoop.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).syncUninterruptibly();
+            assertEquals(0, runs.get());
+        } finally {
+            unblock.countDown();
+            eventLoop.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+public class EventLoopStallDetectorTest {
+
+    @Test(timeout = 10000)
+    public void testStallIsReportedOnce() throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        final CountDownLatch blocking = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final BlockingQueue<EventLoopStall> stalls = new LinkedBlockingQueue<EventLoopStall>();
+        try {
+            final Channel channel = new NioSocketChannel();
+            channel.pipeline().addLast(new BlockingHandler(blocking, release));
+            group.register(channel).syncUninterruptibly();
+
+            EventLoopStallDetector detector = new EventLoopStallDetector(group, 10, TimeUnit.MILLISECONDS);
+            detector.addListener(new EventLoopStallListener() {
+                @Override
+                public void stalled(EventLoopStall stall) {
+                    stalls.add(stall);
+                }
+            });
+            assertEquals(0, detector.check(System.nanoTime()));
+
+            channel.eventLoop().execute(new BlockingTask(channel));
+            blocking.await();
+            Thread.sleep(20);
+            assertEquals(1, detector.check(System.nanoTime()));
+            // The same stall is only reported once.
+            assertEquals(0, detector.check(System.nanoTime()));
+
+            EventLoopStall stall = stalls.take();
+            assertSame(channel.eventLoop(), stall.eventLoop());
+            assertNotNull(stall.handlerFrame());
+            assertEquals(BlockingHandler.class.getName(), stall.handlerFrame().getClassName());
+            assertEquals("userEventTriggered", stall.handlerFrame().getMethodName());
+            assertNotNull(stall.taskFrame());
+            assertEquals(BlockingTask.class.getName(), stall.taskFrame().getClassName());
+
+            release.countDown();
+            channel.close().syncUninterruptibly();
+            assertEquals(0, detector.check(System.nanoTime()));
+        } finally {
+            release.countDown();
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    private static final class BlockingTask implements Runnable {
+        private final Channel channel;
+
+        BlockingTask(Channel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void run() {
+            channel.pipeline().fireUserEventTriggered(this);
+        }
+    }
+
+    private static final class BlockingHandler extends ChannelInboundHandlerAdapter {
+        private final CountDownLatch blocking;
+        private final CountDownLatch release;
+
+        BlockingHandler(CountDownLatch blocking, CountDownLatch release) {
+            this.blocking = blocking;
+            this.release = release;
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof BlockingTask) {
+                blocking.countDown();
+                release.await();
+            } else {
+                ctx.fireUserEventTriggered(evt);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalServerChannel;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class LoadAwareEventLoopChooserFactoryTest {
+
+    @Test(timeout = 10000)
+    public void testChoosesLessLoadedEventLoop() throws Exception {
+        EventLoopGroup group = new DefaultEventLoopGroup(2, null, LoadAwareEventLoopChooserFactory.INSTANCE);
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            SingleThreadEventLoop busy = (SingleThreadEventLoop) group.next();
+            Runnable blocking = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            for (int i = 0; i < 4; i++) {
+                busy.execute(blocking);
+            }
+
+            for (int i = 0; i < 16; i++) {
+                assertNotSame(busy, group.next());
+            }
+        } finally {
+            latch.countDown();
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testRegisteredChannels() throws Exception {
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+        try {
+            LocalAddress address = new LocalAddress(getClass().getName());
+            Channel server = new ServerBootstrap()
+                    .group(group)
+                    .channel(LocalServerChannel.class)
+                    .childHandler(new ChannelInboundHandlerAdapter())
+                    .bind(address).syncUninterruptibly().channel();
+            SingleThreadEventLoop eventLoop = (SingleThreadEventLoop) server.eventLoop();
+            assertSame(eventLoop, group.next());
+            assertEquals(1, eventLoop.registeredChannels());
+
+            server.close().syncUninterruptibly();
+            // Deregistration happens later on the event loop.
+            eventLoop.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).syncUninterruptibly();
+            assertEquals(0, eventLoop.registeredChannels());
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.nio;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelMigration;
+import io.netty.channel.ChannelMigrationEvent;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.EventExecutor;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class NioChannelMigrationTest {
+
+    @Test(timeout = 10000)
+    public void testMigrate() throws Exception {
+        EventLoopGroup group = new NioEventLoopGroup(2);
+        Channel server = null;
+        Channel client = null;
+        try {
+            server = new ServerBootstrap()
+                    .group(group)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            ctx.writeAndFlush(msg);
+                        }
+                    })
+                    .bind(new InetSocketAddress(0)).syncUninterruptibly().channel();
+
+            final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+            final List<Object> events = new CopyOnWriteArrayList<Object>();
+            client = new Bootstrap()
+                    .group(group)
+                    .channel(NioSocketChannel.class)
+                    .handler(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            received.add(((ByteBuf) msg).toString(CharsetUtil.US_ASCII));
+                            ReferenceCountUtil.release(msg);
+                        }
+
+                        @Override
+                        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+                            if (evt instanceof ChannelMigrationEvent) {
+                                events.add(evt);
+                            }
+                        }
+                    })
+                    .connect(server.localAddress()).syncUninterruptibly().channel();
+
+            EventLoop source = client.eventLoop();
+            EventLoop target = null;
+            for (EventExecutor executor: group) {
+                if (executor != source) {
+                    target = (EventLoop) executor;
+                }
+            }
+            assertNotSame(source, target);
+
+            ChannelMigration.migrate(client, target).syncUninterruptibly();
+            assertSame(target, client.eventLoop());
+            assertTrue(client.isActive());
+            assertEquals(2, events.size());
+            assertSame(ChannelMigrationEvent.MIGRATING, events.get(0));
+            assertSame(ChannelMigrationEvent.MIGRATED, events.get(1));
+
+            client.writeAndFlush(Unpooled.copiedBuffer("x", CharsetUtil.US_ASCII)).syncUninterruptibly();
+            assertEquals("x", received.poll(5, TimeUnit.SECONDS));
+        } finally {
+            if (client != null) {
+                client.close().syncUninterruptibly();
+            }
+            if (server != null) {
+                server.close().syncUninterruptibly();
+            }
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testWritesDuringMigration() throws Exception {
+        EventLoopGroup group = new NioEventLoopGroup(2);
+        Channel server = null;
+        Channel client = null;
+        try {
+            final int writes = 1000;
+            final CountDownLatch receivedAll = new CountDownLatch(1);
+            server = new ServerBootstrap()
+                    .group(group)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInboundHandlerAdapter() {
+                        private int received;
+
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            received += ((ByteBuf) msg).readableBytes();
+                            ReferenceCountUtil.release(msg);
+                            if (received == writes) {
+                                receivedAll.countDown();
+                            }
+                        }
+                    })
+                    .bind(new InetSocketAddress(0)).syncUninterruptibly().channel();
+
+            final AtomicInteger errors = new AtomicInteger();
+            client = new Bootstrap()
+                    .group(group)
+                    .channel(NioSocketChannel.class)
+                    .handler(new ChannelOutboundHandlerAdapter() {
+                        @Override
+                        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                            // Writes must never race with the EventLoop the channel is registered with.
+                            if (!ctx.channel().eventLoop().inEventLoop()) {
+                                errors.incrementAndGet();
+                            }
+                            ctx.write(msg, promise);
+                        }
+                    })
+                    .connect(server.localAddress()).syncUninterruptibly().channel();
+
+            EventLoop source = client.eventLoop();
+            EventLoop target = null;
+            for (EventExecutor executor: group) {
+                if (executor != source) {
+                    target = (EventLoop) executor;
+                }
+            }
+
+            ChannelFuture migration = ChannelMigration.migrate(client, target);
+            // Some of these writes are submitted to the old EventLoop while the channel is migrated.
+            for (int i = 0; i < writes; i++) {
+                client.writeAndFlush(Unpooled.wrappedBuffer(new byte[1]));
+            }
+            migration.syncUninterruptibly();
+            assertSame(target, client.eventLoop());
+            assertTrue(receivedAll.await(5, TimeUnit.SECONDS));
+            assertEquals(0, errors.get());
+        } finally {
+            if (client != null) {
+                client.close().syncUninterruptibly();
+            }
+            if (server != null) {
+                server.close().syncUninterruptibly();
+            }
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+}